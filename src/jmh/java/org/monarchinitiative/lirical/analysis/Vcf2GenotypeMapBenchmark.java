@@ -0,0 +1,53 @@
+package org.monarchinitiative.lirical.analysis;
+
+import de.charite.compbio.jannovar.data.JannovarData;
+import org.h2.mvstore.MVStore;
+import org.monarchinitiative.exomiser.core.genome.GenomeAssembly;
+import org.monarchinitiative.lirical.benchmark.Fixtures;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotation of the small bundled VCF file ({@code benchmark/small.vcf}, 56 records, some of which do not PASS)
+ * with a synthetic single-transcript {@link JannovarData} and an empty in-memory Exomiser MVStore, i.e., every
+ * allele takes the "not in the Exomiser database" path. The benchmark measures VCF parsing, filtering, and Jannovar
+ * annotation; frequency and pathogenicity lookups in a real database are not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Vcf2GenotypeMapBenchmark {
+
+    /** If true, records that do not PASS the FILTER column are removed before annotation. */
+    @Param({"true", "false"})
+    public boolean passOnly;
+
+    private String vcfPath;
+
+    private JannovarData jannovarData;
+
+    private MVStore mvStore;
+
+    @Setup
+    public void setup() {
+        vcfPath = Fixtures.resourcePath("benchmark/small.vcf");
+        jannovarData = Fixtures.jannovarData();
+        mvStore = new MVStore.Builder().open();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mvStore.close();
+    }
+
+    @Benchmark
+    public Map<TermId, Gene2Genotype> vcf2genotypeMap() {
+        return new Vcf2GenotypeMap(vcfPath, jannovarData, mvStore, GenomeAssembly.HG19, passOnly).vcf2genotypeMap();
+    }
+}
@@ -0,0 +1,113 @@
+package org.monarchinitiative.lirical.benchmark;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import de.charite.compbio.jannovar.data.JannovarData;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.data.ReferenceDictionaryBuilder;
+import de.charite.compbio.jannovar.reference.GenomeInterval;
+import de.charite.compbio.jannovar.reference.PositionType;
+import de.charite.compbio.jannovar.reference.Strand;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import de.charite.compbio.jannovar.reference.TranscriptModelBuilder;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.File;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shared fixtures of the JMH benchmarks. The ontology and the annotations are the small files that are also used by
+ * the unit tests ({@code src/test/resources}), so the benchmarks need no downloaded data.
+ */
+public final class Fixtures {
+    /** EntrezGene id and symbol of the single transcript of {@link #jannovarData()}. */
+    public static final String GENE_ID = "2200";
+    public static final String GENE_SYMBOL = "FBN1";
+    /** Zero-based, half-open coordinates of the synthetic transcript on chromosome 1. */
+    private static final int TX_BEGIN = 10_000;
+    private static final int EXON1_END = 10_400;
+    private static final int EXON2_BEGIN = 10_600;
+    private static final int TX_END = 11_200;
+    private static final int CDS_BEGIN = 10_050;
+    private static final int CDS_END = 11_150;
+
+    private static Ontology ontology = null;
+    private static Map<TermId, HpoDisease> diseaseMap = null;
+
+    private Fixtures() {
+    }
+
+    /** @return the absolute path of a file in the test resources. */
+    public static String resourcePath(String name) {
+        URL url = Fixtures.class.getClassLoader().getResource(name);
+        if (url == null) {
+            throw new LiricalRuntimeException("Could not find benchmark fixture " + name + " on the classpath");
+        }
+        return new File(url.getFile()).getAbsolutePath();
+    }
+
+    /** @return the small HPO ontology of the test resources (loaded once). */
+    public static synchronized Ontology ontology() {
+        if (ontology == null) {
+            ontology = OntologyLoader.loadOntology(new File(resourcePath("hp.small.obo")));
+        }
+        return ontology;
+    }
+
+    /**
+     * The diseases of {@code small.hpoa} are only annotated to leaf terms of {@code hp.small.obo}, so a disease of
+     * {@code benchmark/nonleaf.hpoa} is added for query terms that are subclasses of a disease term.
+     * @return the diseases annotated in {@code small.hpoa} and {@code benchmark/nonleaf.hpoa} (loaded once)
+     */
+    public static synchronized Map<TermId, HpoDisease> diseaseMap() {
+        if (diseaseMap == null) {
+            Map<TermId, HpoDisease> diseases =
+                    new LinkedHashMap<>(HpoDiseaseAnnotationParser.loadDiseaseMap(resourcePath("small.hpoa"), ontology()));
+            diseases.putAll(HpoDiseaseAnnotationParser.loadDiseaseMap(resourcePath("benchmark/nonleaf.hpoa"), ontology()));
+            diseaseMap = ImmutableMap.copyOf(diseases);
+        }
+        return diseaseMap;
+    }
+
+    /**
+     * The transcript has two exons, 1:10001-10400 and 1:10601-11200, and a coding sequence of one ATG, 298 GCC
+     * codons, and a TAA stop codon that is flanked by 50 C's on either side. {@code benchmark/small.vcf} uses the
+     * same sequence for its REF alleles.
+     * @return Jannovar data with chromosomes 1 and 2 and a single transcript of {@link #GENE_SYMBOL} on chromosome 1
+     */
+    public static JannovarData jannovarData() {
+        ReferenceDictionaryBuilder dictBuilder = new ReferenceDictionaryBuilder();
+        for (int chrom = 1; chrom <= 2; chrom++) {
+            dictBuilder.putContigID(String.valueOf(chrom), chrom);
+            dictBuilder.putContigID("chr" + chrom, chrom);
+            dictBuilder.putContigName(chrom, String.valueOf(chrom));
+        }
+        dictBuilder.putContigLength(1, 249_250_621);
+        dictBuilder.putContigLength(2, 243_199_373);
+        ReferenceDictionary refDict = dictBuilder.build();
+
+        String sequence = Strings.repeat("C", 50) + "ATG" + Strings.repeat("GCC", 298) + "TAA" + Strings.repeat("C", 50);
+
+        TranscriptModelBuilder tmBuilder = new TranscriptModelBuilder();
+        tmBuilder.setStrand(Strand.FWD);
+        tmBuilder.setAccession("NM_000138.4");
+        tmBuilder.setGeneSymbol(GENE_SYMBOL);
+        tmBuilder.setGeneID(GENE_ID);
+        tmBuilder.setTXRegion(new GenomeInterval(refDict, Strand.FWD, 1, TX_BEGIN, TX_END, PositionType.ZERO_BASED));
+        tmBuilder.setCDSRegion(new GenomeInterval(refDict, Strand.FWD, 1, CDS_BEGIN, CDS_END, PositionType.ZERO_BASED));
+        tmBuilder.addExonRegion(new GenomeInterval(refDict, Strand.FWD, 1, TX_BEGIN, EXON1_END, PositionType.ZERO_BASED));
+        tmBuilder.addExonRegion(new GenomeInterval(refDict, Strand.FWD, 1, EXON2_BEGIN, TX_END, PositionType.ZERO_BASED));
+        tmBuilder.setSequence(sequence);
+        tmBuilder.setTranscriptSupportLevel(1);
+        TranscriptModel transcript = tmBuilder.build();
+        return new JannovarData(refDict, ImmutableList.of(transcript));
+    }
+}
@@ -0,0 +1,99 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import org.monarchinitiative.exomiser.core.model.pathogenicity.ClinVarData;
+import org.monarchinitiative.lirical.analysis.Gene2Genotype;
+import org.monarchinitiative.lirical.benchmark.Fixtures;
+import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full {@link CaseEvaluator#evaluate()} of a case with four observed and one excluded term against the diseases of
+ * the {@link Fixtures}, either phenotype-only or with a genotype map in which each disease has a gene. The evaluator
+ * is single-use, so building it is part of the measurement (as in the commands).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseEvaluatorBenchmark {
+
+    private static final List<TermId> OBSERVED = ImmutableList.of(TermId.of("HP:0000028"), TermId.of("HP:0000185"),
+            TermId.of("HP:0000608"), TermId.of("HP:0001263"));
+
+    private static final List<TermId> EXCLUDED = ImmutableList.of(TermId.of("HP:0000047"));
+
+    @Param({"PHENOTYPE", "GENOTYPE"})
+    public String mode;
+
+    private Ontology ontology;
+
+    private Map<TermId, HpoDisease> diseaseMap;
+
+    private PhenotypeLikelihoodRatio phenoLr;
+
+    private GenotypeLikelihoodRatio genoLr;
+
+    private Multimap<TermId, TermId> disease2gene;
+
+    private Map<TermId, Gene2Genotype> genotypeMap;
+
+    private Map<TermId, String> geneId2symbol;
+
+    @Setup
+    public void setup() {
+        ontology = Fixtures.ontology();
+        diseaseMap = Fixtures.diseaseMap();
+        phenoLr = new PhenotypeLikelihoodRatio(ontology, diseaseMap);
+        genoLr = new GenotypeLikelihoodRatio(ImmutableMap.of());
+        ImmutableMultimap.Builder<TermId, TermId> d2g = ImmutableMultimap.builder();
+        ImmutableMap.Builder<TermId, Gene2Genotype> genotypes = ImmutableMap.builder();
+        ImmutableMap.Builder<TermId, String> symbols = ImmutableMap.builder();
+        int i = 0;
+        for (TermId diseaseId : diseaseMap.keySet()) {
+            TermId geneId = TermId.of("NCBIGene:" + (1000 + i));
+            String symbol = "GENE" + i;
+            d2g.put(diseaseId, geneId);
+            symbols.put(geneId, symbol);
+            Gene2Genotype g2g = new Gene2Genotype(geneId, symbol);
+            // one predicted-pathogenic variant in the first gene, one benign variant in the others
+            float pathogenicity = i == 0 ? 0.95f : 0.1f;
+            g2g.addVariant(1, 10_000 + 100 * i, "A", "G", ImmutableList.of(), "0/1", pathogenicity, 0.00001f,
+                    ClinVarData.ClinSig.NOT_PROVIDED);
+            genotypes.put(geneId, g2g);
+            i++;
+        }
+        disease2gene = d2g.build();
+        genotypeMap = genotypes.build();
+        geneId2symbol = symbols.build();
+    }
+
+    @Benchmark
+    public HpoCase evaluate() {
+        CaseEvaluator.Builder builder = new CaseEvaluator.Builder(OBSERVED)
+                .negated(EXCLUDED)
+                .ontology(ontology)
+                .diseaseMap(diseaseMap)
+                .phenotypeLr(phenoLr);
+        CaseEvaluator evaluator = mode.equals("PHENOTYPE") ?
+                builder.buildPhenotypeOnlyEvaluator() :
+                builder.disease2geneMultimap(disease2gene)
+                        .genotypeMap(genotypeMap)
+                        .genotypeLr(genoLr)
+                        .gene2idMap(geneId2symbol)
+                        .build();
+        return evaluator.evaluate();
+    }
+}
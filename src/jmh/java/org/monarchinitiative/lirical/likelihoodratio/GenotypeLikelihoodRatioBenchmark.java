@@ -0,0 +1,63 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.monarchinitiative.exomiser.core.model.pathogenicity.ClinVarData;
+import org.monarchinitiative.lirical.analysis.Gene2Genotype;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.monarchinitiative.phenol.formats.hpo.HpoModeOfInheritanceTermIds.AUTOSOMAL_DOMINANT;
+import static org.monarchinitiative.phenol.formats.hpo.HpoModeOfInheritanceTermIds.AUTOSOMAL_RECESSIVE;
+
+/**
+ * {@link GenotypeLikelihoodRatio#evaluateGenotype} for a gene without variants, with ClinVar-pathogenic variants,
+ * and with variants that are only predicted to be pathogenic (the Poisson model).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenotypeLikelihoodRatioBenchmark {
+
+    private static final TermId GENE_ID = TermId.of("NCBIGene:2200");
+
+    @Param({"NO_VARIANT", "CLINVAR", "PREDICTED"})
+    public String genotype;
+
+    @Param({"AD", "AR"})
+    public String inheritance;
+
+    private GenotypeLikelihoodRatio genoLr;
+
+    private Gene2Genotype g2g;
+
+    private List<TermId> inheritanceModes;
+
+    @Setup
+    public void setup() {
+        genoLr = new GenotypeLikelihoodRatio(ImmutableMap.of(GENE_ID, 0.35));
+        inheritanceModes = ImmutableList.of(inheritance.equals("AD") ? AUTOSOMAL_DOMINANT : AUTOSOMAL_RECESSIVE);
+        if (genotype.equals("NO_VARIANT")) {
+            g2g = Gene2Genotype.NO_IDENTIFIED_VARIANT;
+            return;
+        }
+        ClinVarData.ClinSig clinSig = genotype.equals("CLINVAR") ?
+                ClinVarData.ClinSig.PATHOGENIC :
+                ClinVarData.ClinSig.NOT_PROVIDED;
+        g2g = new Gene2Genotype(GENE_ID, "FBN1");
+        g2g.addVariant(15, 48_755_300, "C", "T", ImmutableList.of(), "0/1", 0.95f, 0.00001f, clinSig);
+        g2g.addVariant(15, 48_760_112, "G", "A", ImmutableList.of(), "0/1", 0.9f, 0.00002f, clinSig);
+        g2g.addVariant(15, 48_787_400, "A", "G", ImmutableList.of(), "0/1", 0.1f, 0.02f, ClinVarData.ClinSig.NOT_PROVIDED);
+    }
+
+    @Benchmark
+    public double evaluateGenotype() {
+        return genoLr.evaluateGenotype(g2g, inheritanceModes, GENE_ID);
+    }
+}
@@ -0,0 +1,40 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import org.monarchinitiative.lirical.benchmark.Fixtures;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of the {@link InducedDiseaseGraph} of the diseases of {@code small.hpoa} (7, 16, and 15 annotations)
+ * and of the disease of {@code benchmark/nonleaf.hpoa}, whose annotations are not leaf terms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InducedDiseaseGraphBenchmark {
+
+    @Param({"OMIM:216300", "OMIM:616684", "OMIM:164745", "OMIM:999001"})
+    public String diseaseId;
+
+    private Ontology ontology;
+
+    private HpoDisease disease;
+
+    @Setup
+    public void setup() {
+        ontology = Fixtures.ontology();
+        disease = Fixtures.diseaseMap().get(TermId.of(diseaseId));
+    }
+
+    @Benchmark
+    public InducedDiseaseGraph construct() {
+        return new InducedDiseaseGraph(disease, ontology);
+    }
+}
@@ -0,0 +1,129 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import org.monarchinitiative.lirical.benchmark.Fixtures;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.monarchinitiative.phenol.ontology.algo.OntologyAlgorithm.getAncestorTerms;
+
+/**
+ * Benchmarks of the phenotype likelihood ratio of a single query term and disease. For each kind of match, the
+ * fixture is the first disease/term pair of the small test ontology for which {@link PhenotypeLikelihoodRatio}
+ * reports this kind of match, so that each benchmark exercises one branch of the algorithm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhenotypeLikelihoodRatioBenchmark {
+
+    private static final TermId PHENOTYPIC_ABNORMALITY = TermId.of("HP:0000118");
+
+    /** A disease and a query term whose likelihood ratio is calculated by one branch of the algorithm. */
+    abstract static class TermAndDisease {
+        PhenotypeLikelihoodRatio phenoLr;
+        InducedDiseaseGraph idg;
+        TermId query;
+
+        /** @return true if {@code lr} is the kind of match this fixture is about. */
+        abstract boolean matches(LrWithExplanation lr);
+
+        abstract LrWithExplanation calculate(TermId tid, InducedDiseaseGraph graph);
+
+        void select(String description) {
+            Ontology ontology = Fixtures.ontology();
+            Map<TermId, HpoDisease> diseaseMap = Fixtures.diseaseMap();
+            phenoLr = new PhenotypeLikelihoodRatio(ontology, diseaseMap);
+            for (HpoDisease disease : diseaseMap.values()) {
+                InducedDiseaseGraph graph = new InducedDiseaseGraph(disease, ontology);
+                for (TermId tid : ontology.getNonObsoleteTermIds()) {
+                    if (tid.equals(PHENOTYPIC_ABNORMALITY) ||
+                            ! getAncestorTerms(ontology, tid, false).contains(PHENOTYPIC_ABNORMALITY)) {
+                        continue;
+                    }
+                    if (matches(calculate(tid, graph))) {
+                        idg = graph;
+                        query = tid;
+                        return;
+                    }
+                }
+            }
+            throw new LiricalRuntimeException("No fixture for " + description + " in the test ontology");
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ObservedTerm extends TermAndDisease {
+        /** EXACT: the disease is annotated to the query term; SUBCLASS: the query term is a subclass of a disease
+         * term; SUPERCLASS: a disease term is a subclass of the query term; COMMON_ANCESTOR: the terms only share
+         * an ancestor below Phenotypic abnormality; NO_MATCH: the only common ancestor is Phenotypic abnormality. */
+        @Param({"EXACT", "SUBCLASS", "SUPERCLASS", "COMMON_ANCESTOR", "NO_MATCH"})
+        public String match;
+
+        private LrWithExplanation.MatchType matchType;
+
+        @Setup
+        public void setup() {
+            switch (match) {
+                case "EXACT": matchType = LrWithExplanation.MatchType.EXACT_MATCH; break;
+                case "SUBCLASS": matchType = LrWithExplanation.MatchType.QUERY_TERM_SUBCLASS_OF_DISEASE_TERM; break;
+                case "SUPERCLASS": matchType = LrWithExplanation.MatchType.DISEASE_TERM_SUBCLASS_OF_QUERY; break;
+                case "COMMON_ANCESTOR": matchType = LrWithExplanation.MatchType.NON_ROOT_COMMON_ANCESTOR; break;
+                default: matchType = LrWithExplanation.MatchType.NO_MATCH_BELOW_ROOT;
+            }
+            select(match);
+        }
+
+        @Override
+        boolean matches(LrWithExplanation lr) {
+            return lr.getMatchType() == matchType;
+        }
+
+        @Override
+        LrWithExplanation calculate(TermId tid, InducedDiseaseGraph graph) {
+            return phenoLr.getLikelihoodRatio(tid, graph);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExcludedTerm extends TermAndDisease {
+        /** PRESENT: the excluded term (or a subclass) annotates the disease; ABSENT: it does not. */
+        @Param({"PRESENT", "ABSENT"})
+        public String annotation;
+
+        @Setup
+        public void setup() {
+            select("excluded term " + annotation);
+        }
+
+        @Override
+        boolean matches(LrWithExplanation lr) {
+            LrWithExplanation.MatchType expected = annotation.equals("PRESENT") ?
+                    LrWithExplanation.MatchType.EXCLUDED_QUERY_TERM_PRESENT_IN_DISEASE :
+                    LrWithExplanation.MatchType.EXCLUDED_QUERY_TERM_NOT_PRESENT_IN_DISEASE;
+            return lr.getMatchType() == expected;
+        }
+
+        @Override
+        LrWithExplanation calculate(TermId tid, InducedDiseaseGraph graph) {
+            return phenoLr.getLikelihoodRatioForExcludedTerm(tid, graph);
+        }
+    }
+
+    @Benchmark
+    public LrWithExplanation observedTerm(ObservedTerm fixture) {
+        return fixture.phenoLr.getLikelihoodRatio(fixture.query, fixture.idg);
+    }
+
+    @Benchmark
+    public LrWithExplanation excludedTerm(ExcludedTerm fixture) {
+        return fixture.phenoLr.getLikelihoodRatioForExcludedTerm(fixture.query, fixture.idg);
+    }
+}
@@ -0,0 +1,36 @@
+package org.monarchinitiative.lirical.poisson;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PoissonDistribution#probability(double)} for the disease means (1 and 2) and a high background mean, at the
+ * fractional (pathogenicity-weighted) variant counts that the genotype likelihood ratio uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoissonDistributionBenchmark {
+
+    @Param({"1.0", "2.0", "8.7418"})
+    public double lambda;
+
+    @Param({"0.85", "1.9", "4.0"})
+    public double count;
+
+    private PoissonDistribution distribution;
+
+    @Setup
+    public void setup() {
+        distribution = new PoissonDistribution(lambda);
+    }
+
+    @Benchmark
+    public double probability() {
+        return distribution.probability(count);
+    }
+}
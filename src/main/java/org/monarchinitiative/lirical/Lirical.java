@@ -26,7 +26,7 @@ public class Lirical {
     @Parameter(names = {"-h", "--help"}, help = true, arity = 0,description = "display this help message")
     private boolean usageHelpRequested;
 
-    private static final ImmutableSet<String> commandnames=ImmutableSet.of("download","yaml","phenopacket","simulate","grid","gt2git","simulate-vcf","not");
+    private static final ImmutableSet<String> commandnames=ImmutableSet.of("download","yaml","phenopacket","simulate","grid","gt2git","simulate-vcf","not","batch","serve","compile-kb","benchmark","synthesize","verify");
 
 
     static public void main(String [] args) {
@@ -41,6 +41,12 @@ public class Lirical {
         PhenopacketCommand phenopacket = new PhenopacketCommand();
         SimulatePhenopacketCommand simvcf = new SimulatePhenopacketCommand();
         NotCommand not = new NotCommand();
+        BatchCommand batch = new BatchCommand();
+        ServeCommand serve = new ServeCommand();
+        CompileKbCommand compileKb = new CompileKbCommand();
+        BenchmarkCommand benchmark = new BenchmarkCommand();
+        SynthesizeCommand synthesize = new SynthesizeCommand();
+        VerifyCommand verify = new VerifyCommand();
         JCommander jc = JCommander.newBuilder()
                 .addObject(lirical)
                 .addCommand("download", download)
@@ -51,6 +57,12 @@ public class Lirical {
                 .addCommand("grid", grid)
                 .addCommand("simulate-vcf",simvcf)
                 .addCommand("not",not)
+                .addCommand("batch",batch)
+                .addCommand("serve",serve)
+                .addCommand("compile-kb",compileKb)
+                .addCommand("benchmark",benchmark)
+                .addCommand("synthesize",synthesize)
+                .addCommand("verify",verify)
                 .build();
         jc.setProgramName("java -jar LIRICAL.jar");
         try {
@@ -139,6 +151,24 @@ public class Lirical {
            case "not":
                 liricalCommand =not;
                 break;
+           case "batch":
+                liricalCommand =batch;
+                break;
+           case "serve":
+                liricalCommand =serve;
+                break;
+           case "compile-kb":
+                liricalCommand =compileKb;
+                break;
+           case "benchmark":
+                liricalCommand =benchmark;
+                break;
+           case "synthesize":
+                liricalCommand =synthesize;
+                break;
+           case "verify":
+                liricalCommand =verify;
+                break;
            default:
                System.err.println(String.format("[ERROR] command \"%s\" not recognized",command));
                jc.usage();
@@ -0,0 +1,142 @@
+package org.monarchinitiative.lirical.analysis;
+
+import com.google.common.collect.ImmutableList;
+import org.monarchinitiative.exomiser.core.model.TranscriptAnnotation;
+import org.monarchinitiative.exomiser.core.model.pathogenicity.ClinVarData;
+import org.monarchinitiative.lirical.vcf.SimpleGenotype;
+import org.monarchinitiative.lirical.vcf.SimpleVariant;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The variants of one gene, stored as packed columns of primitive values instead of one {@link SimpleVariant} per
+ * variant. A whole-genome VCF file yields many variants outside of the pathogenic bin, and their transcript
+ * annotations used to dominate the heap after annotation. Transcript annotations are therefore only kept for
+ * variants that can be shown in the report, i.e., variants in the pathogenic bin or with a ClinVar
+ * interpretation. Short alleles are interned, so that the many SNVs share their allele strings.
+ * <p>
+ * The variants are kept in descending order of pathogenicity score (variants with the same score in the order in
+ * which they were added). {@link #get(int)} creates a {@link SimpleVariant} for the output.
+ */
+final class CompactVariantList {
+    /** Alleles up to this length are interned. */
+    private static final int MAX_INTERNED_ALLELE_LENGTH = 4;
+    private static final ConcurrentHashMap<String, String> ALLELES = new ConcurrentHashMap<>();
+    private static final SimpleGenotype[] GENOTYPES = SimpleGenotype.values();
+    private static final ClinVarData.ClinSig[] CLINSIGS = ClinVarData.ClinSig.values();
+    private static final int INITIAL_CAPACITY = 2;
+
+    private int size = 0;
+    private byte[] chromosomes = new byte[INITIAL_CAPACITY];
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private String[] refs = new String[INITIAL_CAPACITY];
+    private String[] alts = new String[INITIAL_CAPACITY];
+    private float[] pathogenicityScores = new float[INITIAL_CAPACITY];
+    private float[] frequencies = new float[INITIAL_CAPACITY];
+    private byte[] clinvar = new byte[INITIAL_CAPACITY];
+    private byte[] genotypes = new byte[INITIAL_CAPACITY];
+    /** Transcript annotations of the reportable variants; null for all other variants. */
+    private List<TranscriptAnnotation>[] annotations = newAnnotationArray(INITIAL_CAPACITY);
+
+    @SuppressWarnings("unchecked")
+    private static List<TranscriptAnnotation>[] newAnnotationArray(int n) {
+        return (List<TranscriptAnnotation>[]) new List[n];
+    }
+
+    private static String intern(String allele) {
+        if (allele.length() > MAX_INTERNED_ALLELE_LENGTH) {
+            return allele;
+        }
+        String shared = ALLELES.putIfAbsent(allele, allele);
+        return shared == null ? allele : shared;
+    }
+
+    /** @return true if the transcript annotations of a variant are kept for the report. */
+    static boolean isReportable(float pathogenicityScore, ClinVarData.ClinSig clinv) {
+        return SimpleVariant.isInPathogenicBin(pathogenicityScore) || clinv != ClinVarData.ClinSig.NOT_PROVIDED;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add a variant at its position in the descending order of pathogenicity scores.
+     * @param pathogenicityScore score calculated by {@link SimpleVariant#pathogenicityScore(float, float, ClinVarData.ClinSig)}
+     */
+    void add(int chrom, int pos, String ref, String alt, List<TranscriptAnnotation> annotList,
+             float pathogenicityScore, float freq, SimpleGenotype gtype, ClinVarData.ClinSig clinv) {
+        if (size == positions.length) {
+            grow();
+        }
+        int i = size;
+        while (i > 0 && pathogenicityScores[i - 1] < pathogenicityScore) {
+            i--;
+        }
+        int n = size - i;
+        if (n > 0) {
+            System.arraycopy(chromosomes, i, chromosomes, i + 1, n);
+            System.arraycopy(positions, i, positions, i + 1, n);
+            System.arraycopy(refs, i, refs, i + 1, n);
+            System.arraycopy(alts, i, alts, i + 1, n);
+            System.arraycopy(pathogenicityScores, i, pathogenicityScores, i + 1, n);
+            System.arraycopy(frequencies, i, frequencies, i + 1, n);
+            System.arraycopy(clinvar, i, clinvar, i + 1, n);
+            System.arraycopy(genotypes, i, genotypes, i + 1, n);
+            System.arraycopy(annotations, i, annotations, i + 1, n);
+        }
+        chromosomes[i] = (byte) chrom;
+        positions[i] = pos;
+        refs[i] = intern(ref);
+        alts[i] = intern(alt);
+        pathogenicityScores[i] = pathogenicityScore;
+        frequencies[i] = freq;
+        clinvar[i] = (byte) clinv.ordinal();
+        genotypes[i] = (byte) gtype.ordinal();
+        annotations[i] = isReportable(pathogenicityScore, clinv) ? ImmutableList.copyOf(annotList) : null;
+        size++;
+    }
+
+    /** Add the variants of {@code other}; their transcript annotations are shared, not copied. */
+    void addAll(CompactVariantList other) {
+        for (int i = 0; i < other.size; i++) {
+            List<TranscriptAnnotation> annotList = other.annotations[i] != null ? other.annotations[i] : ImmutableList.of();
+            add(other.chromosomes[i], other.positions[i], other.refs[i], other.alts[i], annotList,
+                    other.pathogenicityScores[i], other.frequencies[i], other.getGenotype(i), other.getClinSig(i));
+        }
+    }
+
+    private void grow() {
+        int capacity = 2 * positions.length;
+        chromosomes = Arrays.copyOf(chromosomes, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        refs = Arrays.copyOf(refs, capacity);
+        alts = Arrays.copyOf(alts, capacity);
+        pathogenicityScores = Arrays.copyOf(pathogenicityScores, capacity);
+        frequencies = Arrays.copyOf(frequencies, capacity);
+        clinvar = Arrays.copyOf(clinvar, capacity);
+        genotypes = Arrays.copyOf(genotypes, capacity);
+        annotations = Arrays.copyOf(annotations, capacity);
+    }
+
+    float getPathogenicityScore(int i) {
+        return pathogenicityScores[i];
+    }
+
+    SimpleGenotype getGenotype(int i) {
+        return GENOTYPES[genotypes[i]];
+    }
+
+    ClinVarData.ClinSig getClinSig(int i) {
+        return CLINSIGS[clinvar[i]];
+    }
+
+    /** @return the i'th variant, with an empty list of transcript annotations unless it is reportable. */
+    SimpleVariant get(int i) {
+        List<TranscriptAnnotation> annotList = annotations[i] != null ? annotations[i] : ImmutableList.of();
+        return SimpleVariant.withPathogenicityScore(chromosomes[i], positions[i], refs[i], alts[i], annotList,
+                pathogenicityScores[i], frequencies[i], getGenotype(i), getClinSig(i));
+    }
+}
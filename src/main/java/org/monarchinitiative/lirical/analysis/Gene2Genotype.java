@@ -1,5 +1,6 @@
 package org.monarchinitiative.lirical.analysis;
 
+import com.google.common.collect.ImmutableList;
 import org.monarchinitiative.exomiser.core.model.TranscriptAnnotation;
 import org.monarchinitiative.exomiser.core.model.pathogenicity.ClinVarData;
 import org.monarchinitiative.lirical.vcf.SimpleGenotype;
@@ -7,13 +8,12 @@ import org.monarchinitiative.lirical.vcf.SimpleVariant;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * This class collects and organizes the variants found to be present in a given gene.
- * It provides functions that can be used to calculate the genotype likelihood ratio.
+ * It provides functions that can be used to calculate the genotype likelihood ratio. The variants are kept in a
+ * {@link CompactVariantList}, and the counts used by the genotype likelihood ratio are updated as variants are added.
  * @author <a href="mailto:peter.robinson@jax.org">Peter Robinson</a>
  */
 public class Gene2Genotype {
@@ -23,10 +23,16 @@ public class Gene2Genotype {
     private final TermId geneId;
     /** The symbol of this gene. */
     private final String symbol;
-    /** List of all of the variants found in this gene. */
-    private final List<SimpleVariant> varList;
+    /** All of the variants found in this gene, in descending order of pathogenicity. */
+    private final CompactVariantList variants;
     /** Sum of variants in the pathogenic bin, weighted by their predicted pathogenicity. */
     private double sumOfPathBinScores;
+    /** Number of alleles in the pathogenic bin. */
+    private int pathogenicAlleleCount;
+    /** Number of alleles with a pathogenic ClinVar interpretation. */
+    private int pathogenicClinVarCount;
+    private boolean hasPredictedPathogenicVar;
+    private boolean hasPathogenicClinvarVar;
     /** It simplifies the use of this class to have an object that indicates that NO VARIANT
      * was found in the gene (no variant in the gene was present in teh VCF file).    */
     public static final Gene2Genotype NO_IDENTIFIED_VARIANT = new Gene2Genotype(TermId.of("n/a:n/a"),"n/a");
@@ -42,7 +48,7 @@ public class Gene2Genotype {
     public Gene2Genotype(TermId id, String sym) {
         this.geneId=id;
         this.symbol=sym;
-        this.varList=new ArrayList<>();
+        this.variants=new CompactVariantList();
         this.sumOfPathBinScores=0d;
     }
 
@@ -54,8 +60,22 @@ public class Gene2Genotype {
         return symbol;
     }
 
+    /**
+     * Create the variants of this gene (in descending order of pathogenicity) for the output. Variants outside of the
+     * pathogenic bin and without ClinVar interpretation have an empty list of transcript annotations.
+     * @return a new list of the variants of this gene
+     */
     public List<SimpleVariant> getVarList() {
-        return varList;
+        ImmutableList.Builder<SimpleVariant> builder = new ImmutableList.Builder<>();
+        for (int i = 0; i < variants.size(); i++) {
+            builder.add(variants.get(i));
+        }
+        return builder.build();
+    }
+
+    /** @return the number of variants found in this gene */
+    public int getVariantCount() {
+        return variants.size();
     }
 
     public double getSumOfPathBinScores() {
@@ -63,43 +83,72 @@ public class Gene2Genotype {
     }
 
 
+    /**
+     * Create a new object with the variants of both arguments, which must refer to the same gene. The arguments
+     * are not changed; this allows the genotypes of a (cached) template VCF file to be combined with injected variants.
+     * @param first variants of the gene, e.g., from a template VCF file
+     * @param second additional variants of the same gene
+     * @return a new object with the variants of both arguments
+     */
+    public static Gene2Genotype merge(Gene2Genotype first, Gene2Genotype second) {
+        Gene2Genotype merged = new Gene2Genotype(first.geneId, first.symbol);
+        merged.variants.addAll(first.variants);
+        merged.variants.addAll(second.variants);
+        for (int i = 0; i < merged.variants.size(); i++) {
+            merged.count(merged.variants.getPathogenicityScore(i), merged.variants.getGenotype(i), merged.variants.getClinSig(i));
+        }
+        return merged;
+    }
+
+
     public void addVariant(int chrom, int pos, String ref, String alt,
                            List<TranscriptAnnotation> annotList, String genotypeString, float path, float freq,ClinVarData.ClinSig clinv){
-        SimpleVariant simplevar = new SimpleVariant(chrom, pos, ref, alt,  annotList, path,  freq, genotypeString,clinv);
-        this.varList.add(simplevar);
-        if (simplevar.isInPathogenicBin()) {
-            SimpleGenotype sgenotype=simplevar.getGtype();
-            if (sgenotype.equals(SimpleGenotype.HOMOZYGOUS_ALT)) {
-                this.sumOfPathBinScores += 2*simplevar.getPathogenicityScore();
-            } else  { // assume het
-                this.sumOfPathBinScores+=simplevar.getPathogenicityScore();
-            }
+        float pathogenicityScore = SimpleVariant.pathogenicityScore(path, freq, clinv);
+        SimpleGenotype sgenotype = SimpleGenotype.fromGenotypeString(genotypeString);
+        variants.add(chrom, pos, ref, alt, annotList, pathogenicityScore, freq, sgenotype, clinv);
+        count(pathogenicityScore, sgenotype, clinv);
+    }
+
+    private void count(float pathogenicityScore, SimpleGenotype sgenotype, ClinVarData.ClinSig clinv) {
+        int alleles = sgenotype.equals(SimpleGenotype.HOMOZYGOUS_ALT) ? 2 : 1; // assume het otherwise
+        if (SimpleVariant.isInPathogenicBin(pathogenicityScore)) {
+            this.hasPredictedPathogenicVar = true;
+            this.sumOfPathBinScores += alleles * pathogenicityScore;
+            this.pathogenicAlleleCount += alleles;
+        }
+        if (SimpleVariant.isClinVarPathogenic(clinv)) {
+            this.hasPathogenicClinvarVar = true;
+            this.pathogenicClinVarCount += alleles;
         }
-        Collections.sort(varList); // keep variant list sorted
     }
 
 
     public boolean hasPredictedPathogenicVar() {
-        return this.varList.stream().anyMatch(SimpleVariant::isInPathogenicBin);
+        return this.hasPredictedPathogenicVar;
     }
 
     /** @return true iff there is a variant with a pathogenic ClinVar interpretation. */
    public boolean hasPathogenicClinvarVar() {
-        return this.varList.stream().anyMatch(SimpleVariant::isClinVarPathogenic);
+        return this.hasPathogenicClinvarVar;
    }
 
    public int pathogenicClinVarCount() {
-       return (int)this.varList.stream().map(SimpleVariant::pathogenicClinVarAlleleCount).reduce(0,Integer::sum);
+       return this.pathogenicClinVarCount;
    }
 
    public int pathogenicAlleleCount() {
-       return (int)this.varList.stream().map(SimpleVariant::pathogenicAlleleCount).reduce(0,Integer::sum);
+       return this.pathogenicAlleleCount;
    }
 
     @Override
     public String toString() {
-        String varString = varList.stream().filter(SimpleVariant::isInPathogenicBin).map(SimpleVariant::toString).collect(Collectors.joining("; "));
-        return String.format("%s[%s]: %s",this.symbol,this.geneId.getValue(),varString);
+        List<String> varStrings = new ArrayList<>();
+        for (int i = 0; i < variants.size(); i++) {
+            if (SimpleVariant.isInPathogenicBin(variants.getPathogenicityScore(i))) {
+                varStrings.add(variants.get(i).toString());
+            }
+        }
+        return String.format("%s[%s]: %s",this.symbol,this.geneId.getValue(),String.join("; ", varStrings));
     }
 
 }
@@ -0,0 +1,66 @@
+package org.monarchinitiative.lirical.analysis;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.phenopackets.schema.v1.core.Variant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * This class annotates a template VCF file once and keeps the resulting gene to genotype map in memory. The
+ * variants of a phenopacket are then annotated on their own and merged with the template map, which is much
+ * faster than writing a new VCF file with the injected variants and annotating the entire file for each
+ * simulated case. The cached template map is never changed; genes that receive an injected variant are
+ * represented by a new {@link Gene2Genotype} object (see {@link Gene2Genotype#merge(Gene2Genotype, Gene2Genotype)}).
+ * <p>
+ * A {@link Vcf2GenotypeMap} keeps per-file counters and must not be shared between threads, so the injected
+ * variants are annotated by one {@link Vcf2GenotypeMap} per thread. Only the template map is shared, and
+ * {@link #genotypeMap(String, List)} can therefore be called for several cases in parallel.
+ */
+public class TemplateVcfAnnotator {
+    private static final Logger logger = LoggerFactory.getLogger(TemplateVcfAnnotator.class);
+    /** Path to the template VCF file. */
+    private final String templateVcfPath;
+    /** Annotators for the injected variants, one for each thread that calls {@link #genotypeMap(String, List)}. */
+    private final ThreadLocal<Vcf2GenotypeMap> annotators;
+    /** Genes and variants of the template VCF file (read-only). */
+    private final Map<TermId, Gene2Genotype> templateGenotypeMap;
+
+    /**
+     * @param templateVcfPath path to the template VCF file
+     * @param annotatorFactory creates a new annotator for the template VCF file (e.g.,
+     *                         {@code () -> factory.vcf2GenotypeMap(templateVcfPath)}, see
+     *                         {@link org.monarchinitiative.lirical.configuration.LiricalFactory#vcf2GenotypeMap(String)});
+     *                         it is called once for the template and once for each thread that annotates injected variants
+     */
+    public TemplateVcfAnnotator(String templateVcfPath, Supplier<Vcf2GenotypeMap> annotatorFactory) {
+        this.templateVcfPath = templateVcfPath;
+        this.annotators = ThreadLocal.withInitial(annotatorFactory);
+        this.templateGenotypeMap = Collections.unmodifiableMap(annotatorFactory.get().vcf2genotypeMap());
+        logger.info("Annotated template VCF file {} with variants in {} genes", templateVcfPath, templateGenotypeMap.size());
+    }
+
+    public String getTemplateVcfPath() {
+        return templateVcfPath;
+    }
+
+    /**
+     * Annotate the variants of a phenopacket and combine them with the variants of the template VCF file.
+     * @param subjectId identifier of the proband
+     * @param variants variants that are injected into the template (only VCF alleles are used)
+     * @return a new gene to genotype map for the simulated case
+     */
+    public Map<TermId, Gene2Genotype> genotypeMap(String subjectId, List<Variant> variants) {
+        List<VariantContext> injected = VcfSimulator.phenopacketToVariantContexts(subjectId, variants);
+        Map<TermId, Gene2Genotype> injectedGenotypeMap = annotators.get().variantContexts2genotypeMap(injected);
+        Map<TermId, Gene2Genotype> genotypeMap = new HashMap<>(templateGenotypeMap);
+        injectedGenotypeMap.forEach((geneId, g2g) -> genotypeMap.merge(geneId, g2g, Gene2Genotype::merge));
+        return genotypeMap;
+    }
+}
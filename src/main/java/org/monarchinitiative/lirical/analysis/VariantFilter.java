@@ -0,0 +1,189 @@
+package org.monarchinitiative.lirical.analysis;
+
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.VariantContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of cheap predicates that are applied to each VCF record before it is annotated. Records that fail
+ * one of the predicates are discarded before any Jannovar or Exomiser (MVStore) work is done. The predicates
+ * are checked in order of increasing cost, and the first failing predicate is reported so that callers
+ * can keep per-predicate rejection counts. Predicates that refer to a genotype are applied to the
+ * proband, i.e., the first sample of the VCF file. Objects of this class are immutable and can be
+ * shared between threads.
+ */
+public class VariantFilter {
+    /** The reasons for which a VCF record can be rejected. */
+    public enum Reason {
+        /** The FILTER column has an entry other than PASS or ".". */
+        FILTER("FILTER"),
+        /** More alleles (REF+ALT) than allowed. */
+        ALLELE_COUNT("allele count"),
+        /** QUAL below threshold (or missing). */
+        QUAL("QUAL"),
+        /** Genotype of the proband is a no-call. */
+        NO_CALL("no-call"),
+        /** Genotype of the proband is homozygous reference. */
+        HOM_REF("hom-ref"),
+        /** Read depth (DP) of the proband below threshold. */
+        DEPTH("DP"),
+        /** Genotype quality (GQ) of the proband below threshold. */
+        GENOTYPE_QUALITY("GQ");
+
+        private final String label;
+
+        Reason(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+    /** Value used to indicate that a numeric threshold is not in use. */
+    private static final int UNSET = -1;
+    /** If true, records with a non-PASS entry in the FILTER column are rejected. */
+    private final boolean passOnly;
+    /** Minimum QUAL value, or a negative value if QUAL is not checked. */
+    private final double minQual;
+    /** Minimum read depth of the proband, or {@link #UNSET}. */
+    private final int minDepth;
+    /** Minimum genotype quality of the proband, or {@link #UNSET}. */
+    private final int minGenotypeQuality;
+    /** If true, records where the proband genotype is a no-call are rejected. */
+    private final boolean skipNoCall;
+    /** If true, records where the proband genotype is homozygous reference are rejected. */
+    private final boolean skipHomRef;
+    /** Maximum number of alleles (REF plus ALT), or {@link #UNSET}. */
+    private final int maxAlleles;
+
+    private VariantFilter(Builder builder) {
+        this.passOnly = builder.passOnly;
+        this.minQual = builder.minQual;
+        this.minDepth = builder.minDepth;
+        this.minGenotypeQuality = builder.minGenotypeQuality;
+        this.skipNoCall = builder.skipNoCall;
+        this.skipHomRef = builder.skipHomRef;
+        this.maxAlleles = builder.maxAlleles;
+    }
+
+    /** @return a filter that only removes records with a non-PASS FILTER column (the previous LIRICAL default). */
+    public static VariantFilter passOnly() {
+        return new Builder().build();
+    }
+
+    /**
+     * Test a VCF record against the predicates of this filter. Site-level predicates (FILTER, allele count, QUAL)
+     * are checked first so that the genotype fields, which htsjdk decodes lazily, are only parsed if needed.
+     * @param vc a VCF record
+     * @return the reason the record was rejected, or null if it passes all predicates
+     */
+    public Reason rejectionReason(VariantContext vc) {
+        if (passOnly && vc.isFiltered()) {
+            return Reason.FILTER;
+        }
+        if (maxAlleles != UNSET && vc.getNAlleles() > maxAlleles) {
+            return Reason.ALLELE_COUNT;
+        }
+        if (minQual >= 0 && (!vc.hasLog10PError() || vc.getPhredScaledQual() < minQual)) {
+            return Reason.QUAL;
+        }
+        if (!checksGenotype() || vc.getNSamples() == 0) {
+            return null;
+        }
+        Genotype gt = vc.getGenotype(0);
+        if (skipNoCall && gt.isNoCall()) {
+            return Reason.NO_CALL;
+        }
+        if (skipHomRef && gt.isHomRef()) {
+            return Reason.HOM_REF;
+        }
+        if (minDepth != UNSET && (!gt.hasDP() || gt.getDP() < minDepth)) {
+            return Reason.DEPTH;
+        }
+        if (minGenotypeQuality != UNSET && (!gt.hasGQ() || gt.getGQ() < minGenotypeQuality)) {
+            return Reason.GENOTYPE_QUALITY;
+        }
+        return null;
+    }
+
+    /** @return true if the record passes all predicates of this filter. */
+    public boolean accept(VariantContext vc) {
+        return rejectionReason(vc) == null;
+    }
+
+    private boolean checksGenotype() {
+        return skipNoCall || skipHomRef || minDepth != UNSET || minGenotypeQuality != UNSET;
+    }
+
+    /** @return a short human-readable description of the active predicates, e.g., for the HTML output. */
+    public String getDescription() {
+        List<String> items = new ArrayList<>();
+        if (passOnly) items.add("FILTER=PASS");
+        if (maxAlleles != UNSET) items.add(String.format("alleles<=%d", maxAlleles));
+        if (minQual >= 0) items.add(String.format("QUAL>=%.1f", minQual));
+        if (skipNoCall) items.add("no no-calls");
+        if (skipHomRef) items.add("no hom-ref");
+        if (minDepth != UNSET) items.add(String.format("DP>=%d", minDepth));
+        if (minGenotypeQuality != UNSET) items.add(String.format("GQ>=%d", minGenotypeQuality));
+        return items.isEmpty() ? "none" : String.join(", ", items);
+    }
+
+    /**
+     * A convenience Builder class for creating {@link VariantFilter} objects. By default, only the FILTER
+     * column is checked.
+     */
+    public static class Builder {
+        private boolean passOnly = true;
+        private double minQual = UNSET;
+        private int minDepth = UNSET;
+        private int minGenotypeQuality = UNSET;
+        private boolean skipNoCall = false;
+        private boolean skipHomRef = false;
+        private int maxAlleles = UNSET;
+
+        public Builder() {
+        }
+
+        public Builder passOnly(boolean b) {
+            this.passOnly = b;
+            return this;
+        }
+
+        public Builder minQual(double q) {
+            this.minQual = q;
+            return this;
+        }
+
+        public Builder minDepth(int dp) {
+            this.minDepth = dp;
+            return this;
+        }
+
+        public Builder minGenotypeQuality(int gq) {
+            this.minGenotypeQuality = gq;
+            return this;
+        }
+
+        public Builder skipNoCall(boolean b) {
+            this.skipNoCall = b;
+            return this;
+        }
+
+        public Builder skipHomRef(boolean b) {
+            this.skipHomRef = b;
+            return this;
+        }
+
+        public Builder maxAlleles(int n) {
+            this.maxAlleles = n;
+            return this;
+        }
+
+        public VariantFilter build() {
+            return new VariantFilter(this);
+        }
+    }
+}
@@ -14,7 +14,6 @@ import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
-import htsjdk.variant.vcf.VCFFileReader;
 import htsjdk.variant.vcf.VCFHeader;
 
 import org.h2.mvstore.MVMap;
@@ -28,13 +27,14 @@ import org.monarchinitiative.exomiser.core.model.pathogenicity.ClinVarData;
 import org.monarchinitiative.exomiser.core.model.pathogenicity.PathogenicityData;
 import org.monarchinitiative.exomiser.core.model.pathogenicity.VariantEffectPathogenicityScore;
 import org.monarchinitiative.exomiser.core.proto.AlleleProto;
+import org.monarchinitiative.lirical.io.VariantFileReader;
+import org.monarchinitiative.lirical.metrics.Metrics;
 import org.monarchinitiative.phenol.base.PhenolRuntimeException;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
-import java.io.File;
 import java.util.*;
 
 /**
@@ -46,9 +46,11 @@ import java.util.*;
 public class Vcf2GenotypeMap {
     private static final Logger logger = LoggerFactory.getLogger(Vcf2GenotypeMap.class);
     /**
-     * Path to the VCF file with the exome/genome of the proband.
+     * Path to the VCF (or VCF.GZ/BCF) file with the exome/genome of the proband.
      */
     private final String vcfPath;
+    /** Format of {@link #vcfPath}, determined from the contents of the file. */
+    private VariantFileReader.Format format;
     /**
      * Prefix for the NCBI Entrez Gene data.
      */
@@ -69,6 +71,10 @@ public class Vcf2GenotypeMap {
      * Map of Chromosomes, used in the annotation.
      */
     private final ImmutableMap<Integer, Chromosome> chromosomeMap;
+    /** Jannovar annotator that adds functional annotations to the VCF records. */
+    private final VariantContextAnnotator variantEffectAnnotator;
+    /** Exomiser wrapper of Jannovar used to annotate individual alleles. */
+    private final JannovarVariantAnnotator jannovarVariantAnnotator;
     /**
      * A Jannovar object to report progress of VCF parsing.
      */
@@ -81,6 +87,16 @@ public class Vcf2GenotypeMap {
     private int n_good_quality_variants=0;
     /** Number of variants that were removed because of the quality filter. */
     private int n_filtered_variants=0;
+    /** Predicates applied to each VCF record before annotation. */
+    private final VariantFilter variantFilter;
+    /** Key: a predicate of {@link #variantFilter}; value: number of VCF records rejected by it. */
+    private final Map<VariantFilter.Reason,Integer> rejectionCounts = new EnumMap<>(VariantFilter.Reason.class);
+    /** Timers and counters of the analysis; the per-variant measurements below are added up locally. */
+    private Metrics metrics = Metrics.DISABLED;
+    private long annotatedAlleles = 0;
+    private long mvStoreLookups = 0;
+    private long mvStoreHits = 0;
+    private long mvStoreNanos = 0;
 
    // private final Map<String,String> vcfMetaData=new HashMap<>();
     /**
@@ -108,123 +124,208 @@ public class Vcf2GenotypeMap {
                     ClinVarData.ClinSig.LIKELY_PATHOGENIC);
 
 
+    /**
+     * @param filter if true, remove records that do not PASS the FILTER column; no other predicates are applied.
+     */
     public Vcf2GenotypeMap(String vcf, JannovarData jannovar, MVStore mvs, GenomeAssembly ga, boolean filter) {
+        this(vcf, jannovar, mvs, ga, new VariantFilter.Builder().passOnly(filter).build());
+    }
+
+    public Vcf2GenotypeMap(String vcf, JannovarData jannovar, MVStore mvs, GenomeAssembly ga, VariantFilter vfilter) {
         this.vcfPath = vcf;
+        this.variantFilter = vfilter;
         this.jannovarData = jannovar;
         this.alleleMap = MvStoreUtil.openAlleleMVMap(mvs);
         this.referenceDictionary = jannovarData.getRefDict();
         this.chromosomeMap = jannovarData.getChromosomes();
         this.genomeAssembly = ga;
+        this.variantEffectAnnotator = new VariantContextAnnotator(this.referenceDictionary, this.chromosomeMap,
+                new VariantContextAnnotator.Options());
+        // Note that we do not use Genomiser data in this version of LIRICAL
+        // Therefore, just pass in an empty list to satisfy the API
+        List<RegulatoryFeature> emtpylist = ImmutableList.of();
+        ChromosomalRegionIndex<RegulatoryFeature> emptyRegionIndex = ChromosomalRegionIndex.of(emtpylist);
+        this.jannovarVariantAnnotator = new JannovarVariantAnnotator(genomeAssembly, jannovarData, emptyRegionIndex);
+    }
+
+    /** Record the time spent reading, annotating, and looking up variants in {@code m}. */
+    public void setMetrics(Metrics m) {
+        this.metrics = m;
     }
 
     /**
      * Read the VCF file and extract genotype
-     * @return
+     * @return map with key: gene id, value: {@link Gene2Genotype} with the variants found in the gene
      */
     public Map<TermId, Gene2Genotype> vcf2genotypeMap() {
-        // whether or not to just look at a specific genomic interval
-        final boolean useInterval = false;
         this.gene2genotypeMap = new HashMap<>();
-        try (VCFFileReader vcfReader = new VCFFileReader(new File(vcfPath), useInterval)) {
-            //final SAMSequenceDictionary seqDict = VCFFileReader.getSequenceDictionary(new File(getOptionalVcfPath));
-            VCFHeader vcfHeader = vcfReader.getFileHeader();
+        try (VariantFileReader vcfReader = VariantFileReader.open(vcfPath)) {
+            this.format = vcfReader.getFormat();
+            VCFHeader vcfHeader = vcfReader.getHeader();
             this.samplenames = vcfHeader.getSampleNamesInOrder();
             this.n_samples=samplenames.size();
             this.samplename=samplenames.get(0);
-            logger.trace("Annotating VCF at " + vcfPath + " for sample " + this.samplename);
+            logger.trace("Annotating {} file at {} for sample {}", format, vcfPath, this.samplename);
             final long startTime = System.nanoTime();
+            final boolean measure = metrics.isEnabled();
+            Metrics.Timer timer = metrics.timer("vcf.total");
+            long annotateNanos = 0;
             CloseableIterator<VariantContext> iter = vcfReader.iterator();
-
-            VariantContextAnnotator variantEffectAnnotator =
-                    new VariantContextAnnotator(this.referenceDictionary, this.chromosomeMap,
-                            new VariantContextAnnotator.Options());
-            // Note that we do not use Genomiser data in this version of LIRICAL
-            // Therefore, just pass in an empty list to satisfy the API
-            List<RegulatoryFeature> emtpylist = ImmutableList.of();
-            ChromosomalRegionIndex<RegulatoryFeature> emptyRegionIndex = ChromosomalRegionIndex.of(emtpylist);
-            JannovarVariantAnnotator jannovarVariantAnnotator = new JannovarVariantAnnotator(genomeAssembly, jannovarData, emptyRegionIndex);
             while (iter.hasNext()) {
                 VariantContext vc = iter.next();
-                if (vc.isFiltered()) {
-                    // this is a failing VariantContext
+                // apply the cheap predicates before doing any Jannovar/MVStore work
+                VariantFilter.Reason reason = variantFilter.rejectionReason(vc);
+                if (reason != null) {
+                    rejectionCounts.merge(reason, 1, Integer::sum);
                     n_filtered_variants++;
                     continue;
                 } else {
                     n_good_quality_variants++;
                 }
-                vc = variantEffectAnnotator.annotateVariantContext(vc);
-                List<Allele> altAlleles = vc.getAlternateAlleles();
-                String contig = vc.getContig();
-                int start = vc.getStart();
-                String ref = vc.getReference().getBaseString();
-                for (int i=0;i<altAlleles.size();i++){
-               // for (Allele allele : altAlleles) {
-                    Allele allele =altAlleles.get(i);
-                    Genotype gt = vc.getGenotype(i);
-                    String alt = allele.getBaseString();
-                    Map<String, SampleGenotype> sampleGenotypes = createAlleleSampleGenotypes(vc,i);
-                    VariantAnnotation va = jannovarVariantAnnotator.annotate(contig, start, ref, alt);
-                    VariantEffect variantEffect = va.getVariantEffect();
-                    if (!variantEffect.isOffExome()) {
-                        String genIdString = va.getGeneId(); // for now assume this is an Entrez Gene ID
-                        String symbol = va.getGeneSymbol();
-                        TermId geneId;
-                        try {
-                            geneId = TermId.of(NCBI_ENTREZ_GENE_PREFIX, genIdString);
-                        } catch (PhenolRuntimeException pre) {
-                           logger.error("Could not identify gene \"{}\" with symbol \"{}\" for variant {}", genIdString,symbol,va.toString());
-                           // if gene is not included in the Jannovar file then it is not a Mendelian
-                            // disease gene, e.g., abParts.
-                            System.out.println(genIdString);
-                            System.out.print(symbol);
-                            // Therefore just skip it
-                            continue;
-                        }
-
-                        gene2genotypeMap.putIfAbsent(geneId, new Gene2Genotype(geneId, symbol));
-                        Gene2Genotype gene2Genotype = gene2genotypeMap.get(geneId);
-                        VariantEvaluation veval = buildVariantEvaluation(vc, va,sampleGenotypes);
-                        AlleleProto.AlleleKey alleleKey = AlleleProtoAdaptor.toAlleleKey(veval);
-                        AlleleProto.AlleleProperties alleleProp = alleleMap.get(alleleKey);
-                        int chrom = veval.getChromosome();
-                        int pos = veval.getPosition();
-                        List<TranscriptAnnotation> transcriptAnnotationList = veval.getTranscriptAnnotations();
-                        String genotypeString = veval.getGenotypeString();
-                        float freq;
-                        float pathogenicity;
-                        if (alleleProp == null) {
-                            // this means the variant is not represented in the Exomiser data
-                            // this is not an error, the variant could be very rare or otherwise not seen before
-                            freq = DEFAULT_FREQUENCY;
-                            pathogenicity = VariantEffectPathogenicityScore.getPathogenicityScoreOf(variantEffect);
-                            gene2Genotype.addVariant(chrom, pos, ref, alt, transcriptAnnotationList, genotypeString, pathogenicity, freq, ClinVarData.ClinSig.NOT_PROVIDED);
-                        } else {
-                            FrequencyData frequencyData = AlleleProtoAdaptor.toFrequencyData(alleleProp);
-                            PathogenicityData pathogenicityData = AlleleProtoAdaptor.toPathogenicityData(alleleProp);
-                            freq = frequencyData.getMaxFreq();
-                            pathogenicity = calculatePathogenicity(variantEffect, pathogenicityData);
-                            ClinVarData cVarData = pathogenicityData.getClinVarData();
-                            // Only use ClinVar data if it is backed up by assertions.
-                            if (cVarData.getReviewStatus().startsWith("no_assertion")) {
-                                gene2Genotype.addVariant(chrom, pos, ref, alt, transcriptAnnotationList, genotypeString, pathogenicity, freq, ClinVarData.ClinSig.NOT_PROVIDED);
-                            } else {
-                                gene2Genotype.addVariant(chrom, pos, ref, alt, transcriptAnnotationList, genotypeString, pathogenicity, freq, cVarData.getPrimaryInterpretation());
-                            }
-                        }
-
-                    }
+                if (measure) {
+                    long t = System.nanoTime();
+                    addVariantContext(vc, gene2genotypeMap);
+                    annotateNanos += System.nanoTime() - t;
+                } else {
+                    addVariantContext(vc, gene2genotypeMap);
                 }
             }
             final long endTime = System.nanoTime();
+            long totalNanos = timer.stop();
+            if (measure) {
+                metrics.addTime("vcf.readAndFilter", totalNanos - annotateNanos);
+                metrics.addTime("vcf.annotate", annotateNanos);
+                metrics.increment("vcf.records", n_good_quality_variants + n_filtered_variants);
+                metrics.increment("vcf.filteredRecords", n_filtered_variants);
+                metrics.rate("vcf.recordsPerSecond", "vcf.records", "vcf.total");
+                recordLookupMetrics();
+            }
 
             logger.info(String.format("Finished Annotating VCF (time= %.2f sec).", (endTime-startTime)/1_000_000_000.0 ));
             logger.info("Extracted {} non-filtered variants and {} variants that were removed because of a quality filter",
                     n_good_quality_variants,n_filtered_variants);
+            if (! rejectionCounts.isEmpty()) {
+                logger.info("Rejected variants by filter: {}", getRejectionSummary());
+            }
         }
 
         return gene2genotypeMap;
     }
 
+    /**
+     * Annotate variants that are held in memory, e.g., variants that are injected into a template VCF file for
+     * a simulation. The same {@link VariantFilter} is applied as for the VCF file, but the variant counts of this
+     * object are not changed.
+     * @param variants variants to be annotated (the first genotype of each variant is taken to be the proband)
+     * @return map with key: gene id, value: {@link Gene2Genotype} with the variants found in the gene
+     */
+    public Map<TermId, Gene2Genotype> variantContexts2genotypeMap(Collection<VariantContext> variants) {
+        Map<TermId, Gene2Genotype> genotypeMap = new HashMap<>();
+        for (VariantContext vc : variants) {
+            VariantFilter.Reason reason = variantFilter.rejectionReason(vc);
+            if (reason != null) {
+                logger.warn("Variant {}:{} was removed by the {} filter", vc.getContig(), vc.getStart(), reason.getLabel());
+                continue;
+            }
+            addVariantContext(vc, genotypeMap);
+        }
+        if (metrics.isEnabled()) {
+            recordLookupMetrics();
+        }
+        return genotypeMap;
+    }
+
+    /** Add the locally counted allele annotations and Exomiser database lookups to the {@link #metrics}. */
+    private void recordLookupMetrics() {
+        metrics.increment("vcf.annotatedAlleles", annotatedAlleles);
+        metrics.increment("mvstore.lookups", mvStoreLookups);
+        metrics.increment("mvstore.hits", mvStoreHits);
+        metrics.addTime("mvstore.lookup", mvStoreNanos);
+        metrics.rate("mvstore.lookupsPerSecond", "mvstore.lookups", "mvstore.lookup");
+        annotatedAlleles = 0;
+        mvStoreLookups = 0;
+        mvStoreHits = 0;
+        mvStoreNanos = 0;
+    }
+
+    /**
+     * Annotate one VCF record with Jannovar and the Exomiser data and add the resulting variant(s) to the
+     * {@link Gene2Genotype} object of the corresponding gene.
+     * @param vc a VCF record that passed the {@link #variantFilter}
+     * @param genotypeMap map to which the annotated variants will be added
+     */
+    private void addVariantContext(VariantContext vc, Map<TermId, Gene2Genotype> genotypeMap) {
+        vc = variantEffectAnnotator.annotateVariantContext(vc);
+        List<Allele> altAlleles = vc.getAlternateAlleles();
+        String contig = vc.getContig();
+        int start = vc.getStart();
+        String ref = vc.getReference().getBaseString();
+        for (int i=0;i<altAlleles.size();i++){
+            Allele allele =altAlleles.get(i);
+            String alt = allele.getBaseString();
+            Map<String, SampleGenotype> sampleGenotypes = createAlleleSampleGenotypes(vc,i);
+            VariantAnnotation va = jannovarVariantAnnotator.annotate(contig, start, ref, alt);
+            VariantEffect variantEffect = va.getVariantEffect();
+            if (!variantEffect.isOffExome()) {
+                String genIdString = va.getGeneId(); // for now assume this is an Entrez Gene ID
+                String symbol = va.getGeneSymbol();
+                TermId geneId;
+                try {
+                    geneId = TermId.of(NCBI_ENTREZ_GENE_PREFIX, genIdString);
+                } catch (PhenolRuntimeException pre) {
+                   logger.error("Could not identify gene \"{}\" with symbol \"{}\" for variant {}", genIdString,symbol,va.toString());
+                   // if gene is not included in the Jannovar file then it is not a Mendelian
+                    // disease gene, e.g., abParts.
+                    // Therefore just skip it
+                    continue;
+                }
+
+                Gene2Genotype gene2Genotype = genotypeMap.computeIfAbsent(geneId, id -> new Gene2Genotype(id, symbol));
+                VariantEvaluation veval = buildVariantEvaluation(vc, va,sampleGenotypes);
+                AlleleProto.AlleleKey alleleKey = AlleleProtoAdaptor.toAlleleKey(veval);
+                AlleleProto.AlleleProperties alleleProp;
+                if (metrics.isEnabled()) {
+                    long t = System.nanoTime();
+                    alleleProp = alleleMap.get(alleleKey);
+                    mvStoreNanos += System.nanoTime() - t;
+                    mvStoreLookups++;
+                    if (alleleProp != null) {
+                        mvStoreHits++;
+                    }
+                    annotatedAlleles++;
+                } else {
+                    alleleProp = alleleMap.get(alleleKey);
+                }
+                int chrom = veval.getChromosome();
+                int pos = veval.getPosition();
+                List<TranscriptAnnotation> transcriptAnnotationList = veval.getTranscriptAnnotations();
+                String genotypeString = veval.getGenotypeString();
+                float freq;
+                float pathogenicity;
+                if (alleleProp == null) {
+                    // this means the variant is not represented in the Exomiser data
+                    // this is not an error, the variant could be very rare or otherwise not seen before
+                    freq = DEFAULT_FREQUENCY;
+                    pathogenicity = VariantEffectPathogenicityScore.getPathogenicityScoreOf(variantEffect);
+                    gene2Genotype.addVariant(chrom, pos, ref, alt, transcriptAnnotationList, genotypeString, pathogenicity, freq, ClinVarData.ClinSig.NOT_PROVIDED);
+                } else {
+                    FrequencyData frequencyData = AlleleProtoAdaptor.toFrequencyData(alleleProp);
+                    PathogenicityData pathogenicityData = AlleleProtoAdaptor.toPathogenicityData(alleleProp);
+                    freq = frequencyData.getMaxFreq();
+                    pathogenicity = calculatePathogenicity(variantEffect, pathogenicityData);
+                    ClinVarData cVarData = pathogenicityData.getClinVarData();
+                    // Only use ClinVar data if it is backed up by assertions.
+                    if (cVarData.getReviewStatus().startsWith("no_assertion")) {
+                        gene2Genotype.addVariant(chrom, pos, ref, alt, transcriptAnnotationList, genotypeString, pathogenicity, freq, ClinVarData.ClinSig.NOT_PROVIDED);
+                    } else {
+                        gene2Genotype.addVariant(chrom, pos, ref, alt, transcriptAnnotationList, genotypeString, pathogenicity, freq, cVarData.getPrimaryInterpretation());
+                    }
+                }
+
+            }
+        }
+    }
+
 
     public static Map<String, SampleGenotype> createAlleleSampleGenotypes(VariantContext variantContext, int altAlleleId) {
         ImmutableMap.Builder<String, SampleGenotype> builder = ImmutableMap.builder();
@@ -297,6 +398,11 @@ public class Vcf2GenotypeMap {
         return genomeAssembly;
     }
 
+    /** @return the format (VCF, VCF_GZ, or BCF) of the variant file; null before {@link #vcf2genotypeMap()} is called. */
+    public VariantFileReader.Format getFormat() {
+        return format;
+    }
+
     public int getN_good_quality_variants() {
         return n_good_quality_variants;
     }
@@ -305,6 +411,25 @@ public class Vcf2GenotypeMap {
         return n_filtered_variants;
     }
 
+    /** @return map with the number of VCF records rejected by each predicate of the {@link VariantFilter}. */
+    public Map<VariantFilter.Reason, Integer> getRejectionCounts() {
+        return Collections.unmodifiableMap(rejectionCounts);
+    }
+
+    /** @return a string such as {@code FILTER: 123; QUAL: 45} with the per-predicate rejection counts. */
+    public String getRejectionSummary() {
+        return formatRejectionCounts(rejectionCounts);
+    }
+
+    public static String formatRejectionCounts(Map<VariantFilter.Reason, Integer> counts) {
+        if (counts.isEmpty()) return "none";
+        StringJoiner sj = new StringJoiner("; ");
+        for (Map.Entry<VariantFilter.Reason, Integer> e : counts.entrySet()) {
+            sj.add(String.format("%s: %d", e.getKey().getLabel(), e.getValue()));
+        }
+        return sj.toString();
+    }
+
     /**
      * Calculate a pathogenicity score for the current variant in the same way that the Exomiser does.
      *
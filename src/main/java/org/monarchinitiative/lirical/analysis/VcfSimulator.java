@@ -4,8 +4,9 @@ import htsjdk.variant.variantcontext.*;
 import htsjdk.variant.variantcontext.writer.Options;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
-import htsjdk.variant.vcf.VCFFileReader;
 import htsjdk.variant.vcf.VCFHeader;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.io.VariantFileReader;
 import org.phenopackets.schema.v1.Phenopacket;
 import org.phenopackets.schema.v1.core.HtsFile;
 import org.phenopackets.schema.v1.core.OntologyClass;
@@ -18,12 +19,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.UnaryOperator;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Simulator that injects variants defined from {@link Phenopacket} among variants present in single VCF file.
@@ -43,7 +41,7 @@ public class VcfSimulator {
     private final Path templateVcfPath;
 
     /**
-     * @param templateVcfPath {@link Path} to possibly un-indexed VCF file
+     * @param templateVcfPath {@link Path} to possibly un-indexed VCF, VCF.GZ, or BCF file
      */
     public VcfSimulator(Path templateVcfPath) {
         this.templateVcfPath = templateVcfPath;
@@ -54,23 +52,29 @@ public class VcfSimulator {
         return new VCFHeader(original.getMetaDataInSortedOrder(), Collections.singleton(sampleId));
     }
 
-    static UnaryOperator<VariantContext> changeSampleNameInGenotypes(final String sampleId) {
-        return vc -> {
-            final VariantContextBuilder vcb = new VariantContextBuilder(vc)
-                    .noGenotypes() // remove present genotypes and then add updated
-                    .genotypes(vc.getGenotypes().stream()
-                            .map(gt -> new GenotypeBuilder(gt).name(sampleId).make()) // change sample Id on individual genotypes
-                            .collect(Collectors.toList()));
-
-            return vcb.make();
-        };
+    /**
+     * Give the genotype of the proband (the first sample) the name of the phenopacket subject. Only the genotype is
+     * replaced; records whose genotype already has the correct name (e.g., the injected variants) are returned as is.
+     * Genotypes of further samples are dropped because the header of the simulated VCF file has only one sample.
+     */
+    static VariantContext changeSampleNameInGenotype(VariantContext vc, String sampleId) {
+        if (!vc.hasGenotypes()) {
+            return vc;
+        }
+        Genotype gt = vc.getGenotype(0);
+        if (vc.getNSamples() == 1 && gt.getSampleName().equals(sampleId)) {
+            return vc;
+        }
+        return new VariantContextBuilder(vc)
+                .genotypes(new GenotypeBuilder(gt).name(sampleId).make())
+                .make();
     }
 
     /**
      * Map {@link Phenopacket} to {@link VariantContext}s. Genotypes in variant contexts are modified so that they
      * will contain phenopacket subject's id.
      */
-    private static List<VariantContext> phenopacketToVariantContexts(String subjectId, List<Variant> variants) {
+    static List<VariantContext> phenopacketToVariantContexts(String subjectId, List<Variant> variants) {
         List<VariantContext> vcs = new ArrayList<>();
         for (Variant variant : variants) {
 
@@ -147,7 +151,43 @@ public class VcfSimulator {
     }
 
     /**
-     *
+     * Merge the records of the template VCF file (which must be sorted) and the sorted injected records. Records
+     * are passed on one at a time, so memory does not depend on the size of the template.
+     * @param template iterator over the template records
+     * @param injected sorted list of injected records
+     * @param comparator order of the records (as given by the contig lines of the header)
+     * @param sink consumer of the merged records
+     * @return number of merged records
+     */
+    static int mergeSorted(Iterator<VariantContext> template, List<VariantContext> injected,
+                           Comparator<VariantContext> comparator, Consumer<VariantContext> sink) {
+        int cnt = 0;
+        int i = 0;
+        VariantContext previous = null;
+        while (template.hasNext()) {
+            VariantContext vc = template.next();
+            if (previous != null && comparator.compare(previous, vc) > 0) {
+                throw new LiricalRuntimeException(String.format("Template VCF file is not sorted (%s:%d follows %s:%d)",
+                        vc.getContig(), vc.getStart(), previous.getContig(), previous.getStart()));
+            }
+            while (i < injected.size() && comparator.compare(injected.get(i), vc) <= 0) {
+                sink.accept(injected.get(i++));
+                cnt++;
+            }
+            sink.accept(vc);
+            cnt++;
+            previous = vc;
+        }
+        while (i < injected.size()) {
+            sink.accept(injected.get(i++));
+            cnt++;
+        }
+        return cnt;
+    }
+
+    /**
+     * Write a VCF file with the records of the template VCF file and the injected variants. The template is
+     * streamed, i.e., it is not loaded into memory.
      * @param subjectId identifier of the proband in the VCF file
      * @param variants List of variants we will add to the VCF file
      * @return HtsFile object
@@ -167,7 +207,7 @@ public class VcfSimulator {
 
 
 
-        try (VCFFileReader reader = new VCFFileReader(templateVcfPath, false);
+        try (VariantFileReader reader = VariantFileReader.open(templateVcfPath);
              VariantContextWriter writer = new VariantContextWriterBuilder()
                      .setOutputFile(outPath)
                      .setOutputFileType(VariantContextWriterBuilder.OutputType.VCF)
@@ -175,19 +215,24 @@ public class VcfSimulator {
                      .setOption(Options.ALLOW_MISSING_FIELDS_IN_HEADER) // important for
                      .build()) {
             LOGGER.info("Reading file {}", templateVcfPath);
-            VCFHeader fileHeader = reader.getFileHeader();
+            VCFHeader fileHeader = reader.getHeader();
             fileHeader = updateHeaderWithPhenopacketSample(fileHeader, subjectId);
             writer.writeHeader(fileHeader);
 
+            VariantContextComparator comparator = new VariantContextComparator(fileHeader.getContigLines());
             List<VariantContext> injected = phenopacketToVariantContexts(subjectId, variants);
-
-            AtomicInteger cnt = new AtomicInteger();
-            Stream.concat(reader.iterator().stream(), injected.stream())
-                    .map(changeSampleNameInGenotypes(subjectId))
-                    .sorted(new VariantContextComparator(fileHeader.getContigLines()))
-                    .peek(vc -> cnt.incrementAndGet())
-                    .forEach(writer::add);
-            LOGGER.info("Created VCF containing {} variants", cnt.get());
+            Set<String> contigs = new HashSet<>();
+            fileHeader.getContigLines().forEach(line -> contigs.add(line.getID()));
+            for (VariantContext vc : injected) {
+                if (!contigs.contains(vc.getContig())) {
+                    throw new LiricalRuntimeException(String.format("Contig %s of injected variant is not in the header of %s",
+                            vc.getContig(), templateVcfPath));
+                }
+            }
+            injected.sort(comparator);
+            final String sampleId = subjectId;
+            int cnt = mergeSorted(reader.iterator(), injected, comparator, vc -> writer.add(changeSampleNameInGenotype(vc, sampleId)));
+            LOGGER.info("Created VCF containing {} variants", cnt);
         }
 
         // make description
@@ -0,0 +1,395 @@
+package org.monarchinitiative.lirical.cmd;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multimap;
+import org.monarchinitiative.exomiser.core.genome.GenomeAssembly;
+import org.monarchinitiative.lirical.analysis.Gene2Genotype;
+import org.monarchinitiative.lirical.analysis.Vcf2GenotypeMap;
+import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.exception.LiricalException;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.lirical.io.BatchManifest;
+import org.monarchinitiative.lirical.io.PhenopacketImporter;
+import org.monarchinitiative.lirical.io.YamlParser;
+import org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator;
+import org.monarchinitiative.lirical.likelihoodratio.GenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.metrics.Metrics;
+import org.monarchinitiative.lirical.likelihoodratio.TestResult;
+import org.monarchinitiative.lirical.output.LiricalTemplate;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Prioritize all cases (YAML and/or Phenopacket files) listed in a manifest file. The knowledge base (HPO,
+ * disease annotations, likelihood ratio objects, and, if {@code --exomiser} is given, the Exomiser and Jannovar
+ * data) is loaded once and shared by a bounded pool of worker threads. The work queue is bounded as well; if it
+ * is full, the thread that reads the manifest runs the next case itself, so that no more than
+ * {@code threads + queue} cases are pending at any time. Each case is written to its own HTML or TSV file, and a
+ * case that cannot be analyzed is recorded as failed in the summary file without aborting the batch.
+ */
+@Parameters(commandDescription = "Run LIRICAL on all YAML/Phenopacket files of a manifest")
+public class BatchCommand extends PhenopacketCommand {
+    private static final Logger logger = LoggerFactory.getLogger(BatchCommand.class);
+    @Parameter(names = {"-M", "--manifest"}, description = "path to manifest file with one YAML or Phenopacket file per line", required = true)
+    private String manifestPath;
+    @Parameter(names = {"-a", "--assembly"}, description = "genome assembly of the VCF files (hg19 or hg38)")
+    private String genomeAssembly = "hg38";
+    @Parameter(names = {"--threads"}, description = "number of threads used to analyze the cases")
+    private int threads = Runtime.getRuntime().availableProcessors();
+    @Parameter(names = {"--queue"}, description = "maximum number of cases waiting for a thread (default: twice the number of threads)")
+    private Integer queueSize = null;
+    @Parameter(names = {"--summary"}, description = "name of the summary file (default: <prefix>-batch-summary.tsv)")
+    private String summaryFile = null;
+
+    private Ontology ontology;
+    private Map<TermId, HpoDisease> diseaseMap;
+    private PhenotypeLikelihoodRatio phenoLr;
+    /** The following objects are only initialized if the Exomiser data directory was passed. */
+    private GenotypeLikelihoodRatio genoLr = null;
+    private Multimap<TermId, TermId> disease2geneMultimap = null;
+    /** The summary file, to which each case is appended when it is finished (see {@link #appendSummary}). */
+    private BufferedWriter summaryWriter;
+    /** Output prefixes of the cases analyzed so far, used to prevent two cases from writing to the same file. */
+    private final Set<String> usedPrefixes = ConcurrentHashMap.newKeySet();
+
+    public BatchCommand() {
+    }
+
+    /**
+     * Load the knowledge base that is shared by all cases of the batch. The factory initializes several maps
+     * lazily, so we do it here before they are used by the worker threads.
+     */
+    private void loadKnowledgeBase() {
+        LiricalFactory.Builder factoryBuilder = new LiricalFactory.Builder()
+                .datadir(this.datadir)
+                .genomeAssembly(this.genomeAssembly)
+                .exomiser(this.exomiserDataDirectory)
+                .transcriptdatabase(this.transcriptDb)
+                .backgroundFrequency(this.backgroundFrequencyFile)
+                .keep(this.keepIfNoCandidateVariant)
+                .strict(this.strict)
+                .orphanet(this.useOrphanet);
+        this.factory = exomiserDataDirectory != null ?
+                variantFilterOptions(factoryBuilder).buildForGenomicDiagnostics() :
+                factoryBuilder.buildForPhenotypeOnlyDiagnostics();
+        factory.loadResources();
+        this.ontology = factory.hpoOntology();
+        this.diseaseMap = factory.diseaseMap(ontology);
+        this.phenoLr = new PhenotypeLikelihoodRatio(ontology, diseaseMap);
+        if (exomiserDataDirectory != null) {
+            factory.qcGenomeBuild();
+            this.genoLr = factory.getGenotypeLR();
+            this.disease2geneMultimap = factory.disease2geneMultimap();
+            this.geneId2symbol = factory.geneId2symbolMap();
+        }
+    }
+
+    @Override
+    public void run() {
+        BatchManifest manifest = BatchManifest.fromPath(manifestPath);
+        if (outdir != null) {
+            new File(outdir).mkdirs();
+        }
+        long start = System.nanoTime();
+        loadKnowledgeBase();
+        long kbMillis = millisSince(start);
+        logger.info("Loaded knowledge base in {} ms ({} diseases)", kbMillis, diseaseMap.size());
+        int nThreads = Math.max(1, threads);
+        int capacity = queueSize != null ? Math.max(1, queueSize) : 2 * nThreads;
+        logger.info("Analyzing {} cases from {} with {} threads (queue: {})", manifest.size(), manifestPath, nThreads, capacity);
+
+        long batchStart = System.nanoTime();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), new ThreadPoolExecutor.CallerRunsPolicy());
+        List<CaseSummary> summaries = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            openSummary();
+            for (BatchManifest.Entry entry : manifest.getEntries()) {
+                CaseSummary summary = new CaseSummary(entry);
+                summaries.add(summary);
+                futures.add(executor.submit(() -> runCase(summary)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    // runCase catches the exceptions of the case and records an Error before rethrowing it
+                    logger.error("Could not analyze {}: {}", manifest.getEntries().get(i).getPath(), e.getCause().toString());
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    Thread.currentThread().interrupt();
+                    throw new LiricalRuntimeException("Batch analysis was interrupted");
+                }
+            }
+        } finally {
+            executor.shutdown();
+            closeSummary();
+        }
+        long wallMillis = millisSince(batchStart);
+        long failed = summaries.stream().filter(s -> !s.ok).count();
+        double casesPerSecond = wallMillis > 0 ? 1000.0 * summaries.size() / wallMillis : 0.0;
+        System.out.println(String.format("[INFO] Analyzed %d cases (%d OK, %d failed) in %d ms (%.2f cases/s); knowledge base loaded in %d ms",
+                summaries.size(), summaries.size() - failed, failed, wallMillis, casesPerSecond, kbMillis));
+    }
+
+    /**
+     * Analyze one case of the batch. Any exception is recorded in the summary, so that one failing case does not
+     * abort the batch. The summary is appended to the summary file when the case is finished.
+     */
+    private void runCase(CaseSummary summary) {
+        BatchManifest.Entry entry = summary.entry;
+        long t0 = System.nanoTime();
+        try {
+            Map<String, String> caseMetadata = new HashMap<>();
+            caseMetadata.put("analysis_date", factory.getTodaysDate());
+            caseMetadata.put("hpoVersion", factory.getHpoVersion());
+            List<TermId> observed;
+            List<TermId> negated;
+            String vcf;
+            String caseAssembly;
+            String prefix;
+            if (entry.getFormat() == BatchManifest.Format.PHENOPACKET) {
+                PhenopacketImporter importer = PhenopacketImporter.fromJson(entry.getPath(), ontology);
+                observed = importer.getHpoTerms();
+                negated = importer.getNegatedHpoTerms();
+                vcf = importer.hasVcf() ? importer.getVcfPath() : null;
+                caseAssembly = importer.getGenomeAssembly();
+                prefix = entry.hasPrefix() ? entry.getPrefix() : entry.getBasename();
+                caseMetadata.put("phenopacket_file", entry.getPath());
+                caseMetadata.put("sample_name", importer.getSamplename());
+            } else {
+                YamlParser yparser = new YamlParser(entry.getPath());
+                observed = termIds(yparser.getHpoTermList());
+                negated = termIds(yparser.getNegatedHpoTermList());
+                vcf = yparser.getOptionalVcfPath().orElse(null);
+                caseAssembly = vcf != null ? yparser.getGenomeAssembly() : null;
+                prefix = entry.hasPrefix() ? entry.getPrefix() :
+                        yparser.getPrefix() != null ? yparser.getPrefix() : entry.getBasename();
+                caseMetadata.put("yaml", entry.getPath());
+            }
+            checkTerms(observed);
+            checkTerms(negated);
+            summary.prefix = prefix;
+            if (! usedPrefixes.add(prefix)) {
+                throw new LiricalException("Output prefix \"" + prefix + "\" is used by another case of the batch");
+            }
+            summary.n_hpo = observed.size();
+            summary.vcf = vcf;
+            long t1 = System.nanoTime();
+            summary.parseMillis = (t1 - t0) / 1_000_000;
+            // the knowledge base is shared, so the metrics of a case only cover its own phases
+            Metrics caseMetrics = createMetrics();
+
+            Map<TermId, Gene2Genotype> genotypeMap = null;
+            if (vcf != null) {
+                if (genoLr == null) {
+                    throw new LiricalException("Case has a VCF file but the batch was started without --exomiser");
+                }
+                GenomeAssembly assembly = LiricalFactory.parseGenomeAssembly(caseAssembly);
+                if (caseAssembly != null && ! assembly.equals(factory.getAssembly())) {
+                    throw new LiricalException(String.format("Genome assembly of case (%s) does not match the batch (%s)",
+                            caseAssembly, factory.getAssembly()));
+                }
+                Vcf2GenotypeMap vcf2geno = factory.vcf2GenotypeMap(vcf);
+                vcf2geno.setMetrics(caseMetrics);
+                genotypeMap = vcf2geno.vcf2genotypeMap();
+                caseMetadata.put("vcf_file", vcf);
+                caseMetadata.put("sample_name", vcf2geno.getSamplename());
+                caseMetadata.put("transcriptDatabase", factory.transcriptdb());
+                caseMetadata.put("genesWithVar", String.valueOf(genotypeMap.size()));
+                caseMetadata.put("n_filtered_variants", String.valueOf(vcf2geno.getN_filtered_variants()));
+                caseMetadata.put("n_good_quality_variants", String.valueOf(vcf2geno.getN_good_quality_variants()));
+                caseMetadata.put("variantFilter", factory.variantFilter().getDescription());
+                caseMetadata.put("variantFilterRejections", vcf2geno.getRejectionSummary());
+                caseMetadata.put("exomiserPath", factory.getExomiserPath());
+            }
+            long t2 = System.nanoTime();
+            summary.vcfMillis = (t2 - t1) / 1_000_000;
+
+            CaseEvaluator.Builder caseBuilder = new CaseEvaluator.Builder(observed)
+                    .negated(negated)
+                    .ontology(ontology)
+                    .diseaseMap(diseaseMap)
+                    .phenotypeLr(phenoLr)
+                    .metrics(caseMetrics);
+            CaseEvaluator evaluator = genotypeMap == null ?
+                    caseBuilder.buildPhenotypeOnlyEvaluator() :
+                    caseBuilder.disease2geneMultimap(disease2geneMultimap)
+                            .genotypeMap(genotypeMap)
+                            .genotypeLr(genoLr)
+                            .keepCandidates(keepIfNoCandidateVariant)
+                            .gene2idMap(geneId2symbol)
+                            .build();
+            HpoCase hcase = evaluator.evaluate();
+            List<TestResult> top = hcase.getTopResults(1);
+            if (! top.isEmpty()) {
+                summary.topDiagnosis = top.get(0).getDiseaseCurie().getValue();
+                summary.topPosttest = top.get(0).getPosttestProbability();
+            }
+            long t3 = System.nanoTime();
+            summary.scoreMillis = (t3 - t2) / 1_000_000;
+
+            LiricalTemplate.Builder builder = new LiricalTemplate.Builder(hcase, ontology, caseMetadata)
+                    .prefix(prefix)
+                    .outdirectory(this.outdir)
+                    .errors(evaluator.getErrors())
+                    .threshold(this.LR_THRESHOLD)
+                    .mindiff(this.minDifferentialsToShow)
+                    .sensitivity(this.sensitivityTopK)
+                    .metrics(templateMetrics(caseMetrics));
+            LiricalTemplate template;
+            if (genotypeMap == null) {
+                template = outputTSV ? builder.buildPhenotypeTsvTemplate() : builder.buildPhenotypeHtmlTemplate();
+            } else {
+                builder.genotypeMap(genotypeMap).geneid2symMap(geneId2symbol);
+                template = outputTSV ? builder.buildGenoPhenoTsvTemplate() : builder.buildGenoPhenoHtmlTemplate();
+            }
+            writeOutput(template, caseMetrics);
+            long t4 = System.nanoTime();
+            summary.outputMillis = (t4 - t3) / 1_000_000;
+            summary.totalMillis = (t4 - t0) / 1_000_000;
+            summary.ok = true;
+            logger.info("Analyzed {} in {} ms", entry.getPath(), summary.totalMillis);
+        } catch (Exception e) {
+            summary.fail(e, t0);
+            logger.error("Could not analyze {}: {}", entry.getPath(), summary.message);
+        } catch (Error e) {
+            summary.fail(e, t0);
+            throw e;
+        } finally {
+            appendSummary(summary);
+        }
+    }
+
+    private List<TermId> termIds(List<String> ids) {
+        ImmutableList.Builder<TermId> builder = new ImmutableList.Builder<>();
+        for (String id : ids) {
+            builder.add(TermId.of(id));
+        }
+        return builder.build();
+    }
+
+    private void checkTerms(List<TermId> terms) throws LiricalException {
+        for (TermId tid : terms) {
+            if (! ontology.getTermMap().containsKey(tid)) {
+                throw new LiricalException("Could not find HPO term " + tid.getValue() + " in ontology");
+            }
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private String summaryPath() {
+        String fname = summaryFile != null ? summaryFile : String.format("%s-batch-summary.tsv", outfilePrefix);
+        if (outdir != null) {
+            fname = String.format("%s%s%s", outdir, File.separator, fname);
+        }
+        return fname;
+    }
+
+    private void openSummary() {
+        String fname = summaryPath();
+        try {
+            this.summaryWriter = new BufferedWriter(new FileWriter(fname));
+            summaryWriter.write(CaseSummary.HEADER + "\n");
+            summaryWriter.flush();
+        } catch (IOException e) {
+            throw new LiricalRuntimeException("Could not write batch summary to " + fname + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Append the summary of a finished case and flush it, so that the summary file lists all finished cases even
+     * if the batch is killed. The cases are listed in the order in which they finish. Cases that finish after the
+     * summary file was closed (e.g., when the batch was interrupted) are not listed.
+     */
+    private synchronized void appendSummary(CaseSummary summary) {
+        if (summaryWriter == null) {
+            return;
+        }
+        try {
+            summaryWriter.write(summary.toTsvLine() + "\n");
+            summaryWriter.flush();
+        } catch (IOException e) {
+            logger.error("Could not write summary of {} to {}: {}", summary.entry.getPath(), summaryPath(), e.getMessage());
+        }
+    }
+
+    private synchronized void closeSummary() {
+        if (summaryWriter == null) {
+            return;
+        }
+        try {
+            summaryWriter.close();
+        } catch (IOException e) {
+            logger.error("Could not close batch summary {}: {}", summaryPath(), e.getMessage());
+        }
+        summaryWriter = null;
+        logger.info("Wrote batch summary to {}", summaryPath());
+    }
+
+    /** Outcome and per-phase timings (in milliseconds) of one case of the batch. */
+    private static class CaseSummary {
+        static final String HEADER = String.join("\t", "case", "prefix", "status", "n_hpo", "vcf",
+                "top_diagnosis", "top_posttest", "parse_ms", "vcf_ms", "score_ms", "output_ms", "total_ms", "message");
+        private final BatchManifest.Entry entry;
+        private String prefix;
+        private boolean ok = false;
+        private int n_hpo = 0;
+        private String vcf = null;
+        private String topDiagnosis = null;
+        private double topPosttest = 0.0;
+        private long parseMillis = 0;
+        private long vcfMillis = 0;
+        private long scoreMillis = 0;
+        private long outputMillis = 0;
+        private long totalMillis = 0;
+        private String message = "";
+
+        CaseSummary(BatchManifest.Entry entry) {
+            this.entry = entry;
+            this.prefix = entry.hasPrefix() ? entry.getPrefix() : entry.getBasename();
+        }
+
+        void fail(Throwable t, long startNanos) {
+            this.ok = false;
+            this.totalMillis = millisSince(startNanos);
+            String msg = t.getMessage() != null ? t.getMessage() : t.getClass().getSimpleName();
+            this.message = msg.replaceAll("\\s+", " ").trim();
+        }
+
+        String toTsvLine() {
+            return String.join("\t",
+                    entry.getPath(),
+                    prefix,
+                    ok ? "OK" : "FAILED",
+                    String.valueOf(n_hpo),
+                    vcf != null ? vcf : "n/a",
+                    topDiagnosis != null ? topDiagnosis : "n/a",
+                    ok ? String.format("%.6f", topPosttest) : "n/a",
+                    String.valueOf(parseMillis),
+                    String.valueOf(vcfMillis),
+                    String.valueOf(scoreMillis),
+                    String.valueOf(outputMillis),
+                    String.valueOf(totalMillis),
+                    message);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package org.monarchinitiative.lirical.cmd;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.monarchinitiative.exomiser.core.genome.GenomeAssembly;
+import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.engine.AnnotatedVcf;
+import org.monarchinitiative.lirical.engine.CaseInput;
+import org.monarchinitiative.lirical.engine.CaseResult;
+import org.monarchinitiative.lirical.engine.LiricalEngine;
+import org.monarchinitiative.lirical.exception.LiricalException;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.io.PhenopacketImporter;
+import org.monarchinitiative.lirical.output.LiricalTemplate;
+import org.monarchinitiative.lirical.server.LatencyRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replay all phenopackets of a directory through the full pipeline (import, VCF annotation, scoring, and output) in
+ * one JVM and report the throughput as JSON. The knowledge base is loaded once. The cases are run for a number of
+ * warm-up iterations, which are not measured, and then for a number of measured iterations on a fixed number of
+ * threads. For each phase, the JSON file contains the p50, p95, and p99 of the time per case; it also contains the
+ * number of cases per second, the peak heap usage, and the time spent in garbage collection during the measured
+ * iterations.
+ */
+@Parameters(commandDescription = "Replay a directory of phenopackets and report timings as JSON")
+public class BenchmarkCommand extends PhenopacketCommand {
+    private static final Logger logger = LoggerFactory.getLogger(BenchmarkCommand.class);
+    /** Names of the measured phases, in the order in which they are run for a case. */
+    private static final String[] PHASES = {"load", "annotate", "score", "render", "total"};
+
+    @Parameter(names = {"-P", "--phenopacket-dir"}, description = "directory with the phenopackets (*.json) to replay", required = true)
+    private String phenopacketDir;
+    @Parameter(names = {"-a", "--assembly"}, description = "genome assembly of the VCF files (hg19 or hg38)")
+    private String genomeAssembly = "hg38";
+    @Parameter(names = {"--threads"}, description = "number of threads used to analyze the cases")
+    private int threads = 1;
+    @Parameter(names = {"--warmup"}, description = "number of warm-up iterations over all cases (not measured)")
+    private int warmupIterations = 1;
+    @Parameter(names = {"--iterations"}, description = "number of measured iterations over all cases")
+    private int iterations = 3;
+    @Parameter(names = {"--json"}, description = "name of the JSON report (default: <prefix>-benchmark.json)")
+    private String jsonFile = null;
+
+    private LiricalEngine engine;
+    /** Directory for the HTML/TSV files; a temporary directory that is deleted at the end if -o was not given. */
+    private File renderDir;
+
+    private final Map<String, LatencyRecorder> phaseLatency = new LinkedHashMap<>();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public BenchmarkCommand() {
+    }
+
+    private List<File> phenopackets() {
+        File dir = new File(phenopacketDir);
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".json"));
+        if (files == null || files.length == 0) {
+            throw new LiricalRuntimeException("No phenopackets (*.json) found in " + dir.getAbsolutePath());
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    /** Load the knowledge base once; it is shared by all iterations and threads. */
+    private void loadKnowledgeBase() {
+        LiricalFactory.Builder factoryBuilder = new LiricalFactory.Builder()
+                .datadir(this.datadir)
+                .genomeAssembly(this.genomeAssembly)
+                .exomiser(this.exomiserDataDirectory)
+                .transcriptdatabase(this.transcriptDb)
+                .backgroundFrequency(this.backgroundFrequencyFile)
+                .keep(this.keepIfNoCandidateVariant)
+                .strict(this.strict)
+                .orphanet(this.useOrphanet);
+        this.factory = exomiserDataDirectory != null ?
+                variantFilterOptions(factoryBuilder).buildForGenomicDiagnostics() :
+                factoryBuilder.buildForPhenotypeOnlyDiagnostics();
+        factory.loadResources();
+        if (exomiserDataDirectory != null) {
+            factory.qcGenomeBuild();
+        }
+        this.engine = LiricalEngine.fromFactory(factory);
+    }
+
+    @Override
+    public void run() {
+        List<File> cases = phenopackets();
+        long start = System.nanoTime();
+        loadKnowledgeBase();
+        long kbMillis = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Loaded knowledge base in {} ms ({} diseases)", kbMillis, engine.getDiseaseMap().size());
+        boolean tmpRenderDir = outdir == null;
+        try {
+            renderDir = tmpRenderDir ?
+                    Files.createTempDirectory("lirical-benchmark").toFile() :
+                    new File(outdir);
+        } catch (IOException e) {
+            throw new LiricalRuntimeException("Could not create temporary output directory: " + e.getMessage());
+        }
+        renderDir.mkdirs();
+        int nThreads = Math.max(1, threads);
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                logger.info("Warm-up iteration {} of {}", i + 1, warmupIterations);
+                runIteration(executor, cases, false);
+            }
+            for (String phase : PHASES) {
+                phaseLatency.put(phase, new LatencyRecorder(Math.max(1, iterations) * cases.size()));
+            }
+            resetPeakHeapUsage();
+            Map<String, long[]> gcBefore = gcCounts();
+            long measuredStart = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                logger.info("Measured iteration {} of {}", i + 1, iterations);
+                runIteration(executor, cases, true);
+            }
+            long wallMillis = (System.nanoTime() - measuredStart) / 1_000_000;
+            ObjectNode report = report(cases, nThreads, kbMillis, wallMillis, gcBefore, gcCounts());
+            writeReport(report);
+        } finally {
+            executor.shutdownNow();
+            if (tmpRenderDir) {
+                deleteRecursively(renderDir);
+            }
+        }
+    }
+
+    private void runIteration(ExecutorService executor, List<File> cases, boolean measured) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (File phenopacket : cases) {
+            futures.add(executor.submit(() -> runCase(phenopacket, measured)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new LiricalRuntimeException("Benchmark case failed: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LiricalRuntimeException("Benchmark was interrupted");
+            }
+        }
+    }
+
+    /**
+     * Run one case through the pipeline. A case that fails is counted (in measured iterations) and logged, but
+     * does not stop the benchmark; its timings are not recorded.
+     */
+    private void runCase(File phenopacket, boolean measured) {
+        long t0 = System.nanoTime();
+        try {
+            PhenopacketImporter importer = PhenopacketImporter.fromJson(phenopacket.getAbsolutePath(), engine.getOntology());
+            String name = phenopacket.getName().replaceAll("\\.json$", "");
+            CaseInput.Builder input = new CaseInput.Builder(importer.getHpoTerms())
+                    .negated(importer.getNegatedHpoTerms())
+                    .caseId(name);
+            Map<String, String> caseMetadata = new HashMap<>();
+            caseMetadata.put("analysis_date", factory.getTodaysDate());
+            caseMetadata.put("hpoVersion", factory.getHpoVersion());
+            caseMetadata.put("phenopacket_file", phenopacket.getAbsolutePath());
+            caseMetadata.put("sample_name", importer.getSamplename());
+            long t1 = System.nanoTime();
+
+            AnnotatedVcf vcf = null;
+            if (importer.hasVcf()) {
+                if (! engine.isGenomic()) {
+                    throw new LiricalException("Case has a VCF file but the benchmark was started without --exomiser");
+                }
+                String caseAssembly = importer.getGenomeAssembly();
+                GenomeAssembly assembly = LiricalFactory.parseGenomeAssembly(caseAssembly);
+                if (caseAssembly != null && ! assembly.equals(factory.getAssembly())) {
+                    throw new LiricalException(String.format("Genome assembly of case (%s) does not match the benchmark (%s)",
+                            caseAssembly, factory.getAssembly()));
+                }
+                vcf = engine.annotate(importer.getVcfPath());
+                input.annotatedVcf(vcf);
+                caseMetadata.put("vcf_file", vcf.getVcfPath());
+                caseMetadata.put("sample_name", vcf.getSampleName());
+                caseMetadata.put("transcriptDatabase", factory.transcriptdb());
+                caseMetadata.put("genesWithVar", String.valueOf(vcf.getGenotypeMap().size()));
+                caseMetadata.put("n_filtered_variants", String.valueOf(vcf.getN_filtered_variants()));
+                caseMetadata.put("n_good_quality_variants", String.valueOf(vcf.getN_good_quality_variants()));
+                caseMetadata.put("variantFilter", factory.variantFilter().getDescription());
+                caseMetadata.put("variantFilterRejections", vcf.getVariantFilterRejections());
+                caseMetadata.put("exomiserPath", factory.getExomiserPath());
+            }
+            long t2 = System.nanoTime();
+
+            CaseResult result = engine.score(input.build());
+            long t3 = System.nanoTime();
+
+            LiricalTemplate.Builder builder = new LiricalTemplate.Builder(result.getHpoCase(), engine.getOntology(), caseMetadata)
+                    .prefix(name)
+                    .outdirectory(renderDir.getAbsolutePath())
+                    .errors(result.getErrors())
+                    .threshold(this.LR_THRESHOLD)
+                    .mindiff(this.minDifferentialsToShow);
+            LiricalTemplate template;
+            if (vcf == null) {
+                template = outputTSV ? builder.buildPhenotypeTsvTemplate() : builder.buildPhenotypeHtmlTemplate();
+            } else {
+                builder.genotypeMap(vcf.getGenotypeMap()).geneid2symMap(engine.getGeneId2symbol());
+                template = outputTSV ? builder.buildGenoPhenoTsvTemplate() : builder.buildGenoPhenoHtmlTemplate();
+            }
+            template.outputFile();
+            long t4 = System.nanoTime();
+
+            if (measured) {
+                phaseLatency.get("load").record(t1 - t0, false);
+                if (vcf != null) {
+                    phaseLatency.get("annotate").record(t2 - t1, false);
+                }
+                phaseLatency.get("score").record(t3 - t2, false);
+                phaseLatency.get("render").record(t4 - t3, false);
+                phaseLatency.get("total").record(t4 - t0, false);
+            }
+        } catch (Exception e) {
+            if (measured) {
+                failures.incrementAndGet();
+            }
+            logger.error("Could not analyze {}: {}", phenopacket.getAbsolutePath(), e.getMessage());
+        }
+    }
+
+    private static void resetPeakHeapUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /** @return the sum of the peak usage of the heap memory pools since {@link #resetPeakHeapUsage()}. */
+    private static long peakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /** @return key: name of a garbage collector; value: number of collections and total collection time (ms). */
+    private static Map<String, long[]> gcCounts() {
+        Map<String, long[]> counts = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            counts.put(gc.getName(), new long[]{gc.getCollectionCount(), gc.getCollectionTime()});
+        }
+        return counts;
+    }
+
+    private ObjectNode report(List<File> cases, int nThreads, long kbMillis, long wallMillis,
+                              Map<String, long[]> gcBefore, Map<String, long[]> gcAfter) {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode report = mapper.createObjectNode();
+        report.put("phenopacketDir", new File(phenopacketDir).getAbsolutePath());
+        report.put("cases", cases.size());
+        report.put("genomic", engine.isGenomic());
+        report.put("threads", nThreads);
+        report.put("warmupIterations", warmupIterations);
+        report.put("iterations", iterations);
+        report.put("knowledgeBaseMillis", kbMillis);
+        long analyzed = phaseLatency.get("total").getCount();
+        report.put("analyzedCases", analyzed);
+        report.put("failedCases", failures.get());
+        report.put("wallMillis", wallMillis);
+        report.put("casesPerSecond", wallMillis > 0 ? 1000.0 * analyzed / wallMillis : 0.0);
+        ObjectNode phases = report.putObject("phases");
+        for (Map.Entry<String, LatencyRecorder> e : phaseLatency.entrySet()) {
+            LatencyRecorder latency = e.getValue();
+            double[] percentiles = latency.percentilesMillis(50, 95, 99);
+            ObjectNode node = phases.putObject(e.getKey());
+            node.put("count", latency.getCount());
+            node.put("p50Millis", percentiles[0]);
+            node.put("p95Millis", percentiles[1]);
+            node.put("p99Millis", percentiles[2]);
+            node.put("maxMillis", latency.getMaxMillis());
+        }
+        ObjectNode memory = report.putObject("memory");
+        memory.put("peakHeapMb", peakHeapUsage() / (1024 * 1024));
+        memory.put("maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        ObjectNode gc = report.putObject("gc");
+        long collections = 0;
+        long gcMillis = 0;
+        ArrayNode collectors = gc.putArray("collectors");
+        for (Map.Entry<String, long[]> e : gcAfter.entrySet()) {
+            long[] before = gcBefore.getOrDefault(e.getKey(), new long[]{0, 0});
+            long n = e.getValue()[0] - before[0];
+            long ms = e.getValue()[1] - before[1];
+            collections += n;
+            gcMillis += ms;
+            ObjectNode node = collectors.addObject();
+            node.put("name", e.getKey());
+            node.put("collections", n);
+            node.put("timeMillis", ms);
+        }
+        gc.put("collections", collections);
+        gc.put("timeMillis", gcMillis);
+        ObjectNode jvm = report.putObject("jvm");
+        jvm.put("javaVersion", System.getProperty("java.version"));
+        jvm.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        return report;
+    }
+
+    private void writeReport(ObjectNode report) {
+        String fname = jsonFile != null ? jsonFile : String.format("%s-benchmark.json", outfilePrefix);
+        if (outdir != null) {
+            fname = String.format("%s%s%s", outdir, File.separator, fname);
+        }
+        try {
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(fname), report);
+        } catch (IOException e) {
+            throw new LiricalRuntimeException("Could not write benchmark report to " + fname + ": " + e.getMessage());
+        }
+        System.out.println(String.format("[INFO] Analyzed %d cases (%d failed) in %d ms (%.2f cases/s); report written to %s",
+                report.get("analyzedCases").asLong(), report.get("failedCases").asInt(), report.get("wallMillis").asLong(),
+                report.get("casesPerSecond").asDouble(), fname));
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (! file.delete()) {
+            logger.warn("Could not delete {}", file.getAbsolutePath());
+        }
+    }
+}
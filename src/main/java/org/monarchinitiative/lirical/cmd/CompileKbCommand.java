@@ -0,0 +1,93 @@
+package org.monarchinitiative.lirical.cmd;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.collect.ImmutableList;
+import org.monarchinitiative.exomiser.core.genome.GenomeAssembly;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.io.GenotypeDataIngestor;
+import org.monarchinitiative.lirical.kb.CompiledKnowledgeBase;
+import org.monarchinitiative.lirical.kb.KnowledgeBaseCompiler;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.io.assoc.HpoAssociationParser;
+import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Compile the files in the LIRICAL data directory ({@code hp.obo}, {@code phenotype.hpoa},
+ * {@code Homo_sapiens_gene_info.gz}, and {@code mim2gene_medgen}) together with the background frequencies
+ * into one binary file, {@code lirical.kb}. If this file is present and up to date, the other commands load
+ * the knowledge base from it instead of parsing the data files.
+ */
+@Parameters(commandDescription = "Compile the data files into a binary knowledge base for fast startup")
+public class CompileKbCommand extends LiricalCommand {
+    private static final Logger logger = LoggerFactory.getLogger(CompileKbCommand.class);
+    /** Database prefixes of the default disease map and of the disease map used with {@code --orphanet}. */
+    private static final List<List<String>> DISEASE_DATABASES =
+            ImmutableList.of(ImmutableList.of("OMIM", "DECIPHER"), ImmutableList.of("ORPHA"));
+
+    @Parameter(names = {"-d", "--data"}, description = "directory with the downloaded data files")
+    private String datadir = "data";
+    @Parameter(names = {"-o", "--output"}, description = "output file (default: lirical.kb in the data directory)")
+    private String outputPath = null;
+
+    public CompileKbCommand() {
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        File hpoFile = new File(datadir, "hp.obo");
+        File annotationFile = new File(datadir, "phenotype.hpoa");
+        if (! hpoFile.isFile() || ! annotationFile.isFile()) {
+            throw new LiricalRuntimeException(String.format("Could not find hp.obo and phenotype.hpoa in %s. Run download!", datadir));
+        }
+        Ontology ontology = OntologyLoader.loadOntology(hpoFile);
+        KnowledgeBaseCompiler compiler = new KnowledgeBaseCompiler(ontology);
+        String hpoVersion = ontology.getMetaInfo().getOrDefault("data-version", "n/a");
+        compiler.metadata("hpoVersion", hpoVersion);
+        for (List<String> prefixes : DISEASE_DATABASES) {
+            compiler.diseases(prefixes, HpoDiseaseAnnotationParser.loadDiseaseMap(annotationFile.getAbsolutePath(), ontology, prefixes));
+        }
+        File geneInfoFile = new File(datadir, "Homo_sapiens_gene_info.gz");
+        File mim2genemedgenFile = new File(datadir, "mim2gene_medgen");
+        if (geneInfoFile.isFile() && mim2genemedgenFile.isFile()) {
+            HpoAssociationParser assocParser = new HpoAssociationParser(geneInfoFile.getAbsolutePath(),
+                    mim2genemedgenFile.getAbsolutePath(),
+                    ontology);
+            compiler.genes(assocParser.getGeneToDiseaseIdMap(),
+                    assocParser.getDiseaseToGeneIdMap(),
+                    assocParser.getGeneIdToSymbolMap());
+        } else {
+            logger.warn("Gene files not found in {}, the compiled knowledge base can only be used for phenotype-only analysis", datadir);
+        }
+        compiler.background(GenomeAssembly.HG19, GenotypeDataIngestor.fromResource("background/background-hg19.tsv"));
+        compiler.background(GenomeAssembly.HG38, GenotypeDataIngestor.fromResource("background/background-hg38.tsv"));
+        for (String filename : CompiledKnowledgeBase.SOURCE_FILES) {
+            compiler.metadata(CompiledKnowledgeBase.sourceKey(filename),
+                    CompiledKnowledgeBase.fingerprint(new File(datadir, filename)));
+        }
+        File output = outputPath != null ? new File(outputPath) : new File(datadir, CompiledKnowledgeBase.DEFAULT_FILENAME);
+        try {
+            compiler.write(output);
+        } catch (IOException e) {
+            throw new LiricalRuntimeException(String.format("Could not write compiled knowledge base to %s: %s",
+                    output.getAbsolutePath(), e.getMessage()));
+        }
+        long compiled = System.currentTimeMillis();
+        // check that the file can be read and report how long a phenotype-only startup takes
+        CompiledKnowledgeBase kb = CompiledKnowledgeBase.open(output);
+        Ontology reloaded = kb.ontology();
+        int diseases = kb.diseaseMap(DISEASE_DATABASES.get(0)).map(m -> m.size()).orElse(0);
+        long loaded = System.currentTimeMillis();
+        System.out.println(String.format("[INFO] Compiled knowledge base (HPO %s, %d terms, %d diseases) to %s in %d ms (%d bytes)",
+                hpoVersion, reloaded.countNonObsoleteTerms(), diseases, output.getAbsolutePath(), compiled - start, output.length()));
+        System.out.println(String.format("[INFO] Loading the ontology and diseases from the compiled knowledge base took %d ms", loaded - compiled));
+    }
+}
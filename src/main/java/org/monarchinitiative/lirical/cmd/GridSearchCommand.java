@@ -27,6 +27,18 @@ public class GridSearchCommand extends LiricalCommand {
     private int n_cases_to_simulate = 100;
     @Parameter(names={"-i","--imprecision"}, description="Use imprecision?")
     private boolean imprecise_phenotype = false;
+    @Parameter(names={"--min-terms"}, description="smallest number of HPO terms per case")
+    private int minTerms = 1;
+    @Parameter(names={"--max-terms"}, description="largest number of HPO terms per case")
+    private int maxTerms = 10;
+    @Parameter(names={"--min-noise"}, description="smallest number of noise terms per case")
+    private int minNoise = 0;
+    @Parameter(names={"--max-noise"}, description="largest number of noise terms per case")
+    private int maxNoise = 4;
+    @Parameter(names={"--seed"}, description="seed for the random choice of diseases and terms (default: random)")
+    private Long seed = null;
+    @Parameter(names={"--threads"}, description="number of threads")
+    private int threads = Runtime.getRuntime().availableProcessors();
 
 
     public GridSearchCommand(){
@@ -42,6 +54,12 @@ public class GridSearchCommand extends LiricalCommand {
                 n_cases_to_simulate,imprecise_phenotype?"yes":"no");
         Map<TermId, HpoDisease> diseaseMap = factory.diseaseMap(factory.hpoOntology());
         GridSearch gridSearch = new GridSearch(factory.hpoOntology(),diseaseMap, n_cases_to_simulate, imprecise_phenotype);
+        gridSearch.setTermRange(minTerms, maxTerms);
+        gridSearch.setNoiseRange(minNoise, maxNoise);
+        gridSearch.setThreads(threads);
+        if (seed != null) {
+            gridSearch.setSeed(seed);
+        }
         gridSearch.gridsearch();
     }
 }
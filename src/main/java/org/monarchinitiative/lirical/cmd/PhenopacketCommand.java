@@ -4,6 +4,7 @@ package org.monarchinitiative.lirical.cmd;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Futures;
 
 import org.monarchinitiative.lirical.analysis.Gene2Genotype;
 import org.monarchinitiative.lirical.configuration.LiricalFactory;
@@ -12,18 +13,18 @@ import org.monarchinitiative.lirical.io.PhenopacketImporter;
 import org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator;
 import org.monarchinitiative.lirical.likelihoodratio.GenotypeLikelihoodRatio;
 import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.metrics.Metrics;
 import org.monarchinitiative.lirical.output.LiricalTemplate;
 import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
-import org.monarchinitiative.phenol.io.OntologyLoader;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Future;
 
 /**
  * Download a number of files needed for LIRICAL analysis
@@ -41,6 +42,21 @@ public class PhenopacketCommand extends PrioritizeCommand {
     protected String exomiserDataDirectory = null;
     @Parameter(names={"--transcriptdb"}, description = "transcript database (UCSC, Ensembl, RefSeq)")
     protected String transcriptDb="refseq";
+    /* The following options configure the predicates that are applied to VCF records before annotation. */
+    @Parameter(names={"--pass-only"}, arity = 1, description = "only use VCF records with PASS or '.' in the FILTER column")
+    protected boolean passOnly=true;
+    @Parameter(names={"--min-qual"}, description = "minimum QUAL of VCF records")
+    protected Double minQual=null;
+    @Parameter(names={"--min-dp"}, description = "minimum read depth (DP) of the proband genotype")
+    protected Integer minDepth=null;
+    @Parameter(names={"--min-gq"}, description = "minimum genotype quality (GQ) of the proband genotype")
+    protected Integer minGenotypeQuality=null;
+    @Parameter(names={"--max-alleles"}, description = "maximum number of alleles (REF plus ALT) of VCF records")
+    protected Integer maxAlleles=null;
+    @Parameter(names={"--skip-nocall"}, description = "skip VCF records with a no-call genotype in the proband")
+    protected boolean skipNoCall=false;
+    @Parameter(names={"--skip-homref"}, description = "skip VCF records with a homozygous reference genotype in the proband")
+    protected boolean skipHomRef=false;
     /** Reference to HPO object. */
     private Ontology ontology;
 
@@ -68,11 +84,27 @@ public class PhenopacketCommand extends PrioritizeCommand {
     public PhenopacketCommand() {
     }
 
+    /**
+     * Pass the variant filter options from the command line to the {@link LiricalFactory.Builder}.
+     * @param builder a builder for the {@link LiricalFactory} used in this analysis
+     * @return the same builder
+     */
+    protected LiricalFactory.Builder variantFilterOptions(LiricalFactory.Builder builder) {
+        builder.passOnly(this.passOnly)
+                .skipNoCall(this.skipNoCall)
+                .skipHomRef(this.skipHomRef);
+        if (minQual != null) builder.minQual(minQual);
+        if (minDepth != null) builder.minDepth(minDepth);
+        if (minGenotypeQuality != null) builder.minGenotypeQuality(minGenotypeQuality);
+        if (maxAlleles != null) builder.maxAlleles(maxAlleles);
+        return builder;
+    }
+
     /**
      * Run an analysis of a phenopacket that contains a VCF file.
      */
     private void runVcfAnalysis() {
-        LiricalFactory factory = new LiricalFactory.Builder(ontology)
+        LiricalFactory.Builder factoryBuilder = new LiricalFactory.Builder(ontology)
                 .datadir(this.datadir)
                 .genomeAssembly(this.genomeAssembly)
                 .exomiser(this.exomiserDataDirectory)
@@ -81,14 +113,17 @@ public class PhenopacketCommand extends PrioritizeCommand {
                 .strict(this.strict)
                 .orphanet(this.useOrphanet)
                 .transcriptdatabase(this.transcriptDb)
-                .build();
+                .metrics(metrics);
+        LiricalFactory factory = variantFilterOptions(factoryBuilder).build();
         factory.qcHumanPhenotypeOntologyFiles();
         factory.qcExternalFilesInDataDir();
         factory.qcExomiserFiles();
         factory.qcGenomeBuild();
         factory.qcVcfFile();
+        factory.loadResources();
 
-        Map<TermId, Gene2Genotype> genotypemap = factory.getGene2GenotypeMap();
+        // the VCF file is annotated while the phenotype stage of the evaluation runs
+        Future<Map<TermId, Gene2Genotype>> pendingGenotypes = factory.getGene2GenotypeMapAsync();
 
         GenotypeLikelihoodRatio genoLr = factory.getGenotypeLR();
         Ontology ontology = factory.hpoOntology();
@@ -100,19 +135,25 @@ public class PhenopacketCommand extends PrioritizeCommand {
                 .negated(this.negatedHpoIdList)
                 .diseaseMap(diseaseMap)
                 .disease2geneMultimap(disease2geneMultimap)
-                .genotypeMap(genotypemap)
+                .pendingGenotypeMap(pendingGenotypes)
                 .phenotypeLr(phenoLr)
-                .genotypeLr(genoLr);
+                .genotypeLr(genoLr)
+                .metrics(metrics);
 
         CaseEvaluator evaluator = caseBuilder.build();
         HpoCase hcase = evaluator.evaluate();
+        Map<TermId, Gene2Genotype> genotypemap = Futures.getUnchecked(pendingGenotypes);
 
 
         if (!factory.transcriptdb().equals("n/a")) {
             this.metadata.put("transcriptDatabase", factory.transcriptdb());
         }
-        int n_genes_with_var = factory.getGene2GenotypeMap().size();
+        int n_genes_with_var = genotypemap.size();
         this.metadata.put("genesWithVar", String.valueOf(n_genes_with_var));
+        this.metadata.put("n_filtered_variants", String.valueOf(factory.getN_filtered_variants()));
+        this.metadata.put("n_good_quality_variants", String.valueOf(factory.getN_good_quality_variants()));
+        this.metadata.put("variantFilter", factory.variantFilter().getDescription());
+        this.metadata.put("variantFilterRejections", factory.getVariantFilterRejections());
         this.metadata.put("exomiserPath", factory.getExomiserPath());
         this.metadata.put("hpoVersion", factory.getHpoVersion());
         this.metadata.put("sample_name", factory.getSampleName());
@@ -125,11 +166,13 @@ public class PhenopacketCommand extends PrioritizeCommand {
                 .mindiff(minDifferentialsToShow)
                 .errors(errors)
                 .outdirectory(this.outdir)
-                .prefix(this.outfilePrefix);
+                .prefix(this.outfilePrefix)
+                .sensitivity(this.sensitivityTopK)
+                .metrics(templateMetrics(metrics));
         LiricalTemplate template = outputTSV ?
                 builder.buildGenoPhenoTsvTemplate() :
                 builder.buildGenoPhenoHtmlTemplate();
-        template.outputFile();
+        writeOutput(template, metrics);
     }
 
     /**
@@ -139,6 +182,7 @@ public class PhenopacketCommand extends PrioritizeCommand {
         LiricalFactory factory = new LiricalFactory.Builder(ontology)
                 .datadir(this.datadir)
                 .orphanet(this.useOrphanet)
+                .metrics(metrics)
                 .build();
         factory.qcHumanPhenotypeOntologyFiles();
         factory.qcExternalFilesInDataDir();
@@ -149,7 +193,8 @@ public class PhenopacketCommand extends PrioritizeCommand {
                 .ontology(ontology)
                 .negated(this.negatedHpoIdList)
                 .diseaseMap(diseaseMap)
-                .phenotypeLr(phenoLr);
+                .phenotypeLr(phenoLr)
+                .metrics(metrics);
         CaseEvaluator evaluator = caseBuilder.buildPhenotypeOnlyEvaluator();
         HpoCase hcase = evaluator.evaluate();
         this.metadata.put("hpoVersion", factory.getHpoVersion());
@@ -159,11 +204,13 @@ public class PhenopacketCommand extends PrioritizeCommand {
                 .outdirectory(this.outdir)
                 .errors(errors)
                 .threshold(this.LR_THRESHOLD)
-                .mindiff(this.minDifferentialsToShow);
+                .mindiff(this.minDifferentialsToShow)
+                .sensitivity(this.sensitivityTopK)
+                .metrics(templateMetrics(metrics));
         LiricalTemplate template = outputTSV ?
                 builder.buildPhenotypeTsvTemplate() :
                 builder.buildPhenotypeHtmlTemplate();
-        template.outputFile();
+        writeOutput(template, metrics);
     }
 
 
@@ -175,8 +222,11 @@ public class PhenopacketCommand extends PrioritizeCommand {
             return;
         }
         this.metadata = new HashMap<>();
-        String hpoPath = String.format("%s%s%s",this.datadir, File.separator,"hp.obo");
-        Ontology ontology = OntologyLoader.loadOntology(new File(hpoPath));
+        this.metrics = createMetrics();
+        Ontology ontology;
+        try (Metrics.Timer ignored = metrics.timer("load.ontology")) {
+            ontology = LiricalFactory.loadOntology(this.datadir);
+        }
         PhenopacketImporter importer = PhenopacketImporter.fromJson(phenopacketPath,ontology);
         this.hasVcf = importer.hasVcf();
         if (this.hasVcf) {
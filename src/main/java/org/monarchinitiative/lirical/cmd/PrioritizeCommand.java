@@ -2,6 +2,8 @@ package org.monarchinitiative.lirical.cmd;
 
 import com.beust.jcommander.Parameter;
 import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.metrics.Metrics;
+import org.monarchinitiative.lirical.output.LiricalTemplate;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 
 import java.util.Map;
@@ -38,11 +40,44 @@ public abstract class PrioritizeCommand extends LiricalCommand {
     protected String outfilePrefix="lirical";
     @Parameter(names={"--orpha"},description = "use Orphanet annotation data")
     boolean useOrphanet = false;
+    /** If true, the timers and counters of the analysis are written to {@code <prefix>.metrics.json}. */
+    @Parameter(names={"--metrics"},description = "write timings and counters of the analysis phases to a JSON file")
+    protected boolean writeMetrics=false;
+    @Parameter(names={"--metrics-html"},description = "show timings and counters of the analysis phases in the HTML output")
+    protected boolean metricsInHtml=false;
+    /** If positive, the top differentials are analyzed with each term left out; see {@link org.monarchinitiative.lirical.likelihoodratio.TermSensitivity}. */
+    @Parameter(names={"--sensitivity"},description = "leave-one-term-out sensitivity analysis of this many top differentials")
+    protected int sensitivityTopK=0;
     /** An object that contains parameters from the YAML file for configuration. */
     protected LiricalFactory factory;
     /** Key: an EntrezGene id; value: corresponding gene symbol. */
     protected Map<TermId,String> geneId2symbol;
     /** Various metadata that will be used for the HTML org.monarchinitiative.lirical.output. */
     protected Map<String,String> metadata;
+    /** Timers and counters of the analysis (see {@link #createMetrics()}). */
+    protected Metrics metrics = Metrics.DISABLED;
 
+    /** @return a new registry if the user asked for metrics, otherwise {@link Metrics#DISABLED}. */
+    protected Metrics createMetrics() {
+        return writeMetrics || metricsInHtml ? Metrics.create() : Metrics.DISABLED;
+    }
+
+    /** @return the metrics to show in the HTML output ({@link Metrics#DISABLED} unless {@code --metrics-html}). */
+    protected Metrics templateMetrics(Metrics metrics) {
+        return metricsInHtml ? metrics : Metrics.DISABLED;
+    }
+
+    /**
+     * Write the HTML or TSV output and, with {@code --sensitivity}, the TSV file with the sensitivity analysis and,
+     * with {@code --metrics}, the JSON file with the metrics next to it.
+     */
+    protected void writeOutput(LiricalTemplate template, Metrics metrics) {
+        try (Metrics.Timer ignored = metrics.timer("render")) {
+            template.outputFile();
+            template.outputSensitivityFile();
+        }
+        if (writeMetrics) {
+            metrics.writeJson(Metrics.sidecar(template.getOutputPath()));
+        }
+    }
 }
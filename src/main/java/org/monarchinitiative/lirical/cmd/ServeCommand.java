@@ -0,0 +1,107 @@
+package org.monarchinitiative.lirical.cmd;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.server.LiricalServer;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Start a local HTTP server that keeps the knowledge base in memory and scores cases on request (see
+ * {@link LiricalServer} for the endpoints). If {@code --exomiser} is given, the server can also analyze VCF
+ * files; the annotated genotypes are cached, so that a case can be re-scored with different HPO terms without
+ * annotating the VCF file again.
+ */
+@Parameters(commandDescription = "Run LIRICAL as a local HTTP server")
+public class ServeCommand extends PhenopacketCommand {
+    private static final Logger logger = LoggerFactory.getLogger(ServeCommand.class);
+    @Parameter(names = {"--host"}, description = "address to listen on (use 0.0.0.0 to accept remote connections)")
+    private String host = "127.0.0.1";
+    @Parameter(names = {"--port"}, description = "port to listen on")
+    private int port = 8085;
+    @Parameter(names = {"-a", "--assembly"}, description = "genome assembly of the VCF files (hg19 or hg38)")
+    private String genomeAssembly = "hg38";
+    @Parameter(names = {"--threads"}, description = "number of threads that handle HTTP requests")
+    private int threads = 8;
+    @Parameter(names = {"--max-concurrent"}, description = "maximum number of requests that are scored at the same time")
+    private int maxConcurrent = Runtime.getRuntime().availableProcessors();
+    @Parameter(names = {"--queue"}, description = "maximum number of requests waiting to be scored (further requests are rejected with status 503)")
+    private Integer queueSize = null;
+    @Parameter(names = {"--timeout"}, description = "request timeout in milliseconds (status 504)")
+    private long timeoutMillis = 30_000;
+    @Parameter(names = {"--cache-size"}, description = "maximum number of annotated VCF files kept in memory")
+    private int cacheSize = 16;
+    @Parameter(names = {"--top"}, description = "default number of diseases returned for each request")
+    private int top = 10;
+    @Parameter(names = {"--prescreen"}, description = "number of diseases evaluated exactly after a cheap prescreen (0: all diseases)")
+    private int prescreen = 0;
+
+    public ServeCommand() {
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        LiricalFactory.Builder factoryBuilder = new LiricalFactory.Builder()
+                .datadir(this.datadir)
+                .genomeAssembly(this.genomeAssembly)
+                .exomiser(this.exomiserDataDirectory)
+                .transcriptdatabase(this.transcriptDb)
+                .backgroundFrequency(this.backgroundFrequencyFile)
+                .keep(this.keepIfNoCandidateVariant)
+                .strict(this.strict)
+                .orphanet(this.useOrphanet);
+        this.factory = exomiserDataDirectory != null ?
+                variantFilterOptions(factoryBuilder).buildForGenomicDiagnostics() :
+                factoryBuilder.buildForPhenotypeOnlyDiagnostics();
+        Ontology ontology = factory.hpoOntology();
+        Map<TermId, HpoDisease> diseaseMap = factory.diseaseMap(ontology);
+        PhenotypeLikelihoodRatio phenoLr = new PhenotypeLikelihoodRatio(ontology, diseaseMap);
+        LiricalServer.Builder builder = new LiricalServer.Builder(ontology, diseaseMap, phenoLr)
+                .hpoVersion(factory.getHpoVersion())
+                .keep(keepIfNoCandidateVariant)
+                .host(host)
+                .port(port)
+                .threads(threads)
+                .maxConcurrent(maxConcurrent)
+                .queue(queueSize != null ? queueSize : 2 * maxConcurrent)
+                .timeoutMillis(timeoutMillis)
+                .cacheSize(cacheSize)
+                .top(top)
+                .prescreen(prescreen);
+        if (exomiserDataDirectory != null) {
+            factory.qcGenomeBuild();
+            builder.genomic(factory);
+        }
+        LiricalServer server = builder.build();
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new LiricalRuntimeException(String.format("Could not start server on %s:%d: %s", host, port, e.getMessage()));
+        }
+        System.out.println(String.format("[INFO] LIRICAL server started in %d ms at http://%s:%d (stop with Ctrl-C)",
+                System.currentTimeMillis() - start, host, server.getPort()));
+        CountDownLatch shutdown = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            logger.info("Stopping LIRICAL server");
+            server.stop();
+            shutdown.countDown();
+        }));
+        try {
+            shutdown.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            server.stop();
+        }
+    }
+}
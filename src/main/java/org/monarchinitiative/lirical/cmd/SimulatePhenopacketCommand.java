@@ -4,18 +4,24 @@ package org.monarchinitiative.lirical.cmd;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import org.json.simple.parser.ParseException;
+import org.monarchinitiative.lirical.analysis.TemplateVcfAnnotator;
 import org.monarchinitiative.lirical.simulation.PhenoGenoCaseSimulator;
 import org.monarchinitiative.lirical.simulation.PhenoOnlyCaseSimulator;
 import org.monarchinitiative.lirical.configuration.LiricalFactory;
 import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.likelihoodratio.GenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
 import org.monarchinitiative.lirical.output.LiricalRanking;
 import org.monarchinitiative.phenol.base.PhenolRuntimeException;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 import static java.util.Map.Entry.comparingByKey;
@@ -55,6 +61,10 @@ public class SimulatePhenopacketCommand extends PhenopacketCommand {
     private boolean outputTSV = false;
     @Parameter(names={"--random"},description = "randomize the HPO terms from the phenopacket")
     private boolean randomize = false;
+    @Parameter(names={"--ranks-only"}, description = "only calculate the ranks (do not output an HTML or TSV file for each case)")
+    private boolean ranksOnly = false;
+    @Parameter(names={"--threads"}, description = "number of threads used to simulate the phenopackets of --phenopacket-dir")
+    private int threads = Runtime.getRuntime().availableProcessors();
     /** If true, output HTML or TSV */
     private boolean outputFiles = false;
 
@@ -68,6 +78,14 @@ public class SimulatePhenopacketCommand extends PhenopacketCommand {
     private Map<Integer,Integer> geneRank2CountMap;
 
     private LiricalFactory factory;
+    /** The annotated template VCF file, shared by all simulated cases. */
+    private TemplateVcfAnnotator template;
+    /** Key: disease id; value: corresponding {@link HpoDisease} object. Shared by all simulated cases. */
+    private Map<TermId, HpoDisease> diseaseMap;
+    /** Phenotype likelihood ratio calculator, shared by all simulated cases. */
+    private PhenotypeLikelihoodRatio phenoLr;
+    /** Genotype likelihood ratio calculator, shared by all simulated cases. */
+    private GenotypeLikelihoodRatio genoLr;
 
     /**
      * No-op constructor meant to demo the phenotype LIRICAL algorithm by simulating some case based on
@@ -77,31 +95,67 @@ public class SimulatePhenopacketCommand extends PhenopacketCommand {
     }
 
     /**
-     * This method coordinates
+     * Simulate and rank one case and write the TSV or HTML file for it (unless {@link #ranksOnly}). This method is called from the worker
+     * threads in directory mode; it only reads the shared knowledge base, and the rank counts are merged into
+     * concurrent maps.
      * @param phenopacketFile File with the Phenopacket we are currently analyzing
+     * @param prefix prefix of the output file for this case
+     * @return one line with the details of the simulation (see {@link PhenoGenoCaseSimulator#getDetails()})
      */
-    private void runOneVcfAnalysis(File phenopacketFile) throws IOException, ParseException {
-        PhenoGenoCaseSimulator simulator = new PhenoGenoCaseSimulator(phenopacketFile, this.templateVcfPath, this.factory, this.randomize);
+    private String runOneVcfAnalysis(File phenopacketFile, String prefix) {
+        PhenoGenoCaseSimulator simulator = new PhenoGenoCaseSimulator(phenopacketFile,
+                this.template,
+                this.factory,
+                this.diseaseMap,
+                this.phenoLr,
+                this.genoLr,
+                this.randomize);
+        simulator.setRankOnly(ranksOnly);
         simulator.run();
         int diseaseRank = simulator.getRank_of_disease();
         int geneRank    = simulator.getRank_of_gene();
-        String diseaseLabel = simulator.getDiagnosisLabel();
-        detailedResultLineList.add(simulator.getDetails());
-        System.out.println(simulator.getDetails());
-        //disease2rankMap.put(diseaseLabel,diseaseRank);
-        rank2countMap.putIfAbsent(diseaseRank,0); // create key if needed.
+        String details = simulator.getDetails();
+        System.out.println(details);
         rank2countMap.merge(diseaseRank,1,Integer::sum); // increment count
-
-        geneRank2CountMap.putIfAbsent(geneRank,0);
         geneRank2CountMap.merge(geneRank,1,Integer::sum); // increment count
 
-
+        if (ranksOnly) {
+            return details;
+        }
         if (outputTSV) {
-            simulator.outputTsv(outfilePrefix,LR_THRESHOLD,minDifferentialsToShow,outdir);
+            simulator.outputTsv(prefix,LR_THRESHOLD,minDifferentialsToShow,outdir);
         } else {
-            simulator.outputHtml(outfilePrefix,LR_THRESHOLD,minDifferentialsToShow,outdir);
+            simulator.outputHtml(prefix,LR_THRESHOLD,minDifferentialsToShow,outdir);
         }
+        return details;
+    }
 
+    /**
+     * Simulate all phenopackets of {@link #phenopacketDir} on a pool of {@link #threads} workers. The detailed
+     * results are collected in the order of the phenopacket files, so that the output does not depend on the
+     * number of threads. A phenopacket that cannot be simulated is reported and skipped.
+     * @param phenopacketFiles the phenopacket files to be simulated
+     */
+    private void runVcfAnalyses(List<File> phenopacketFiles) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<String>> futures = new ArrayList<>();
+        for (File fileEntry : phenopacketFiles) {
+            String basename = fileEntry.getName().replaceAll("\\.json$", "");
+            String prefix = String.format("%s-%s", outfilePrefix, basename);
+            futures.add(executor.submit(() -> runOneVcfAnalysis(fileEntry, prefix)));
+        }
+        executor.shutdown();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                detailedResultLineList.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                logger.error("Could not simulate phenopacket {}: {}", phenopacketFiles.get(i).getName(), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new LiricalRuntimeException("Simulation was interrupted");
+            }
+        }
     }
 
 
@@ -109,6 +163,7 @@ public class SimulatePhenopacketCommand extends PhenopacketCommand {
     private void runOnePhenotypeOnlyAnalysis(File phenopacketFile) throws IOException, ParseException {
 
         PhenoOnlyCaseSimulator simulator = new PhenoOnlyCaseSimulator(phenopacketFile,this.factory);
+        simulator.setRankOnly(true); // no HTML or TSV output is written for phenotype-only simulations
         simulator.run();
         int rank = simulator.getRank_of_disease();
         String diseaseLabel = simulator.getDiagnosisLabel();
@@ -123,52 +178,52 @@ public class SimulatePhenopacketCommand extends PhenopacketCommand {
     /**
      * Run one or multiple simulations that are driven from one or multiple phenopackets. Each simulation
      * will add pathogenic allele(s) from the phenopacket to the otherwise background VCF file at
-     * {@link #templateVcfPath}. The function {@link #runOneVcfAnalysis(File)} will determine the
+     * {@link #templateVcfPath}. The function {@link #runOneVcfAnalysis(File, String)} will determine the
      * rank of the correct diagnosis as represented in the Phenopacket.
      */
     private void runWithVcf() {
 
-        this.factory = new LiricalFactory.Builder()
+        LiricalFactory.Builder factoryBuilder = new LiricalFactory.Builder()
                 .datadir(this.datadir)
                 .genomeAssembly(genomeAssembly)
                 .exomiser(this.exomiserDataDirectory)
                 .transcriptdatabase(this.transcriptDb)
                 .backgroundFrequency(this.backgroundFrequencyFile)
                 .keep(this.keepIfNoCandidateVariant)
-                .strict(this.strict)
-                .build();
+                .strict(this.strict);
+        this.factory = variantFilterOptions(factoryBuilder).build();
         factory.qcHumanPhenotypeOntologyFiles();
         factory.qcExternalFilesInDataDir();
         factory.qcExomiserFiles();
         factory.qcGenomeBuild();
+        factory.loadResources();
+        // load the knowledge base and annotate the template VCF file once for all phenopackets
+        this.template = new TemplateVcfAnnotator(this.templateVcfPath, () -> factory.vcf2GenotypeMap(this.templateVcfPath));
+        this.diseaseMap = factory.diseaseMap(factory.hpoOntology());
+        this.phenoLr = new PhenotypeLikelihoodRatio(factory.hpoOntology(), diseaseMap);
+        this.genoLr = factory.getGenotypeLR();
 
 
         if (this.phenopacketPath != null) {
             logger.info("Running single file Phenopacket/VCF simulation at {}", phenopacketPath);
-            try {
-                runOneVcfAnalysis(new File(this.phenopacketPath));
-            } catch (IOException | ParseException e) {
-                e.printStackTrace();
-            }
+            detailedResultLineList.add(runOneVcfAnalysis(new File(this.phenopacketPath), outfilePrefix));
         } else if (this.phenopacketDir != null) {
             outputTSV=true; // needed so that we can capture the results of the simulations across all cases
-            logger.info("Running Phenopacket/VCF simulations at {}", phenopacketDir);
+            logger.info("Running Phenopacket/VCF simulations at {} with {} threads", phenopacketDir, threads);
             final File folder = new File(phenopacketDir);
             if (! folder.isDirectory()) {
                 throw new PhenolRuntimeException("Could not open Phenopackets directory at "+phenopacketDir);
             }
-            int counter=0;
+            List<File> phenopacketFiles = new ArrayList<>();
             for (final File fileEntry : folder.listFiles()) {
                 if (fileEntry.isFile() && fileEntry.getAbsolutePath().endsWith(".json")) {
                     logger.info("\tPhenopacket: \"{}\"", fileEntry.getAbsolutePath());
-                    System.out.println(++counter + ") "+ fileEntry.getName());
-                    try {
-                        runOneVcfAnalysis(fileEntry);
-                    } catch (IOException | ParseException e) {
-                        e.printStackTrace();
-                    }
+                    phenopacketFiles.add(fileEntry);
                 }
             }
+            Collections.sort(phenopacketFiles);
+            runVcfAnalyses(phenopacketFiles);
+            System.out.println("[INFO] Processed " + detailedResultLineList.size() + " of " + phenopacketFiles.size() + " phenopackets");
         } else {
             System.err.println("[ERROR] Either the --phenopacket or the --phenopacket-dir option is required");
             throw new LiricalRuntimeException("[ERROR] Either the --phenopacket or the --phenopacket-dir option is required");
@@ -312,8 +367,8 @@ public class SimulatePhenopacketCommand extends PhenopacketCommand {
         this.metadata = new HashMap<>();
        // disease2rankMap = new HashMap<>();
         detailedResultLineList = new ArrayList<>();
-        rank2countMap=new HashMap<>();
-        geneRank2CountMap = new HashMap<>();
+        rank2countMap=new ConcurrentHashMap<>();
+        geneRank2CountMap = new ConcurrentHashMap<>();
         if (phenotypeOnly) {
             runPhenotypeOnly();
         } else {
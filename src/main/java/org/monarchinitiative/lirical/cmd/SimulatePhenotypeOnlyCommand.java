@@ -32,6 +32,10 @@ public class SimulatePhenotypeOnlyCommand extends LiricalCommand {
     private int n_noise_terms = 1;
     @Parameter(names={"-i","--imprecision"}, description="Use imprecision?")
     private boolean imprecise_phenotype = false;
+    @Parameter(names={"--seed"}, description="seed for the random choice of diseases and terms (default: random)")
+    private Long seed = null;
+    @Parameter(names={"--threads"}, description="number of threads")
+    private int threads = Runtime.getRuntime().availableProcessors();
 
 
     /** No-op constructor meant to demo the phenotype LIRICAL algorithm by simulating some case based on
@@ -58,8 +62,13 @@ public class SimulatePhenotypeOnlyCommand extends LiricalCommand {
                 n_terms_per_case,
                 n_noise_terms,
                 imprecise_phenotype);
-        logger.info("Simulating {} cases with {} terms each, {} noise terms. imprecision={}",
-            n_cases_to_simulate,n_terms_per_case,n_noise_terms,imprecise_phenotype);
+        if (seed != null) {
+            phenotypeOnlyHpoCaseSimulator.setSeed(seed);
+        }
+        phenotypeOnlyHpoCaseSimulator.setThreads(threads);
+        logger.info("Simulating {} cases with {} terms each, {} noise terms. imprecision={}, seed={}, threads={}",
+            n_cases_to_simulate,n_terms_per_case,n_noise_terms,imprecise_phenotype,
+                phenotypeOnlyHpoCaseSimulator.getSeed(),threads);
         phenotypeOnlyHpoCaseSimulator.simulateCases();
     }
 }
@@ -0,0 +1,94 @@
+package org.monarchinitiative.lirical.cmd;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import org.monarchinitiative.lirical.synthetic.SyntheticCohort;
+import org.monarchinitiative.lirical.synthetic.SyntheticGenome;
+import org.monarchinitiative.lirical.synthetic.SyntheticKnowledgeBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/**
+ * Generate a synthetic data set for stress tests: a LIRICAL data directory with an HPO-like ontology, disease
+ * annotations, and gene maps ({@code <outdir>/data}), Phenopackets of simulated cases
+ * ({@code <outdir>/phenopackets}), and, if {@code --variants} is greater than zero, an Exomiser-like data
+ * directory ({@code <outdir>/synthetic_<assembly>}) and one VCF file per case ({@code <outdir>/vcf}). The sizes
+ * can be set independently, e.g., to 10 or 100 times the size of the real data.
+ */
+@Parameters(commandDescription = "Generate a synthetic ontology, annotations, VCF files, and cases for stress tests")
+public class SynthesizeCommand extends LiricalCommand {
+    private static final Logger logger = LoggerFactory.getLogger(SynthesizeCommand.class);
+
+    @Parameter(names = {"-o", "--outdir"}, description = "directory for the synthetic data")
+    private String outdir = "synthetic";
+    @Parameter(names = {"--terms"}, description = "number of HPO terms below Phenotypic abnormality")
+    private int terms = 15_000;
+    @Parameter(names = {"--depth"}, description = "maximum depth of the ontology below Phenotypic abnormality")
+    private int depth = 12;
+    @Parameter(names = {"--diseases"}, description = "number of diseases")
+    private int diseases = 8_000;
+    @Parameter(names = {"--genes"}, description = "number of genes")
+    private int genes = 4_000;
+    @Parameter(names = {"--cases"}, description = "number of cases (Phenopackets)")
+    private int cases = 10;
+    @Parameter(names = {"--variants"}, description = "number of random variants per VCF file (0: phenotype-only cases)")
+    private int variants = 0;
+    @Parameter(names = {"--samples"}, description = "number of samples per VCF file")
+    private int samples = 1;
+    @Parameter(names = {"--pathogenic-fraction"}, description = "fraction of the random variants that are pathogenic")
+    private double pathogenicFraction = 0.005;
+    @Parameter(names = {"-a", "--assembly"}, description = "genome assembly of the VCF files (hg19 or hg38)")
+    private String assembly = "hg38";
+    @Parameter(names = {"--seed"}, description = "seed of the random number generator")
+    private long seed = 42L;
+
+    public SynthesizeCommand() {
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        File dir = new File(outdir);
+        SyntheticKnowledgeBase kb = new SyntheticKnowledgeBase.Builder()
+                .terms(terms)
+                .depth(depth)
+                .diseases(diseases)
+                .genes(genes)
+                .seed(seed)
+                .build();
+        File datadir = new File(dir, "data");
+        kb.write(datadir);
+        SyntheticGenome genome = null;
+        File exomiserDir = null;
+        if (variants > 0) {
+            genome = new SyntheticGenome.Builder(genes)
+                    .assembly(assembly)
+                    .variants(variants)
+                    .samples(samples)
+                    .pathogenicFraction(pathogenicFraction)
+                    .seed(seed)
+                    .build();
+            exomiserDir = genome.writeExomiserData(dir, "synthetic");
+        }
+        try {
+            new SyntheticCohort(kb, genome, assembly, seed).write(dir, cases);
+        } finally {
+            if (genome != null) {
+                genome.close();
+            }
+        }
+        logger.trace("Synthetic data written in {} ms", System.currentTimeMillis() - start);
+        System.out.println(String.format("[INFO] Wrote %d terms, %d diseases, %d genes, and %d cases to %s in %d ms",
+                terms, diseases, genes, cases, dir.getAbsolutePath(), System.currentTimeMillis() - start));
+        String background = new File(datadir, "background-synthetic.tsv").getPath();
+        if (exomiserDir != null) {
+            System.out.println(String.format("[INFO] Run the cases with: benchmark -P %s -d %s -e %s -b %s -a %s",
+                    new File(dir, "phenopackets").getPath(), datadir.getPath(), exomiserDir.getPath(), background, assembly));
+        } else {
+            System.out.println(String.format("[INFO] Run the cases with: benchmark -P %s -d %s",
+                    new File(dir, "phenopackets").getPath(), datadir.getPath()));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.monarchinitiative.lirical.cmd;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.engine.CaseInput;
+import org.monarchinitiative.lirical.engine.LiricalEngine;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.io.PhenopacketImporter;
+import org.monarchinitiative.lirical.kb.CompiledKnowledgeBase;
+import org.monarchinitiative.lirical.verification.CaseComparison;
+import org.monarchinitiative.lirical.verification.Divergence;
+import org.monarchinitiative.lirical.verification.EquivalenceChecker;
+import org.monarchinitiative.lirical.verification.ScoringMode;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Score all phenopackets of a directory with the straightforward scoring path and with an alternative mode, and
+ * report the first divergences of each case (ranks, post-test probabilities, composite likelihood ratios, and
+ * explanations). The command fails if any case diverges, so that it can be used in scripts.
+ * <ul>
+ *     <li>{@code rank-only}: the rank-only evaluation that is used by the simulations</li>
+ *     <li>{@code term-major}: the ranks of all diseases calculated term by term with an inverted index</li>
+ *     <li>{@code prescreen}: the exact scores of a shortlist of diseases chosen by a cheap prescreen; only the top
+ *     diseases are compared, and the recall at K is reported</li>
+ *     <li>{@code compiled-kb}: the compiled knowledge base of the data directory (see {@code compile-kb}), compared
+ *     with the HPO and disease annotations parsed from {@code hp.obo} and {@code phenotype.hpoa}</li>
+ * </ul>
+ */
+@Parameters(commandDescription = "Check that an alternative scoring mode gives the same results as the reference")
+public class VerifyCommand extends PhenopacketCommand {
+    private static final Logger logger = LoggerFactory.getLogger(VerifyCommand.class);
+
+    @Parameter(names = {"-P", "--phenopacket-dir"}, description = "directory with the phenopackets (*.json) to check", required = true)
+    private String phenopacketDir;
+    @Parameter(names = {"--mode"}, description = "scoring mode that is compared with the reference (rank-only, term-major, prescreen, compiled-kb)")
+    private String mode = "rank-only";
+    @Parameter(names = {"-a", "--assembly"}, description = "genome assembly of the VCF files (hg19 or hg38)")
+    private String genomeAssembly = "hg38";
+    @Parameter(names = {"--tolerance"}, description = "maximum relative difference of likelihood ratios and probabilities")
+    private double tolerance = 1e-9;
+    @Parameter(names = {"--max-divergences"}, description = "number of divergences to show per case")
+    private int maxDivergences = 10;
+    @Parameter(names = {"--prescreen"}, description = "number of diseases chosen by the prescreen (prescreen mode)")
+    private int prescreen = 300;
+    @Parameter(names = {"--top"}, description = "only compare the top K diseases and report the recall at K (default: all diseases; 10 for prescreen)")
+    private Integer top = null;
+
+    private LiricalEngine engine;
+
+    public VerifyCommand() {
+    }
+
+    private void loadKnowledgeBase() {
+        LiricalFactory.Builder factoryBuilder = new LiricalFactory.Builder()
+                .datadir(this.datadir)
+                .genomeAssembly(this.genomeAssembly)
+                .exomiser(this.exomiserDataDirectory)
+                .transcriptdatabase(this.transcriptDb)
+                .backgroundFrequency(this.backgroundFrequencyFile)
+                .keep(this.keepIfNoCandidateVariant)
+                .strict(this.strict)
+                .orphanet(this.useOrphanet);
+        this.factory = exomiserDataDirectory != null ?
+                variantFilterOptions(factoryBuilder).buildForGenomicDiagnostics() :
+                factoryBuilder.buildForPhenotypeOnlyDiagnostics();
+        factory.loadResources();
+        if (exomiserDataDirectory != null) {
+            factory.qcGenomeBuild();
+        }
+        this.engine = LiricalEngine.fromFactory(factory);
+    }
+
+    /** @return the engine of the reference; the HPO and the diseases are parsed from the text files for compiled-kb. */
+    private LiricalEngine referenceEngine() {
+        if (! mode.equals("compiled-kb")) {
+            return engine;
+        }
+        if (! CompiledKnowledgeBase.forDataDirectory(datadir).isPresent()) {
+            throw new LiricalRuntimeException("No up-to-date compiled knowledge base in " + datadir + ", run compile-kb first");
+        }
+        Ontology ontology = OntologyLoader.loadOntology(new File(datadir, "hp.obo"));
+        LiricalEngine.Builder builder = new LiricalEngine.Builder(ontology, factory.diseaseMap(ontology))
+                .keep(factory.keepIfNoCandidateVariant());
+        if (factory.getExomiserPath() != null) {
+            builder.genomic(factory);
+        }
+        return builder.build();
+    }
+
+    private ScoringMode candidate() {
+        switch (mode) {
+            case "rank-only":
+                return ScoringMode.rankOnly(engine);
+            case "compiled-kb":
+                return ScoringMode.named("compiled-kb", engine);
+            case "term-major":
+                return ScoringMode.termMajor(LiricalEngine.fromFactory(factory, true));
+            case "prescreen":
+                return ScoringMode.named("prescreen", LiricalEngine.fromFactory(factory, false, prescreen));
+            default:
+                throw new LiricalRuntimeException("Unknown scoring mode \"" + mode + "\" (use rank-only, term-major, prescreen, or compiled-kb)");
+        }
+    }
+
+    @Override
+    public void run() {
+        File[] files = new File(phenopacketDir).listFiles((d, name) -> name.endsWith(".json"));
+        if (files == null || files.length == 0) {
+            throw new LiricalRuntimeException("No phenopackets (*.json) found in " + phenopacketDir);
+        }
+        Arrays.sort(files);
+        loadKnowledgeBase();
+        EquivalenceChecker checker = new EquivalenceChecker.Builder(ScoringMode.reference(referenceEngine()), candidate())
+                .tolerance(tolerance)
+                .maxDivergences(maxDivergences)
+                .topK(top != null ? top : (mode.equals("prescreen") ? 10 : 0))
+                .build();
+        int divergent = 0;
+        int failed = 0;
+        double recallSum = 0.0;
+        int compared = 0;
+        for (File phenopacket : files) {
+            String name = phenopacket.getName().replaceAll("\\.json$", "");
+            try {
+                PhenopacketImporter importer = PhenopacketImporter.fromJson(phenopacket.getAbsolutePath(), engine.getOntology());
+                CaseInput.Builder input = new CaseInput.Builder(importer.getHpoTerms())
+                        .negated(importer.getNegatedHpoTerms())
+                        .caseId(name);
+                if (importer.hasVcf()) {
+                    // annotate once, so that both modes score the same genotypes
+                    input.annotatedVcf(engine.annotate(importer.getVcfPath()));
+                }
+                CaseComparison comparison = checker.compare(name, input.build());
+                System.out.println("[INFO] " + comparison);
+                recallSum += comparison.getRecall();
+                compared++;
+                if (! comparison.isEquivalent()) {
+                    divergent++;
+                    List<Divergence> first = comparison.getFirstDivergences();
+                    for (Divergence divergence : first) {
+                        System.out.println("\t" + divergence);
+                    }
+                }
+            } catch (RuntimeException e) {
+                failed++;
+                logger.error("Could not check {}: {}", phenopacket.getAbsolutePath(), e.getMessage());
+            }
+        }
+        System.out.println(String.format("[INFO] %s vs. %s: %d cases, %d divergent, %d failed, mean recall %.3f",
+                checker.getReference().getName(), checker.getCandidate().getName(), files.length, divergent, failed,
+                compared > 0 ? recallSum / compared : 0.0));
+        if (divergent > 0 || failed > 0) {
+            throw new LiricalRuntimeException(String.format("%d of %d cases diverge, %d could not be checked",
+                    divergent, files.length, failed));
+        }
+    }
+}
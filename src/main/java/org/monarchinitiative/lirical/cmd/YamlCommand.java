@@ -3,6 +3,7 @@ package org.monarchinitiative.lirical.cmd;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Futures;
 import org.monarchinitiative.lirical.analysis.Gene2Genotype;
 import org.monarchinitiative.lirical.configuration.LiricalFactory;
 import org.monarchinitiative.lirical.exception.LiricalException;
@@ -11,10 +12,10 @@ import org.monarchinitiative.lirical.io.YamlParser;
 import org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator;
 import org.monarchinitiative.lirical.likelihoodratio.GenotypeLikelihoodRatio;
 import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.metrics.Metrics;
 import org.monarchinitiative.lirical.output.LiricalTemplate;
 import org.monarchinitiative.phenol.base.PhenolRuntimeException;
 import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
-import org.monarchinitiative.phenol.io.OntologyLoader;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.slf4j.Logger;
@@ -24,6 +25,7 @@ import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Future;
 
 /**
  * This class coordinates the main analysis of a VCF file plus list of observed HPO terms. This
@@ -60,16 +62,16 @@ public class YamlCommand extends PrioritizeCommand {
                 .negated(factory.negatedHpoTerms())
                 .ontology(ontology)
                 .diseaseMap(diseaseMap)
-                .phenotypeLr(phenoLr);
+                .phenotypeLr(phenoLr)
+                .metrics(metrics);
         CaseEvaluator evaluator = caseBuilder.buildPhenotypeOnlyEvaluator();
         return evaluator.evaluate();
     }
 
     private HpoCase runVcf() throws LiricalException {
-        Map<TermId, Gene2Genotype> genotypeMap = factory.getGene2GenotypeMap();
+        // the VCF file is annotated while the phenotype stage of the evaluation runs
+        Future<Map<TermId, Gene2Genotype>> pendingGenotypes = factory.getGene2GenotypeMapAsync();
         this.metadata.put("vcf_file", factory.getVcfPath());
-        this.metadata.put("n_filtered_variants", String.valueOf(factory.getN_filtered_variants()));
-        this.metadata.put("n_good_quality_variants",String.valueOf(factory.getN_good_quality_variants()));
         GenotypeLikelihoodRatio genoLr = factory.getGenotypeLR();
         Multimap<TermId,TermId> disease2geneMultimap = factory.disease2geneMultimap();
         this.geneId2symbol = factory.geneId2symbolMap();
@@ -78,17 +80,26 @@ public class YamlCommand extends PrioritizeCommand {
                 .ontology(ontology)
                 .diseaseMap(diseaseMap)
                 .disease2geneMultimap(disease2geneMultimap)
-                .genotypeMap(genotypeMap)
+                .pendingGenotypeMap(pendingGenotypes)
                 .phenotypeLr(phenoLr)
                 .keepCandidates(keepIfNoCandidateVariant)
                 .gene2idMap(geneId2symbol)
-                .genotypeLr(genoLr);
+                .genotypeLr(genoLr)
+                .metrics(metrics);
+        CaseEvaluator evaluator = caseBuilder.build();
+        HpoCase hcase = evaluator.evaluate();
+        // the genotypes are available once the evaluation is done
+        Map<TermId, Gene2Genotype> genotypeMap = Futures.getUnchecked(pendingGenotypes);
+        this.metadata.put("sample_name", factory.getSampleName());
+        this.metadata.put("n_filtered_variants", String.valueOf(factory.getN_filtered_variants()));
+        this.metadata.put("n_good_quality_variants",String.valueOf(factory.getN_good_quality_variants()));
+        this.metadata.put("variantFilter", factory.variantFilter().getDescription());
+        this.metadata.put("variantFilterRejections", factory.getVariantFilterRejections());
         this.metadata.put("transcriptDatabase", factory.transcriptdb());
-        int n_genes_with_var=factory.getGene2GenotypeMap().size();
+        int n_genes_with_var=genotypeMap.size();
         this.metadata.put("genesWithVar",String.valueOf(n_genes_with_var));
         this.metadata.put("exomiserPath",factory.getExomiserPath());
-        CaseEvaluator evaluator = caseBuilder.build();
-        return evaluator.evaluate();
+        return hcase;
     }
 
 
@@ -96,7 +107,9 @@ public class YamlCommand extends PrioritizeCommand {
 
     @Override
     public void run() throws LiricalException {
+        this.metrics = createMetrics();
         this.factory = deYamylate(this.yamlPath);
+        factory.loadResources();
         this.ontology =  factory.hpoOntology();
         this.diseaseMap = factory.diseaseMap(ontology);
         this.phenoLr = new PhenotypeLikelihoodRatio(ontology,diseaseMap);
@@ -104,9 +117,6 @@ public class YamlCommand extends PrioritizeCommand {
         this.metadata.put("sample_name", factory.getSampleName());
         this.metadata.put("analysis_date", factory.getTodaysDate());
         this.metadata.put("yaml", this.yamlPath);
-        Ontology ontology = factory.hpoOntology();
-        Map<TermId,HpoDisease> diseaseMap = factory.diseaseMap(ontology);
-        PhenotypeLikelihoodRatio phenoLr = new PhenotypeLikelihoodRatio(ontology,diseaseMap);
         Map<String,String> ontologyMetainfo=ontology.getMetaInfo();
         if (ontologyMetainfo.containsKey("data-version")) {
             this.metadata.put("hpoVersion",ontologyMetainfo.get("data-version"));
@@ -122,11 +132,13 @@ public class YamlCommand extends PrioritizeCommand {
                 .prefix(this.outfilePrefix)
                 .outdirectory(this.outdir)
                 .threshold(this.LR_THRESHOLD)
-                .mindiff(this.minDifferentialsToShow);
+                .mindiff(this.minDifferentialsToShow)
+                .sensitivity(this.sensitivityTopK)
+                .metrics(templateMetrics(metrics));
         LiricalTemplate template = outputTSV ?
                 builder.buildPhenotypeTsvTemplate() :
                 builder.buildPhenotypeHtmlTemplate();
-        template.outputFile();
+        writeOutput(template, metrics);
         logger.error("Done analysis of " + outfilePrefix);
     }
 
@@ -148,7 +160,10 @@ public class YamlCommand extends PrioritizeCommand {
         if (hpoPath == null || !(new File(hpoPath).exists())) {
             throw new PhenolRuntimeException("Could not find hp.obo file. Consider running download command first");
         }
-        Ontology ontology = OntologyLoader.loadOntology(new File(hpoPath));
+        Ontology ontology;
+        try (Metrics.Timer ignored = metrics.timer("load.ontology")) {
+            ontology = LiricalFactory.loadOntology(yparser.getDataDir());
+        }
 
         if (yparser.getOutDirectory().isPresent()) {
             this.outdir=yparser.getOutDirectory().get();
@@ -157,12 +172,14 @@ public class YamlCommand extends PrioritizeCommand {
         if (yparser.phenotypeOnlyMode()) {
             phenotypeOnly=true;
             LiricalFactory.Builder builder = new LiricalFactory.Builder(ontology).
-                    yaml(yparser,phenotypeOnly);
+                    yaml(yparser,phenotypeOnly).
+                    metrics(metrics);
             return builder.buildForPhenotypeOnlyDiagnostics();
         } else {
             phenotypeOnly=false;
             LiricalFactory.Builder builder = new LiricalFactory.Builder(ontology).
-                    yaml(yparser);
+                    yaml(yparser).
+                    metrics(metrics);
             return builder.buildForGenomicDiagnostics();
         }
 
@@ -1,5 +1,7 @@
 package org.monarchinitiative.lirical.configuration;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import de.charite.compbio.jannovar.data.JannovarData;
@@ -12,11 +14,14 @@ import org.monarchinitiative.exomiser.core.genome.jannovar.InvalidFileFormatExce
 import org.monarchinitiative.exomiser.core.genome.jannovar.JannovarDataProtoSerialiser;
 import org.monarchinitiative.lirical.analysis.Gene2Genotype;
 import org.monarchinitiative.lirical.analysis.Vcf2GenotypeMap;
+import org.monarchinitiative.lirical.analysis.VariantFilter;
 import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
 import org.monarchinitiative.lirical.exception.LiricalException;
 import org.monarchinitiative.lirical.io.GenotypeDataIngestor;
+import org.monarchinitiative.lirical.kb.CompiledKnowledgeBase;
 import org.monarchinitiative.lirical.io.YamlParser;
 import org.monarchinitiative.lirical.likelihoodratio.GenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.metrics.Metrics;
 import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
 import org.monarchinitiative.phenol.io.OntologyLoader;
 import org.monarchinitiative.phenol.io.assoc.HpoAssociationParser;
@@ -32,6 +37,10 @@ import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Not a full implementation of the factory pattern but rather a convenience class to create objects of various
@@ -62,6 +71,8 @@ public class LiricalFactory {
     private int n_good_quality_variants=0;
     /** Number of variants that were removed because of the quality filter. */
     private int n_filtered_variants=0;
+    /** Number of variants removed by each predicate of {@link #variantFilter}, e.g., {@code FILTER: 12; QUAL: 3}. */
+    private String variantFilterRejections="n/a";
 
     private final GenomeAssembly assembly;
 
@@ -77,19 +88,22 @@ public class LiricalFactory {
 
     private List<String> desiredDatabasePrefixes;
 
+    /* The resources below are created on first use and at most once (also if several threads request them at the
+     * same time), so that phenotype-only analyses never load the genomic resources. Use {@link #loadResources()}
+     * to load the resources needed for an analysis concurrently. */
     /** An object representing the Exomiser database. */
-    private MVStore mvstore = null;
-    private Multimap<TermId,TermId> gene2diseaseMultiMap=null;
-    private Multimap<TermId,TermId> disease2geneIdMultiMap=null;
-    private Map<TermId,String> geneId2SymbolMap=null;
+    private final Supplier<MVStore> mvstore = Suppliers.memoize(() -> timed("load.mvstore", this::openMvStore));
+    /** Gene to disease maps and gene symbols from Homo_sapiens_gene_info.gz and mim2gene_medgen. */
+    private final Supplier<GeneAnnotations> geneAnnotations = Suppliers.memoize(() -> timed("load.geneAnnotations", this::parseHpoAnnotations));
+    /** Key: a disease id; value: the corresponding disease for the {@link #desiredDatabasePrefixes}. */
+    private final Supplier<Map<TermId, HpoDisease>> diseases = Suppliers.memoize(() -> timed("load.diseases", this::loadDiseaseMap));
     /** Key: the TermId of a gene. Value. Its background frequency in the current genome build. This variable
      * is only initialized for runs with a VCF file. */
-    private Map<TermId, Double> gene2backgroundFrequency = null;
-    /** If true, filter VCF lines by the FILTER column (variants pass if there is no entry, i.e., ".",
-     * or if the value of the field is FALSE. Variant also fail if a reason for the not passing the
-     * filter is given in the column, i.e., for allelic imbalance. This is true by default. Filtering
-     * can be turned off by entering {@code -q false} or {@code --quality} false. */
-    private final boolean filterOnFILTER;
+    private final Supplier<Map<TermId, Double>> gene2backgroundFrequency = Suppliers.memoize(() -> timed("load.background", this::loadBackgroundFrequencies));
+    /** Predicates that are applied to the VCF records before annotation. By default, VCF lines are filtered by
+     * the FILTER column (variants pass if there is no entry, i.e., ".", or if the value of the field is PASS).
+     * Optionally, QUAL, DP, GQ, no-call, hom-ref, and allele-count predicates can be added. */
+    private final VariantFilter variantFilter;
 
     /** Path of the Jannovar UCSC transcript file (from the Exomiser distribution) */
     private String jannovarUcscPath=null;
@@ -99,9 +113,14 @@ public class LiricalFactory {
     private String jannovarRefSeqPath=null;
     /** Name of sample in VCF file, if any. The default value is n/a to indicate this field has not been initiatilized. */
     private String sampleName="n/a";
-
-
-    private JannovarData jannovarData=null;
+    /** Transcript data from the Exomiser distribution. */
+    private final Supplier<JannovarData> jannovarData = Suppliers.memoize(() -> timed("load.jannovar", this::loadJannovarData));
+    /** Path of a custom background frequency file, or null to use the default file of the genome assembly. */
+    private final String backgroundFrequencyPath;
+    /** Compiled knowledge base of the data directory (see the compile-kb command), or null if there is none. */
+    private final CompiledKnowledgeBase knowledgeBase;
+    /** Timers and counters of the analysis ({@link Metrics#DISABLED} unless metrics were requested). */
+    private final Metrics metrics;
     /** Used as a flag to pick the right constructor in {@link Builder#buildForGt2Git()}. */
     private enum BuildType { GT2GIT}
 
@@ -109,9 +128,12 @@ public class LiricalFactory {
      * This constructor is used to build Gt2Git. The BuildType argument is used as a flag.
      */
     private LiricalFactory(Builder builder, BuildType bt){
-            filterOnFILTER = false;
+            variantFilter = new VariantFilter.Builder().passOnly(false).build();
             keepIfNoCandidateVariant = false;
             ontology = null;
+            knowledgeBase = null;
+            metrics = Metrics.DISABLED;
+            backgroundFrequencyPath = null;
             assembly = builder.getAssembly();
             this.exomiserPath = builder.exomiserDataDir;
             if (exomiserPath!=null) {
@@ -140,22 +162,9 @@ public class LiricalFactory {
             initializeExomiserPaths();
         }
         this.assembly=builder.getAssembly();
-        if (builder.backgroundFrequencyPath!=null
-                && !builder.backgroundFrequencyPath.isEmpty()) {
-            this.gene2backgroundFrequency = GenotypeDataIngestor.fromPath(builder.backgroundFrequencyPath);
-        } else {
-            // Note-- background files for hg19 and hg38 are stored in src/main/resources/background
-            // and are included in the resources by the maven resource plugin
-            if (assembly.equals(GenomeAssembly.HG19)) {
-                this.gene2backgroundFrequency = GenotypeDataIngestor.fromResource("background/background-hg19.tsv");
-            } else if (assembly.equals(GenomeAssembly.HG38)) {
-                this.gene2backgroundFrequency = GenotypeDataIngestor.fromResource("background/background-hg38.tsv");
-            } else {
-                logger.error("Did not recognize genome assembly: {}",assembly);
-                throw new LiricalRuntimeException("Did not recognize genome assembly: "+assembly);
-            }
-
-        }
+        this.knowledgeBase = builder.knowledgeBase;
+        this.metrics = builder.metrics;
+        this.backgroundFrequencyPath = builder.backgroundFrequencyPath;
 
         this.geneInfoPath=builder.geneInfoPath;
         this.mim2genemedgenPath=builder.mim2genemedgenPath;
@@ -178,7 +187,7 @@ public class LiricalFactory {
             listbuilder.add(negatedId);
         }
         this.negatedHpoIdList = listbuilder.build();
-        this.filterOnFILTER=builder.filterFILTER;
+        this.variantFilter=builder.variantFilterBuilder.build();
         this.keepIfNoCandidateVariant = builder.keep;
         if (builder.useOrphanet) {
             this.desiredDatabasePrefixes=ImmutableList.of("ORPHA");
@@ -213,7 +222,40 @@ public class LiricalFactory {
         return negatedHpoIdList;
     }
 
+    /**
+     * @param datadir the LIRICAL data directory
+     * @return the HPO, taken from the compiled knowledge base of the data directory if there is an up-to-date one
+     * and otherwise parsed from {@code hp.obo}
+     */
+    public static Ontology loadOntology(String datadir) {
+        Optional<CompiledKnowledgeBase> kb = CompiledKnowledgeBase.forDataDirectory(datadir);
+        if (kb.isPresent()) {
+            return kb.get().ontology();
+        }
+        return OntologyLoader.loadOntology(new File(datadir, "hp.obo"));
+    }
 
+    /**
+     * @param genomeAssembly a string such as hg19, GRCh37, hg38, or GRCh38 (can be null)
+     * @return the corresponding genome assembly, or {@link GenomeAssembly#HG38} (the default) if the string is
+     * null or not recognized
+     */
+    public static GenomeAssembly parseGenomeAssembly(String genomeAssembly) {
+        if (genomeAssembly!=null) {
+            switch (genomeAssembly.toLowerCase()) {
+                case "hg19":
+                case "hg37":
+                case "grch37":
+                case "grch_37":
+                    return GenomeAssembly.HG19;
+                case "hg38":
+                case "grch38":
+                case "grch_38":
+                    return GenomeAssembly.HG38;
+            }
+        }
+        return GenomeAssembly.HG38; // the default.
+    }
 
     /** @return the genome assembly corresponding to the VCF file. Can be null. */
     public GenomeAssembly getAssembly() {
@@ -271,26 +313,96 @@ public class LiricalFactory {
 
     /** @return MVStore object with Exomiser data on variant pathogenicity and frequency. */
     public MVStore mvStore() {
+        return mvstore.get();
+    }
+
+    private MVStore openMvStore() {
         File f = new File(this.mvStorePath);
         if (!f.exists()) {
             throw new LiricalRuntimeException("[FATAL] Could not find Exomiser database file/variants.mv.db at " + this.mvStorePath);
         }
-        if (mvstore==null) {
-            mvstore = new MVStore.Builder()
-                    .fileName(this.mvStorePath)
-                    .readOnly()
-                    .open();
+        return new MVStore.Builder()
+                .fileName(this.mvStorePath)
+                .readOnly()
+                .open();
+    }
+
+    /**
+     * Load the resources needed for the analysis concurrently: the disease map and, if the Exomiser data directory
+     * was given, the gene to disease maps, the Jannovar data, the Exomiser database, and the background frequencies.
+     * The resources that are already loaded are not loaded again. Calling this method is optional; otherwise, each
+     * resource is loaded when it is first used.
+     */
+    public void loadResources() {
+        List<Supplier<?>> resources = new ArrayList<>();
+        resources.add(diseases);
+        if (exomiserPath != null) {
+            resources.add(geneAnnotations);
+            resources.add(jannovarData);
+            resources.add(mvstore);
+            resources.add(gene2backgroundFrequency);
+        }
+        long start = System.currentTimeMillis();
+        Metrics.Timer timer = metrics.timer("load.resources");
+        ExecutorService executor = Executors.newFixedThreadPool(resources.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Supplier<?> resource : resources) {
+                futures.add(executor.submit(resource::get));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LiricalRuntimeException("Interrupted while loading resources");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LiricalRuntimeException) {
+                throw (LiricalRuntimeException) e.getCause();
+            }
+            throw new LiricalRuntimeException("Could not load resources: " + e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
         }
-        return mvstore;
+        timer.stop();
+        logger.trace("Loaded {} resources in {} ms", resources.size(), System.currentTimeMillis() - start);
     }
 
+    /** Run a loader and record its time in the {@link #metrics}. */
+    private <T> T timed(String name, Supplier<T> loader) {
+        try (Metrics.Timer ignored = metrics.timer(name)) {
+            return loader.get();
+        }
+    }
+
+    /** @return the timers and counters of the analysis ({@link Metrics#DISABLED} unless metrics were requested) */
+    public Metrics getMetrics() {
+        return metrics;
+    }
 
+    /** Gene to disease maps and gene symbols. */
+    private static class GeneAnnotations {
+        private final Multimap<TermId,TermId> gene2diseaseMultiMap;
+        private final Multimap<TermId,TermId> disease2geneIdMultiMap;
+        private final Map<TermId,String> geneId2SymbolMap;
+
+        GeneAnnotations(Multimap<TermId, TermId> gene2disease, Multimap<TermId, TermId> disease2gene, Map<TermId, String> geneId2symbol) {
+            this.gene2diseaseMultiMap = gene2disease;
+            this.disease2geneIdMultiMap = disease2gene;
+            this.geneId2SymbolMap = geneId2symbol;
+        }
+    }
 
 
 
-    private void parseHpoAnnotations()  {
-        if (this.ontology==null) {
-            hpoOntology();
+
+
+    private GeneAnnotations parseHpoAnnotations()  {
+        if (knowledgeBase != null && knowledgeBase.hasGenes()) {
+            metrics.increment("knowledgeBase.compiledHits", 1);
+            return new GeneAnnotations(knowledgeBase.gene2diseaseMultimap(),
+                    knowledgeBase.disease2geneMultimap(),
+                    knowledgeBase.geneId2symbolMap());
         }
         if (this.geneInfoPath==null) {
             throw new LiricalRuntimeException("Path to Homo_sapiens_gene_info.gz file not found");
@@ -310,33 +422,24 @@ public class LiricalFactory {
         HpoAssociationParser assocParser = new HpoAssociationParser(geneInfoFile.getAbsolutePath(),
                 mim2genemedgenFile.getAbsolutePath(),
                 ontology);
-        this.gene2diseaseMultiMap=assocParser.getGeneToDiseaseIdMap();
-        this.disease2geneIdMultiMap=assocParser.getDiseaseToGeneIdMap();
-        this.geneId2SymbolMap=assocParser.getGeneIdToSymbolMap();
+        return new GeneAnnotations(assocParser.getGeneToDiseaseIdMap(),
+                assocParser.getDiseaseToGeneIdMap(),
+                assocParser.getGeneIdToSymbolMap());
     }
 
 
     /** @return a multimap with key: a gene CURIE such as NCBIGene:123; value: a collection of disease CURIEs such as OMIM:600123. */
     public Multimap<TermId,TermId> gene2diseaseMultimap()  {
-        if (this.gene2diseaseMultiMap==null) {
-            parseHpoAnnotations();
-        }
-        return this.gene2diseaseMultiMap;
+        return geneAnnotations.get().gene2diseaseMultiMap;
     }
 
     /** @return multimap with key:disease CURIEs such as OMIM:600123; value: a collection of gene CURIEs such as NCBIGene:123.  */
     public Multimap<TermId,TermId> disease2geneMultimap()  {
-        if (this.disease2geneIdMultiMap==null) {
-            parseHpoAnnotations();
-        }
-        return this.disease2geneIdMultiMap;
+        return geneAnnotations.get().disease2geneIdMultiMap;
     }
     /** @return a map with key:a gene id, e.g., NCBIGene:2020; value: the corresponding gene symbol. */
     public Map<TermId,String> geneId2symbolMap() {
-        if (this.geneId2SymbolMap==null) {
-            parseHpoAnnotations();
-        }
-        return this.geneId2SymbolMap;
+        return geneAnnotations.get().geneId2SymbolMap;
     }
 
 
@@ -356,7 +459,30 @@ public class LiricalFactory {
      * @return a {@link GenotypeLikelihoodRatio} object
      */
     public GenotypeLikelihoodRatio getGenotypeLR() {
-        return new GenotypeLikelihoodRatio(this.gene2backgroundFrequency,this.strict);
+        return new GenotypeLikelihoodRatio(this.gene2backgroundFrequency.get(),this.strict);
+    }
+
+    private Map<TermId, Double> loadBackgroundFrequencies() {
+        if (backgroundFrequencyPath!=null && !backgroundFrequencyPath.isEmpty()) {
+            return GenotypeDataIngestor.fromPath(backgroundFrequencyPath);
+        }
+        if (knowledgeBase != null) {
+            Optional<Map<TermId, Double>> compiled = knowledgeBase.backgroundFrequencies(assembly);
+            if (compiled.isPresent()) {
+                metrics.increment("knowledgeBase.compiledHits", 1);
+                return compiled.get();
+            }
+        }
+        // Note-- background files for hg19 and hg38 are stored in src/main/resources/background
+        // and are included in the resources by the maven resource plugin
+        if (assembly.equals(GenomeAssembly.HG19)) {
+            return GenotypeDataIngestor.fromResource("background/background-hg19.tsv");
+        } else if (assembly.equals(GenomeAssembly.HG38)) {
+            return GenotypeDataIngestor.fromResource("background/background-hg38.tsv");
+        } else {
+            logger.error("Did not recognize genome assembly: {}",assembly);
+            throw new LiricalRuntimeException("Did not recognize genome assembly: "+assembly);
+        }
     }
 
 
@@ -369,7 +495,10 @@ public class LiricalFactory {
      * deserializer doesn't work.
      * @return the object created by deserializing a Jannovar file. */
     public JannovarData jannovarData()  {
-        if (jannovarData != null) return jannovarData;
+        return jannovarData.get();
+    }
+
+    private JannovarData loadJannovarData() {
         // Remove the trailing directory slash if any
         this.exomiserPath= getPathWithoutTrailingSeparatorIfPresent(this.exomiserPath);
         String basename=FilenameUtils.getBaseName(this.exomiserPath);
@@ -396,14 +525,12 @@ public class LiricalFactory {
         }
         try {
             Path p = Paths.get(fullpath);
-            this.jannovarData=JannovarDataProtoSerialiser.load(p);
-            return jannovarData;
+            return JannovarDataProtoSerialiser.load(p);
         } catch (InvalidFileFormatException e) {
             logger.warn("Could not deserialize Jannovar file with Protobuf deserializer, trying legacy deserializer...");
         }
         try {
-            this.jannovarData=new JannovarDataSerializer(fullpath).load();
-            return jannovarData;
+            return new JannovarDataSerializer(fullpath).load();
         } catch (SerializationException e) {
             logger.error("Could not deserialize Jannovar file with legacy deserializer...");
             throw new LiricalRuntimeException(String.format("Could not load Jannovar data from %s (%s)",
@@ -411,32 +538,84 @@ public class LiricalFactory {
         }
     }
 
-    /** @return a map with key: a disease id (e.g., OMIM:654321) and key the corresponding {@link HpoDisease} object.*/
+    /**
+     * @param ontology the HPO; the disease map is only parsed once if this is the ontology of the factory
+     * @return a map with key: a disease id (e.g., OMIM:654321) and key the corresponding {@link HpoDisease} object.
+     */
     public Map<TermId, HpoDisease> diseaseMap(Ontology ontology)  {
+        if (ontology == this.ontology) {
+            return diseases.get();
+        }
+        return HpoDiseaseAnnotationParser.loadDiseaseMap(phenotypeAnnotationPath,ontology,desiredDatabasePrefixes);
+    }
+
+    private Map<TermId, HpoDisease> loadDiseaseMap() {
         if (this.phenotypeAnnotationPath==null) {
             throw new LiricalRuntimeException("Path to phenotype.hpoa file not found");
         }
-
-        return HpoDiseaseAnnotationParser.loadDiseaseMap(phenotypeAnnotationPath,ontology,desiredDatabasePrefixes);
+        if (knowledgeBase != null) {
+            Optional<Map<TermId, HpoDisease>> compiled = knowledgeBase.diseaseMap(desiredDatabasePrefixes);
+            if (compiled.isPresent()) {
+                metrics.increment("knowledgeBase.compiledHits", 1);
+                return compiled.get();
+            }
+        }
+        return HpoDiseaseAnnotationParser.loadDiseaseMap(phenotypeAnnotationPath,this.ontology,desiredDatabasePrefixes);
     }
 
     public  Map<TermId, Gene2Genotype> getGene2GenotypeMap() {
         return getGene2GenotypeMap(getVcfPath());
     }
 
-    public  Map<TermId, Gene2Genotype> getGene2GenotypeMap(String vcfPath) {
+    /**
+     * Start annotating the VCF file in a separate thread, so that the phenotype likelihood ratios can be calculated
+     * in the meantime (see {@link org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator.Builder#pendingGenotypeMap(Future)}).
+     * The sample name and the variant counts of this factory are set when the returned future is done.
+     * @return the genotype map of the VCF file of this factory, as a future
+     */
+    public Future<Map<TermId, Gene2Genotype>> getGene2GenotypeMapAsync() {
+        String path = getVcfPath();
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "vcf-annotation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return executor.submit(() -> getGene2GenotypeMap(path));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @param vcfPath path to a VCF, VCF.GZ, or BCF file
+     * @return an annotator for the file that uses the Jannovar and Exomiser data and the variant filter of this factory
+     */
+    public Vcf2GenotypeMap vcf2GenotypeMap(String vcfPath) {
         Vcf2GenotypeMap vcf2geno = new Vcf2GenotypeMap(vcfPath,
                 jannovarData(),
                 mvStore(),
                 getAssembly(),
-                this.filterOnFILTER);
+                this.variantFilter);
+        vcf2geno.setMetrics(metrics);
+        return vcf2geno;
+    }
+
+    public  Map<TermId, Gene2Genotype> getGene2GenotypeMap(String vcfPath) {
+        Vcf2GenotypeMap vcf2geno = vcf2GenotypeMap(vcfPath);
         Map<TermId, Gene2Genotype> genotypeMap = vcf2geno.vcf2genotypeMap();
         this.sampleName=vcf2geno.getSamplename();
         this.n_filtered_variants=vcf2geno.getN_filtered_variants();
         this.n_good_quality_variants=vcf2geno.getN_good_quality_variants();
+        this.variantFilterRejections=vcf2geno.getRejectionSummary();
         return genotypeMap;
     }
 
+    /** @return the predicates that are applied to VCF records before annotation. */
+    public VariantFilter variantFilter() {
+        return variantFilter;
+    }
+
     /** @return a string with today's date in the format yyyy/MM/dd. */
     public String getTodaysDate() {
         DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd");
@@ -452,6 +631,11 @@ public class LiricalFactory {
         return n_filtered_variants;
     }
 
+    /** @return per-predicate rejection counts of the last VCF file that was parsed ("n/a" if none). */
+    public String getVariantFilterRejections() {
+        return variantFilterRejections;
+    }
+
     public boolean keepIfNoCandidateVariant() { return  keepIfNoCandidateVariant; }
 
     /**
@@ -522,11 +706,11 @@ public class LiricalFactory {
      */
     private void qcBackgroundFrequency() {
 
-        if (! this.gene2backgroundFrequency.isEmpty()) {
+        if (this.gene2backgroundFrequency.get().isEmpty()) {
             logger.error("background frequency was not initialized ");
             throw new LiricalRuntimeException("background frequency was not initialized ");
         } else {
-            logger.trace("Background frequency initialized for {} genes", this.gene2backgroundFrequency.size());
+            logger.trace("Background frequency initialized for {} genes", this.gene2backgroundFrequency.get().size());
         }
     }
 
@@ -581,10 +765,13 @@ public class LiricalFactory {
         private String backgroundFrequencyPath = null;
         private String vcfPath = null;
         private String genomeAssembly = null;
-        private boolean filterFILTER = true;
+        /** By default, we only filter on the FILTER column of the VCF file. */
+        private final VariantFilter.Builder variantFilterBuilder = new VariantFilter.Builder();
         private boolean strict = false;
         private boolean keep = false;
         private boolean useOrphanet = false;
+        private CompiledKnowledgeBase knowledgeBase = null;
+        private Metrics metrics = Metrics.DISABLED;
         /** The default transcript database is UCSC> */
         private TranscriptDatabase transcriptdatabase=  TranscriptDatabase.UCSC;
         private List<String> observedHpoTerms=ImmutableList.of();
@@ -626,6 +813,13 @@ public class LiricalFactory {
             }
             Optional<String> backgroundOpt = yp.getBackgroundPath();
             backgroundOpt.ifPresent(s -> this.backgroundFrequencyPath = s);
+            yp.passOnly().ifPresent(variantFilterBuilder::passOnly);
+            yp.minQual().ifPresent(variantFilterBuilder::minQual);
+            yp.minDepth().ifPresent(variantFilterBuilder::minDepth);
+            yp.minGenotypeQuality().ifPresent(variantFilterBuilder::minGenotypeQuality);
+            yp.maxAlleles().ifPresent(variantFilterBuilder::maxAlleles);
+            yp.skipNoCall().ifPresent(variantFilterBuilder::skipNoCall);
+            yp.skipHomRef().ifPresent(variantFilterBuilder::skipHomRef);
             return this;
         }
 
@@ -642,6 +836,12 @@ public class LiricalFactory {
         }
 
 
+        /** Record the timers and counters of the analysis in {@code m} (default: {@link Metrics#DISABLED}). */
+        public Builder metrics(Metrics m) {
+            this.metrics = m;
+            return this;
+        }
+
         public Builder strict(boolean b) {
             this.strict = b;
             return this;
@@ -657,6 +857,48 @@ public class LiricalFactory {
             return this;
         }
 
+        /** If true (default), remove VCF records whose FILTER column is not PASS or ".". */
+        public Builder passOnly(boolean b) {
+            this.variantFilterBuilder.passOnly(b);
+            return this;
+        }
+
+        /** Remove VCF records whose QUAL is below {@code q}. */
+        public Builder minQual(double q) {
+            this.variantFilterBuilder.minQual(q);
+            return this;
+        }
+
+        /** Remove VCF records for which the read depth (DP) of the proband is below {@code dp}. */
+        public Builder minDepth(int dp) {
+            this.variantFilterBuilder.minDepth(dp);
+            return this;
+        }
+
+        /** Remove VCF records for which the genotype quality (GQ) of the proband is below {@code gq}. */
+        public Builder minGenotypeQuality(int gq) {
+            this.variantFilterBuilder.minGenotypeQuality(gq);
+            return this;
+        }
+
+        /** Remove VCF records with more than {@code n} alleles (REF plus ALT). */
+        public Builder maxAlleles(int n) {
+            this.variantFilterBuilder.maxAlleles(n);
+            return this;
+        }
+
+        /** Remove VCF records for which the genotype of the proband is a no-call. */
+        public Builder skipNoCall(boolean b) {
+            this.variantFilterBuilder.skipNoCall(b);
+            return this;
+        }
+
+        /** Remove VCF records for which the genotype of the proband is homozygous reference. */
+        public Builder skipHomRef(boolean b) {
+            this.variantFilterBuilder.skipHomRef(b);
+            return this;
+        }
+
 
         public Builder genomeAssembly(String ga) {
             this.genomeAssembly=ga;
@@ -682,20 +924,7 @@ public class LiricalFactory {
 
         /** @return an {@link org.monarchinitiative.exomiser.core.genome.GenomeAssembly} object representing the genome build.*/
         GenomeAssembly getAssembly() {
-            if (genomeAssembly!=null) {
-                switch (genomeAssembly.toLowerCase()) {
-                    case "hg19":
-                    case "hg37":
-                    case "grch37":
-                    case "grch_37":
-                        return GenomeAssembly.HG19;
-                    case "hg38":
-                    case "grch38":
-                    case "grch_38":
-                        return GenomeAssembly.HG38;
-                }
-            }
-            return GenomeAssembly.HG38; // the default.
+            return parseGenomeAssembly(genomeAssembly);
         }
 
 
@@ -741,13 +970,22 @@ public class LiricalFactory {
         }
 
         private void ingestHpo() {
-            String hpopath = String.format("%s%s%s",this.liricalDataDir,File.separator,"hp.obo");
-            this.ontology = OntologyLoader.loadOntology(new File(hpopath));
+            try (Metrics.Timer ignored = metrics.timer("load.ontology")) {
+                this.ontology = loadOntology(this.liricalDataDir);
+            }
             Objects.requireNonNull(this.ontology);
         }
 
+        /** Use the compiled knowledge base of the data directory if there is an up-to-date one. */
+        private void openKnowledgeBase() {
+            if (this.liricalDataDir != null) {
+                this.knowledgeBase = CompiledKnowledgeBase.forDataDirectory(this.liricalDataDir).orElse(null);
+            }
+        }
+
 
         public LiricalFactory build() {
+            openKnowledgeBase();
             if (this.ontology == null) ingestHpo();
             return new LiricalFactory(this);
         }
@@ -759,6 +997,7 @@ public class LiricalFactory {
 
 
         public LiricalFactory buildForGenomicDiagnostics() {
+            openKnowledgeBase();
             if (this.ontology == null) ingestHpo();
             LiricalFactory factory = new LiricalFactory(this);
             factory.qcHumanPhenotypeOntologyFiles();
@@ -769,6 +1008,7 @@ public class LiricalFactory {
 
 
         public LiricalFactory buildForPhenotypeOnlyDiagnostics() {
+            openKnowledgeBase();
             if (this.ontology == null) ingestHpo();
             LiricalFactory factory = new LiricalFactory(this);
             factory.qcHumanPhenotypeOntologyFiles();
@@ -0,0 +1,57 @@
+package org.monarchinitiative.lirical.engine;
+
+import com.google.common.collect.ImmutableMap;
+import org.monarchinitiative.lirical.analysis.Gene2Genotype;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.Map;
+
+/**
+ * The genotypes of one VCF file after annotation with Jannovar and the Exomiser database (see
+ * {@link LiricalEngine#annotate(String)}). Objects of this class are immutable and can be used to score several
+ * cases, e.g., with different HPO terms, without annotating the VCF file again.
+ */
+public final class AnnotatedVcf {
+    private final String vcfPath;
+    private final String sampleName;
+    /** Key: an EntrezGene id; value: the variants found in the gene. */
+    private final Map<TermId, Gene2Genotype> genotypeMap;
+    private final int n_good_quality_variants;
+    private final int n_filtered_variants;
+    /** Number of variants removed by each predicate of the variant filter. */
+    private final String variantFilterRejections;
+
+    public AnnotatedVcf(String vcfPath, String sampleName, Map<TermId, Gene2Genotype> genotypeMap,
+                        int n_good_quality_variants, int n_filtered_variants, String variantFilterRejections) {
+        this.vcfPath = vcfPath;
+        this.sampleName = sampleName;
+        this.genotypeMap = ImmutableMap.copyOf(genotypeMap);
+        this.n_good_quality_variants = n_good_quality_variants;
+        this.n_filtered_variants = n_filtered_variants;
+        this.variantFilterRejections = variantFilterRejections;
+    }
+
+    public String getVcfPath() {
+        return vcfPath;
+    }
+
+    public String getSampleName() {
+        return sampleName;
+    }
+
+    public Map<TermId, Gene2Genotype> getGenotypeMap() {
+        return genotypeMap;
+    }
+
+    public int getN_good_quality_variants() {
+        return n_good_quality_variants;
+    }
+
+    public int getN_filtered_variants() {
+        return n_filtered_variants;
+    }
+
+    public String getVariantFilterRejections() {
+        return variantFilterRejections;
+    }
+}
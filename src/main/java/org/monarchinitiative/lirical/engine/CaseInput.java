@@ -0,0 +1,98 @@
+package org.monarchinitiative.lirical.engine;
+
+import com.google.common.collect.ImmutableList;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The input of one case for {@link LiricalEngine#score(CaseInput)}: the observed and excluded HPO terms and,
+ * optionally, either the path of a VCF file or an {@link AnnotatedVcf}. Objects of this class are immutable.
+ */
+public final class CaseInput {
+    /** An identifier of the case chosen by the caller (default: "n/a"). */
+    private final String caseId;
+    private final List<TermId> observedHpoTerms;
+    private final List<TermId> negatedHpoTerms;
+    /** Path of a VCF file that is annotated by the engine, or null. */
+    private final String vcfPath;
+    /** Genotypes annotated earlier, or null. */
+    private final AnnotatedVcf annotatedVcf;
+
+    private CaseInput(Builder builder) {
+        this.caseId = builder.caseId;
+        this.observedHpoTerms = ImmutableList.copyOf(builder.observed);
+        this.negatedHpoTerms = ImmutableList.copyOf(builder.negated);
+        this.vcfPath = builder.vcfPath;
+        this.annotatedVcf = builder.annotatedVcf;
+    }
+
+    public String getCaseId() {
+        return caseId;
+    }
+
+    public List<TermId> getObservedHpoTerms() {
+        return observedHpoTerms;
+    }
+
+    public List<TermId> getNegatedHpoTerms() {
+        return negatedHpoTerms;
+    }
+
+    public Optional<String> getVcfPath() {
+        return Optional.ofNullable(vcfPath);
+    }
+
+    public Optional<AnnotatedVcf> getAnnotatedVcf() {
+        return Optional.ofNullable(annotatedVcf);
+    }
+
+    /** @return true if the case is scored with genotypes. */
+    public boolean hasGenotypes() {
+        return vcfPath != null || annotatedVcf != null;
+    }
+
+    public static class Builder {
+        private final List<TermId> observed;
+        private List<TermId> negated = ImmutableList.of();
+        private String caseId = "n/a";
+        private String vcfPath = null;
+        private AnnotatedVcf annotatedVcf = null;
+
+        public Builder(List<TermId> observed) {
+            this.observed = observed;
+        }
+
+        public Builder negated(List<TermId> negated) {
+            this.negated = negated;
+            return this;
+        }
+
+        public Builder caseId(String id) {
+            this.caseId = id;
+            return this;
+        }
+
+        public Builder vcf(String path) {
+            this.vcfPath = path;
+            return this;
+        }
+
+        public Builder annotatedVcf(AnnotatedVcf vcf) {
+            this.annotatedVcf = vcf;
+            return this;
+        }
+
+        public CaseInput build() {
+            if (observed == null) {
+                throw new LiricalRuntimeException("[ERROR] No HPO terms found. At least one HPO term required to run LIRICAL");
+            }
+            if (vcfPath != null && annotatedVcf != null) {
+                throw new LiricalRuntimeException("Use either a VCF file or annotated genotypes, not both");
+            }
+            return new CaseInput(this);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.monarchinitiative.lirical.engine;
+
+import com.google.common.collect.ImmutableList;
+import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.lirical.likelihoodratio.TestResult;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The result of {@link LiricalEngine#score(CaseInput)}. The {@link HpoCase} and its {@link TestResult} objects are
+ * created for this result only and are not modified by the engine after it has been returned.
+ */
+public final class CaseResult {
+    private final CaseInput input;
+    private final HpoCase hpoCase;
+    /** Genotypes used to score the case, or null for a phenotype-only case. */
+    private final AnnotatedVcf annotatedVcf;
+    /** Problems found while calculating the likelihood ratios (the case is still scored). */
+    private final List<String> errors;
+    private final long elapsedMillis;
+
+    CaseResult(CaseInput input, HpoCase hpoCase, AnnotatedVcf annotatedVcf, List<String> errors, long elapsedMillis) {
+        this.input = input;
+        this.hpoCase = hpoCase;
+        this.annotatedVcf = annotatedVcf;
+        this.errors = ImmutableList.copyOf(errors);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public CaseInput getInput() {
+        return input;
+    }
+
+    public HpoCase getHpoCase() {
+        return hpoCase;
+    }
+
+    /** @return the {@code n} best-ranked diseases. */
+    public List<TestResult> getTopResults(int n) {
+        return hpoCase.getTopResults(n);
+    }
+
+    public Optional<AnnotatedVcf> getAnnotatedVcf() {
+        return Optional.ofNullable(annotatedVcf);
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
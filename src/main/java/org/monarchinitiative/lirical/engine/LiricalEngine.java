@@ -0,0 +1,348 @@
+package org.monarchinitiative.lirical.engine;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import org.monarchinitiative.lirical.analysis.Vcf2GenotypeMap;
+import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.lirical.likelihoodratio.CandidatePrescreen;
+import org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator;
+import org.monarchinitiative.lirical.likelihoodratio.DiseaseRank;
+import org.monarchinitiative.lirical.likelihoodratio.GenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.likelihoodratio.PhenotypeIndex;
+import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.likelihoodratio.ScoringSession;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Entry point for using LIRICAL as a library, e.g., in a JVM service. The engine is built once with the knowledge
+ * base (HPO, disease annotations, and, optionally, the genomic data) and can then be used by any number of threads
+ * at the same time: {@link #score(CaseInput)} keeps all state of a case in local variables and a new
+ * {@link CaseEvaluator} for each call. All fields are final and refer to objects that are not modified after
+ * construction. Unlike the commands, the engine never calls {@code System.exit}; invalid input is reported with a
+ * {@link LiricalRuntimeException}.
+ * <p>
+ * The engine can be created from a {@link LiricalFactory}:
+ * <pre>
+ * LiricalFactory factory = new LiricalFactory.Builder().datadir("data").buildForPhenotypeOnlyDiagnostics();
+ * LiricalEngine engine = LiricalEngine.fromFactory(factory);
+ * CaseResult result = engine.score(new CaseInput.Builder(hpoIds).build());
+ * </pre>
+ * An engine built with {@link Builder#termMajor(boolean)} calculates the ranks of {@link #rank(CaseInput, List)} and
+ * {@link #rankAll(CaseInput)} term by term with a {@link PhenotypeIndex}, which is built when it is first needed and
+ * then shared by all cases. An engine built with {@link Builder#prescreen(int)} calculates the exact likelihood
+ * ratios of {@link #score(CaseInput)} only for a shortlist of diseases (see {@link CandidatePrescreen}).
+ * {@link #session(CaseInput)} starts a {@link ScoringSession}, in which the terms of a case can be edited and
+ * re-ranked without scoring the case again.
+ */
+public final class LiricalEngine {
+    private static final Logger logger = LoggerFactory.getLogger(LiricalEngine.class);
+
+    private final Ontology ontology;
+    private final Map<TermId, HpoDisease> diseaseMap;
+    private final PhenotypeLikelihoodRatio phenoLr;
+    /** The following objects are null unless the engine was built with genomic data. */
+    private final GenotypeLikelihoodRatio genoLr;
+    private final Multimap<TermId, TermId> disease2geneMultimap;
+    private final Map<TermId, String> geneId2symbol;
+    /** Creates a new (single-use) annotator for a VCF file. */
+    private final Function<String, Vcf2GenotypeMap> vcfAnnotator;
+    private final boolean keepIfNoCandidateVariant;
+    /** Inverted index of the annotations, built when it is first needed. */
+    private final Supplier<PhenotypeIndex> phenotypeIndex;
+    /** If true, the ranks are calculated with the {@link #phenotypeIndex}. */
+    private final boolean termMajor;
+    /** Prescreen of the diseases for {@link #score(CaseInput)}, or null if all diseases are evaluated. */
+    private final Supplier<CandidatePrescreen> prescreen;
+    private final int shortlistSize;
+
+    private LiricalEngine(Builder builder) {
+        this.ontology = builder.ontology;
+        // copies, so that later changes of the caller's maps do not affect running analyses
+        this.diseaseMap = ImmutableMap.copyOf(builder.diseaseMap);
+        this.phenoLr = builder.phenoLr != null ?
+                builder.phenoLr :
+                new PhenotypeLikelihoodRatio(ontology, diseaseMap);
+        this.keepIfNoCandidateVariant = builder.keep;
+        this.phenotypeIndex = Suppliers.memoize(() -> new PhenotypeIndex(ontology, diseaseMap, phenoLr));
+        this.termMajor = builder.termMajor;
+        this.shortlistSize = builder.shortlistSize;
+        this.prescreen = shortlistSize > 0 ?
+                Suppliers.memoize(() -> new CandidatePrescreen(ontology, diseaseMap)) :
+                null;
+        LiricalFactory factory = builder.factory;
+        if (factory != null) {
+            factory.loadResources();
+            this.genoLr = factory.getGenotypeLR();
+            this.disease2geneMultimap = ImmutableMultimap.copyOf(factory.disease2geneMultimap());
+            this.geneId2symbol = ImmutableMap.copyOf(factory.geneId2symbolMap());
+            this.vcfAnnotator = factory::vcf2GenotypeMap;
+        } else {
+            this.genoLr = null;
+            this.disease2geneMultimap = null;
+            this.geneId2symbol = null;
+            this.vcfAnnotator = null;
+        }
+    }
+
+    /**
+     * @param factory a factory whose resources are used by the engine; if it was built with the Exomiser data
+     *                directory, the engine can also score cases with a VCF file
+     * @return a new engine
+     */
+    public static LiricalEngine fromFactory(LiricalFactory factory) {
+        return fromFactory(factory, false);
+    }
+
+    /**
+     * @param factory a factory whose resources are used by the engine
+     * @param termMajor if true, the ranks are calculated term by term (see {@link Builder#termMajor(boolean)})
+     * @return a new engine
+     */
+    public static LiricalEngine fromFactory(LiricalFactory factory, boolean termMajor) {
+        return fromFactory(factory, termMajor, 0);
+    }
+
+    /**
+     * @param factory a factory whose resources are used by the engine
+     * @param termMajor if true, the ranks are calculated term by term (see {@link Builder#termMajor(boolean)})
+     * @param shortlistSize number of diseases chosen by the prescreen (see {@link Builder#prescreen(int)}), or 0
+     * @return a new engine
+     */
+    public static LiricalEngine fromFactory(LiricalFactory factory, boolean termMajor, int shortlistSize) {
+        Ontology ontology = factory.hpoOntology();
+        Builder builder = new Builder(ontology, factory.diseaseMap(ontology))
+                .keep(factory.keepIfNoCandidateVariant())
+                .termMajor(termMajor)
+                .prescreen(shortlistSize);
+        if (factory.getExomiserPath() != null) {
+            builder.genomic(factory);
+        }
+        return builder.build();
+    }
+
+    public Ontology getOntology() {
+        return ontology;
+    }
+
+    public Map<TermId, HpoDisease> getDiseaseMap() {
+        return diseaseMap;
+    }
+
+    /** @return true if the engine can score cases with genotypes. */
+    public boolean isGenomic() {
+        return vcfAnnotator != null;
+    }
+
+    /** @return a map with key: a gene id, e.g., NCBIGene:2020; value: the gene symbol (empty without genomic data). */
+    public Map<TermId, String> getGeneId2symbol() {
+        return geneId2symbol != null ? geneId2symbol : ImmutableMap.of();
+    }
+
+    /**
+     * Annotate a VCF file. The result can be used for several calls of {@link #score(CaseInput)}.
+     * @param vcfPath path to a VCF, VCF.GZ, or BCF file
+     * @return the genotypes of the VCF file
+     */
+    public AnnotatedVcf annotate(String vcfPath) {
+        if (! isGenomic()) {
+            throw new LiricalRuntimeException("Engine was built without Exomiser data, VCF files cannot be analyzed");
+        }
+        if (! new File(vcfPath).isFile()) {
+            throw new LiricalRuntimeException("We did not find a VCF file at \"" + vcfPath + "\"");
+        }
+        Vcf2GenotypeMap vcf2geno = vcfAnnotator.apply(vcfPath);
+        return new AnnotatedVcf(vcfPath, vcf2geno.getSamplename(), vcf2geno.vcf2genotypeMap(),
+                vcf2geno.getN_good_quality_variants(), vcf2geno.getN_filtered_variants(), vcf2geno.getRejectionSummary());
+    }
+
+    private void checkTerms(List<TermId> terms) {
+        for (TermId tid : terms) {
+            if (! ontology.getTermMap().containsKey(tid)) {
+                throw new LiricalRuntimeException("Could not find HPO term " + tid.getValue() + " in ontology");
+            }
+        }
+    }
+
+    /**
+     * Score one case. This method can be called by several threads at the same time.
+     * @param input the HPO terms and, optionally, the genotypes of the case
+     * @return the ranked differential diagnosis
+     */
+    public CaseResult score(CaseInput input) {
+        long start = System.currentTimeMillis();
+        AnnotatedVcf genotypes = genotypes(input);
+        CaseEvaluator evaluator = scoringEvaluator(input, genotypes);
+        HpoCase hcase = evaluator.evaluate();
+        long elapsed = System.currentTimeMillis() - start;
+        logger.trace("Scored case {} in {} ms", input.getCaseId(), elapsed);
+        return new CaseResult(input, hcase, genotypes, evaluator.getErrors(), elapsed);
+    }
+
+    /**
+     * Calculate the ranks that {@link #score(CaseInput)} would give the target diseases, without creating the
+     * results and explanations of all diseases (see {@link CaseEvaluator#rankOnly(List)}).
+     * @param input the HPO terms and, optionally, the genotypes of the case
+     * @param targets ids of the diseases whose ranks we want to know
+     * @return the ranks of the target diseases, in the same order
+     */
+    public List<DiseaseRank> rank(CaseInput input, List<TermId> targets) {
+        return evaluator(input, genotypes(input)).rankOnly(targets);
+    }
+
+    /**
+     * Calculate the ranks of all diseases in the differential diagnosis without creating the results and
+     * explanations (see {@link CaseEvaluator#rankAll()}).
+     * @param input the HPO terms and, optionally, the genotypes of the case
+     * @return the ranks of the diseases, best rank first
+     */
+    public List<DiseaseRank> rankAll(CaseInput input) {
+        return evaluator(input, genotypes(input)).rankAll();
+    }
+
+    /**
+     * Start a session in which the terms of a case can be added, removed, or negated, and the diseases re-ranked after
+     * each change (see {@link ScoringSession}). The genotypes of the case, if any, are scored once.
+     * @param input the initial HPO terms and, optionally, the genotypes of the case
+     * @return a new session, which should only be used by one thread at a time
+     */
+    public ScoringSession session(CaseInput input) {
+        AnnotatedVcf genotypes = genotypes(input);
+        PhenotypeIndex index = phenotypeIndex.get();
+        double[] genotypeLr = evaluator(input, genotypes).genotypeLikelihoodRatios(index.getDiseaseIds());
+        ScoringSession session = new ScoringSession(ontology, index, genotypeLr);
+        input.getObservedHpoTerms().forEach(session::addObserved);
+        input.getNegatedHpoTerms().forEach(session::addExcluded);
+        return session;
+    }
+
+    /** @return the genotypes of a case (annotating its VCF file if needed), or null for a phenotype-only case. */
+    private AnnotatedVcf genotypes(CaseInput input) {
+        checkTerms(input.getObservedHpoTerms());
+        checkTerms(input.getNegatedHpoTerms());
+        AnnotatedVcf genotypes = null;
+        if (input.getAnnotatedVcf().isPresent()) {
+            genotypes = input.getAnnotatedVcf().get();
+        } else if (input.getVcfPath().isPresent()) {
+            genotypes = annotate(input.getVcfPath().get());
+        }
+        if (genotypes != null && ! isGenomic()) {
+            throw new LiricalRuntimeException("Engine was built without Exomiser data, genotypes cannot be scored");
+        }
+        return genotypes;
+    }
+
+    /** @return a new evaluator for {@link #score(CaseInput)}, with the prescreen if the engine has one */
+    private CaseEvaluator scoringEvaluator(CaseInput input, AnnotatedVcf genotypes) {
+        CaseEvaluator.Builder caseBuilder = evaluatorBuilder(input, genotypes);
+        if (prescreen != null) {
+            caseBuilder.prescreen(prescreen.get(), shortlistSize);
+        }
+        return build(caseBuilder, genotypes);
+    }
+
+    private CaseEvaluator evaluator(CaseInput input, AnnotatedVcf genotypes) {
+        return build(evaluatorBuilder(input, genotypes), genotypes);
+    }
+
+    private CaseEvaluator.Builder evaluatorBuilder(CaseInput input, AnnotatedVcf genotypes) {
+        CaseEvaluator.Builder caseBuilder = new CaseEvaluator.Builder(input.getObservedHpoTerms())
+                .negated(input.getNegatedHpoTerms())
+                .ontology(ontology)
+                .diseaseMap(diseaseMap)
+                .phenotypeLr(phenoLr);
+        if (termMajor) {
+            caseBuilder.phenotypeIndex(phenotypeIndex.get());
+        }
+        return caseBuilder;
+    }
+
+    private CaseEvaluator build(CaseEvaluator.Builder caseBuilder, AnnotatedVcf genotypes) {
+        return genotypes == null ?
+                caseBuilder.buildPhenotypeOnlyEvaluator() :
+                caseBuilder.disease2geneMultimap(disease2geneMultimap)
+                        .genotypeMap(genotypes.getGenotypeMap())
+                        .genotypeLr(genoLr)
+                        .keepCandidates(keepIfNoCandidateVariant)
+                        .gene2idMap(geneId2symbol)
+                        .build();
+    }
+
+    public static class Builder {
+        private final Ontology ontology;
+        private final Map<TermId, HpoDisease> diseaseMap;
+        private PhenotypeLikelihoodRatio phenoLr = null;
+        private LiricalFactory factory = null;
+        private boolean keep = false;
+        private boolean termMajor = false;
+        private int shortlistSize = 0;
+
+        public Builder(Ontology ontology, Map<TermId, HpoDisease> diseaseMap) {
+            this.ontology = ontology;
+            this.diseaseMap = diseaseMap;
+        }
+
+        /** Use an existing phenotype likelihood ratio object (otherwise the engine creates one). */
+        public Builder phenotypeLr(PhenotypeLikelihoodRatio phenoLr) {
+            this.phenoLr = phenoLr;
+            return this;
+        }
+
+        /** Use the genomic resources (Jannovar, Exomiser database, gene maps) of a factory built with Exomiser data. */
+        public Builder genomic(LiricalFactory factory) {
+            this.factory = factory;
+            return this;
+        }
+
+        /** Retain candidates even if no candidate variant is found. */
+        public Builder keep(boolean keep) {
+            this.keep = keep;
+            return this;
+        }
+
+        /**
+         * Calculate the ranks term by term: for each HPO term of a case, the likelihood ratios of all diseases are
+         * looked up in an inverted index of the annotations (one vector per term, which is cached for the next
+         * cases). The ranks are identical to those calculated disease by disease. {@link #score(CaseInput)}, which
+         * needs the explanations, is not affected.
+         */
+        public Builder termMajor(boolean termMajor) {
+            this.termMajor = termMajor;
+            return this;
+        }
+
+        /**
+         * Calculate the exact likelihood ratios of {@link #score(CaseInput)} only for the {@code size} diseases with
+         * the best {@link CandidatePrescreen} scores and, for cases with genotypes, the diseases with a pathogenic
+         * variant in an associated gene. The other diseases are missing from the results. This is intended for
+         * interactive use; {@code 0} (default) evaluates all diseases.
+         */
+        public Builder prescreen(int size) {
+            if (size < 0) {
+                throw new LiricalRuntimeException("Size of the prescreen shortlist must not be negative: " + size);
+            }
+            this.shortlistSize = size;
+            return this;
+        }
+
+        public LiricalEngine build() {
+            Objects.requireNonNull(ontology);
+            Objects.requireNonNull(diseaseMap);
+            return new LiricalEngine(this);
+        }
+    }
+}
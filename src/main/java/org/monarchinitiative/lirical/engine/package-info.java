@@ -0,0 +1,12 @@
+/**
+ * A thread-safe API for embedding LIRICAL in other JVM applications. A {@link
+ * org.monarchinitiative.lirical.engine.LiricalEngine} is built once and scores {@link
+ * org.monarchinitiative.lirical.engine.CaseInput} objects from any number of threads.
+ * <p>
+ * Objects that can be shared between threads: {@code LiricalEngine}, {@code CaseInput}, {@code CaseResult},
+ * {@code AnnotatedVcf}, the HPO {@code Ontology}, the disease map, {@code PhenotypeLikelihoodRatio},
+ * {@code GenotypeLikelihoodRatio}, and the (read-only) Jannovar data and Exomiser MVStore. Objects that must not be
+ * shared: {@code CaseEvaluator} (single use), {@code Vcf2GenotypeMap} (per-file counters), and
+ * {@code LiricalFactory#getGene2GenotypeMap} (stores the counters of the last VCF file in the factory).
+ */
+package org.monarchinitiative.lirical.engine;
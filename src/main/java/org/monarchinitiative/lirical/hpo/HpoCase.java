@@ -4,6 +4,7 @@ package org.monarchinitiative.lirical.hpo;
 import com.google.common.collect.ImmutableList;
 
 import org.monarchinitiative.lirical.analysis.Gene2Genotype;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
 import org.monarchinitiative.lirical.likelihoodratio.TestResult;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.TermId;
@@ -34,11 +35,15 @@ public final class HpoCase {
     private final Age age;
 
     private final Map<TermId,TestResult> disease2resultMap;
+    /** The {@link TestResult} objects of {@link #disease2resultMap}, sorted once (best result first). */
+    private final List<TestResult> rankedResults;
 
-    private HpoCase(List<TermId> observedAbn,  List<TermId> excludedAbn, Map<TermId,TestResult> d2rmap, Sex sex, Age age) {
+    private HpoCase(List<TermId> observedAbn,  List<TermId> excludedAbn, Map<TermId,TestResult> d2rmap,
+                    List<TestResult> ranked, Sex sex, Age age) {
         this.observedAbnormalities=observedAbn;
         this.excludedAbnormalities=excludedAbn;
         this.disease2resultMap=d2rmap;
+        this.rankedResults=ranked;
         this.sex=sex;
         this.age=age;
     }
@@ -52,11 +57,17 @@ public final class HpoCase {
     public Sex getSex() { return sex;  }
     /** The {@link Age} of the person being evaluated.*/
     public Age getAge() { return age; }
-    /** @return Sort List of {@link TestResult} objects for each diseases in the differential diagnosis. */
+    /** @return Sorted (immutable) List of {@link TestResult} objects for each diseases in the differential diagnosis. */
     public List<TestResult> getResults() {
-        List<TestResult> trlist = new ArrayList<>(this.disease2resultMap.values());
-        trlist.sort(Collections.reverseOrder());
-        return trlist;
+        return rankedResults;
+    }
+
+    /**
+     * @param n maximum number of results
+     * @return the (at most) n best {@link TestResult} objects of the differential diagnosis, best result first.
+     */
+    public List<TestResult> getTopResults(int n) {
+        return rankedResults.subList(0, Math.min(n, rankedResults.size()));
     }
     /** * @return total number of positive and negative phenotype observations for this case.*/
     public int getNumberOfObservations() {
@@ -112,16 +123,15 @@ public final class HpoCase {
         String excluded=this.excludedAbnormalities.stream().
                 map(TermId::getValue).
                 collect(Collectors.joining("; "));
-        int n_results=this.getResults().size();
+        int n_results=this.rankedResults.size();
         return "HPO Case\n" + "observed: " + observed +"\nexcluded: " + excluded +"\nTests: n="+n_results;
 
     }
 
 
+    /** @return the highest posterior probability of the differential diagnosis (zero if there are no results). */
     public double getBestPosteriorProbability() {
-        return disease2resultMap.values().stream().
-                max(Comparator.comparing(TestResult::getPosttestProbability)).
-                get().getPosttestProbability();
+        return rankedResults.isEmpty() ? 0.0 : rankedResults.get(0).getPosttestProbability();
     }
 
 
@@ -133,6 +143,8 @@ public final class HpoCase {
         private List<TermId> excludedAbnormalities;
         /** List of results . */
         private Map<TermId,TestResult> testResultMap;
+        /** The results of {@link #testResultMap} sorted by rank, if they were already sorted. */
+        private List<TestResult> rankedResults = null;
         /** One of Male, Female, Unknown. See {@link Sex}. */
         private Sex sex;
         /** Age of the proband, if known. */
@@ -165,9 +177,27 @@ public final class HpoCase {
             return this;
         }
 
+        /**
+         * @param ranked the values of the result map sorted by rank (best result first). If this is not set,
+         *               {@link #build()} sorts the results.
+         */
+        public Builder rankedResults(List<TestResult> ranked) {
+            this.rankedResults = ranked;
+            return this;
+        }
+
         public HpoCase build() {
             Objects.requireNonNull(testResultMap);
-            return new HpoCase(observedAbnormalities,excludedAbnormalities, testResultMap,sex,age);
+            if (rankedResults == null) {
+                List<TestResult> trlist = new ArrayList<>(testResultMap.values());
+                trlist.sort(Collections.reverseOrder());
+                rankedResults = trlist;
+            } else if (rankedResults.size() != testResultMap.size()) {
+                throw new LiricalRuntimeException(String.format("Got %d ranked results for %d results",
+                        rankedResults.size(), testResultMap.size()));
+            }
+            return new HpoCase(observedAbnormalities,excludedAbnormalities, testResultMap,
+                    ImmutableList.copyOf(rankedResults),sex,age);
         }
     }
 
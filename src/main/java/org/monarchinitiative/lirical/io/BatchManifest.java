@@ -0,0 +1,139 @@
+package org.monarchinitiative.lirical.io;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.io.FilenameUtils;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of the cases that are to be analyzed by the {@code batch} command. The manifest is a text file with one
+ * YAML ({@code .yml} or {@code .yaml}) or Phenopacket ({@code .json}) file per line. Blank lines and lines starting
+ * with {@code #} are ignored. Relative paths are resolved against the directory that contains the manifest. An
+ * optional second (tab-separated) column sets the prefix of the output file of the case; otherwise, the prefix
+ * of the YAML file or the basename of the file is used (this is decided when the case is parsed).
+ */
+public class BatchManifest {
+    private static final Logger logger = LoggerFactory.getLogger(BatchManifest.class);
+    /** The format of an input file of the batch. */
+    public enum Format { YAML, PHENOPACKET }
+
+    private final List<Entry> entries;
+
+    private BatchManifest(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @param manifestPath path to the manifest file
+     * @return the cases listed in the manifest
+     */
+    public static BatchManifest fromPath(String manifestPath) {
+        File manifest = new File(manifestPath);
+        if (! manifest.exists()) {
+            throw new LiricalRuntimeException("Could not find batch manifest at " + manifestPath);
+        }
+        File baseDirectory = manifest.getAbsoluteFile().getParentFile();
+        try (BufferedReader br = new BufferedReader(new FileReader(manifest))) {
+            return parse(br, baseDirectory);
+        } catch (IOException e) {
+            throw new LiricalRuntimeException("Could not read batch manifest at " + manifestPath + ": " + e.getMessage());
+        }
+    }
+
+    static BatchManifest parse(BufferedReader br, File baseDirectory) throws IOException {
+        ImmutableList.Builder<Entry> builder = new ImmutableList.Builder<>();
+        Map<String, Integer> prefix2line = new HashMap<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = br.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            String path = fields[0].trim();
+            File file = new File(path);
+            if (! file.isAbsolute() && baseDirectory != null) {
+                file = new File(baseDirectory, path);
+            }
+            String prefix = fields.length > 1 && ! fields[1].trim().isEmpty() ? fields[1].trim() : null;
+            if (prefix != null) {
+                Integer previous = prefix2line.put(prefix, lineNumber);
+                if (previous != null) {
+                    throw new LiricalRuntimeException(String.format("Duplicate output prefix \"%s\" in batch manifest (lines %d and %d)",
+                            prefix, previous, lineNumber));
+                }
+            }
+            builder.add(new Entry(file.getPath(), format(path, lineNumber), prefix));
+        }
+        List<Entry> entries = builder.build();
+        logger.trace("Read {} cases from batch manifest", entries.size());
+        return new BatchManifest(entries);
+    }
+
+    private static Format format(String path, int lineNumber) {
+        String extension = FilenameUtils.getExtension(path).toLowerCase();
+        switch (extension) {
+            case "yml":
+            case "yaml":
+                return Format.YAML;
+            case "json":
+                return Format.PHENOPACKET;
+            default:
+                throw new LiricalRuntimeException(String.format("Could not determine format of \"%s\" (line %d of batch manifest)," +
+                        " expected .yml, .yaml, or .json", path, lineNumber));
+        }
+    }
+
+    /** @return the cases in the order in which they are listed in the manifest. */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** One case (YAML or Phenopacket file) of the batch. */
+    public static class Entry {
+        private final String path;
+        private final Format format;
+        /** Prefix of the output file as given in the manifest (can be null). */
+        private final String prefix;
+
+        Entry(String path, Format format, String prefix) {
+            this.path = path;
+            this.format = format;
+            this.prefix = prefix;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Format getFormat() {
+            return format;
+        }
+
+        /** @return true if the manifest sets the prefix of the output file of this case. */
+        public boolean hasPrefix() {
+            return prefix != null;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        /** @return the basename of the input file, which is used as output prefix if no other prefix is given. */
+        public String getBasename() {
+            return FilenameUtils.getBaseName(path);
+        }
+    }
+}
@@ -190,7 +190,8 @@ public class PhenopacketImporter {
 
 
     /** This method extracts the VCF file and the corresponding GenomeBuild. We assume that
-     * the phenopacket contains a single VCF file and that this file is for a single person. */
+     * the phenopacket contains a single VCF file and that this file is for a single person. BCF files
+     * are accepted as well; the actual format is determined when the file is read by {@link VariantFileReader}. */
     private void extractVcfData() {
         List<HtsFile> htsFileList = phenoPacket.getHtsFilesList();
         if (htsFileList.size() > 1 ) {
@@ -200,7 +201,8 @@ public class PhenopacketImporter {
             return;
         }
         for (HtsFile htsFile : htsFileList) {
-            if (htsFile.getHtsFormat().equals(HtsFile.HtsFormat.VCF)) {
+            if (htsFile.getHtsFormat().equals(HtsFile.HtsFormat.VCF) ||
+                    htsFile.getHtsFormat().equals(HtsFile.HtsFormat.BCF)) {
                 this.vcfFile = htsFile;
             }
         }
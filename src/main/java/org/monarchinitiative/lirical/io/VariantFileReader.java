@@ -0,0 +1,145 @@
+package org.monarchinitiative.lirical.io;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFIterator;
+import htsjdk.variant.vcf.VCFIteratorBuilder;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class provides a single way of reading variant files for LIRICAL. It supports plain-text VCF, (b)gzipped VCF,
+ * and BCF2 (compressed or uncompressed). The format is determined from the first bytes of the file rather
+ * than from the file extension, so that, e.g., a BCF file called {@code sample.vcf} is read correctly. Reading
+ * is done sequentially and does not require an index.
+ */
+public class VariantFileReader implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(VariantFileReader.class);
+    /** The first two bytes of a gzip (and therefore BGZF) file. */
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+    /** Start of the magic string of a BCF file, {@code BCF\2}. */
+    private static final byte[] BCF_MAGIC = "BCF".getBytes(StandardCharsets.US_ASCII);
+    /** Start of the first header line of a VCF file, {@code ##fileformat=VCF}. */
+    private static final byte[] VCF_MAGIC = "##fileformat".getBytes(StandardCharsets.US_ASCII);
+
+    /** The variant file formats that LIRICAL can read. */
+    public enum Format {
+        /** Plain-text VCF. */
+        VCF,
+        /** gzip or bgzip compressed VCF. */
+        VCF_GZ,
+        /** Binary BCF2 (usually BGZF compressed). */
+        BCF
+    }
+
+    private final Path path;
+
+    private final Format format;
+
+    private final VCFIterator iterator;
+
+    private VariantFileReader(Path path, Format format, VCFIterator iterator) {
+        this.path = path;
+        this.format = format;
+        this.iterator = iterator;
+    }
+
+    /**
+     * Open a VCF, VCF.GZ, or BCF file for sequential reading.
+     * @param path path to the variant file
+     * @return reader for the file
+     */
+    public static VariantFileReader open(String path) {
+        return open(Paths.get(path));
+    }
+
+    public static VariantFileReader open(Path path) {
+        Format format = sniff(path);
+        try {
+            VCFIterator iter = new VCFIteratorBuilder().open(path);
+            logger.trace("Opened {} file at {}", format, path);
+            return new VariantFileReader(path, format, iter);
+        } catch (IOException e) {
+            throw new LiricalRuntimeException(String.format("Could not open variant file %s (%s)", path, e.getMessage()));
+        }
+    }
+
+    /**
+     * Determine the format of a variant file from its first bytes (the file extension is not used).
+     * @param path path to a VCF, VCF.GZ, or BCF file
+     * @return the format of the file
+     */
+    public static Format sniff(Path path) {
+        if (!Files.isRegularFile(path)) {
+            throw new LiricalRuntimeException("We did not find a VCF file at \"" + path + "\"");
+        }
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(path))) {
+            raw.mark(2);
+            int b1 = raw.read();
+            int b2 = raw.read();
+            raw.reset();
+            boolean compressed = b1 == GZIP_MAGIC_1 && b2 == GZIP_MAGIC_2;
+            InputStream is = compressed ? new GZIPInputStream(raw) : raw;
+            byte[] start = new byte[VCF_MAGIC.length];
+            int n = readFully(is, start);
+            if (startsWith(start, n, BCF_MAGIC)) {
+                return Format.BCF;
+            } else if (startsWith(start, n, VCF_MAGIC)) {
+                return compressed ? Format.VCF_GZ : Format.VCF;
+            }
+        } catch (IOException e) {
+            throw new LiricalRuntimeException(String.format("Could not read variant file %s (%s)", path, e.getMessage()));
+        }
+        throw new LiricalRuntimeException(String.format("%s is not a VCF, VCF.GZ, or BCF file", path));
+    }
+
+    private static int readFully(InputStream is, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int n = is.read(buffer, total, buffer.length - total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+
+    private static boolean startsWith(byte[] bytes, int len, byte[] prefix) {
+        if (len < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    public VCFHeader getHeader() {
+        return iterator.getHeader();
+    }
+
+    /** @return an iterator over the records of the file. The iterator is closed together with this reader. */
+    public CloseableIterator<VariantContext> iterator() {
+        return iterator;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() {
+        iterator.close();
+    }
+}
@@ -314,6 +314,74 @@ public class YamlParser {
         return Optional.empty();
     }
 
+    /**
+     * The optional entries {@code filter}, {@code minQual}, {@code minDepth}, {@code minGQ}, {@code maxAlleles},
+     * {@code skipNoCall}, and {@code skipHomRef} of the analysis section configure the
+     * {@link org.monarchinitiative.lirical.analysis.VariantFilter} that is applied to the VCF file before annotation.
+     * @return true if only variants with PASS (or ".") in the FILTER column should be used (may be empty)
+     */
+    public Optional<Boolean> passOnly() {
+        return booleanEntry("filter");
+    }
+
+    /** @return minimum QUAL of a VCF record (may be empty). */
+    public Optional<Double> minQual() {
+        if (yconfig.getAnalysis().containsKey("minQual")) {
+            String q = yconfig.getAnalysis().get("minQual");
+            try {
+                return Optional.of(Double.parseDouble(q));
+            } catch( NumberFormatException nfe) {
+                System.err.println("[ERROR] Could not parse minQual entry in YAML file. Using default");
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** @return minimum read depth (DP) of the proband genotype (may be empty). */
+    public Optional<Integer> minDepth() {
+        return integerEntry("minDepth");
+    }
+
+    /** @return minimum genotype quality (GQ) of the proband genotype (may be empty). */
+    public Optional<Integer> minGenotypeQuality() {
+        return integerEntry("minGQ");
+    }
+
+    /** @return maximum number of alleles (REF plus ALT) of a VCF record (may be empty). */
+    public Optional<Integer> maxAlleles() {
+        return integerEntry("maxAlleles");
+    }
+
+    /** @return true if records with a no-call genotype in the proband should be skipped (may be empty). */
+    public Optional<Boolean> skipNoCall() {
+        return booleanEntry("skipNoCall");
+    }
+
+    /** @return true if records with a homozygous reference genotype in the proband should be skipped (may be empty). */
+    public Optional<Boolean> skipHomRef() {
+        return booleanEntry("skipHomRef");
+    }
+
+    private Optional<Integer> integerEntry(String key) {
+        if (yconfig.getAnalysis().containsKey(key)) {
+            String val =  yconfig.getAnalysis().get(key);
+            try {
+                return Optional.of(Integer.parseInt(val));
+            } catch( NumberFormatException nfe) {
+                System.err.println("[ERROR] Could not parse " + key + " entry in YAML file. Using default");
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Boolean> booleanEntry(String key) {
+        if (yconfig.getAnalysis().containsKey(key)) {
+            String val = yconfig.getAnalysis().get(key);
+            return Optional.of(val.equalsIgnoreCase("true"));
+        }
+        return Optional.empty();
+    }
+
     boolean doTsv() {
         if (yconfig.getAnalysis().containsKey("tsv")) {
             String k = yconfig.getAnalysis().get("tsv");
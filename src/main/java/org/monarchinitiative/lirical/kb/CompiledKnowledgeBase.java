@@ -0,0 +1,413 @@
+package org.monarchinitiative.lirical.kb;
+
+import com.google.common.collect.*;
+import org.monarchinitiative.exomiser.core.genome.GenomeAssembly;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.phenol.formats.hpo.HpoAnnotation;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.formats.hpo.HpoOnset;
+import org.monarchinitiative.phenol.graph.IdLabeledEdge;
+import org.monarchinitiative.phenol.ontology.data.*;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.monarchinitiative.lirical.kb.KnowledgeBaseCompiler.*;
+
+/**
+ * A knowledge base that was written by {@link KnowledgeBaseCompiler} (see the {@code compile-kb} command). The
+ * file is memory-mapped, so that several LIRICAL processes on the same host share the pages of the operating
+ * system's file cache, and each section is only decoded when it is first needed. For instance, a phenotype-only
+ * analysis never decodes the gene section. The decoded objects are identical to those created by parsing
+ * {@code hp.obo}, {@code phenotype.hpoa}, and the gene files, including the iteration order of the disease maps
+ * (which determines the order of diseases with the same post-test probability). The methods of this class are
+ * thread-safe.
+ */
+public class CompiledKnowledgeBase {
+    private static final Logger logger = LoggerFactory.getLogger(CompiledKnowledgeBase.class);
+    /** Name of the compiled knowledge base in the LIRICAL data directory. */
+    public static final String DEFAULT_FILENAME = "lirical.kb";
+    /** Data files whose size and modification time are recorded, so that an outdated knowledge base is not used. */
+    public static final List<String> SOURCE_FILES =
+            ImmutableList.of("hp.obo", "phenotype.hpoa", "Homo_sapiens_gene_info.gz", "mim2gene_medgen");
+    /** Prefix of the metadata keys with the fingerprints of the {@link #SOURCE_FILES}. */
+    private static final String SOURCE_KEY = "source:";
+    /** Knowledge bases opened by this process. Key: path and fingerprint of the file. */
+    private static final Map<String, CompiledKnowledgeBase> openKnowledgeBases = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final ByteBuffer buffer;
+    /** Key: section type; value: offset and length of the section. */
+    private final Map<Integer, long[]> sections = new HashMap<>();
+    private final Map<String, String> metadata;
+
+    private TermId[] terms = null;
+    private Ontology ontology = null;
+    /** Key: comma-separated database prefixes; value: the corresponding disease map. */
+    private Map<String, Map<TermId, HpoDisease>> diseaseViews = null;
+    private Multimap<TermId, TermId> gene2diseaseMultimap = null;
+    private Multimap<TermId, TermId> disease2geneMultimap = null;
+    private Map<TermId, String> geneId2symbol = null;
+    private Map<String, Map<TermId, Double>> backgrounds = null;
+
+    private CompiledKnowledgeBase(File file) {
+        this.file = file;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            // the mapping remains valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            this.buffer = mapped.asReadOnlyBuffer();
+        } catch (IOException e) {
+            throw new LiricalRuntimeException("Could not open compiled knowledge base at " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+        if (buffer.remaining() < 12 || buffer.getInt(0) != MAGIC) {
+            throw new LiricalRuntimeException(file.getAbsolutePath() + " is not a compiled LIRICAL knowledge base");
+        }
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new LiricalRuntimeException(String.format("Compiled knowledge base %s has format version %d (expected %d), run compile-kb again",
+                    file.getAbsolutePath(), version, FORMAT_VERSION));
+        }
+        int n = buffer.getInt(8);
+        for (int i = 0; i < n; i++) {
+            int pos = 12 + 20 * i;
+            sections.put(buffer.getInt(pos), new long[]{buffer.getLong(pos + 4), buffer.getLong(pos + 12)});
+        }
+        ByteBuffer meta = section(SECTION_METADATA);
+        int m = meta.getInt();
+        ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder<>();
+        for (int i = 0; i < m; i++) {
+            builder.put(readString(meta), readString(meta));
+        }
+        this.metadata = builder.build();
+    }
+
+    /**
+     * @param file a compiled knowledge base
+     * @return the knowledge base; a file that was already opened by this process is not mapped again
+     */
+    public static CompiledKnowledgeBase open(File file) {
+        String key = file.getAbsolutePath() + "|" + fingerprint(file);
+        return openKnowledgeBases.computeIfAbsent(key, k -> new CompiledKnowledgeBase(file));
+    }
+
+    /**
+     * @param datadir the LIRICAL data directory
+     * @return the compiled knowledge base of the data directory, or an empty Optional if there is none or if it
+     * was compiled from other versions of the data files
+     */
+    public static Optional<CompiledKnowledgeBase> forDataDirectory(String datadir) {
+        File file = new File(datadir, DEFAULT_FILENAME);
+        if (! file.isFile()) {
+            return Optional.empty();
+        }
+        try {
+            CompiledKnowledgeBase kb = open(file);
+            if (! kb.isCurrent(datadir)) {
+                logger.warn("Ignoring {} because the data files have changed since it was compiled (run compile-kb again)",
+                        file.getAbsolutePath());
+                return Optional.empty();
+            }
+            logger.info("Using compiled knowledge base at {}", file.getAbsolutePath());
+            return Optional.of(kb);
+        } catch (LiricalRuntimeException e) {
+            logger.warn("Ignoring compiled knowledge base: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** @return a string with the size and modification time of a file, or "n/a" if the file does not exist. */
+    public static String fingerprint(File file) {
+        return file.exists() ? String.format("%d/%d", file.length(), file.lastModified()) : "n/a";
+    }
+
+    /** @return the metadata key under which the fingerprint of a source file is recorded. */
+    public static String sourceKey(String filename) {
+        return SOURCE_KEY + filename;
+    }
+
+    /**
+     * @param datadir the LIRICAL data directory
+     * @return true if all source files recorded in the metadata are unchanged
+     */
+    public boolean isCurrent(String datadir) {
+        for (Map.Entry<String, String> e : metadata.entrySet()) {
+            if (e.getKey().startsWith(SOURCE_KEY)) {
+                File source = new File(datadir, e.getKey().substring(SOURCE_KEY.length()));
+                if (! fingerprint(source).equals(e.getValue())) {
+                    logger.trace("{} has changed ({} vs. {})", source, fingerprint(source), e.getValue());
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    /** @return true if the knowledge base contains the gene to disease maps and the gene symbols. */
+    public boolean hasGenes() {
+        return sections.containsKey(SECTION_GENES);
+    }
+
+    private ByteBuffer section(int type) {
+        long[] location = sections.get(type);
+        if (location == null) {
+            throw new LiricalRuntimeException(String.format("Section %d not found in compiled knowledge base %s", type, file));
+        }
+        ByteBuffer section = buffer.duplicate();
+        section.position((int) location[0]);
+        section.limit((int) (location[0] + location[1]));
+        return section.slice();
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private TermId[] terms() {
+        if (terms == null) {
+            ByteBuffer buf = section(SECTION_TERMS);
+            TermId[] array = new TermId[buf.getInt()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = TermId.of(readString(buf));
+            }
+            terms = array;
+        }
+        return terms;
+    }
+
+    private List<TermId> readTermList(ByteBuffer buf, TermId[] ids) {
+        int n = buf.getInt();
+        ImmutableList.Builder<TermId> builder = ImmutableList.builder();
+        for (int i = 0; i < n; i++) {
+            builder.add(ids[buf.getInt()]);
+        }
+        return builder.build();
+    }
+
+    /** @return the HPO ontology */
+    public synchronized Ontology ontology() {
+        if (ontology != null) {
+            return ontology;
+        }
+        TermId[] ids = terms();
+        ByteBuffer buf = section(SECTION_ONTOLOGY);
+        int nMeta = buf.getInt();
+        ImmutableSortedMap.Builder<String, String> meta = ImmutableSortedMap.naturalOrder();
+        for (int i = 0; i < nMeta; i++) {
+            meta.put(readString(buf), readString(buf));
+        }
+        TermId root = ids[buf.getInt()];
+        Term[] termObjects = new Term[buf.getInt()];
+        for (int i = 0; i < termObjects.length; i++) {
+            TermId id = ids[buf.getInt()];
+            String name = readString(buf);
+            String definition = readString(buf);
+            boolean obsolete = buf.get() != 0;
+            List<TermId> altIds = readTermList(buf, ids);
+            termObjects[i] = Term.builder()
+                    .id(id)
+                    .name(name)
+                    .definition(definition)
+                    .obsolete(obsolete)
+                    .altTermIds(altIds)
+                    .build();
+        }
+        int nTermMap = buf.getInt();
+        ImmutableMap.Builder<TermId, Term> termMap = ImmutableMap.builder();
+        for (int i = 0; i < nTermMap; i++) {
+            termMap.put(ids[buf.getInt()], termObjects[buf.getInt()]);
+        }
+        List<TermId> nonObsolete = readTermList(buf, ids);
+        List<TermId> obsolete = readTermList(buf, ids);
+        DefaultDirectedGraph<TermId, IdLabeledEdge> graph = new DefaultDirectedGraph<>(IdLabeledEdge.class);
+        for (TermId vertex : readTermList(buf, ids)) {
+            graph.addVertex(vertex);
+        }
+        int nEdges = buf.getInt();
+        for (int i = 0; i < nEdges; i++) {
+            TermId source = ids[buf.getInt()];
+            TermId target = ids[buf.getInt()];
+            graph.addEdge(source, target, new IdLabeledEdge(buf.getInt()));
+        }
+        int nRelations = buf.getInt();
+        RelationshipType[] types = RelationshipType.values();
+        ImmutableMap.Builder<Integer, Relationship> relations = ImmutableMap.builder();
+        for (int i = 0; i < nRelations; i++) {
+            int key = buf.getInt();
+            TermId source = ids[buf.getInt()];
+            TermId target = ids[buf.getInt()];
+            int id = buf.getInt();
+            relations.put(key, new Relationship(source, target, id, types[buf.getInt()]));
+        }
+        ontology = new ImmutableOntology(meta.build(), graph, root, nonObsolete, obsolete, termMap.build(), relations.build());
+        return ontology;
+    }
+
+    private void decodeDiseases() {
+        TermId[] ids = terms();
+        ByteBuffer buf = section(SECTION_DISEASES);
+        HpoOnset[] onsets = HpoOnset.values();
+        HpoDisease[] diseases = new HpoDisease[buf.getInt()];
+        for (int i = 0; i < diseases.length; i++) {
+            TermId diseaseId = ids[buf.getInt()];
+            String name = readString(buf);
+            int nAnnotations = buf.getInt();
+            List<HpoAnnotation> annotations = new ArrayList<>(nAnnotations);
+            for (int j = 0; j < nAnnotations; j++) {
+                TermId tid = ids[buf.getInt()];
+                double frequency = buf.getDouble();
+                String frequencyString = readString(buf);
+                int onset = buf.getInt();
+                List<TermId> modifiers = readTermList(buf, ids);
+                int nCitations = buf.getInt();
+                List<String> citations = new ArrayList<>(nCitations);
+                for (int k = 0; k < nCitations; k++) {
+                    citations.add(readString(buf));
+                }
+                annotations.add(new HpoAnnotation(tid, frequency, frequencyString,
+                        onset >= 0 ? onsets[onset] : null, modifiers, citations));
+            }
+            List<TermId> modesOfInheritance = readTermList(buf, ids);
+            List<TermId> negated = readTermList(buf, ids);
+            List<TermId> clinicalModifiers = readTermList(buf, ids);
+            List<TermId> clinicalCourse = readTermList(buf, ids);
+            diseases[i] = new HpoDisease(name, diseaseId, annotations, modesOfInheritance, negated, clinicalModifiers, clinicalCourse);
+        }
+        int nViews = buf.getInt();
+        Map<String, Map<TermId, HpoDisease>> views = new HashMap<>();
+        for (int i = 0; i < nViews; i++) {
+            String prefixes = readString(buf);
+            int n = buf.getInt();
+            Map<TermId, HpoDisease> view = new LinkedHashMap<>();
+            for (int j = 0; j < n; j++) {
+                TermId key = ids[buf.getInt()];
+                view.put(key, diseases[buf.getInt()]);
+            }
+            views.put(prefixes, view);
+        }
+        diseaseViews = views;
+    }
+
+    /**
+     * @param prefixes database prefixes, e.g., OMIM and DECIPHER
+     * @return a new map with the diseases of these databases, or an empty Optional if the knowledge base was
+     * compiled without them
+     */
+    public synchronized Optional<Map<TermId, HpoDisease>> diseaseMap(List<String> prefixes) {
+        if (diseaseViews == null) {
+            decodeDiseases();
+        }
+        Map<TermId, HpoDisease> view = diseaseViews.get(String.join(",", prefixes));
+        return view == null ? Optional.empty() : Optional.of(new LinkedHashMap<>(view));
+    }
+
+    private void decodeGenes() {
+        ByteBuffer buf = section(SECTION_GENES);
+        TermId[] ids = new TermId[buf.getInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = TermId.of(readString(buf));
+        }
+        int nSymbols = buf.getInt();
+        Map<TermId, String> symbols = new HashMap<>();
+        for (int i = 0; i < nSymbols; i++) {
+            TermId geneId = ids[buf.getInt()];
+            symbols.put(geneId, readString(buf));
+        }
+        List<Multimap<TermId, TermId>> multimaps = new ArrayList<>();
+        for (int m = 0; m < 2; m++) {
+            int nKeys = buf.getInt();
+            int[] keys = new int[nKeys];
+            int[] offsets = new int[nKeys + 1];
+            for (int i = 0; i < nKeys; i++) {
+                keys[i] = buf.getInt();
+                offsets[i] = buf.getInt();
+            }
+            offsets[nKeys] = buf.getInt();
+            ImmutableListMultimap.Builder<TermId, TermId> builder = ImmutableListMultimap.builder();
+            for (int i = 0; i < nKeys; i++) {
+                for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                    builder.put(ids[keys[i]], ids[buf.getInt()]);
+                }
+            }
+            multimaps.add(builder.build());
+        }
+        geneId2symbol = symbols;
+        gene2diseaseMultimap = multimaps.get(0);
+        disease2geneMultimap = multimaps.get(1);
+    }
+
+    private void checkGenes() {
+        if (! hasGenes()) {
+            throw new LiricalRuntimeException("Compiled knowledge base " + file + " does not contain gene data");
+        }
+        if (geneId2symbol == null) {
+            decodeGenes();
+        }
+    }
+
+    /** @return a multimap with key: a gene CURIE such as NCBIGene:123; value: the associated disease CURIEs */
+    public synchronized Multimap<TermId, TermId> gene2diseaseMultimap() {
+        checkGenes();
+        return gene2diseaseMultimap;
+    }
+
+    /** @return a multimap with key: a disease CURIE such as OMIM:600123; value: the associated gene CURIEs */
+    public synchronized Multimap<TermId, TermId> disease2geneMultimap() {
+        checkGenes();
+        return disease2geneMultimap;
+    }
+
+    /** @return a map with key: a gene id, e.g., NCBIGene:2020; value: the corresponding gene symbol. */
+    public synchronized Map<TermId, String> geneId2symbolMap() {
+        checkGenes();
+        return geneId2symbol;
+    }
+
+    /**
+     * @param assembly a genome assembly
+     * @return a new map with the background frequencies of the genes for this assembly, or an empty Optional
+     */
+    public synchronized Optional<Map<TermId, Double>> backgroundFrequencies(GenomeAssembly assembly) {
+        if (backgrounds == null) {
+            ByteBuffer buf = section(SECTION_BACKGROUND);
+            int n = buf.getInt();
+            Map<String, Map<TermId, Double>> map = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                String name = readString(buf);
+                int nGenes = buf.getInt();
+                Map<TermId, Double> gene2freq = new HashMap<>();
+                for (int j = 0; j < nGenes; j++) {
+                    TermId geneId = TermId.of(readString(buf));
+                    gene2freq.put(geneId, buf.getDouble());
+                }
+                map.put(name, gene2freq);
+            }
+            backgrounds = map;
+        }
+        Map<TermId, Double> gene2freq = backgrounds.get(assembly.name());
+        return gene2freq == null ? Optional.empty() : Optional.of(new HashMap<>(gene2freq));
+    }
+}
@@ -0,0 +1,351 @@
+package org.monarchinitiative.lirical.kb;
+
+import com.google.common.collect.Multimap;
+import org.monarchinitiative.exomiser.core.genome.GenomeAssembly;
+import org.monarchinitiative.phenol.formats.hpo.HpoAnnotation;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.graph.IdLabeledEdge;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.Relationship;
+import org.monarchinitiative.phenol.ontology.data.Term;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Write the LIRICAL knowledge base (HPO, disease annotations, gene to disease maps, and background frequencies)
+ * to one binary file that can be opened with {@link CompiledKnowledgeBase}. The file consists of a header with
+ * the offsets of the sections followed by the sections themselves. All HPO terms and diseases are stored once in
+ * the terms section and are referred to by their index in the other sections; the gene section has its own table
+ * of ids, so that phenotype-only analyses do not need to decode it.
+ */
+public class KnowledgeBaseCompiler {
+    private static final Logger logger = LoggerFactory.getLogger(KnowledgeBaseCompiler.class);
+    /** The first four bytes of a compiled knowledge base ("LKB1"). */
+    static final int MAGIC = 0x4C4B4231;
+    /** Version of the file format. Files with another version are not opened. */
+    static final int FORMAT_VERSION = 1;
+
+    static final int SECTION_METADATA = 1;
+    static final int SECTION_TERMS = 2;
+    static final int SECTION_ONTOLOGY = 3;
+    static final int SECTION_DISEASES = 4;
+    static final int SECTION_GENES = 5;
+    static final int SECTION_BACKGROUND = 6;
+
+    private final Ontology ontology;
+    /** Key: comma-separated database prefixes, e.g., OMIM,DECIPHER; value: the corresponding disease map. */
+    private final Map<String, Map<TermId, HpoDisease>> diseaseViews = new LinkedHashMap<>();
+    private Multimap<TermId, TermId> gene2diseaseMultimap = null;
+    private Multimap<TermId, TermId> disease2geneMultimap = null;
+    private Map<TermId, String> geneId2symbol = null;
+    /** Key: name of a genome assembly, e.g., HG38; value: background frequencies of the genes. */
+    private final Map<String, Map<TermId, Double>> backgrounds = new LinkedHashMap<>();
+    private final Map<String, String> metadata = new LinkedHashMap<>();
+    /** Key: a TermId; value: its index in the terms section. */
+    private final Map<TermId, Integer> termIndex = new LinkedHashMap<>();
+
+    public KnowledgeBaseCompiler(Ontology ontology) {
+        this.ontology = ontology;
+    }
+
+    /**
+     * @param prefixes the database prefixes used to create the disease map, e.g., OMIM and DECIPHER
+     * @param diseaseMap the disease map that {@code HpoDiseaseAnnotationParser} creates for these prefixes
+     */
+    public KnowledgeBaseCompiler diseases(List<String> prefixes, Map<TermId, HpoDisease> diseaseMap) {
+        diseaseViews.put(String.join(",", prefixes), diseaseMap);
+        return this;
+    }
+
+    public KnowledgeBaseCompiler genes(Multimap<TermId, TermId> gene2disease,
+                                       Multimap<TermId, TermId> disease2gene,
+                                       Map<TermId, String> geneId2symbol) {
+        this.gene2diseaseMultimap = gene2disease;
+        this.disease2geneMultimap = disease2gene;
+        this.geneId2symbol = geneId2symbol;
+        return this;
+    }
+
+    public KnowledgeBaseCompiler background(GenomeAssembly assembly, Map<TermId, Double> gene2frequency) {
+        backgrounds.put(assembly.name(), gene2frequency);
+        return this;
+    }
+
+    public KnowledgeBaseCompiler metadata(String key, String value) {
+        metadata.put(key, value);
+        return this;
+    }
+
+    /**
+     * Write the compiled knowledge base. The file is first written to a temporary file in the same directory
+     * and then renamed, so that other processes never see a partially written file.
+     * @param file the output file
+     */
+    public void write(File file) throws IOException {
+        metadata.put("formatVersion", String.valueOf(FORMAT_VERSION));
+        metadata.put("created", new Date().toString());
+        Map<Integer, byte[]> sections = new LinkedHashMap<>();
+        // the ontology and disease sections add the ids they use to the term index, so they are encoded first
+        byte[] ontologySection = encodeOntology();
+        byte[] diseaseSection = encodeDiseases();
+        sections.put(SECTION_METADATA, encodeMetadata());
+        sections.put(SECTION_TERMS, encodeTerms());
+        sections.put(SECTION_ONTOLOGY, ontologySection);
+        sections.put(SECTION_DISEASES, diseaseSection);
+        if (gene2diseaseMultimap != null) {
+            sections.put(SECTION_GENES, encodeGenes());
+        }
+        sections.put(SECTION_BACKGROUND, encodeBackground());
+
+        File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sections.size());
+            long offset = 12L + sections.size() * 20L;
+            for (Map.Entry<Integer, byte[]> e : sections.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeLong(offset);
+                out.writeLong(e.getValue().length);
+                offset += e.getValue().length;
+            }
+            for (byte[] section : sections.values()) {
+                out.write(section);
+            }
+        }
+        if (file.exists() && ! file.delete()) {
+            throw new IOException("Could not replace " + file.getAbsolutePath());
+        }
+        if (! tmp.renameTo(file)) {
+            throw new IOException("Could not rename " + tmp.getAbsolutePath() + " to " + file.getAbsolutePath());
+        }
+        logger.info("Wrote compiled knowledge base with {} terms and ids to {} ({} bytes)",
+                termIndex.size(), file.getAbsolutePath(), file.length());
+    }
+
+    private int index(TermId tid) {
+        Integer i = termIndex.get(tid);
+        if (i == null) {
+            i = termIndex.size();
+            termIndex.put(tid, i);
+        }
+        return i;
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private void writeTermList(DataOutputStream out, Collection<TermId> terms) throws IOException {
+        out.writeInt(terms.size());
+        for (TermId tid : terms) {
+            out.writeInt(index(tid));
+        }
+    }
+
+    private byte[] encodeMetadata() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(metadata.size());
+            for (Map.Entry<String, String> e : metadata.entrySet()) {
+                writeString(out, e.getKey());
+                writeString(out, e.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] encodeTerms() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(termIndex.size());
+            for (TermId tid : termIndex.keySet()) {
+                writeString(out, tid.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode the ontology such that {@link CompiledKnowledgeBase} can recreate an identical
+     * {@link org.monarchinitiative.phenol.ontology.data.ImmutableOntology}, including the iteration order of the
+     * term map and of the graph. Only the attributes of the terms used by LIRICAL (id, name, definition, alternative
+     * ids, and obsolete flag) are kept.
+     */
+    private byte[] encodeOntology() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Map<String, String> meta = ontology.getMetaInfo();
+            out.writeInt(meta.size());
+            for (Map.Entry<String, String> e : meta.entrySet()) {
+                writeString(out, e.getKey());
+                writeString(out, e.getValue());
+            }
+            out.writeInt(index(ontology.getRootTermId()));
+            // several keys of the term map (the alternative ids) point to the same term
+            Map<Term, Integer> termObjects = new IdentityHashMap<>();
+            List<Term> terms = new ArrayList<>();
+            for (Term term : ontology.getTermMap().values()) {
+                if (! termObjects.containsKey(term)) {
+                    termObjects.put(term, terms.size());
+                    terms.add(term);
+                }
+            }
+            out.writeInt(terms.size());
+            for (Term term : terms) {
+                out.writeInt(index(term.getId()));
+                writeString(out, term.getName());
+                writeString(out, term.getDefinition());
+                out.writeBoolean(term.isObsolete());
+                writeTermList(out, term.getAltTermIds());
+            }
+            out.writeInt(ontology.getTermMap().size());
+            for (Map.Entry<TermId, Term> e : ontology.getTermMap().entrySet()) {
+                out.writeInt(index(e.getKey()));
+                out.writeInt(termObjects.get(e.getValue()));
+            }
+            writeTermList(out, ontology.getNonObsoleteTermIds());
+            writeTermList(out, ontology.getObsoleteTermIds());
+            writeTermList(out, ontology.getGraph().vertexSet());
+            Set<IdLabeledEdge> edges = ontology.getGraph().edgeSet();
+            out.writeInt(edges.size());
+            for (IdLabeledEdge edge : edges) {
+                out.writeInt(index(ontology.getGraph().getEdgeSource(edge)));
+                out.writeInt(index(ontology.getGraph().getEdgeTarget(edge)));
+                out.writeInt(edge.getId());
+            }
+            Map<Integer, Relationship> relations = ontology.getRelationMap();
+            out.writeInt(relations.size());
+            for (Map.Entry<Integer, Relationship> e : relations.entrySet()) {
+                Relationship r = e.getValue();
+                out.writeInt(e.getKey());
+                out.writeInt(index(r.getSource()));
+                out.writeInt(index(r.getTarget()));
+                out.writeInt(r.getId());
+                out.writeInt(r.getRelationshipType().ordinal());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode each disease once, followed by the order of the diseases in each disease map. The order is kept
+     * because the ranks of diseases with the same post-test probability depend on it.
+     */
+    private byte[] encodeDiseases() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Map<TermId, Integer> diseaseIndex = new LinkedHashMap<>();
+            List<HpoDisease> diseases = new ArrayList<>();
+            for (Map<TermId, HpoDisease> view : diseaseViews.values()) {
+                for (HpoDisease disease : view.values()) {
+                    if (! diseaseIndex.containsKey(disease.getDiseaseDatabaseId())) {
+                        diseaseIndex.put(disease.getDiseaseDatabaseId(), diseases.size());
+                        diseases.add(disease);
+                    }
+                }
+            }
+            out.writeInt(diseases.size());
+            for (HpoDisease disease : diseases) {
+                out.writeInt(index(disease.getDiseaseDatabaseId()));
+                writeString(out, disease.getName());
+                List<HpoAnnotation> annotations = disease.getPhenotypicAbnormalities();
+                out.writeInt(annotations.size());
+                for (HpoAnnotation annotation : annotations) {
+                    out.writeInt(index(annotation.getTermId()));
+                    out.writeDouble(annotation.getFrequency());
+                    writeString(out, annotation.getFrequencyString());
+                    out.writeInt(annotation.getOnset() != null ? annotation.getOnset().ordinal() : -1);
+                    writeTermList(out, annotation.getModifiers());
+                    List<String> citations = annotation.getCitations();
+                    out.writeInt(citations.size());
+                    for (String citation : citations) {
+                        writeString(out, citation);
+                    }
+                }
+                writeTermList(out, disease.getModesOfInheritance());
+                writeTermList(out, disease.getNegativeAnnotations());
+                writeTermList(out, disease.getClinicalModifiers());
+                writeTermList(out, disease.getClinicalCourseList());
+            }
+            out.writeInt(diseaseViews.size());
+            for (Map.Entry<String, Map<TermId, HpoDisease>> e : diseaseViews.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeInt(e.getValue().size());
+                for (Map.Entry<TermId, HpoDisease> d : e.getValue().entrySet()) {
+                    out.writeInt(index(d.getKey()));
+                    out.writeInt(diseaseIndex.get(d.getValue().getDiseaseDatabaseId()));
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode the gene symbols and the gene to disease multimaps. Each multimap is stored in compressed sparse
+     * row format, i.e., an array of keys, an array of offsets into the array of values, and the array of values.
+     */
+    private byte[] encodeGenes() throws IOException {
+        Map<TermId, Integer> localIndex = new LinkedHashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            out.writeInt(geneId2symbol.size());
+            for (Map.Entry<TermId, String> e : geneId2symbol.entrySet()) {
+                out.writeInt(localIndex.computeIfAbsent(e.getKey(), k -> localIndex.size()));
+                writeString(out, e.getValue());
+            }
+            for (Multimap<TermId, TermId> multimap : Arrays.asList(gene2diseaseMultimap, disease2geneMultimap)) {
+                Set<TermId> keys = multimap.keySet();
+                out.writeInt(keys.size());
+                int offset = 0;
+                for (TermId key : keys) {
+                    out.writeInt(localIndex.computeIfAbsent(key, k -> localIndex.size()));
+                    out.writeInt(offset);
+                    offset += multimap.get(key).size();
+                }
+                out.writeInt(offset);
+                for (TermId key : keys) {
+                    for (TermId value : multimap.get(key)) {
+                        out.writeInt(localIndex.computeIfAbsent(value, k -> localIndex.size()));
+                    }
+                }
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(localIndex.size());
+            for (TermId tid : localIndex.keySet()) {
+                writeString(out, tid.getValue());
+            }
+            body.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] encodeBackground() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(backgrounds.size());
+            for (Map.Entry<String, Map<TermId, Double>> e : backgrounds.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeInt(e.getValue().size());
+                for (Map.Entry<TermId, Double> g : e.getValue().entrySet()) {
+                    writeString(out, g.getKey().getValue());
+                    out.writeDouble(g.getValue());
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Classes for writing and reading a compiled LIRICAL knowledge base, i.e., a binary file with the HPO, the disease
+ * annotations, the gene to disease maps, and the background frequencies that is created with the
+ * {@code compile-kb} command and memory-mapped at startup.
+ */
+package org.monarchinitiative.lirical.kb;
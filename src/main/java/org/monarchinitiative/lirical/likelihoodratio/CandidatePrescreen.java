@@ -0,0 +1,123 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import com.google.common.collect.ImmutableList;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * A cheap score that is used to choose the diseases for which the exact likelihood ratios are calculated. For each
+ * query term, a disease scores the information content of the most informative term that the query term and its
+ * ancestors have in common with the annotation closure of the disease (the terms of the disease and all of their
+ * ancestors); the score of the disease is the sum over the query terms. The information content of a term is
+ * {@code -log(p)}, where {@code p} is the proportion of diseases whose closure contains the term, so that general
+ * terms such as Phenotypic abnormality contribute almost nothing. This follows the likelihood ratio of a query term,
+ * which is mostly determined by the background frequency of the closest matching term of the disease.
+ * <p>
+ * The closures are stored as an inverted index (for each term, the diseases whose closure contains it), so that the
+ * score of all diseases is one pass over the postings of the ancestors of the query terms. Excluded terms are not
+ * used.
+ */
+public class CandidatePrescreen {
+    private static final Logger logger = LoggerFactory.getLogger(CandidatePrescreen.class);
+
+    private final Ontology ontology;
+    private final List<TermId> diseaseIds;
+    /** Key: an HPO term; value: the diseases whose annotation closure contains the term (indices into diseaseIds). */
+    private final Map<TermId, int[]> postings;
+    /** Key: an HPO term; value: its information content. */
+    private final Map<TermId, Double> informationContent;
+
+    /**
+     * @param ontology the HPO ontology
+     * @param diseaseMap the diseases that are screened
+     */
+    public CandidatePrescreen(Ontology ontology, Map<TermId, HpoDisease> diseaseMap) {
+        long start = System.currentTimeMillis();
+        this.ontology = ontology;
+        this.diseaseIds = ImmutableList.copyOf(diseaseMap.keySet());
+        Map<TermId, List<Integer>> diseasesOfTerm = new HashMap<>();
+        for (int d = 0; d < diseaseIds.size(); d++) {
+            HpoDisease disease = diseaseMap.get(diseaseIds.get(d));
+            for (TermId tid : ontology.getAllAncestorTermIds(disease.getPhenotypicAbnormalityTermIdList(), true)) {
+                diseasesOfTerm.computeIfAbsent(tid, k -> new ArrayList<>()).add(d);
+            }
+        }
+        this.postings = new HashMap<>();
+        this.informationContent = new HashMap<>();
+        double n = diseaseIds.size();
+        for (Map.Entry<TermId, List<Integer>> e : diseasesOfTerm.entrySet()) {
+            List<Integer> diseases = e.getValue();
+            int[] array = new int[diseases.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = diseases.get(i);
+            }
+            postings.put(e.getKey(), array);
+            informationContent.put(e.getKey(), -Math.log(array.length / n));
+        }
+        logger.info("Built candidate prescreen of {} diseases and {} terms in {} ms", diseaseIds.size(),
+                postings.size(), System.currentTimeMillis() - start);
+    }
+
+    /** @return the ids of the diseases, in the order of {@link #score(List)} */
+    public List<TermId> getDiseaseIds() {
+        return diseaseIds;
+    }
+
+    /**
+     * @param observed the observed HPO terms of a case
+     * @return the prescreen score of each disease, in the order of {@link #getDiseaseIds()}
+     */
+    public double[] score(List<TermId> observed) {
+        int n = diseaseIds.size();
+        double[] score = new double[n];
+        double[] best = new double[n];
+        for (TermId query : observed) {
+            Arrays.fill(best, 0.0);
+            for (TermId tid : ontology.getAncestorTermIds(query, true)) {
+                int[] diseases = postings.get(tid);
+                if (diseases == null) {
+                    continue;
+                }
+                double ic = informationContent.get(tid);
+                for (int d : diseases) {
+                    if (ic > best[d]) {
+                        best[d] = ic;
+                    }
+                }
+            }
+            for (int d = 0; d < n; d++) {
+                score[d] += best[d];
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Choose the diseases with the best prescreen scores. All diseases that are tied with the last one are included,
+     * so that the shortlist does not depend on the order of the diseases.
+     * @param observed the observed HPO terms of a case
+     * @param size number of diseases to choose
+     * @return the ids of the chosen diseases
+     */
+    public Set<TermId> shortlist(List<TermId> observed, int size) {
+        if (size >= diseaseIds.size()) {
+            return new HashSet<>(diseaseIds);
+        }
+        double[] score = score(observed);
+        double[] sorted = score.clone();
+        Arrays.sort(sorted);
+        double threshold = sorted[sorted.length - Math.max(1, size)];
+        Set<TermId> chosen = new HashSet<>();
+        for (int d = 0; d < score.length; d++) {
+            if (score[d] >= threshold) {
+                chosen.add(diseaseIds.get(d));
+            }
+        }
+        return chosen;
+    }
+}
@@ -7,6 +7,7 @@ import com.google.common.collect.Multimap;
 import org.monarchinitiative.lirical.analysis.Gene2Genotype;
 import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
 import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.lirical.metrics.Metrics;
 import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.TermId;
@@ -14,10 +15,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Likelihood ratio evaluator. This class coordinates the performance of the likelihood ratio test
  * and returns one {@link HpoCase} object with the results by the method {@link #evaluate()}.
+ * The evaluation has two stages. The phenotype stage calculates the phenotype likelihood ratios of all diseases,
+ * which do not depend on the VCF file, and the genotype stage combines them with the genotype likelihood ratios.
+ * If the evaluator is built with a pending genotype map (see {@link Builder#pendingGenotypeMap(Future)}), the
+ * phenotype stage runs while the VCF file is still being annotated, and the genotype stage waits for the annotation.
  *
  * @author <a href="mailto:peter.robinson@jax.org">Peter Robinson</a>
  */
@@ -32,7 +39,11 @@ public class CaseEvaluator {
      * Map of the observed genotypes in the VCF file. Key is an EntrezGene is, and the value is the average pathogenicity score times the
      * count of all variants in the pathogenic bin.
      */
-    private final Map<TermId, Gene2Genotype> genotypeMap;
+    private Map<TermId, Gene2Genotype> genotypeMap;
+    /**
+     * Genotype map that is still being calculated (e.g., by annotating a VCF file in another thread), or null.
+     */
+    private final Future<Map<TermId, Gene2Genotype>> pendingGenotypeMap;
     /**
      * key: a disease CURIE, e.g., OMIM:600100; value-corresponding disease object.
      */
@@ -73,6 +84,17 @@ public class CaseEvaluator {
     private Map<TermId, String> geneId2symbol;
     private List<LrWithExplanation> currentPhenotypeExplanation;
     private List<String> errors;
+    /** Timers and counters of the analysis (set by the {@link Builder}). */
+    private Metrics metrics = Metrics.DISABLED;
+    /** Inverted index for the term-major calculation of the ranks (null: disease by disease). */
+    private PhenotypeIndex phenotypeIndex = null;
+    /** Products of the observed and excluded likelihood ratios, in the order of {@link PhenotypeIndex#getDiseaseIds()}. */
+    private double[] observedProducts = null;
+    private double[] excludedProducts = null;
+    /** Prescreen that chooses the diseases that are evaluated by {@link #evaluate()} (null: all diseases). */
+    private CandidatePrescreen prescreen = null;
+    /** Number of diseases chosen by the {@link #prescreen}. */
+    private int shortlistSize = 0;
 
     /**
      * This constructor is used for phenotype-only cases.
@@ -93,6 +115,7 @@ public class CaseEvaluator {
         this.diseaseMap = diseaseMap;
         this.phenotypeLRevaluator = phenotypeLrEvaluator;
         this.genotypeMap = ImmutableMap.of();
+        this.pendingGenotypeMap = null;
         this.disease2geneMultimap = ImmutableMultimap.of();
         this.genotypeLrEvalutator = null;
         // For now, assume equal pretest probabilities
@@ -118,7 +141,8 @@ public class CaseEvaluator {
      * @param disease2geneMultimap map from disease id to the corresponding gene symbols
      * @param phenotypeLrEvaluator reference to object that evaluates the phenotype LR
      * @param genotypeLrEvalutator reference to object that evaluates the genotype LR
-     * @param genotypeMap          Map of gene symbol to genotype evaluations
+     * @param genotypeMap          Map of gene symbol to genotype evaluations (may be null if pendingGenotypeMap is given)
+     * @param pendingGenotypeMap   genotype map that is still being calculated, or null
      * @param keep                 if true, do not discard candidates if they do not have a candidate variant
      */
     private CaseEvaluator(List<TermId> hpoTerms,
@@ -129,6 +153,7 @@ public class CaseEvaluator {
                           PhenotypeLikelihoodRatio phenotypeLrEvaluator,
                           GenotypeLikelihoodRatio genotypeLrEvalutator,
                           Map<TermId, Gene2Genotype> genotypeMap,
+                          Future<Map<TermId, Gene2Genotype>> pendingGenotypeMap,
                           boolean keep,
                           Map<TermId, String> geneId2symbol) {
         this.phenotypicAbnormalities = hpoTerms;
@@ -148,6 +173,7 @@ public class CaseEvaluator {
             pretestProbabilityMap.put(tid, prob);
         }
         this.genotypeMap = genotypeMap;
+        this.pendingGenotypeMap = pendingGenotypeMap;
         this.useGenotypeAnalysis = true;
         this.errors = new ArrayList<>();
     }
@@ -197,16 +223,101 @@ public class CaseEvaluator {
      *
      * @return map with key=disease idea and value=corresponding {@link TestResult}
      */
-    private Map<TermId, TestResult> phenotypeOnlyEvaluation() {
+    private Map<TermId, TestResult> phenotypeOnlyEvaluation(Map<TermId, PhenotypeEvidence> phenotypeEvidence) {
         ImmutableMap.Builder<TermId, TestResult> mapbuilder = new ImmutableMap.Builder<>();
         for (TermId diseaseId : diseaseMap.keySet()) {
-            this.currentPhenotypeExplanation = new ArrayList<>();
-            Optional<TestResult> opt = evaluateDiseasePhenotypeOnly(diseaseId);
+            PhenotypeEvidence pe = phenotypeEvidence.get(diseaseId);
+            if (pe == null) {
+                continue; // not chosen by the prescreen
+            }
+            Optional<TestResult> opt = evaluateDiseasePhenotypeOnly(diseaseId, pe);
             opt.ifPresent(testResult -> mapbuilder.put(diseaseId, testResult));
         }
         return mapbuilder.build();
     }
 
+    /**
+     * The phenotype likelihood ratios of one disease together with their explanation. These do not depend on the
+     * genotypes, so they can be calculated before the VCF file has been annotated.
+     */
+    private static class PhenotypeEvidence {
+        private final List<Double> observedLR;
+        private final List<Double> excludedLR;
+        private final String explanation;
+
+        PhenotypeEvidence(List<Double> observedLR, List<Double> excludedLR, String explanation) {
+            this.observedLR = observedLR;
+            this.excludedLR = excludedLR;
+            this.explanation = explanation;
+        }
+    }
+
+    /**
+     * The phenotype stage of the evaluation.
+     * @param candidates the diseases that are evaluated
+     * @return map with key=disease id and value=the phenotype likelihood ratios of the disease (in the order of {@link #diseaseMap})
+     */
+    private Map<TermId, PhenotypeEvidence> phenotypeStage(Set<TermId> candidates) {
+        Map<TermId, PhenotypeEvidence> evidence = new LinkedHashMap<>();
+        for (TermId diseaseId : diseaseMap.keySet()) {
+            if (candidates == null || candidates.contains(diseaseId)) {
+                evidence.put(diseaseId, phenotypeEvidence(diseaseId));
+            }
+        }
+        return evidence;
+    }
+
+    private PhenotypeEvidence phenotypeEvidence(TermId diseaseId) {
+        this.currentPhenotypeExplanation = new ArrayList<>();
+        List<Double> observedLR = observedPhenotypesLikelihoodRatios(diseaseId);
+        List<Double> excludedLR = excludedPhenotypesLikelihoodRatios(diseaseId);
+        return new PhenotypeEvidence(observedLR, excludedLR, getPhenotypeExplanation());
+    }
+
+    /**
+     * Add the phenotype evidence of the diseases that were not chosen by the prescreen but have a predicted
+     * pathogenic or ClinVar pathogenic variant in an associated gene, so that a strong genotype is never missed.
+     * @return number of diseases that were added
+     */
+    private int addDiseasesWithPathogenicVariants(Map<TermId, PhenotypeEvidence> evidence) {
+        int added = 0;
+        for (TermId diseaseId : diseaseMap.keySet()) {
+            if (evidence.containsKey(diseaseId)) {
+                continue;
+            }
+            for (TermId geneId : disease2geneMultimap.get(diseaseId)) {
+                Gene2Genotype g2g = this.genotypeMap.getOrDefault(geneId, Gene2Genotype.NO_IDENTIFIED_VARIANT);
+                if (g2g.hasPathogenicClinvarVar() || g2g.hasPredictedPathogenicVar()) {
+                    evidence.put(diseaseId, phenotypeEvidence(diseaseId));
+                    added++;
+                    break;
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Wait for the {@link #pendingGenotypeMap}, if any. This is where the genotype stage joins the annotation of the
+     * VCF file.
+     */
+    private void awaitGenotypes() {
+        if (this.genotypeMap != null || this.pendingGenotypeMap == null) {
+            return;
+        }
+        try {
+            this.genotypeMap = pendingGenotypeMap.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LiricalRuntimeException("Interrupted while waiting for the genotypes");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LiricalRuntimeException) {
+                throw (LiricalRuntimeException) e.getCause();
+            }
+            throw new LiricalRuntimeException("Could not calculate the genotypes: " + e.getCause().getMessage());
+        }
+    }
+
 
     /**
      * This method calculates the likelihood ratio based only on phenotype. It is inteded to be used
@@ -214,16 +325,14 @@ public class CaseEvaluator {
      * with some user settings some differentials will be skipped.
      *
      * @param diseaseId The disease being tested
+     * @param pe the phenotype likelihood ratios of the disease
      * @return The corresponding TestResult.
      */
-    private Optional<TestResult> evaluateDiseasePhenotypeOnly(TermId diseaseId) {
+    private Optional<TestResult> evaluateDiseasePhenotypeOnly(TermId diseaseId, PhenotypeEvidence pe) {
         HpoDisease disease = this.diseaseMap.get(diseaseId);
         double pretest = pretestProbabilityMap.get(diseaseId);
-        List<Double> observedLR = observedPhenotypesLikelihoodRatios(diseaseId);
-        List<Double> excludedLR = excludedPhenotypesLikelihoodRatios(diseaseId);
-        TestResult result = new TestResult(observedLR, excludedLR, disease, pretest);
-        String phenoExp = getPhenotypeExplanation();
-        result.setPhenotypeExplanation(phenoExp);
+        TestResult result = new TestResult(pe.observedLR, pe.excludedLR, disease, pretest);
+        result.setPhenotypeExplanation(pe.explanation);
         return Optional.of(result);
     }
 
@@ -235,13 +344,14 @@ public class CaseEvaluator {
      * in the exome/genome VCF file.
      *
      * @param diseaseId The disease being tested
+     * @param pe the phenotype likelihood ratios of the disease
      * @return The corresponding TestResult.
      */
-    private Optional<TestResult> evaluateDiseaseKeepingAllCandidates(TermId diseaseId) {
+    private Optional<TestResult> evaluateDiseaseKeepingAllCandidates(TermId diseaseId, PhenotypeEvidence pe) {
         HpoDisease disease = this.diseaseMap.get(diseaseId);
         double pretest = pretestProbabilityMap.get(diseaseId);
-        List<Double> observedLR = observedPhenotypesLikelihoodRatios(diseaseId);
-        List<Double> excludedLR = excludedPhenotypesLikelihoodRatios(diseaseId);
+        List<Double> observedLR = pe.observedLR;
+        List<Double> excludedLR = pe.excludedLR;
         TestResult result;
         Collection<TermId> associatedGenes = disease2geneMultimap.get(diseaseId);
         if (associatedGenes.isEmpty()) {
@@ -297,8 +407,7 @@ public class CaseEvaluator {
             String exp = getGenotypeScoreExplanation(g2g, inheritancemodes, geneId);
             result.setGenotypeExplanation(exp);
         }
-        String phenoExp = getPhenotypeExplanation();
-        result.setPhenotypeExplanation(phenoExp);
+        result.setPhenotypeExplanation(pe.explanation);
         return Optional.of(result);
     }
 
@@ -331,14 +440,15 @@ public class CaseEvaluator {
      * then we will return Optional.empty(), which will cause this diseases to be skipped in the differential diagnosis.
      *
      * @param diseaseId an Id for a disease entry, e.g., OMIM:157000.
+     * @param pe the phenotype likelihood ratios of the disease
      * @return A TestResult for diseaseId, or Optional.empty() if no pathogenic variant was found in the associated gene(s).
      */
-    private Optional<TestResult> evaluateDisease(TermId diseaseId) {
+    private Optional<TestResult> evaluateDisease(TermId diseaseId, PhenotypeEvidence pe) {
         HpoDisease disease = this.diseaseMap.get(diseaseId);
         double pretest = pretestProbabilityMap.get(diseaseId);
-        List<Double> observedLR = observedPhenotypesLikelihoodRatios(diseaseId);
-        List<Double> excludedLR = excludedPhenotypesLikelihoodRatios(diseaseId);
-        String phenoExp = getPhenotypeExplanation();
+        List<Double> observedLR = pe.observedLR;
+        List<Double> excludedLR = pe.excludedLR;
+        String phenoExp = pe.explanation;
         TestResult result;
         Collection<TermId> associatedGenes = disease2geneMultimap.get(diseaseId);
         if (associatedGenes.isEmpty()) {
@@ -417,21 +527,24 @@ public class CaseEvaluator {
      *
      * @return map with key=disease idea and value=corresponding {@link TestResult}
      */
-    private Map<TermId, TestResult> phenoGenoEvaluation() {
+    private Map<TermId, TestResult> phenoGenoEvaluation(Map<TermId, PhenotypeEvidence> phenotypeEvidence) {
         ImmutableMap.Builder<TermId, TestResult> mapbuilder = new ImmutableMap.Builder<>();
         for (TermId diseaseId : diseaseMap.keySet()) {
 //            String idd = diseaseId.getValue();
 //            System.out.print(idd);
             Optional<TestResult> optionalTestResult;
-            this.currentPhenotypeExplanation = new ArrayList<>();
+            PhenotypeEvidence pe = phenotypeEvidence.get(diseaseId);
+            if (pe == null) {
+                continue; // not chosen by the prescreen
+            }
             if (useGenotypeAnalysis) {
                 if (keepIfNoCandidateVariant) {
-                    optionalTestResult = evaluateDiseaseKeepingAllCandidates(diseaseId);
+                    optionalTestResult = evaluateDiseaseKeepingAllCandidates(diseaseId, pe);
                 } else {
-                    optionalTestResult = evaluateDisease(diseaseId);
+                    optionalTestResult = evaluateDisease(diseaseId, pe);
                 }
             } else {
-                optionalTestResult = evaluateDiseasePhenotypeOnly(diseaseId);
+                optionalTestResult = evaluateDiseasePhenotypeOnly(diseaseId, pe);
             }
             // some differentials will be completely skipped depending on user settings
             // for instance, we might skip differentials if there is no associated gene
@@ -445,38 +558,314 @@ public class CaseEvaluator {
     /**
      * This method evaluates the likelihood ratio for each disease in
      * {@link #diseaseMap}. After this, it sorts the results (the best hit is then at index 0, etc).
+     * The phenotype stage runs first; if the genotype map is still pending, the genotype stage then waits for it.
      */
     public HpoCase evaluate() {
         assert diseaseMap.size() == pretestProbabilityMap.size();
         Map<TermId, TestResult> evaluationmap;
+        long start = System.currentTimeMillis();
+        Map<TermId, PhenotypeEvidence> phenotypeEvidence;
+        Set<TermId> candidates = null;
+        Metrics.Timer timer;
+        if (prescreen != null) {
+            timer = metrics.timer("score.prescreen");
+            candidates = prescreen.shortlist(phenotypicAbnormalities, shortlistSize);
+            timer.stop();
+        }
+        timer = metrics.timer("score.phenotype");
+        try {
+            phenotypeEvidence = phenotypeStage(candidates);
+        } catch (RuntimeException e) {
+            if (pendingGenotypeMap != null) {
+                pendingGenotypeMap.cancel(true);
+            }
+            throw e;
+        }
+        timer.stop();
+        metrics.increment("score.diseases", phenotypeEvidence.size());
+        metrics.rate("score.diseasesPerSecond", "score.diseases", "score.phenotype");
         if (useGenotypeAnalysis) {
-            evaluationmap = phenoGenoEvaluation();
+            long phenotypeDone = System.currentTimeMillis();
+            timer = metrics.timer("score.awaitGenotypes");
+            awaitGenotypes();
+            timer.stop();
+            logger.trace("Phenotype stage took {} ms, then waited {} ms for the genotypes",
+                    phenotypeDone - start, System.currentTimeMillis() - phenotypeDone);
+            if (candidates != null) {
+                timer = metrics.timer("score.phenotype");
+                metrics.increment("score.diseases", addDiseasesWithPathogenicVariants(phenotypeEvidence));
+                timer.stop();
+            }
+            timer = metrics.timer("score.genotype");
+            evaluationmap = phenoGenoEvaluation(phenotypeEvidence);
+            timer.stop();
         } else {
-            evaluationmap = phenotypeOnlyEvaluation();
+            timer = metrics.timer("score.combine");
+            evaluationmap = phenotypeOnlyEvaluation(phenotypeEvidence);
+            timer.stop();
         }
-        Map<TermId, TestResult> results = evaluateRanks(evaluationmap);
+        timer = metrics.timer("score.rank");
+        List<TestResult> ranked = evaluateRanks(evaluationmap);
+        timer.stop();
         HpoCase.Builder casebuilder = new HpoCase.Builder(phenotypicAbnormalities)
                 .excluded(negatedPhenotypicAbnormalities)
-                .results(results);
+                .results(evaluationmap)
+                .rankedResults(ranked);
         return casebuilder.build();
     }
 
 
     /**
-     * This function sets the rank of the {@link TestResult} objects.
+     * This function sorts the {@link TestResult} objects (once) and sets their ranks.
      *
      * @param resultMap The objects of the resultMap are not not set wrt rank before thie function is called
-     * @return same resultMap, but the TestResult objects have their ranks set.
+     * @return the TestResult objects of resultMap sorted by rank (best result first); their ranks are set.
      */
-    private Map<TermId, TestResult> evaluateRanks(Map<TermId, TestResult> resultMap) {
-        List<TestResult> results = new ArrayList<>(resultMap.values());
-        results.sort(Collections.reverseOrder());
+    private List<TestResult> evaluateRanks(Map<TermId, TestResult> resultMap) {
+        TestResult[] results = resultMap.values().toArray(new TestResult[0]);
+        Arrays.sort(results, Collections.reverseOrder());
         int rank = 0;
         for (TestResult res : results) {
             rank++;
             res.setRank(rank);
         }
-        return resultMap;
+        return Arrays.asList(results);
+    }
+
+
+    /**
+     * Calculate the rank of one disease without creating the {@link TestResult} objects (see {@link #rankOnly(List)}).
+     * @param diseaseId CURIE (e.g., OMIM:600100) of the disease whose rank we want to know
+     * @return the rank of the disease
+     */
+    public DiseaseRank rankOnly(TermId diseaseId) {
+        return rankOnly(ImmutableList.of(diseaseId)).get(0);
+    }
+
+    /**
+     * Calculate the ranks of the target diseases as {@link #evaluate()} would, but without creating a
+     * {@link TestResult}, the lists of likelihood ratios, or the explanations for each disease. The post-test
+     * probabilities of the targets are calculated first; then we stream over all diseases and count the diseases
+     * with a strictly better post-test probability and the ties. Ties are ranked in the order of {@link #diseaseMap},
+     * which is what the stable sort of {@link #evaluateRanks(Map)} does. This is intended for simulations, which
+     * need the rank of the correct diagnosis but not the report.
+     * @param targets CURIEs of the diseases whose ranks we want to know
+     * @return the ranks of the target diseases, in the same order
+     */
+    public List<DiseaseRank> rankOnly(List<TermId> targets) {
+        if (useGenotypeAnalysis) {
+            awaitGenotypes();
+        }
+        int k = targets.size();
+        double[] score = new double[1];
+        double[] targetScore = new double[k];
+        boolean[] targetRanked = new boolean[k];
+        for (int i = 0; i < k; i++) {
+            TermId target = targets.get(i);
+            if (diseaseMap.containsKey(target) && posttestProbability(target, score)) {
+                targetRanked[i] = true;
+                targetScore[i] = score[0];
+            }
+        }
+        int[] better = new int[k];
+        int[] ties = new int[k];
+        int[] tiesBefore = new int[k];
+        boolean[] seen = new boolean[k];
+        int rankedDiseases = 0;
+        for (TermId diseaseId : diseaseMap.keySet()) {
+            int t = targets.indexOf(diseaseId);
+            double s;
+            if (t >= 0) {
+                if (!targetRanked[t]) {
+                    continue;
+                }
+                s = targetScore[t];
+            } else if (posttestProbability(diseaseId, score)) {
+                s = score[0];
+            } else {
+                continue; // this differential is skipped, as in evaluate()
+            }
+            rankedDiseases++;
+            for (int i = 0; i < k; i++) {
+                if (!targetRanked[i]) {
+                    continue;
+                }
+                if (targets.get(i).equals(diseaseId)) {
+                    seen[i] = true;
+                    continue;
+                }
+                int cmp = Double.compare(s, targetScore[i]);
+                if (cmp > 0) {
+                    better[i]++;
+                } else if (cmp == 0) {
+                    ties[i]++;
+                    if (!seen[i]) {
+                        tiesBefore[i]++;
+                    }
+                }
+            }
+        }
+        ImmutableList.Builder<DiseaseRank> builder = new ImmutableList.Builder<>();
+        for (int i = 0; i < k; i++) {
+            if (targetRanked[i]) {
+                builder.add(new DiseaseRank(targets.get(i), true, better[i] + tiesBefore[i] + 1, ties[i],
+                        targetScore[i], rankedDiseases));
+            } else {
+                builder.add(new DiseaseRank(targets.get(i), false, rankedDiseases + 1, 0, 0.0, rankedDiseases));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Calculate the ranks of all diseases in the differential diagnosis. The result is the same as that of
+     * {@link #rankOnly(List)} for each disease, but the post-test probabilities are sorted once, which is much faster
+     * than ranking each disease separately.
+     * @return the ranks of the diseases that are part of the differential diagnosis, best rank first
+     */
+    public List<DiseaseRank> rankAll() {
+        if (useGenotypeAnalysis) {
+            awaitGenotypes();
+        }
+        List<TermId> rankedIds = new ArrayList<>();
+        double[] scores = new double[diseaseMap.size()];
+        double[] score = new double[1];
+        for (TermId diseaseId : diseaseMap.keySet()) {
+            if (posttestProbability(diseaseId, score)) {
+                scores[rankedIds.size()] = score[0];
+                rankedIds.add(diseaseId);
+            }
+        }
+        return DiseaseRank.rank(rankedIds, Arrays.copyOf(scores, rankedIds.size()));
+    }
+
+    /**
+     * Calculate the products of the likelihood ratios of the observed and the excluded terms for all diseases with
+     * the {@link #phenotypeIndex}, one term at a time. The factors are multiplied in the same order as in
+     * {@link #posttestProbability(TermId, double[])}, so that the products are identical.
+     */
+    private void termMajorProducts() {
+        int n = phenotypeIndex.getDiseaseIds().size();
+        double[] observed = new double[n];
+        Arrays.fill(observed, 1.0);
+        for (TermId tid : this.phenotypicAbnormalities) {
+            double[] lr;
+            try {
+                lr = phenotypeIndex.observedLr(tid);
+            } catch (Exception e) {
+                this.errors.add(String.format("%s (%s)", e.getMessage(), tid.getValue()));
+                continue;
+            }
+            for (int d = 0; d < n; d++) {
+                observed[d] *= lr[d];
+            }
+        }
+        double[] excluded = new double[n];
+        Arrays.fill(excluded, 1.0);
+        for (TermId negated : this.negatedPhenotypicAbnormalities) {
+            double[] lr = phenotypeIndex.excludedLr(negated);
+            for (int d = 0; d < n; d++) {
+                excluded[d] *= lr[d];
+            }
+        }
+        this.observedProducts = observed;
+        this.excludedProducts = excluded;
+    }
+
+    /**
+     * Calculate the genotype likelihood ratio of a disease as in {@link #evaluate()}, i.e., the best likelihood ratio of
+     * the genes associated with the disease.
+     * @param diseaseId the disease being tested
+     * @return the genotype likelihood ratio, 1.0 for a phenotype-only case or a disease without associated genes, or
+     * NaN if the disease is skipped in the differential diagnosis
+     */
+    private double genotypeLikelihoodRatio(TermId diseaseId) {
+        if (!useGenotypeAnalysis) {
+            return 1.0;
+        }
+        Collection<TermId> associatedGenes = disease2geneMultimap.get(diseaseId);
+        if (associatedGenes.isEmpty()) {
+            return keepIfNoCandidateVariant ? 1.0 : Double.NaN;
+        }
+        List<TermId> inheritancemodes = this.diseaseMap.get(diseaseId).getModesOfInheritance();
+        boolean foundPredictedPathogenicVariant = false;
+        boolean hasGenotype = false;
+        double genotypeLR = 0.0;
+        for (TermId entrezGeneId : associatedGenes) {
+            Gene2Genotype g2g = this.genotypeMap.getOrDefault(entrezGeneId, Gene2Genotype.NO_IDENTIFIED_VARIANT);
+            if (!g2g.equals(Gene2Genotype.NO_IDENTIFIED_VARIANT) &&
+                    (g2g.hasPathogenicClinvarVar() || g2g.hasPredictedPathogenicVar())) {
+                foundPredictedPathogenicVariant = true;
+            }
+            double score = this.genotypeLrEvalutator.evaluateGenotype(g2g, inheritancemodes, entrezGeneId);
+            if (!hasGenotype || genotypeLR < score) {
+                genotypeLR = score;
+                hasGenotype = true;
+            }
+        }
+        if (!keepIfNoCandidateVariant && !foundPredictedPathogenicVariant) {
+            return Double.NaN;
+        }
+        return genotypeLR;
+    }
+
+    /**
+     * Calculate the genotype likelihood ratios of the diseases, e.g., for a {@link ScoringSession}, which keeps them
+     * while the HPO terms of the case change.
+     * @param diseaseIds the diseases
+     * @return the genotype likelihood ratio of each disease (see {@link #genotypeLikelihoodRatio(TermId)}; NaN if the
+     * disease is skipped in the differential diagnosis), in the order of {@code diseaseIds}
+     */
+    public double[] genotypeLikelihoodRatios(List<TermId> diseaseIds) {
+        if (useGenotypeAnalysis) {
+            awaitGenotypes();
+        }
+        double[] lr = new double[diseaseIds.size()];
+        for (int d = 0; d < lr.length; d++) {
+            lr[d] = genotypeLikelihoodRatio(diseaseIds.get(d));
+        }
+        return lr;
+    }
+
+    /**
+     * Calculate the post-test probability of a disease with the same arithmetic as {@link TestResult}, but without
+     * creating the intermediate objects.
+     * @param diseaseId the disease being tested
+     * @param result array of length one into which the post-test probability is written
+     * @return false if the disease is skipped in the differential diagnosis (with the same rules as {@link #evaluate()})
+     */
+    private boolean posttestProbability(TermId diseaseId, double[] result) {
+        HpoDisease disease = this.diseaseMap.get(diseaseId);
+        double genotypeLR = genotypeLikelihoodRatio(diseaseId);
+        if (Double.isNaN(genotypeLR)) {
+            return false;
+        }
+        double observed = 1.0;
+        double excluded = 1.0;
+        int d = phenotypeIndex != null ? phenotypeIndex.indexOf(diseaseId) : -1;
+        if (d >= 0) {
+            if (observedProducts == null) {
+                termMajorProducts();
+            }
+            observed = observedProducts[d];
+            excluded = excludedProducts[d];
+        } else {
+            InducedDiseaseGraph idg = new InducedDiseaseGraph(disease, ontology);
+            for (TermId tid : this.phenotypicAbnormalities) {
+                try {
+                    observed *= phenotypeLRevaluator.getLikelihoodRatio(tid, idg).getLR();
+                } catch (Exception e) {
+                    String errormsg = String.format("%s (%s/%s)", e.getMessage(), disease.getName(), tid.getValue());
+                    this.errors.add(errormsg);
+                }
+            }
+            for (TermId negated : this.negatedPhenotypicAbnormalities) {
+                excluded *= phenotypeLRevaluator.getLikelihoodRatioForExcludedTerm(negated, idg).getLR();
+            }
+        }
+        double compositeLR = TestResult.compositeLR(observed * excluded, useGenotypeAnalysis ? genotypeLR : null);
+        result[0] = TestResult.posttestProbability(pretestProbabilityMap.get(diseaseId), compositeLR);
+        return true;
     }
 
 
@@ -511,6 +900,10 @@ public class CaseEvaluator {
          * Key: geneId (e.g., NCBI Entrez Gene); value: observed variants/genotypes as {@link org.monarchinitiative.lirical.analysis.Gene2Genotype} object.
          */
         private Map<TermId, Gene2Genotype> genotypeMap;
+        /**
+         * Genotype map that is still being calculated; used instead of {@link #genotypeMap} if that is not set.
+         */
+        private Future<Map<TermId, Gene2Genotype>> pendingGenotypeMap;
         /**
          * retain candidates even if no candidate variant is found (default: false)
          */
@@ -520,6 +913,14 @@ public class CaseEvaluator {
          */
         private Map<TermId, String> geneId2symbol;
 
+        private Metrics metrics = Metrics.DISABLED;
+
+        private PhenotypeIndex phenotypeIndex = null;
+
+        private CandidatePrescreen prescreen = null;
+
+        private int shortlistSize = 0;
+
         public Builder(List<TermId> hpoTerms) {
             this.hpoTerms = hpoTerms;
         }
@@ -544,6 +945,16 @@ public class CaseEvaluator {
             return this;
         }
 
+        /**
+         * @param pending a genotype map that is still being calculated, e.g., by
+         * {@link org.monarchinitiative.lirical.configuration.LiricalFactory#getGene2GenotypeMapAsync()}; the phenotype
+         * stage of {@link CaseEvaluator#evaluate()} runs before waiting for it
+         */
+        public Builder pendingGenotypeMap(Future<Map<TermId, Gene2Genotype>> pending) {
+            this.pendingGenotypeMap = pending;
+            return this;
+        }
+
         public Builder phenotypeLr(PhenotypeLikelihoodRatio phenoLr) {
             this.phenotypeLR = phenoLr;
             return this;
@@ -569,6 +980,34 @@ public class CaseEvaluator {
             return this;
         }
 
+        /** Record the time of the phenotype, genotype, and ranking stages in {@code m}. */
+        public Builder metrics(Metrics m) {
+            this.metrics = m;
+            return this;
+        }
+
+        /**
+         * Calculate the phenotype likelihood ratios of {@link CaseEvaluator#rankOnly(List)} and
+         * {@link CaseEvaluator#rankAll()} term by term with an index built for the same diseases. The results of
+         * {@link CaseEvaluator#evaluate()}, which needs the explanations, are still calculated disease by disease.
+         */
+        public Builder phenotypeIndex(PhenotypeIndex index) {
+            this.phenotypeIndex = index;
+            return this;
+        }
+
+        /**
+         * Evaluate only the {@code size} diseases with the best prescreen scores (and, with genotypes, the diseases
+         * with a pathogenic variant in an associated gene) in {@link CaseEvaluator#evaluate()}. The pre-test
+         * probabilities are not changed, so the post-test probabilities of the evaluated diseases are the same as
+         * without the prescreen; the other diseases are missing from the results.
+         */
+        public Builder prescreen(CandidatePrescreen prescreen, int size) {
+            this.prescreen = prescreen;
+            this.shortlistSize = size;
+            return this;
+        }
+
 
         public CaseEvaluator build() {
             if (hpoTerms == null) {
@@ -581,7 +1020,7 @@ public class CaseEvaluator {
             if (negatedHpoTerms == null) {
                 negatedHpoTerms = ImmutableList.of();
             }
-            return new CaseEvaluator(hpoTerms,
+            CaseEvaluator evaluator = new CaseEvaluator(hpoTerms,
                     negatedHpoTerms,
                     ontology,
                     diseaseMap,
@@ -589,8 +1028,14 @@ public class CaseEvaluator {
                     phenotypeLR,
                     genotypeLR,
                     genotypeMap,
+                    genotypeMap == null ? pendingGenotypeMap : null,
                     keepIfNoCandidateVariant,
                     this.geneId2symbol);
+            evaluator.metrics = this.metrics;
+            evaluator.phenotypeIndex = this.phenotypeIndex;
+            evaluator.prescreen = this.prescreen;
+            evaluator.shortlistSize = this.shortlistSize;
+            return evaluator;
         }
 
 
@@ -601,7 +1046,12 @@ public class CaseEvaluator {
             if (negatedHpoTerms == null) {
                 negatedHpoTerms = ImmutableList.of();
             }
-            return new CaseEvaluator(hpoTerms, negatedHpoTerms, ontology, diseaseMap, phenotypeLR);
+            CaseEvaluator evaluator = new CaseEvaluator(hpoTerms, negatedHpoTerms, ontology, diseaseMap, phenotypeLR);
+            evaluator.metrics = this.metrics;
+            evaluator.phenotypeIndex = this.phenotypeIndex;
+            evaluator.prescreen = this.prescreen;
+            evaluator.shortlistSize = this.shortlistSize;
+            return evaluator;
         }
     }
 
@@ -0,0 +1,103 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import com.google.common.collect.ImmutableList;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rank of one disease in a differential diagnosis, as calculated by {@link CaseEvaluator#rankOnly}
+ * without creating a {@link TestResult} for each disease. The rank is identical to the rank that
+ * {@link CaseEvaluator#evaluate()} assigns, i.e., diseases with the same post-test probability are ranked in
+ * the order of the disease map. {@link #getNumberOfTies()} reports how many other diseases have exactly the same
+ * post-test probability, so that the tie can be taken into account if needed.
+ */
+public class DiseaseRank {
+    /** The disease that was ranked, e.g., OMIM:600100. */
+    private final TermId diseaseId;
+    /** False if the disease was skipped (e.g., no pathogenic variant in the associated gene). */
+    private final boolean ranked;
+    /** Rank of the disease, or the rank after the last ranked disease if the disease was skipped. */
+    private final int rank;
+    /** Number of other ranked diseases with exactly the same post-test probability. */
+    private final int ties;
+    /** Post-test probability of the disease (zero if the disease was skipped). */
+    private final double posttestProbability;
+    /** Number of diseases that were ranked in the differential diagnosis. */
+    private final int rankedDiseases;
+
+    DiseaseRank(TermId diseaseId, boolean ranked, int rank, int ties, double posttestProbability, int rankedDiseases) {
+        this.diseaseId = diseaseId;
+        this.ranked = ranked;
+        this.rank = rank;
+        this.ties = ties;
+        this.posttestProbability = posttestProbability;
+        this.rankedDiseases = rankedDiseases;
+    }
+
+    /**
+     * Rank diseases by post-test probability (best first). Diseases with the same post-test probability keep their
+     * order, as in the stable sort of {@link CaseEvaluator#evaluate()}.
+     * @param diseaseIds the ranked diseases, in the order of the disease map
+     * @param posttest the post-test probabilities of the diseases, in the same order
+     * @return the ranks of the diseases, best rank first
+     */
+    static List<DiseaseRank> rank(List<TermId> diseaseIds, double[] posttest) {
+        int n = diseaseIds.size();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(posttest[b], posttest[a]));
+        ImmutableList.Builder<DiseaseRank> builder = new ImmutableList.Builder<>();
+        int start = 0;
+        while (start < n) {
+            int end = start + 1;
+            double p = posttest[order[start]];
+            while (end < n && Double.compare(posttest[order[end]], p) == 0) {
+                end++;
+            }
+            for (int i = start; i < end; i++) {
+                builder.add(new DiseaseRank(diseaseIds.get(order[i]), true, i + 1, end - start - 1, p, n));
+            }
+            start = end;
+        }
+        return builder.build();
+    }
+
+    public TermId getDiseaseId() {
+        return diseaseId;
+    }
+
+    /** @return true if the disease was part of the differential diagnosis. */
+    public boolean isRanked() {
+        return ranked;
+    }
+
+    /**
+     * @return the rank of the disease. If the disease was skipped, it is tied for the rank after the last
+     * ranked disease (see {@link org.monarchinitiative.lirical.hpo.HpoCase#getRankOfUnrankedDisease()}).
+     */
+    public int getRank() {
+        return rank;
+    }
+
+    /** @return number of other ranked diseases with exactly the same post-test probability. */
+    public int getNumberOfTies() {
+        return ties;
+    }
+
+    public double getPosttestProbability() {
+        return posttestProbability;
+    }
+
+    public int getNumberOfRankedDiseases() {
+        return rankedDiseases;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: rank %d (ties: %d) posttest %f", diseaseId.getValue(), rank, ties, posttestProbability);
+    }
+}
@@ -109,6 +109,16 @@ public class InducedDiseaseGraph {
         return disease;
     }
 
+    /** @return key: an ancestor of the terms of the disease (below Phenotypic abnormality); value: its weighted frequency */
+    Map<TermId, Double> getTerm2FrequencyMap() {
+        return term2frequencyMap;
+    }
+
+    /** @return the terms that are excluded in the disease, together with their ancestors */
+    Set<TermId> getInducedNegativeGraph() {
+        return inducedNegativeGraph;
+    }
+
 
     /**
      * Get the terms that annotates disease (or is an ancestor of one of the terms) that are
@@ -82,6 +82,8 @@ public class LrWithExplanation implements Comparable<LrWithExplanation> {
 
     public double getLR(){ return LR; }
 
+    MatchType getMatchType() { return matchType; }
+
     public String getExplanation(Ontology ontology) {
         String qtermlabel = String.format("%s[%s]",ontology.getTermMap().get(this.queryTerm).getName(),queryTerm.getValue() );
         String mtermlabel = String.format("%s[%s]",ontology.getTermMap().get(this.matchingTerm).getName(),matchingTerm.getValue() );
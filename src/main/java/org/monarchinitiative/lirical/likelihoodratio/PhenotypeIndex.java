@@ -0,0 +1,340 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.monarchinitiative.phenol.formats.hpo.HpoAnnotation;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.algo.OntologyAlgorithm;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio.*;
+
+/**
+ * An inverted index from HPO terms to the diseases that are annotated to them (or to their descendants or
+ * ancestors), which allows the phenotype likelihood ratios to be calculated term by term instead of disease by
+ * disease. {@link PhenotypeLikelihoodRatio#getLikelihoodRatio(TermId, InducedDiseaseGraph)} checks each disease for
+ * a series of cases (the query term is excluded in the disease, is annotated to the disease, is an ancestor or a child
+ * of a term of the disease, or has a common ancestor with the terms of the disease). Here, each case is a list of
+ * postings (disease and frequency) of the query term or of its ancestors, so that one pass over the postings gives the
+ * likelihood ratio of the query term for all diseases as a {@code double[]} in the order of {@link #getDiseaseIds()}.
+ * The vectors of the most recently used terms are cached, so cases that share terms (e.g., the cases of a batch or a
+ * simulation) only calculate them once. The likelihood ratios are the same as those of the disease-by-disease
+ * calculation, but there are no explanations; the index is used to rank diseases (see
+ * {@link CaseEvaluator.Builder#phenotypeIndex(PhenotypeIndex)}). The methods can be called by several threads.
+ */
+public class PhenotypeIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PhenotypeIndex.class);
+    /** Default number of terms whose likelihood ratio vectors are cached. */
+    public static final int DEFAULT_CACHE_SIZE = 2048;
+
+    private final Ontology ontology;
+    private final PhenotypeLikelihoodRatio phenoLr;
+    private final List<TermId> diseaseIds;
+    private final Map<TermId, Integer> diseaseIndex;
+    /** Frequency of the first annotation of a disease to a term. */
+    private final Map<TermId, Postings> directAnnotations;
+    /** Maximum frequency of the annotations of a disease to a term. */
+    private final Map<TermId, Postings> maxDirectAnnotations;
+    /** Maximum frequency of the annotations of a disease to the descendants of a term ({@code isSubclass}). */
+    private final Map<TermId, Postings> descendantAnnotations;
+    /** Weighted frequency of a term in the {@link InducedDiseaseGraph} of a disease. */
+    private final Map<TermId, Postings> inducedGraph;
+    /** Diseases in which a term is excluded. */
+    private final Map<TermId, Postings> negativeAnnotations;
+    /** Diseases in which a term or one of its descendants is excluded. */
+    private final Map<TermId, Postings> inducedNegativeGraph;
+    /** Frequency of a term in a disease with annotation propagation, for all diseases that are indirectly annotated to it. */
+    private final Map<TermId, Postings> propagatedAnnotations;
+
+    private final LoadingCache<TermId, double[]> observedCache;
+    private final LoadingCache<TermId, double[]> excludedCache;
+
+    /** The diseases of one term and a value (e.g., a frequency) for each of them, in the order of the disease ids. */
+    private static class Postings {
+        private int size = 0;
+        private int[] diseases = new int[4];
+        private double[] values = new double[4];
+
+        private void add(int disease, double value) {
+            if (size == diseases.length) {
+                diseases = Arrays.copyOf(diseases, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            diseases[size] = disease;
+            values[size] = value;
+            size++;
+        }
+
+        private void trim() {
+            diseases = Arrays.copyOf(diseases, size);
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final Postings EMPTY = new Postings();
+
+    /**
+     * @param ontology the HPO ontology
+     * @param diseaseMap the diseases; the likelihood ratio vectors are in the order of this map
+     * @param phenoLr the phenotype likelihood ratios (with the background frequencies) of the diseases
+     */
+    public PhenotypeIndex(Ontology ontology, Map<TermId, HpoDisease> diseaseMap, PhenotypeLikelihoodRatio phenoLr) {
+        this(ontology, diseaseMap, phenoLr, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize number of terms whose likelihood ratio vectors are cached (for observed and excluded terms each)
+     */
+    public PhenotypeIndex(Ontology ontology, Map<TermId, HpoDisease> diseaseMap, PhenotypeLikelihoodRatio phenoLr, int cacheSize) {
+        long start = System.currentTimeMillis();
+        this.ontology = ontology;
+        this.phenoLr = phenoLr;
+        this.diseaseIds = ImmutableList.copyOf(diseaseMap.keySet());
+        this.diseaseIndex = new HashMap<>();
+        this.directAnnotations = new HashMap<>();
+        this.maxDirectAnnotations = new HashMap<>();
+        this.descendantAnnotations = new HashMap<>();
+        this.inducedGraph = new HashMap<>();
+        this.negativeAnnotations = new HashMap<>();
+        this.inducedNegativeGraph = new HashMap<>();
+        this.propagatedAnnotations = new HashMap<>();
+        // the ancestors of a term are needed for every disease that is annotated to it
+        Map<TermId, Set<TermId>> ancestors = new HashMap<>();
+        Map<TermId, Set<TermId>> ancestorsWithTerm = new HashMap<>();
+        for (int d = 0; d < diseaseIds.size(); d++) {
+            TermId diseaseId = diseaseIds.get(d);
+            diseaseIndex.put(diseaseId, d);
+            HpoDisease disease = diseaseMap.get(diseaseId);
+            Map<TermId, Double> direct = new LinkedHashMap<>();
+            Map<TermId, Double> maxDirect = new LinkedHashMap<>();
+            Map<TermId, Double> descendant = new LinkedHashMap<>();
+            for (HpoAnnotation annot : disease.getPhenotypicAbnormalities()) {
+                TermId tid = annot.getTermId();
+                double f = annot.getFrequency();
+                direct.putIfAbsent(tid, f);
+                maxDirect.merge(tid, f, Math::max);
+                for (TermId anc : ancestors.computeIfAbsent(tid, ontology::getAncestorTermIds)) {
+                    descendant.merge(anc, f, Math::max);
+                }
+            }
+            Map<TermId, Double> propagated = new LinkedHashMap<>();
+            for (TermId tid : disease.getPhenotypicAbnormalityTermIdList()) {
+                double f = disease.getFrequencyOfTermInDisease(tid);
+                for (TermId anc : ancestorsWithTerm.computeIfAbsent(tid, t -> ontology.getAncestorTermIds(t, true))) {
+                    propagated.merge(anc, f, Math::max);
+                }
+            }
+            for (TermId anc : ontology.getAllAncestorTermIds(disease.getPhenotypicAbnormalityTermIdList(), true)) {
+                propagated.putIfAbsent(anc, 0.0);
+            }
+            InducedDiseaseGraph idg = new InducedDiseaseGraph(disease, ontology);
+            addPostings(directAnnotations, d, direct);
+            addPostings(maxDirectAnnotations, d, maxDirect);
+            addPostings(descendantAnnotations, d, descendant);
+            addPostings(inducedGraph, d, idg.getTerm2FrequencyMap());
+            addPostings(propagatedAnnotations, d, propagated);
+            for (TermId tid : new LinkedHashSet<>(disease.getNegativeAnnotations())) {
+                negativeAnnotations.computeIfAbsent(tid, k -> new Postings()).add(d, 0.0);
+            }
+            for (TermId tid : idg.getInducedNegativeGraph()) {
+                inducedNegativeGraph.computeIfAbsent(tid, k -> new Postings()).add(d, 0.0);
+            }
+        }
+        for (Map<TermId, Postings> index : Arrays.asList(directAnnotations, maxDirectAnnotations, descendantAnnotations,
+                inducedGraph, negativeAnnotations, inducedNegativeGraph, propagatedAnnotations)) {
+            index.values().forEach(Postings::trim);
+        }
+        this.observedCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .build(new CacheLoader<TermId, double[]>() {
+                    @Override
+                    public double[] load(TermId tid) {
+                        return calculateObserved(tid);
+                    }
+                });
+        this.excludedCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .build(new CacheLoader<TermId, double[]>() {
+                    @Override
+                    public double[] load(TermId tid) {
+                        return calculateExcluded(tid);
+                    }
+                });
+        logger.info("Built phenotype index of {} diseases and {} terms in {} ms", diseaseIds.size(),
+                descendantAnnotations.size(), System.currentTimeMillis() - start);
+    }
+
+    private static void addPostings(Map<TermId, Postings> index, int disease, Map<TermId, Double> values) {
+        for (Map.Entry<TermId, Double> e : values.entrySet()) {
+            index.computeIfAbsent(e.getKey(), k -> new Postings()).add(disease, e.getValue());
+        }
+    }
+
+    /** @return the ids of the diseases, in the order of the likelihood ratio vectors */
+    public List<TermId> getDiseaseIds() {
+        return diseaseIds;
+    }
+
+    /** @return position of the disease in the likelihood ratio vectors, or -1 if it is not in the index */
+    public int indexOf(TermId diseaseId) {
+        return diseaseIndex.getOrDefault(diseaseId, -1);
+    }
+
+    /**
+     * @param tid an HPO term that was observed in the proband
+     * @return the likelihood ratio of the term for each disease (the array must not be changed)
+     */
+    public double[] observedLr(TermId tid) {
+        return get(observedCache, tid);
+    }
+
+    /**
+     * @param tid an HPO term that was excluded in the proband
+     * @return the likelihood ratio of the excluded term for each disease (the array must not be changed)
+     */
+    public double[] excludedLr(TermId tid) {
+        return get(excludedCache, tid);
+    }
+
+    private static double[] get(LoadingCache<TermId, double[]> cache, TermId tid) {
+        try {
+            return cache.getUnchecked(tid);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /** Same as {@link PhenotypeLikelihoodRatio#getLikelihoodRatio(TermId, InducedDiseaseGraph)}, for all diseases. */
+    private double[] calculateObserved(TermId queryTid) {
+        int n = diseaseIds.size();
+        double[] lr = new double[n];
+        boolean[] done = new boolean[n];
+        // the query term is explicitly excluded in the disease
+        for (TermId anc : OntologyAlgorithm.getAncestorTerms(ontology, queryTid, true)) {
+            Postings p = negativeAnnotations.getOrDefault(anc, EMPTY);
+            for (int i = 0; i < p.size; i++) {
+                set(lr, done, p.diseases[i], EXCLUDED_IN_DISEASE_BUT_PRESENT_IN_QUERY_PROBABILITY);
+            }
+        }
+        double denominator = phenoLr.getBackgroundFrequency(queryTid);
+        // exact match
+        Postings p = directAnnotations.getOrDefault(queryTid, EMPTY);
+        for (int i = 0; i < p.size; i++) {
+            set(lr, done, p.diseases[i], p.values[i] / denominator);
+        }
+        // the query term is an ancestor of a term of the disease
+        p = descendantAnnotations.getOrDefault(queryTid, EMPTY);
+        for (int i = 0; i < p.size; i++) {
+            set(lr, done, p.diseases[i], Math.max(0.0, p.values[i]) / denominator);
+        }
+        // the query term is a child of a term of the disease
+        double[] maxF = new double[n];
+        for (TermId anc : ontology.getAncestorTermIds(queryTid)) {
+            double proportionalFrequency = phenoLr.getProportionInChildren(queryTid, anc);
+            if (proportionalFrequency <= 0.0) {
+                continue;
+            }
+            p = maxDirectAnnotations.getOrDefault(anc, EMPTY);
+            for (int i = 0; i < p.size; i++) {
+                int d = p.diseases[i];
+                double f = proportionalFrequency * p.values[i];
+                if (! done[d] && f > maxF[d]) {
+                    maxF[d] = f;
+                }
+            }
+        }
+        double noCommonOrgan = phenoLr.noCommonOrganProbability(queryTid);
+        for (int d = 0; d < n; d++) {
+            if (maxF[d] > 0.0) {
+                set(lr, done, d, Math.max(maxF[d], noCommonOrgan) / denominator);
+            }
+        }
+        // the closest common ancestor below Phenotypic abnormality
+        for (TermId anc : closestAncestorOrder(queryTid)) {
+            p = inducedGraph.get(anc);
+            if (p == null) {
+                continue;
+            }
+            double ancestorBackground = phenoLr.getBackgroundFrequency(anc);
+            for (int i = 0; i < p.size; i++) {
+                set(lr, done, p.diseases[i], Math.max(DEFAULT_FALSE_POSITIVE_NO_COMMON_ORGAN_PROBABILITY, p.values[i] / ancestorBackground));
+            }
+        }
+        // no common ancestor except Phenotypic abnormality
+        for (int d = 0; d < n; d++) {
+            if (! done[d]) {
+                lr[d] = DEFAULT_FALSE_POSITIVE_NO_COMMON_ORGAN_PROBABILITY;
+            }
+        }
+        return lr;
+    }
+
+    /** Same as {@link PhenotypeLikelihoodRatio#getLikelihoodRatioForExcludedTerm(TermId, InducedDiseaseGraph)}, for all diseases. */
+    private double[] calculateExcluded(TermId queryTid) {
+        int n = diseaseIds.size();
+        double[] lr = new double[n];
+        boolean[] done = new boolean[n];
+        Postings p = inducedNegativeGraph.getOrDefault(queryTid, EMPTY);
+        for (int i = 0; i < p.size; i++) {
+            set(lr, done, p.diseases[i], EXCLUDED_IN_DISEASE_AND_EXCLUDED_IN_QUERY_PROBABILITY);
+        }
+        double backgroundFrequency = phenoLr.getBackgroundFrequency(queryTid);
+        if (backgroundFrequency > 0.99) {
+            logger.error("Warning, unusually high background frequency calculated for {} of {} (should never happen)",
+                    backgroundFrequency, queryTid.getValue());
+            for (int d = 0; d < n; d++) {
+                set(lr, done, d, 1.0);
+            }
+            return lr;
+        }
+        p = propagatedAnnotations.getOrDefault(queryTid, EMPTY);
+        for (int i = 0; i < p.size; i++) {
+            double excludedFrequency = Math.max(FALSE_NEGATIVE_OBSERVATION_OF_PHENOTYPE_PROB, 1 - p.values[i]);
+            set(lr, done, p.diseases[i], excludedFrequency / (1.0 - backgroundFrequency));
+        }
+        for (int d = 0; d < n; d++) {
+            set(lr, done, d, 1.0 / (1.0 - backgroundFrequency));
+        }
+        return lr;
+    }
+
+    private static void set(double[] lr, boolean[] done, int d, double value) {
+        if (! done[d]) {
+            lr[d] = value;
+            done[d] = true;
+        }
+    }
+
+    /**
+     * @return the query term and its ancestors in the order in which {@link InducedDiseaseGraph#getClosestAncestor(TermId)}
+     * visits them (breadth-first)
+     */
+    private List<TermId> closestAncestorOrder(TermId queryTid) {
+        List<TermId> order = new ArrayList<>();
+        Set<TermId> seen = new HashSet<>();
+        Queue<TermId> queue = new ArrayDeque<>();
+        queue.add(queryTid);
+        seen.add(queryTid);
+        while (! queue.isEmpty()) {
+            TermId t = queue.remove();
+            order.add(t);
+            for (TermId parent : OntologyAlgorithm.getParentTerms(ontology, t, false)) {
+                if (seen.add(parent)) {
+                    queue.add(parent);
+                }
+            }
+        }
+        return order;
+    }
+}
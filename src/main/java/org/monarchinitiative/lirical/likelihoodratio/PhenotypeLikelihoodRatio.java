@@ -40,15 +40,17 @@ public class PhenotypeLikelihoodRatio {
      * may be truly false positive because there is a secondary etiology. We assume arbitrary
      * small probability (one in ten thousand)
      */
-    private final double DEFAULT_FALSE_POSITIVE_NO_COMMON_ORGAN_PROBABILITY=0.01;
+    static final double DEFAULT_FALSE_POSITIVE_NO_COMMON_ORGAN_PROBABILITY=0.01;
     /**
      * The default probability for an HPO term annotating a disease if we cannot find in the dataset.
      */
     private static final double DEFAULT_BACKGROUND_PROBQABILITY=1.0/10000;
     /** The default likelihood ratio for a query term that is explicitly excluded in a disease.*/
-    private static final double EXCLUDED_IN_DISEASE_BUT_PRESENT_IN_QUERY_PROBABILITY = 1.0/1000;
+    static final double EXCLUDED_IN_DISEASE_BUT_PRESENT_IN_QUERY_PROBABILITY = 1.0/1000;
     /** The default likelihood ratio for an excluded query term that is explicitly excluded in a disease.*/
-    private static final double EXCLUDED_IN_DISEASE_AND_EXCLUDED_IN_QUERY_PROBABILITY = 1000.0;
+    static final double EXCLUDED_IN_DISEASE_AND_EXCLUDED_IN_QUERY_PROBABILITY = 1000.0;
+    /** Probability that a feature is present but not recorded or not noticed. */
+    static final double FALSE_NEGATIVE_OBSERVATION_OF_PHENOTYPE_PROB = 0.01;
 
     /**
      * @param onto The HPO ontology object
@@ -169,8 +171,6 @@ public class PhenotypeLikelihoodRatio {
             return LrWithExplanation.excludedQueryTermEcludedInDisease(queryTid, EXCLUDED_IN_DISEASE_AND_EXCLUDED_IN_QUERY_PROBABILITY);
         }
         double backgroundFrequency=getBackgroundFrequency(queryTid);
-        // probability a feature is present but not recorded or not noticed.
-        final double FALSE_NEGATIVE_OBSERVATION_OF_PHENOTYPE_PROB=0.01;
         if (backgroundFrequency>0.99) {
             logger.error("Warning, unusually high background frequency calculated for {} of {} (should never happen)",
                     backgroundFrequency,queryTid.getValue());
@@ -237,7 +237,7 @@ public class PhenotypeLikelihoodRatio {
      * @param tid TermId of a term for which the disease has no annotations (nothing in common except root)
      * @return Estimate probability of this ("false-positive") finding
      */
-    private double noCommonOrganProbability(TermId tid) {
+    double noCommonOrganProbability(TermId tid) {
         double f = this.hpoTerm2OverallFrequency.getOrDefault(tid, DEFAULT_FALSE_POSITIVE_NO_COMMON_ORGAN_PROBABILITY);
         final double MIN_PROB = 0.002; // lowest prob of 1:500
         final double MAX_PROB = 0.10; // highest prob of 1:10
@@ -260,7 +260,7 @@ public class PhenotypeLikelihoodRatio {
      * @param diseaseTid A term that is annotated to the disease we are investigating
      * @return the proportion of the frequency of diseaseTerm that is attributable to query
      */
-    private double getProportionInChildren(TermId queryTid, TermId diseaseTid) {
+    double getProportionInChildren(TermId queryTid, TermId diseaseTid) {
         if (queryTid.getId().equals(diseaseTid.getId())) {
             return 1.0;
         }
@@ -0,0 +1,234 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import com.google.common.collect.ImmutableList;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.*;
+
+/**
+ * A case whose HPO terms are edited step by step, e.g., by a clinician in an interactive application. The session
+ * keeps the log likelihood ratio vector (over all diseases) of each observed and excluded term, their sums, and the
+ * genotype likelihood ratios, which do not change. Adding, removing, or negating a term therefore updates the
+ * composite likelihood ratios of all diseases in O(diseases) without calculating the likelihood ratios of the other
+ * terms again, and changing the pre-test probabilities only changes the ranking. The likelihood ratio vectors are
+ * taken from a {@link PhenotypeIndex}, which caches them for all sessions.
+ * <p>
+ * The composite likelihood ratios are calculated from sums of logarithms, so they may differ from those of
+ * {@link CaseEvaluator#evaluate()} in the last digits. When a term is removed, the sums are calculated again from
+ * the vectors of the remaining terms rather than by subtraction, so that the rounding errors of a long series of
+ * edits do not accumulate. A session is not thread-safe.
+ */
+public class ScoringSession {
+
+    private final Ontology ontology;
+    private final PhenotypeIndex index;
+    /** Number of diseases, in the order of {@link PhenotypeIndex#getDiseaseIds()}. */
+    private final int n;
+    /** Log of the factor that the genotype likelihood ratio of each disease contributes to the composite likelihood
+     * ratio (see {@link TestResult#compositeLR(double, Double)}). */
+    private final double[] logGenotypeLr;
+    /** False for the diseases that are skipped in the differential diagnosis (e.g., no pathogenic variant). */
+    private final boolean[] ranked;
+    /** Key: an observed or excluded term; value: the log likelihood ratios of the term (zero likelihood ratios: 0). */
+    private final Map<TermId, double[]> logLr = new HashMap<>();
+    /** Key: an observed or excluded term; value: the diseases for which its likelihood ratio is zero, or null. */
+    private final Map<TermId, int[]> zeroLr = new HashMap<>();
+    private final List<TermId> observed = new ArrayList<>();
+    private final List<TermId> excluded = new ArrayList<>();
+    /** Sum of the log likelihood ratios of all terms (without the zero likelihood ratios), in the order of the terms. */
+    private final double[] logSum;
+    /** Number of terms whose likelihood ratio is zero for the disease. */
+    private final int[] zeroCount;
+    private final double[] pretestProbability;
+
+    /**
+     * @param ontology the HPO ontology, used to check the terms
+     * @param index the index that calculates the likelihood ratio vectors of the terms
+     * @param genotypeLr genotype likelihood ratios in the order of the diseases of the index (NaN: the disease is
+     *                   skipped), see {@link CaseEvaluator#genotypeLikelihoodRatios(List)}
+     */
+    public ScoringSession(Ontology ontology, PhenotypeIndex index, double[] genotypeLr) {
+        this.ontology = ontology;
+        this.index = index;
+        this.n = index.getDiseaseIds().size();
+        if (genotypeLr.length != n) {
+            throw new LiricalRuntimeException(String.format("Expected %d genotype likelihood ratios but got %d", n, genotypeLr.length));
+        }
+        this.logGenotypeLr = new double[n];
+        this.ranked = new boolean[n];
+        for (int d = 0; d < n; d++) {
+            ranked[d] = !Double.isNaN(genotypeLr[d]);
+            logGenotypeLr[d] = ranked[d] ? Math.log(TestResult.compositeLR(1.0, genotypeLr[d])) : 0.0;
+        }
+        this.logSum = new double[n];
+        this.zeroCount = new int[n];
+        this.pretestProbability = new double[n];
+        Arrays.fill(pretestProbability, 1.0 / n);
+    }
+
+    public List<TermId> getObservedTerms() {
+        return ImmutableList.copyOf(observed);
+    }
+
+    public List<TermId> getExcludedTerms() {
+        return ImmutableList.copyOf(excluded);
+    }
+
+    private void checkTerm(TermId tid) {
+        if (!ontology.getTermMap().containsKey(tid)) {
+            throw new LiricalRuntimeException("Could not find HPO term " + tid.getValue() + " in ontology");
+        }
+    }
+
+    /**
+     * Add an observed term. If the term was excluded, it is now observed instead.
+     * @param tid an HPO term
+     * @return true if the terms of the session changed
+     */
+    public boolean addObserved(TermId tid) {
+        checkTerm(tid);
+        if (observed.contains(tid)) {
+            return false;
+        }
+        remove(tid);
+        add(tid, index.observedLr(tid));
+        observed.add(tid);
+        return true;
+    }
+
+    /**
+     * Add an excluded term. If the term was observed, it is now excluded instead (i.e., it is negated).
+     * @param tid an HPO term
+     * @return true if the terms of the session changed
+     */
+    public boolean addExcluded(TermId tid) {
+        checkTerm(tid);
+        if (excluded.contains(tid)) {
+            return false;
+        }
+        remove(tid);
+        add(tid, index.excludedLr(tid));
+        excluded.add(tid);
+        return true;
+    }
+
+    /**
+     * Exclude a term that was observed or observe a term that was excluded.
+     * @param tid a term of the session
+     */
+    public void negate(TermId tid) {
+        if (observed.contains(tid)) {
+            addExcluded(tid);
+        } else if (excluded.contains(tid)) {
+            addObserved(tid);
+        } else {
+            throw new LiricalRuntimeException("HPO term " + tid.getValue() + " is not part of the session");
+        }
+    }
+
+    /**
+     * Remove an observed or excluded term.
+     * @param tid an HPO term
+     * @return true if the term was part of the session
+     */
+    public boolean remove(TermId tid) {
+        if (logLr.remove(tid) == null) {
+            return false;
+        }
+        int[] zeros = zeroLr.remove(tid);
+        if (zeros != null) {
+            for (int d : zeros) {
+                zeroCount[d]--;
+            }
+        }
+        observed.remove(tid);
+        excluded.remove(tid);
+        Arrays.fill(logSum, 0.0);
+        for (List<TermId> terms : Arrays.asList(observed, excluded)) {
+            for (TermId t : terms) {
+                double[] log = logLr.get(t);
+                for (int d = 0; d < n; d++) {
+                    logSum[d] += log[d];
+                }
+            }
+        }
+        return true;
+    }
+
+    private void add(TermId tid, double[] lr) {
+        double[] log = new double[n];
+        List<Integer> zeros = new ArrayList<>();
+        for (int d = 0; d < n; d++) {
+            if (lr[d] == 0.0) {
+                zeros.add(d);
+                zeroCount[d]++;
+            } else {
+                log[d] = Math.log(lr[d]);
+                logSum[d] += log[d];
+            }
+        }
+        logLr.put(tid, log);
+        if (!zeros.isEmpty()) {
+            zeroLr.put(tid, zeros.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * Change the pre-test probabilities. The likelihood ratios are not changed, only the ranking.
+     * @param pretest key: disease id; value: pre-test probability (the other diseases keep their probability)
+     */
+    public void setPretestProbabilities(Map<TermId, Double> pretest) {
+        for (Map.Entry<TermId, Double> e : pretest.entrySet()) {
+            int d = index.indexOf(e.getKey());
+            if (d < 0) {
+                throw new LiricalRuntimeException("Unknown disease " + e.getKey().getValue());
+            }
+            double p = e.getValue();
+            if (p <= 0.0 || p >= 1.0) {
+                throw new LiricalRuntimeException(String.format("Pre-test probability of %s must be between 0 and 1: %f",
+                        e.getKey().getValue(), p));
+            }
+            pretestProbability[d] = p;
+        }
+    }
+
+    /**
+     * @param diseaseId a disease
+     * @return the composite likelihood ratio of the disease for the current terms (NaN if the disease is skipped)
+     */
+    public double getCompositeLR(TermId diseaseId) {
+        int d = index.indexOf(diseaseId);
+        if (d < 0) {
+            throw new LiricalRuntimeException("Unknown disease " + diseaseId.getValue());
+        }
+        return ranked[d] ? compositeLR(d) : Double.NaN;
+    }
+
+    private double compositeLR(int d) {
+        return zeroCount[d] > 0 ? 0.0 : Math.exp(logSum[d] + logGenotypeLr[d]);
+    }
+
+    private double posttestProbability(int d) {
+        return TestResult.posttestProbability(pretestProbability[d], compositeLR(d));
+    }
+
+    /**
+     * Rank the diseases for the current terms and pre-test probabilities. Diseases with the same post-test probability
+     * are ranked in the order of the disease map, as in {@link CaseEvaluator#evaluate()}.
+     * @return the ranks of the diseases that are part of the differential diagnosis, best rank first
+     */
+    public List<DiseaseRank> ranks() {
+        List<TermId> diseaseIds = index.getDiseaseIds();
+        List<TermId> rankedIds = new ArrayList<>();
+        double[] scores = new double[n];
+        for (int d = 0; d < n; d++) {
+            if (ranked[d]) {
+                scores[rankedIds.size()] = posttestProbability(d);
+                rankedIds.add(diseaseIds.get(d));
+            }
+        }
+        return DiseaseRank.rank(rankedIds, Arrays.copyOf(scores, rankedIds.size()));
+    }
+}
@@ -0,0 +1,106 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import com.google.common.collect.ImmutableList;
+import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leave-one-term-out sensitivity analysis of the top differential diagnoses of a case. For each observed and excluded
+ * HPO term, the rank and post-test probability of the top diagnoses are calculated as if the term had not been
+ * entered, which shows the clinician which terms drive a top hit. Instead of evaluating the case once for each term,
+ * the composite likelihood ratios without each term are taken from the likelihood ratios stored in the
+ * {@link TestResult} objects (see {@link TestResult#leaveOneOutCompositeLRs()}), and the pre-test probabilities and
+ * genotype likelihood ratios are unchanged.
+ * <p>
+ * The other diseases are ranked in the same way, so a rank without a term is relative to all diseases of the
+ * differential diagnosis. Diseases with the same post-test probability keep the order of the original ranking.
+ */
+public class TermSensitivity {
+    private static final Logger logger = LoggerFactory.getLogger(TermSensitivity.class);
+
+    private final List<Entry> entries;
+
+    /**
+     * @param hcase a case with the ranked results of its evaluation
+     * @param topK number of top differential diagnoses to analyze
+     */
+    public TermSensitivity(HpoCase hcase, int topK) {
+        List<TermId> terms = new ArrayList<>(hcase.getObservedAbnormalities());
+        terms.addAll(hcase.getExcludedAbnormalities());
+        int nObserved = hcase.getObservedAbnormalities().size();
+        List<TestResult> results = hcase.getResults();
+        int n = results.size();
+        int k = Math.min(topK, n);
+        double[][] compositeLR = new double[n][];
+        for (int d = 0; d < n; d++) {
+            TestResult result = results.get(d);
+            if (result.getNumberOfObservedTests() != nObserved || result.getNumberOfTests() != terms.size()) {
+                // a term could not be evaluated, so the likelihood ratios cannot be assigned to the terms
+                logger.warn("Skipping sensitivity analysis: {} has {} likelihood ratios for {} terms",
+                        result.getDiseaseCurie().getValue(), result.getNumberOfTests(), terms.size());
+                this.entries = ImmutableList.of();
+                return;
+            }
+            compositeLR[d] = result.leaveOneOutCompositeLRs();
+        }
+        ImmutableList.Builder<Entry> builder = new ImmutableList.Builder<>();
+        double[] posttest = new double[n];
+        Entry[][] table = new Entry[k][terms.size()];
+        for (int t = 0; t < terms.size(); t++) {
+            for (int d = 0; d < n; d++) {
+                posttest[d] = TestResult.posttestProbability(results.get(d).getPretestProbability(), compositeLR[d][t]);
+            }
+            for (int d = 0; d < k; d++) {
+                int rank = 1;
+                for (int j = 0; j < n; j++) {
+                    if (posttest[j] > posttest[d] || (j < d && posttest[j] == posttest[d])) {
+                        rank++;
+                    }
+                }
+                table[d][t] = new Entry(results.get(d), d + 1, terms.get(t), t >= nObserved, rank, posttest[d]);
+            }
+        }
+        for (Entry[] row : table) {
+            builder.add(row);
+        }
+        this.entries = builder.build();
+    }
+
+    /** @return one entry per top diagnosis and term, grouped by diagnosis (best first), terms in case order */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /** The rank and post-test probability of one top diagnosis without one of the terms of the case. */
+    public static class Entry {
+        private final TestResult result;
+        private final int rank;
+        private final TermId termId;
+        private final boolean excluded;
+        private final int rankWithoutTerm;
+        private final double posttestWithoutTerm;
+
+        Entry(TestResult result, int rank, TermId termId, boolean excluded, int rankWithoutTerm, double posttestWithoutTerm) {
+            this.result = result;
+            this.rank = rank;
+            this.termId = termId;
+            this.excluded = excluded;
+            this.rankWithoutTerm = rankWithoutTerm;
+            this.posttestWithoutTerm = posttestWithoutTerm;
+        }
+
+        public TestResult getResult() { return result; }
+        /** @return the rank of the diagnosis with all terms */
+        public int getRank() { return rank; }
+        public TermId getTermId() { return termId; }
+        /** @return true if the term was excluded in the proband, false if it was observed */
+        public boolean isExcluded() { return excluded; }
+        public int getRankWithoutTerm() { return rankWithoutTerm; }
+        public double getPosttestWithoutTerm() { return posttestWithoutTerm; }
+    }
+}
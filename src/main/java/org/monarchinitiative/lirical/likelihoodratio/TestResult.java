@@ -7,6 +7,7 @@ import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -27,15 +28,16 @@ import java.util.stream.Collectors;
 public class TestResult implements Comparable<TestResult> {
     private static final Logger logger = LoggerFactory.getLogger(TestResult.class);
     private static final String EMPTY_STRING="";
-    /**A list of results for the tests performed on observed phenotypes for {@link #hpoDisease}.*/
-    private final List<Double> results;
-    /** A list of test results for phenotypes that were excluded.*/
-    private final List<Double> excludedResults;
+    /**The results for the tests performed on observed phenotypes for {@link #hpoDisease} (a primitive array
+     * because a differential diagnosis retains one TestResult for each disease).*/
+    private final double[] results;
+    /** The test results for phenotypes that were excluded.*/
+    private final double[] excludedResults;
     /** Result of the likelhood ratio test for the genotype. */
     private final Double genotypeLR;
     /** The id of the gene associated with ths disease being tested here. */
     private final TermId entrezGeneId;
-    /** This is the product of the individual test results. */
+    /** This is the product of the individual test results (see {@link #compositeLR(double, Double)}). */
     private final double compositeLR;
     /** Reference to the the disease that we are testing (e.g., OMIM:600100).*/
     private final HpoDisease hpoDisease;
@@ -59,20 +61,13 @@ public class TestResult implements Comparable<TestResult> {
      * @param pretest pretest probability of the disease
      */
     public TestResult(List<Double> reslist, List<Double> excllist, HpoDisease diseaseId, double pretest) {
-        this.results = reslist;
-        this.excludedResults=excllist;
+        this.results = toArray(reslist);
+        this.excludedResults=toArray(excllist);
         this.hpoDisease = diseaseId;
         this.pretestProbability = pretest;
-        // the composite LR is the product of the individual LR's
-        double observed=reslist.stream().reduce(1.0, (a, b) -> a * b);
-        if (excludedResults.size()>0) {
-            double excluded = excludedResults.stream().reduce(1.0, (a, b) -> a * b);
-            this.compositeLR=observed*excluded;
-        } else {
-            this.compositeLR=observed;
-        }
-
         this.genotypeLR=null;// result without genotype.
+        // the composite LR is the product of the individual LR's
+        this.compositeLR=compositeLR(phenotypeLR(), null);
         this.entrezGeneId=null;
         this.posttestProbability=getPosttestProbability();
     }
@@ -87,34 +82,102 @@ public class TestResult implements Comparable<TestResult> {
      * @param pretest pretest probability of the disease
      */
     public TestResult(List<Double> reslist, List<Double> excllist,HpoDisease diseaseId, Double genotypeLr,TermId geneId,double pretest) {
-        this.results = reslist;
-        this.excludedResults=excllist;
+        this.results = toArray(reslist);
+        this.excludedResults=toArray(excllist);
         this.hpoDisease = diseaseId;
         this.pretestProbability = pretest;
         this.genotypeLR=genotypeLr;
         this.entrezGeneId=geneId;
         // the composite ratio is equal to the product of the phenotype LR's
-        // multiplied by the genotype LR.
-        double observed=reslist.stream().reduce(1.0, (a, b) -> a * b);
-        if (excludedResults.size()>0) {
-            double excluded = excludedResults.stream().reduce(1.0, (a, b) -> a * b);
-            this.compositeLR=observed*excluded*genotypeLr;
-        } else {
-            this.compositeLR=observed*genotypeLr;
-        }
+        // combined with the genotype LR.
+        this.compositeLR=compositeLR(phenotypeLR(), genotypeLr);
         posttestProbability=getPosttestProbability();
     }
 
+    private static double[] toArray(List<Double> lrlist) {
+        double[] arr = new double[lrlist.size()];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = lrlist.get(i);
+        }
+        return arr;
+    }
+
+    /** @return the product of the likelihood ratios (multiplied in the order of the array). */
+    private static double product(double[] lrs) {
+        double p = 1.0;
+        for (double lr : lrs) {
+            p *= lr;
+        }
+        return p;
+    }
+
+
+    /** @return the product of the likelihood ratios of the observed phenotypes and of the excluded phenotypes */
+    private double phenotypeLR() {
+        double observed=product(results);
+        return excludedResults.length>0 ? observed*product(excludedResults) : observed;
+    }
+
+    /**
+     * Combine the likelihood ratios of the phenotypes with the genotype likelihood ratio. This is the only place
+     * where the composite likelihood ratio is calculated; all scoring paths (e.g.,
+     * {@link CaseEvaluator}, {@link ScoringSession}) call it so that they agree with {@link #getCompositeLR()}.
+     * @param phenotypeLR product of the likelihood ratios of the observed and excluded phenotypes
+     * @param genotypeLR the genotype likelihood ratio, or null if the genotype is not used
+     * @return the composite likelihood ratio
+     */
+    static double compositeLR(double phenotypeLR, Double genotypeLR) {
+        return genotypeLR != null ? genotypeLR * (phenotypeLR * genotypeLR) : phenotypeLR;
+    }
 
+    /**
+     * @param pretest pre-test probability of a disease
+     * @param compositeLR composite likelihood ratio of the disease, see {@link #compositeLR(double, Double)}
+     * @return the post-test probability of the disease
+     */
+    static double posttestProbability(double pretest, double compositeLR) {
+        double po = pretest / (1.0 - pretest) * compositeLR;
+        return po / (1 + po);
+    }
 
     /** @return the composite likelihood ratio (product of the LRs of the individual tests).*/
     public double getCompositeLR() {
-        return genotypeLR!=null ? genotypeLR*compositeLR : compositeLR;
+        return compositeLR;
     }
 
     /** @return the total count of tests performed (excluding genotype).*/
     public int getNumberOfTests() {
-        return results.size() + excludedResults.size();
+        return results.length + excludedResults.length;
+    }
+
+    /**
+     * Calculate the composite likelihood ratio (as {@link #getCompositeLR()}) that would result if one test were left
+     * out, for each test. The products are taken from prefix and suffix products of the stored likelihood ratios,
+     * so all tests are done in a single pass without evaluating the disease again.
+     * @return the composite likelihood ratios without the i'th test, observed phenotypes first, then the excluded ones
+     */
+    public double[] leaveOneOutCompositeLRs() {
+        int n = getNumberOfTests();
+        double[] lrs = new double[n];
+        System.arraycopy(results, 0, lrs, 0, results.length);
+        System.arraycopy(excludedResults, 0, lrs, results.length, excludedResults.length);
+        double[] suffix = new double[n + 1];
+        suffix[n] = 1.0;
+        for (int i = n - 1; i >= 0; i--) {
+            suffix[i] = suffix[i + 1] * lrs[i];
+        }
+        double[] composite = new double[n];
+        double prefix = 1.0;
+        for (int i = 0; i < n; i++) {
+            composite[i] = compositeLR(prefix * suffix[i + 1], genotypeLR);
+            prefix *= lrs[i];
+        }
+        return composite;
+    }
+
+    /** @return the count of tests performed for observed phenotypes. */
+    public int getNumberOfObservedTests() {
+        return results.length;
     }
 
     /** @return the pretest odds.*/
@@ -134,8 +197,7 @@ public class TestResult implements Comparable<TestResult> {
     }
 
     public double getPosttestProbability() {
-        double po = posttestodds();
-        return po / (1 + po);
+        return posttestProbability(pretestProbability, getCompositeLR());
     }
 
     public int getRank() {
@@ -159,7 +221,7 @@ public class TestResult implements Comparable<TestResult> {
 
     @Override
     public String toString() {
-        String resultlist = results.stream().map(String::valueOf).collect(Collectors.joining(";"));
+        String resultlist = Arrays.stream(results).mapToObj(String::valueOf).collect(Collectors.joining(";"));
         String genoResult = hasGenotype() ? String.format("genotype LR: %.4f",this.genotypeLR) : "no genotype LR";
         return String.format("%s: %.2f [%s] %s", hpoDisease, getCompositeLR(), resultlist, genoResult);
     }
@@ -169,7 +231,7 @@ public class TestResult implements Comparable<TestResult> {
      * @return the likelihood ratio of the i'th test
      */
     public double getObservedPhenotypeRatio(int i) {
-        return this.results.get(i);
+        return this.results[i];
     }
 
     /**
@@ -177,7 +239,7 @@ public class TestResult implements Comparable<TestResult> {
      * @return the likelihood ratio of the i'th test
      */
     public double getExcludedPhenotypeRatio(int i) {
-        return this.excludedResults.get(i);
+        return this.excludedResults[i];
     }
 
     /** @return name of the disease being tested. */
@@ -0,0 +1,266 @@
+package org.monarchinitiative.lirical.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+/**
+ * Timers and counters of one analysis. The phases of the analysis record their elapsed time (and, if the JVM
+ * supports it, an estimate of the bytes they allocated) with {@link #timer(String)}, and their work (e.g., the number
+ * of VCF records or scored diseases) with {@link #increment(String, long)}. Rates such as variants per second are
+ * derived from a counter and a timer (see {@link #rate(String, String, String)}).
+ * <p>
+ * Metrics are off unless the user asks for them: {@link #DISABLED} does not record anything, and its
+ * {@link #timer(String)} returns a shared no-op timer, so an instrumented phase costs one branch. Code that records
+ * many small measurements (e.g., one per variant) should check {@link #isEnabled()} and add them up locally. The
+ * methods can be called by several threads (e.g., the VCF annotation runs in parallel to the phenotype stage).
+ */
+public final class Metrics {
+    private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+    /** Metrics that record nothing; this is the default everywhere. */
+    public static final Metrics DISABLED = new Metrics(false);
+    private static final Timer NO_OP_TIMER = new Timer(null, null, 0L, 0L);
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final boolean enabled;
+    /** Timers and counters in the order in which they were first recorded. */
+    private final Map<String, TimerStat> timers = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    /** Key: name of a rate; value: names of the counter and the timer. */
+    private final Map<String, String[]> rates = new LinkedHashMap<>();
+
+    private Metrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** @return a new registry that records metrics */
+    public static Metrics create() {
+        return new Metrics(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Total and maximum time and allocated bytes of a timer that may have been run several times. */
+    private static class TimerStat {
+        private long count = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+        /** Negative if the JVM cannot measure allocations. */
+        private long allocatedBytes = 0;
+    }
+
+    /**
+     * A running timer; call {@link #stop()} (or use try-with-resources) at the end of the phase. The allocated bytes
+     * are those of the current thread, so they are only meaningful if the phase runs in the thread that started it.
+     */
+    public static final class Timer implements AutoCloseable {
+        private final Metrics metrics;
+        private final String name;
+        private final long startNanos;
+        private final long startAllocated;
+
+        private Timer(Metrics metrics, String name, long startNanos, long startAllocated) {
+            this.metrics = metrics;
+            this.name = name;
+            this.startNanos = startNanos;
+            this.startAllocated = startAllocated;
+        }
+
+        /** @return the elapsed time in nanoseconds (zero if metrics are disabled). */
+        public long stop() {
+            if (metrics == null) {
+                return 0L;
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            long allocated = startAllocated < 0 ? -1L : allocatedBytes() - startAllocated;
+            metrics.record(name, elapsed, allocated);
+            return elapsed;
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+
+    /** @return bytes allocated by the current thread so far, or -1 if the JVM does not support the measurement. */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            try {
+                if (sunBean.isThreadAllocatedMemoryEnabled()) {
+                    return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                }
+            } catch (UnsupportedOperationException e) {
+                return -1L;
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Start a timer.
+     * @param name name of the phase, e.g., {@code vcf.annotate}
+     * @return a running timer
+     */
+    public Timer timer(String name) {
+        if (! enabled) {
+            return NO_OP_TIMER;
+        }
+        return new Timer(this, name, System.nanoTime(), allocatedBytes());
+    }
+
+    /**
+     * Add a time that was measured by the caller (e.g., the sum of many short database lookups) to a timer.
+     * @param name name of the timer
+     * @param nanos elapsed time in nanoseconds
+     */
+    public void addTime(String name, long nanos) {
+        if (enabled) {
+            record(name, nanos, -1L);
+        }
+    }
+
+    private synchronized void record(String name, long nanos, long allocated) {
+        TimerStat stat = timers.computeIfAbsent(name, k -> new TimerStat());
+        stat.count++;
+        stat.totalNanos += nanos;
+        stat.maxNanos = Math.max(stat.maxNanos, nanos);
+        stat.allocatedBytes = allocated < 0 || stat.allocatedBytes < 0 ? -1L : stat.allocatedBytes + allocated;
+    }
+
+    /**
+     * @param name name of the counter, e.g., {@code vcf.records}
+     * @param delta value to add to the counter
+     */
+    public void increment(String name, long delta) {
+        if (enabled) {
+            synchronized (this) {
+                counters.merge(name, delta, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Report a rate (per second) that is calculated from a counter and the total time of a timer.
+     * @param name name of the rate, e.g., {@code variantsPerSecond}
+     * @param counter name of the counter
+     * @param timer name of the timer
+     */
+    public void rate(String name, String counter, String timer) {
+        if (enabled) {
+            synchronized (this) {
+                rates.put(name, new String[]{counter, timer});
+            }
+        }
+    }
+
+    /** @return total time of a timer in milliseconds (zero if it was not recorded) */
+    public synchronized double getMillis(String name) {
+        TimerStat stat = timers.get(name);
+        return stat == null ? 0.0 : stat.totalNanos / NANOS_PER_MILLI;
+    }
+
+    /** @return value of a counter (zero if it was not recorded) */
+    public synchronized long getCount(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    private synchronized Map<String, Double> rateValues() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Map.Entry<String, String[]> e : rates.entrySet()) {
+            TimerStat stat = timers.get(e.getValue()[1]);
+            Long count = counters.get(e.getValue()[0]);
+            if (stat != null && count != null && stat.totalNanos > 0) {
+                values.put(e.getKey(), count / (stat.totalNanos / 1e9));
+            }
+        }
+        return values;
+    }
+
+    /** @return one line per timer, counter, and rate, e.g., for the settings section of the HTML output */
+    public synchronized List<String> summary() {
+        ImmutableList.Builder<String> builder = new ImmutableList.Builder<>();
+        for (Map.Entry<String, TimerStat> e : timers.entrySet()) {
+            TimerStat stat = e.getValue();
+            String line = String.format("%s: %.1f ms", e.getKey(), stat.totalNanos / NANOS_PER_MILLI);
+            if (stat.allocatedBytes >= 0) {
+                line += String.format(" (%.1f MB allocated)", stat.allocatedBytes / BYTES_PER_MB);
+            }
+            builder.add(line);
+        }
+        for (Map.Entry<String, Long> e : counters.entrySet()) {
+            builder.add(String.format("%s: %d", e.getKey(), e.getValue()));
+        }
+        for (Map.Entry<String, Double> e : rateValues().entrySet()) {
+            builder.add(String.format("%s: %.1f", e.getKey(), e.getValue()));
+        }
+        return builder.build();
+    }
+
+    /** @return the metrics as a JSON object with the sections timers, counters, rates, and heap */
+    public synchronized ObjectNode toJson() {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        ObjectNode timerNode = root.putObject("timers");
+        for (Map.Entry<String, TimerStat> e : timers.entrySet()) {
+            TimerStat stat = e.getValue();
+            ObjectNode t = timerNode.putObject(e.getKey());
+            t.put("count", stat.count);
+            t.put("totalMs", stat.totalNanos / NANOS_PER_MILLI);
+            t.put("maxMs", stat.maxNanos / NANOS_PER_MILLI);
+            if (stat.allocatedBytes >= 0) {
+                t.put("allocatedMb", stat.allocatedBytes / BYTES_PER_MB);
+            }
+        }
+        ObjectNode counterNode = root.putObject("counters");
+        for (Map.Entry<String, Long> e : counters.entrySet()) {
+            counterNode.put(e.getKey(), e.getValue());
+        }
+        ObjectNode rateNode = root.putObject("rates");
+        for (Map.Entry<String, Double> e : rateValues().entrySet()) {
+            rateNode.put(e.getKey(), e.getValue());
+        }
+        Runtime runtime = Runtime.getRuntime();
+        ObjectNode heap = root.putObject("heap");
+        heap.put("usedMb", (runtime.totalMemory() - runtime.freeMemory()) / BYTES_PER_MB);
+        heap.put("maxMb", runtime.maxMemory() / BYTES_PER_MB);
+        return root;
+    }
+
+    /**
+     * @param outputPath path of the HTML or TSV file, e.g., {@code results/lirical.html}
+     * @return the path of the JSON file with the metrics, e.g., {@code results/lirical.metrics.json}
+     */
+    public static File sidecar(String outputPath) {
+        String base = outputPath.replaceAll("\\.(html|tsv)$", "");
+        return new File(base + ".metrics.json");
+    }
+
+    /** Write the metrics as JSON (nothing is written if metrics are disabled). */
+    public void writeJson(File file) {
+        if (! enabled) {
+            return;
+        }
+        try {
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, toJson());
+            logger.info("Wrote metrics to {}", file.getAbsolutePath());
+        } catch (IOException e) {
+            throw new LiricalRuntimeException("Could not write metrics to " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * A lightweight registry of timers and counters for the phases of an analysis (loading the knowledge base, reading
+ * and annotating the VCF file, Exomiser database lookups, scoring, ranking, and output). The metrics of a run are
+ * written as a JSON file next to the HTML or TSV file if the {@code --metrics} option is given.
+ */
+package org.monarchinitiative.lirical.metrics;
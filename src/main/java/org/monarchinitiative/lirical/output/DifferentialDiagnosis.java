@@ -63,6 +63,7 @@ public class DifferentialDiagnosis {
         setPhenotypeExplanation(result.getPhenotypeExplanation());
     }
 
+    /** The variants are created from the compact variant list of the gene, i.e., only for the diagnoses in the output. */
     void addG2G(Gene2Genotype g2g) {
         this.geneSymbol=g2g.getSymbol();
         this.hasVariants="yes";
@@ -102,7 +102,7 @@ public class HtmlTemplate extends LiricalTemplate {
                     TermId geneId = result.getEntrezGeneId();
                     if (genotypeMap.containsKey(geneId)) {
                         symbol=genotypeMap.get(geneId).getSymbol();
-                        int c = genotypeMap.get(geneId).getVarList().size();
+                        int c = genotypeMap.get(geneId).getVariantCount();
                         String name = shortName(result.getDiseaseName());
                         String id = result.getDiseaseCurie().getId();// This is intended to work with OMIM
                         if (name==null) {
@@ -3,18 +3,25 @@ package org.monarchinitiative.lirical.output;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
 import freemarker.template.Version;
 import org.monarchinitiative.lirical.analysis.Gene2Genotype;
 import org.monarchinitiative.lirical.configuration.LiricalFactory;
 import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
 import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.lirical.likelihoodratio.TermSensitivity;
+import org.monarchinitiative.lirical.metrics.Metrics;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.Term;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -37,6 +44,11 @@ public abstract class LiricalTemplate {
 
     protected String outpath;
 
+    private static final String[] sensitivityHeader={"rank","diseaseName","diseaseCurie","posttestprob","termId",
+            "termName","status","rankWithoutTerm","posttestprobWithoutTerm","rankChange"};
+    /** True if the leave-one-term-out sensitivity analysis was added with {@link #addSensitivity}. */
+    private boolean hasSensitivity = false;
+
 
     /** This map contains the names of the top differential diagnoses that we will show as a list at the
      * top of the page together with anchors to navigate to the detailed analysis.*/
@@ -73,6 +85,62 @@ public abstract class LiricalTemplate {
     abstract public void outputFile();
     abstract public void outputFile(String fname);
 
+    /** @return path of the file written by {@link #outputFile()} */
+    public String getOutputPath() {
+        return outpath;
+    }
+
+    /** Show the metrics recorded so far (i.e., before the output is rendered) in the settings section. */
+    void addMetrics(Metrics metrics) {
+        if (metrics.isEnabled()) {
+            this.templateData.put("metrics", metrics.summary());
+        }
+    }
+
+    /**
+     * Add the leave-one-term-out sensitivity analysis of the top differential diagnoses (see {@link TermSensitivity}).
+     * The HTML output shows it as a table, and {@link #outputSensitivityFile()} writes it to a separate TSV file.
+     */
+    void addSensitivity(HpoCase hcase, Ontology ontology, int topK) {
+        TermSensitivity sensitivity = new TermSensitivity(hcase, topK);
+        List<SensitivityRow> rows = new ArrayList<>();
+        for (TermSensitivity.Entry entry : sensitivity.getEntries()) {
+            Term term = ontology.getTermMap().get(entry.getTermId());
+            rows.add(new SensitivityRow(entry, term, shortName(entry.getResult().getDiseaseName())));
+        }
+        this.templateData.put("sensitivity", rows);
+        this.templateData.put("sensitivityHeader", String.join("\t", sensitivityHeader));
+        this.hasSensitivity = true;
+    }
+
+    /** @return true if the output includes the leave-one-term-out sensitivity analysis */
+    public boolean hasSensitivity() {
+        return hasSensitivity;
+    }
+
+    /**
+     * @param outputPath path of the HTML or TSV file, e.g., {@code results/lirical.html}
+     * @return the path of the TSV file with the sensitivity analysis, e.g., {@code results/lirical.sensitivity.tsv}
+     */
+    public static String sensitivityPath(String outputPath) {
+        return outputPath.replaceAll("\\.(html|tsv)$", "") + ".sensitivity.tsv";
+    }
+
+    /** Write the sensitivity analysis next to the output file (nothing is written unless it was added). */
+    public void outputSensitivityFile() {
+        if (! hasSensitivity) {
+            return;
+        }
+        String path = sensitivityPath(this.outpath);
+        logger.info("Writing sensitivity analysis to {}", path);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(path))) {
+            Template template = cfg.getTemplate("liricalSensitivityTSV.ftl");
+            template.process(templateData, out);
+        } catch (TemplateException | IOException te) {
+            te.printStackTrace();
+        }
+    }
+
     private void initTemplateData(HpoCase hcase, Ontology ontology, Map<String,String> metadat) {
         for(Map.Entry<String,String> entry : metadat.entrySet()) {
             templateData.put(entry.getKey(),entry.getValue());
@@ -133,6 +201,8 @@ public abstract class LiricalTemplate {
         private Map<TermId, Gene2Genotype> genotypeMap;
         private Map<TermId,String> geneid2sym;
         private List<String> errors= ImmutableList.of();
+        private Metrics metrics = Metrics.DISABLED;
+        private int sensitivity = 0;
 
         double thres=0.01;
         int minDifferentials=10;
@@ -154,10 +224,21 @@ public abstract class LiricalTemplate {
         public Builder prefix(String p){ this.outfileprefix = p; return this;}
         public Builder outdirectory(String od){ this.outdir=od;return this;}
         public Builder errors(List<String> e) { this.errors = e;return this;}
+        /** Show these metrics in the HTML output (default: {@link Metrics#DISABLED}, i.e., no metrics). */
+        public Builder metrics(Metrics m) { this.metrics = m; return this;}
+        /** Add a leave-one-term-out sensitivity analysis of this many top differentials (default: 0, i.e., none). */
+        public Builder sensitivity(int k) { this.sensitivity = k; return this;}
+
+        private <T extends LiricalTemplate> T withSensitivity(T template) {
+            if (sensitivity > 0) {
+                template.addSensitivity(hcase, ontology, sensitivity);
+            }
+            return template;
+        }
 
         public HtmlTemplate buildPhenotypeHtmlTemplate() {
 
-            return new HtmlTemplate(this.hcase,
+            HtmlTemplate template = new HtmlTemplate(this.hcase,
                     this.ontology,
                     this.metadata,
                     this.thres,
@@ -165,10 +246,12 @@ public abstract class LiricalTemplate {
                     this.outfileprefix,
                     this.outdir,
                     this.errors);
+            template.addMetrics(metrics);
+            return withSensitivity(template);
         }
 
         public HtmlTemplate buildGenoPhenoHtmlTemplate() {
-            return new HtmlTemplate(this.hcase,
+            HtmlTemplate template = new HtmlTemplate(this.hcase,
                     this.ontology,
                     this.genotypeMap,
                     this.geneid2sym,
@@ -178,25 +261,27 @@ public abstract class LiricalTemplate {
                     this.outfileprefix,
                     this.outdir,
                     this.errors);
+            template.addMetrics(metrics);
+            return withSensitivity(template);
         }
 
         public TsvTemplate buildPhenotypeTsvTemplate() {
-            return new TsvTemplate(this.hcase,
+            return withSensitivity(new TsvTemplate(this.hcase,
                     this.ontology,
                     this.metadata,
                     this.outfileprefix,
-                    this.outdir);
+                    this.outdir));
         }
 
         public TsvTemplate buildGenoPhenoTsvTemplate() {
 
-            return new TsvTemplate(this.hcase,
+            return withSensitivity(new TsvTemplate(this.hcase,
                     this.ontology,
                     this.genotypeMap,
                     this.geneid2sym,
                     this.metadata,
                     this.outfileprefix,
-                    this.outdir);
+                    this.outdir));
 
         }
 
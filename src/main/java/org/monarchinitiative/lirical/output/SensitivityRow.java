@@ -0,0 +1,47 @@
+package org.monarchinitiative.lirical.output;
+
+import org.monarchinitiative.lirical.likelihoodratio.TermSensitivity;
+import org.monarchinitiative.phenol.ontology.data.Term;
+
+/**
+ * One row of the leave-one-term-out sensitivity table (see {@link TermSensitivity}) with the values formatted for
+ * the HTML and TSV output.
+ */
+public class SensitivityRow {
+    private final int rank;
+    private final String diseaseName;
+    private final String diseaseCurie;
+    private final String posttestProbability;
+    private final String termId;
+    private final String termName;
+    /** Either "observed" or "excluded". */
+    private final String status;
+    private final int rankWithoutTerm;
+    private final String posttestProbabilityWithoutTerm;
+    /** Change of the rank when the term is left out (positive: the diagnosis moves down). */
+    private final int rankChange;
+
+    SensitivityRow(TermSensitivity.Entry entry, Term term, String diseaseName) {
+        this.rank = entry.getRank();
+        this.diseaseName = diseaseName;
+        this.diseaseCurie = entry.getResult().getDiseaseCurie().getValue();
+        this.posttestProbability = String.format("%.2f%%", 100 * entry.getResult().getPosttestProbability());
+        this.termId = entry.getTermId().getValue();
+        this.termName = term != null ? term.getName() : termId;
+        this.status = entry.isExcluded() ? "excluded" : "observed";
+        this.rankWithoutTerm = entry.getRankWithoutTerm();
+        this.posttestProbabilityWithoutTerm = String.format("%.2f%%", 100 * entry.getPosttestWithoutTerm());
+        this.rankChange = rankWithoutTerm - rank;
+    }
+
+    public int getRank() { return rank; }
+    public String getDiseaseName() { return diseaseName; }
+    public String getDiseaseCurie() { return diseaseCurie; }
+    public String getPosttestProbability() { return posttestProbability; }
+    public String getTermId() { return termId; }
+    public String getTermName() { return termName; }
+    public String getStatus() { return status; }
+    public int getRankWithoutTerm() { return rankWithoutTerm; }
+    public String getPosttestProbabilityWithoutTerm() { return posttestProbabilityWithoutTerm; }
+    public int getRankChange() { return rankChange; }
+}
@@ -0,0 +1,137 @@
+package org.monarchinitiative.lirical.server;
+
+import com.google.common.hash.Hashing;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+/**
+ * A least-recently-used cache of {@link GenotypeSnapshot} objects. The id of a snapshot is derived from the
+ * canonical path, the size, and the modification time of the VCF file, so that a VCF file that was changed on
+ * disk is annotated again. If two threads request the same uncached VCF file at the same time, it may be
+ * annotated twice; only the first result is kept.
+ */
+public class GenotypeCache {
+    private static final Logger logger = LoggerFactory.getLogger(GenotypeCache.class);
+    /** Maximum number of snapshots kept in the cache. */
+    private final int capacity;
+    /** Creates a snapshot with the given id from a VCF file. */
+    private final BiFunction<String, File, GenotypeSnapshot> loader;
+    /** Key: id of a snapshot. The map is kept in access order, so that the eldest entry is the least recently used. */
+    private final LinkedHashMap<String, GenotypeSnapshot> snapshots;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    /** Total time spent annotating VCF files (milliseconds). */
+    private long loadMillis = 0;
+
+    /**
+     * @param capacity maximum number of snapshots to keep
+     * @param loader function that annotates a VCF file and returns a snapshot with the given id
+     */
+    public GenotypeCache(int capacity, BiFunction<String, File, GenotypeSnapshot> loader) {
+        this.capacity = Math.max(1, capacity);
+        this.loader = loader;
+        this.snapshots = new LinkedHashMap<String, GenotypeSnapshot>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GenotypeSnapshot> eldest) {
+                if (size() > GenotypeCache.this.capacity) {
+                    evictions++;
+                    logger.trace("Evicting genotype snapshot {} ({})", eldest.getKey(), eldest.getValue().getVcfPath());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param vcf a VCF file
+     * @return the id that a snapshot of the current version of the file has
+     */
+    public static String snapshotId(File vcf) {
+        String path;
+        try {
+            path = vcf.getCanonicalPath();
+        } catch (IOException e) {
+            path = vcf.getAbsolutePath();
+        }
+        String key = String.format("%s|%d|%d", path, vcf.length(), vcf.lastModified());
+        return Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString().substring(0, 16);
+    }
+
+    /**
+     * @param id id of a snapshot
+     * @return the snapshot, or an empty Optional if it was never loaded or has been evicted
+     */
+    public synchronized Optional<GenotypeSnapshot> get(String id) {
+        GenotypeSnapshot snapshot = snapshots.get(id);
+        if (snapshot == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return Optional.ofNullable(snapshot);
+    }
+
+    /**
+     * @param vcf a VCF file
+     * @return the cached snapshot of the file, which is created if needed
+     */
+    public GenotypeSnapshot getOrLoad(File vcf) {
+        if (! vcf.isFile()) {
+            throw new LiricalRuntimeException("Could not find VCF file at " + vcf.getAbsolutePath());
+        }
+        String id = snapshotId(vcf);
+        synchronized (this) {
+            GenotypeSnapshot snapshot = snapshots.get(id);
+            if (snapshot != null) {
+                hits++;
+                return snapshot;
+            }
+            misses++;
+        }
+        long start = System.currentTimeMillis();
+        GenotypeSnapshot snapshot = loader.apply(id, vcf);
+        long elapsed = System.currentTimeMillis() - start;
+        logger.info("Annotated {} in {} ms (genotype snapshot {})", vcf.getAbsolutePath(), elapsed, id);
+        synchronized (this) {
+            loadMillis += elapsed;
+            GenotypeSnapshot previous = snapshots.putIfAbsent(id, snapshot);
+            return previous != null ? previous : snapshot;
+        }
+    }
+
+    public synchronized int size() {
+        return snapshots.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getLoadMillis() {
+        return loadMillis;
+    }
+}
@@ -0,0 +1,57 @@
+package org.monarchinitiative.lirical.server;
+
+import org.monarchinitiative.lirical.analysis.Gene2Genotype;
+import org.monarchinitiative.lirical.engine.AnnotatedVcf;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.Map;
+
+/**
+ * The annotated genotypes of one VCF file, as kept by the {@link GenotypeCache} of the {@link LiricalServer}.
+ * Clients refer to a snapshot by its {@link #getId() id}, so that the VCF file does not need to be parsed and
+ * annotated again when the HPO terms of a case are changed.
+ */
+public class GenotypeSnapshot {
+    /** Identifier of the snapshot, derived from the path, size, and modification time of the VCF file. */
+    private final String id;
+    private final AnnotatedVcf annotatedVcf;
+
+    public GenotypeSnapshot(String id, AnnotatedVcf annotatedVcf) {
+        this.id = id;
+        this.annotatedVcf = annotatedVcf;
+    }
+
+    public GenotypeSnapshot(String id, String vcfPath, String sampleName, Map<TermId, Gene2Genotype> genotypeMap,
+                            int n_good_quality_variants, int n_filtered_variants) {
+        this(id, new AnnotatedVcf(vcfPath, sampleName, genotypeMap, n_good_quality_variants, n_filtered_variants, ""));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /** @return the genotypes in the form used by {@link org.monarchinitiative.lirical.engine.LiricalEngine}. */
+    public AnnotatedVcf getAnnotatedVcf() {
+        return annotatedVcf;
+    }
+
+    public String getVcfPath() {
+        return annotatedVcf.getVcfPath();
+    }
+
+    public String getSampleName() {
+        return annotatedVcf.getSampleName();
+    }
+
+    public Map<TermId, Gene2Genotype> getGenotypeMap() {
+        return annotatedVcf.getGenotypeMap();
+    }
+
+    public int getN_good_quality_variants() {
+        return annotatedVcf.getN_good_quality_variants();
+    }
+
+    public int getN_filtered_variants() {
+        return annotatedVcf.getN_filtered_variants();
+    }
+}
@@ -0,0 +1,73 @@
+package org.monarchinitiative.lirical.server;
+
+import java.util.Arrays;
+
+/**
+ * Records the latency of the requests to one endpoint of the {@link LiricalServer} (the {@code benchmark} command
+ * uses it for the phases of the analysis). The percentiles are calculated from the most recent requests (a window
+ * of fixed size), whereas the counts cover all requests since the server was started.
+ */
+public class LatencyRecorder {
+    /** Latencies (in nanoseconds) of the most recent requests, used as a ring buffer. */
+    private final long[] window;
+    /** Number of latencies in {@link #window} (at most the length of the window). */
+    private int filled = 0;
+    /** Position in {@link #window} of the next latency. */
+    private int next = 0;
+    private long count = 0;
+    private long errors = 0;
+    private long maxNanos = 0;
+
+    /** @param windowSize number of recent requests that are used to calculate the percentiles */
+    public LatencyRecorder(int windowSize) {
+        this.window = new long[Math.max(1, windowSize)];
+    }
+
+    /**
+     * @param nanos the latency of a request
+     * @param error true if the request was not successful
+     */
+    public synchronized void record(long nanos, boolean error) {
+        window[next] = nanos;
+        next = (next + 1) % window.length;
+        if (filled < window.length) filled++;
+        count++;
+        if (error) errors++;
+        if (nanos > maxNanos) maxNanos = nanos;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getErrors() {
+        return errors;
+    }
+
+    /** @return the maximum latency since the server was started, in milliseconds. */
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    /**
+     * @param percentiles percentiles between 0 and 100, e.g., 50, 95, and 99
+     * @return the corresponding latencies in milliseconds (nearest-rank method), or zeros if there was no request
+     */
+    public double[] percentilesMillis(double... percentiles) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(window, filled);
+        }
+        Arrays.sort(sorted);
+        double[] result = new double[percentiles.length];
+        if (sorted.length == 0) {
+            return result;
+        }
+        for (int i = 0; i < percentiles.length; i++) {
+            int rank = (int) Math.ceil(percentiles[i] / 100.0 * sorted.length);
+            int index = Math.min(sorted.length - 1, Math.max(0, rank - 1));
+            result[i] = sorted[index] / 1e6;
+        }
+        return result;
+    }
+}
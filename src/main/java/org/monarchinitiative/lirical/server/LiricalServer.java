@@ -0,0 +1,468 @@
+package org.monarchinitiative.lirical.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.engine.CaseInput;
+import org.monarchinitiative.lirical.engine.CaseResult;
+import org.monarchinitiative.lirical.engine.LiricalEngine;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.likelihoodratio.TestResult;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A local HTTP server that keeps the LIRICAL knowledge base in memory and scores cases on request. The server
+ * binds to the loopback interface by default and has the following endpoints.
+ * <ul>
+ *     <li>{@code POST /score} with a JSON object such as
+ *     {@code {"hpoIds":["HP:0001156"], "negatedHpoIds":[], "vcf":"/path/to/sample.vcf", "top":10}}. Instead
+ *     of {@code vcf}, the {@code genotypeId} returned by an earlier request can be used. The response contains
+ *     the top-ranked diseases.</li>
+ *     <li>{@code POST /genotypes} with {@code {"vcf":"/path/to/sample.vcf"}} annotates a VCF file and returns the
+ *     {@code genotypeId} of the cached result.</li>
+ *     <li>{@code GET /health} and {@code GET /metrics} report the status of the server, the latency percentiles of
+ *     the endpoints, and the statistics of the genotype cache.</li>
+ * </ul>
+ * Scoring requests are run on a pool of {@code maxConcurrent} threads with a bounded queue. If the queue is full,
+ * the request is rejected with status 503; if a request takes longer than the timeout, the server answers with
+ * status 504 and the calculation is cancelled by interrupting its thread (phases that do not check for interruption
+ * still run to their end, but the result is discarded). The cases are scored by a shared
+ * {@link LiricalEngine}.
+ */
+public class LiricalServer {
+    private static final Logger logger = LoggerFactory.getLogger(LiricalServer.class);
+    /** Number of recent requests per endpoint that are used to calculate the latency percentiles. */
+    private static final int LATENCY_WINDOW = 1000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final LiricalEngine engine;
+    private final Ontology ontology;
+    /** Null unless the server was built with genomic data. */
+    private final GenotypeCache genotypeCache;
+
+    private final String hpoVersion;
+    private final String host;
+    private final int port;
+    private final int threads;
+    private final int maxConcurrent;
+    private final int queueSize;
+    private final long timeoutMillis;
+    /** Default number of diseases returned by /score. */
+    private final int defaultTop;
+
+    private final LatencyRecorder scoreLatency = new LatencyRecorder(LATENCY_WINDOW);
+    private final LatencyRecorder genotypesLatency = new LatencyRecorder(LATENCY_WINDOW);
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private HttpServer httpServer = null;
+    private ExecutorService httpExecutor = null;
+    private ThreadPoolExecutor scoringExecutor = null;
+    private long startTime;
+
+    private LiricalServer(Builder builder) {
+        LiricalEngine.Builder engineBuilder = new LiricalEngine.Builder(builder.ontology, builder.diseaseMap)
+                .phenotypeLr(builder.phenoLr)
+                .keep(builder.keep)
+                .prescreen(builder.prescreen);
+        if (builder.factory != null) {
+            // load the genomic resources now rather than with the first request
+            engineBuilder.genomic(builder.factory);
+        }
+        this.engine = engineBuilder.build();
+        this.ontology = engine.getOntology();
+        this.host = builder.host;
+        this.port = builder.port;
+        this.threads = builder.threads;
+        this.maxConcurrent = builder.maxConcurrent;
+        this.queueSize = builder.queueSize;
+        this.timeoutMillis = builder.timeoutMillis;
+        this.defaultTop = builder.top;
+        this.hpoVersion = builder.hpoVersion;
+        this.genotypeCache = engine.isGenomic() ?
+                new GenotypeCache(builder.cacheSize,
+                        (id, vcf) -> new GenotypeSnapshot(id, engine.annotate(vcf.getAbsolutePath()))) :
+                null;
+    }
+
+    /** Start the HTTP server. The method returns immediately; the server runs until {@link #stop()} is called. */
+    public void start() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        httpExecutor = Executors.newFixedThreadPool(threads);
+        scoringExecutor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new ThreadPoolExecutor.AbortPolicy());
+        httpServer.setExecutor(httpExecutor);
+        httpServer.createContext("/score", exchange -> handlePost(exchange, scoreLatency, this::score));
+        httpServer.createContext("/genotypes", exchange -> handlePost(exchange, genotypesLatency, this::genotypes));
+        httpServer.createContext("/health", exchange -> handleGet(exchange, this::health));
+        httpServer.createContext("/metrics", exchange -> handleGet(exchange, this::metrics));
+        startTime = System.currentTimeMillis();
+        httpServer.start();
+        logger.info("LIRICAL server listening on http://{}:{} ({} diseases, genomic data: {})",
+                host, getPort(), engine.getDiseaseMap().size(), genotypeCache != null);
+    }
+
+    /** Stop the server. Requests that are being processed are given one second to complete. */
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(1);
+            httpExecutor.shutdownNow();
+            scoringExecutor.shutdownNow();
+            httpServer = null;
+        }
+    }
+
+    /** @return the port the server is listening on (useful if the server was started with port 0). */
+    public int getPort() {
+        return httpServer != null ? httpServer.getAddress().getPort() : port;
+    }
+
+    /** An error that is reported to the client with the given HTTP status code. */
+    static class RequestException extends LiricalRuntimeException {
+        private final int status;
+
+        RequestException(int status, String msg) {
+            super(msg);
+            this.status = status;
+        }
+    }
+
+    interface JsonHandler {
+        ObjectNode handle(JsonNode request);
+    }
+
+    /**
+     * Add a POST endpoint that is run on the scoring pool, with the same queue and timeout as {@code /score}
+     * (used by the tests to simulate slow requests). The server must be started.
+     */
+    void addPostEndpoint(String path, JsonHandler handler) {
+        httpServer.createContext(path, exchange -> handlePost(exchange, scoreLatency, handler));
+    }
+
+    /**
+     * Run a POST request on the scoring pool and send the JSON response (or an error) to the client.
+     */
+    private void handlePost(HttpExchange exchange, LatencyRecorder latency, JsonHandler handler) throws IOException {
+        long start = System.nanoTime();
+        int status = 200;
+        ObjectNode response;
+        try {
+            if (! "POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                throw new RequestException(405, "Use POST for " + exchange.getRequestURI().getPath());
+            }
+            JsonNode request = parseRequest(exchange);
+            Future<ObjectNode> future;
+            try {
+                future = scoringExecutor.submit(() -> handler.handle(request));
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                throw new RequestException(503, "Server is busy, try again later");
+            }
+            try {
+                response = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                timeouts.incrementAndGet();
+                throw new RequestException(504, String.format("Request did not complete within %d ms", timeoutMillis));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RequestException) {
+                    throw (RequestException) cause;
+                }
+                logger.error("Could not process request: {}", cause.getMessage(), cause);
+                throw new RequestException(500, cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RequestException(503, "Server is shutting down");
+            }
+            response.put("elapsedMillis", (System.nanoTime() - start) / 1e6);
+        } catch (RequestException e) {
+            status = e.status;
+            response = error(e.getMessage());
+        }
+        send(exchange, status, response);
+        latency.record(System.nanoTime() - start, status != 200);
+    }
+
+    private void handleGet(HttpExchange exchange, Supplier<ObjectNode> supplier) throws IOException {
+        if (! "GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Use GET for " + exchange.getRequestURI().getPath()));
+        } else {
+            send(exchange, 200, supplier.get());
+        }
+    }
+
+    private JsonNode parseRequest(HttpExchange exchange) {
+        try {
+            JsonNode request = mapper.readTree(exchange.getRequestBody());
+            if (request == null || ! request.isObject()) {
+                throw new RequestException(400, "Request body must be a JSON object");
+            }
+            return request;
+        } catch (IOException e) {
+            throw new RequestException(400, "Malformed JSON: " + e.getMessage());
+        }
+    }
+
+    private ObjectNode error(String message) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("status", "error");
+        node.put("message", message);
+        return node;
+    }
+
+    private void send(HttpExchange exchange, int status, ObjectNode response) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private List<TermId> termIds(JsonNode request, String field) {
+        ImmutableList.Builder<TermId> builder = new ImmutableList.Builder<>();
+        JsonNode array = request.get(field);
+        if (array == null || array.isNull()) {
+            return builder.build();
+        }
+        if (! array.isArray()) {
+            throw new RequestException(400, String.format("\"%s\" must be an array of HPO term ids", field));
+        }
+        for (JsonNode node : array) {
+            TermId tid;
+            try {
+                tid = TermId.of(node.asText());
+            } catch (RuntimeException e) {
+                throw new RequestException(400, "Malformed HPO term id: " + node.asText());
+            }
+            if (! ontology.getTermMap().containsKey(tid)) {
+                throw new RequestException(400, "Could not find HPO term " + tid.getValue() + " in ontology");
+            }
+            builder.add(tid);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the genotype snapshot of the request ({@code vcf} or {@code genotypeId}), or null for a
+     * phenotype-only request
+     */
+    private GenotypeSnapshot genotypeSnapshot(JsonNode request) {
+        boolean hasVcf = request.hasNonNull("vcf");
+        boolean hasId = request.hasNonNull("genotypeId");
+        if (! hasVcf && ! hasId) {
+            return null;
+        }
+        if (genotypeCache == null) {
+            throw new RequestException(400, "Server was started without Exomiser data, VCF files cannot be analyzed");
+        }
+        if (hasId) {
+            String id = request.get("genotypeId").asText();
+            Optional<GenotypeSnapshot> snapshot = genotypeCache.get(id);
+            if (! snapshot.isPresent()) {
+                throw new RequestException(404, "Unknown or evicted genotypeId " + id);
+            }
+            return snapshot.get();
+        }
+        File vcf = new File(request.get("vcf").asText());
+        if (! vcf.isFile()) {
+            throw new RequestException(404, "Could not find VCF file at " + vcf.getAbsolutePath());
+        }
+        return genotypeCache.getOrLoad(vcf);
+    }
+
+    private ObjectNode genotypes(JsonNode request) {
+        if (! request.hasNonNull("vcf")) {
+            throw new RequestException(400, "\"vcf\" is required");
+        }
+        GenotypeSnapshot snapshot = genotypeSnapshot(request);
+        ObjectNode response = mapper.createObjectNode();
+        response.put("status", "ok");
+        addGenotypeInfo(response, snapshot);
+        return response;
+    }
+
+    private void addGenotypeInfo(ObjectNode response, GenotypeSnapshot snapshot) {
+        response.put("genotypeId", snapshot.getId());
+        response.put("vcf", snapshot.getVcfPath());
+        response.put("sampleName", snapshot.getSampleName());
+        response.put("genesWithVar", snapshot.getGenotypeMap().size());
+        response.put("n_good_quality_variants", snapshot.getN_good_quality_variants());
+        response.put("n_filtered_variants", snapshot.getN_filtered_variants());
+    }
+
+    private ObjectNode score(JsonNode request) {
+        List<TermId> observed = termIds(request, "hpoIds");
+        List<TermId> negated = termIds(request, "negatedHpoIds");
+        int top = request.hasNonNull("top") ? request.get("top").asInt(defaultTop) : defaultTop;
+        GenotypeSnapshot snapshot = genotypeSnapshot(request);
+        CaseInput.Builder input = new CaseInput.Builder(observed).negated(negated);
+        if (snapshot != null) {
+            input.annotatedVcf(snapshot.getAnnotatedVcf());
+        }
+        CaseResult result = engine.score(input.build());
+        Map<TermId, String> geneId2symbol = engine.getGeneId2symbol();
+
+        ObjectNode response = mapper.createObjectNode();
+        response.put("status", "ok");
+        if (snapshot != null) {
+            addGenotypeInfo(response, snapshot);
+        }
+        response.put("rankedDiseases", result.getHpoCase().getResults().size());
+        ArrayNode results = response.putArray("results");
+        for (TestResult testResult : result.getTopResults(Math.max(0, top))) {
+            ObjectNode node = results.addObject();
+            node.put("rank", testResult.getRank());
+            node.put("diseaseId", testResult.getDiseaseCurie().getValue());
+            node.put("diseaseName", testResult.getDiseaseName());
+            node.put("pretestProbability", testResult.getPretestProbability());
+            node.put("posttestProbability", testResult.getPosttestProbability());
+            node.put("compositeLR", testResult.getCompositeLR());
+            if (testResult.hasGenotype()) {
+                node.put("genotypeLR", testResult.getGenotypeLR());
+                TermId geneId = testResult.getEntrezGeneId();
+                if (geneId != null) {
+                    node.put("geneId", geneId.getValue());
+                    node.put("geneSymbol", geneId2symbol.getOrDefault(geneId, geneId.getValue()));
+                }
+            }
+        }
+        ArrayNode errors = response.putArray("errors");
+        result.getErrors().forEach(errors::add);
+        return response;
+    }
+
+    private ObjectNode health() {
+        ObjectNode response = mapper.createObjectNode();
+        response.put("status", "ok");
+        response.put("uptimeSeconds", (System.currentTimeMillis() - startTime) / 1000);
+        response.put("hpoVersion", hpoVersion);
+        response.put("diseases", engine.getDiseaseMap().size());
+        response.put("genomic", genotypeCache != null);
+        return response;
+    }
+
+    private ObjectNode metrics() {
+        ObjectNode response = mapper.createObjectNode();
+        ObjectNode requests = response.putObject("requests");
+        addLatency(requests.putObject("score"), scoreLatency);
+        addLatency(requests.putObject("genotypes"), genotypesLatency);
+        ObjectNode scoring = response.putObject("scoring");
+        scoring.put("maxConcurrent", maxConcurrent);
+        scoring.put("active", scoringExecutor.getActiveCount());
+        scoring.put("queued", scoringExecutor.getQueue().size());
+        scoring.put("queueCapacity", queueSize);
+        scoring.put("rejected", rejected.get());
+        scoring.put("timeouts", timeouts.get());
+        scoring.put("timeoutMillis", timeoutMillis);
+        ObjectNode cache = response.putObject("genotypeCache");
+        if (genotypeCache != null) {
+            cache.put("size", genotypeCache.size());
+            cache.put("capacity", genotypeCache.getCapacity());
+            cache.put("hits", genotypeCache.getHits());
+            cache.put("misses", genotypeCache.getMisses());
+            cache.put("evictions", genotypeCache.getEvictions());
+            cache.put("loadMillis", genotypeCache.getLoadMillis());
+        } else {
+            cache.put("size", 0);
+            cache.put("capacity", 0);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        ObjectNode memory = response.putObject("memory");
+        memory.put("usedMb", (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+        memory.put("maxMb", runtime.maxMemory() / (1024 * 1024));
+        return response;
+    }
+
+    private void addLatency(ObjectNode node, LatencyRecorder latency) {
+        double[] percentiles = latency.percentilesMillis(50, 95, 99);
+        node.put("count", latency.getCount());
+        node.put("errors", latency.getErrors());
+        node.put("p50Millis", percentiles[0]);
+        node.put("p95Millis", percentiles[1]);
+        node.put("p99Millis", percentiles[2]);
+        node.put("maxMillis", latency.getMaxMillis());
+    }
+
+    public static class Builder {
+        private final Ontology ontology;
+        private final Map<TermId, HpoDisease> diseaseMap;
+        private final PhenotypeLikelihoodRatio phenoLr;
+        private LiricalFactory factory = null;
+        private boolean keep = false;
+        private String hpoVersion = "n/a";
+        private String host = "127.0.0.1";
+        private int port = 8085;
+        private int threads = 8;
+        private int maxConcurrent = Runtime.getRuntime().availableProcessors();
+        private int queueSize = 2 * Runtime.getRuntime().availableProcessors();
+        private long timeoutMillis = 30_000;
+        private int cacheSize = 16;
+        private int top = 10;
+        private int prescreen = 0;
+
+        public Builder(Ontology ontology, Map<TermId, HpoDisease> diseaseMap, PhenotypeLikelihoodRatio phenoLr) {
+            this.ontology = ontology;
+            this.diseaseMap = diseaseMap;
+            this.phenoLr = phenoLr;
+        }
+
+        /** Enable the analysis of VCF files with the Exomiser/Jannovar data of this factory. */
+        public Builder genomic(LiricalFactory factory) { this.factory = factory; return this; }
+
+        public Builder keep(boolean b) { this.keep = b; return this; }
+
+        public Builder hpoVersion(String v) { this.hpoVersion = v; return this; }
+
+        public Builder host(String h) { this.host = h; return this; }
+
+        public Builder port(int p) { this.port = p; return this; }
+
+        /** @param n number of threads that handle HTTP requests */
+        public Builder threads(int n) { this.threads = Math.max(1, n); return this; }
+
+        /** @param n maximum number of requests that are scored at the same time */
+        public Builder maxConcurrent(int n) { this.maxConcurrent = Math.max(1, n); return this; }
+
+        /** @param n maximum number of requests that wait for a scoring thread */
+        public Builder queue(int n) { this.queueSize = Math.max(1, n); return this; }
+
+        public Builder timeoutMillis(long ms) { this.timeoutMillis = Math.max(1, ms); return this; }
+
+        /** @param n maximum number of annotated VCF files kept in memory */
+        public Builder cacheSize(int n) { this.cacheSize = Math.max(1, n); return this; }
+
+        /** @param n default number of diseases returned by /score */
+        public Builder top(int n) { this.top = Math.max(0, n); return this; }
+
+        /** @param n number of diseases evaluated exactly after the prescreen (0: all diseases) */
+        public Builder prescreen(int n) { this.prescreen = Math.max(0, n); return this; }
+
+        public LiricalServer build() {
+            return new LiricalServer(this);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * A local HTTP server that keeps the LIRICAL knowledge base in memory for interactive use. The server is started
+ * with the {@code serve} command.
+ */
+package org.monarchinitiative.lirical.server;
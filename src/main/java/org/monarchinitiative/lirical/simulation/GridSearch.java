@@ -2,6 +2,7 @@ package org.monarchinitiative.lirical.simulation;
 
 
 import org.monarchinitiative.lirical.exception.LiricalException;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
 import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.TermId;
@@ -14,7 +15,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * This is a demonstration of the likelihood ratio algorithm that uses simulated cases to assess the performance of the
@@ -31,12 +37,26 @@ public class GridSearch  {
     private final int n_cases_to_simulate_per_run;
     /** SHould we exchange the terms with their parents to simulate "imprecise" data entry? */
     private final boolean useImprecision;
+    /** Smallest and largest number of HPO terms per simulated case. */
+    private int minTerms = 1;
+    private int maxTerms = 10;
+    /** Smallest and largest number of noise terms per simulated case. */
+    private int minNoise = 0;
+    private int maxNoise = 4;
+    /** Number of threads of the work-stealing pool. */
+    private int threads = 1;
+    /** Seed from which the seeds of the cells of the grid are derived. */
+    private long seed = new Random().nextLong();
+    /** Rank of each simulated case (0 if not ranked), indexed by the number of terms, the number of noise terms, and the case. */
+    private int[][][] caseRanks;
+    /** Proportion of the simulated cases at rank 1, indexed by the number of terms and the number of noise terms. */
+    private double[][] Z;
 
 
     /**
-     * Perform a grid search with the indicated number of simulated cases. We will simulate from
-     * one to ten HPO terms with from zero to four "random" (noise) terms, and write the results to
-     * a file that can be input by R.
+     * Perform a grid search with the indicated number of simulated cases. By default, we will simulate from
+     * one to ten HPO terms with from zero to four "random" (noise) terms (see {@link #setTermRange(int, int)} and
+     * {@link #setNoiseRange(int, int)}), and write the results to a file that can be input by R.
      * @param ontology Reference to the HPO ontology
      * @param diseaseMap Map of HPO Disease models
      * @param n_cases Number of cases to simulate
@@ -50,35 +70,108 @@ public class GridSearch  {
     }
 
 
+    /**
+     * @param min smallest number of HPO terms per simulated case
+     * @param max largest number of HPO terms per simulated case
+     */
+    public void setTermRange(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new LiricalRuntimeException(String.format("Invalid range of terms: %d-%d", min, max));
+        }
+        this.minTerms = min;
+        this.maxTerms = max;
+    }
+
+    /**
+     * @param min smallest number of noise terms per simulated case
+     * @param max largest number of noise terms per simulated case
+     */
+    public void setNoiseRange(int min, int max) {
+        if (min < 0 || max < min) {
+            throw new LiricalRuntimeException(String.format("Invalid range of noise terms: %d-%d", min, max));
+        }
+        this.minNoise = min;
+        this.maxNoise = max;
+    }
+
+    public void setThreads(int n) { this.threads = Math.max(1, n); }
+
+    public void setSeed(long seed) { this.seed = seed; }
+
+    public long getSeed() { return seed; }
+
+    /** @return the rank of each simulated case of the last {@link #simulateGrid()} (see {@link #caseRanks}) */
+    int[][][] getCaseRanks() { return caseRanks; }
+
+    /** @return the proportion of the cases at rank 1 of the last {@link #simulateGrid()} (see {@link #Z}) */
+    double[][] getProportionsAtRank1() { return Z; }
+
+    /**
+     * Simulate the cases of all cells of the grid and record {@link #caseRanks} and {@link #Z}. The phenotype
+     * likelihood ratio evaluator is created once and shared by all cells of the grid, and the cases of all cells
+     * are simulated in batches on one work-stealing pool. Each cell has its own seed (derived from {@link #seed}),
+     * and so the results do not depend on the number of threads.
+     * @throws LiricalException if a case could not be simulated
+     */
+    void simulateGrid() throws LiricalException {
+        int[] termnumber = IntStream.rangeClosed(minTerms, maxTerms).toArray();
+        int[] randomtermnumber = IntStream.rangeClosed(minNoise, maxNoise).toArray();
+        logger.info("Grid search with {}-{} terms and {}-{} noise terms, {} cases per cell, {} threads, seed={}",
+                minTerms, maxTerms, minNoise, maxNoise, n_cases_to_simulate_per_run, threads, seed);
+        PhenotypeOnlyHpoCaseSimulator base =
+                new PhenotypeOnlyHpoCaseSimulator(ontology, diseaseMap, n_cases_to_simulate_per_run, minTerms, minNoise, useImprecision);
+        base.setVerbosity(false); // reduce output!
+        base.setThreads(threads);
+        Random cellSeeds = new Random(seed);
+        PhenotypeOnlyHpoCaseSimulator[][] simulators = new PhenotypeOnlyHpoCaseSimulator[termnumber.length][randomtermnumber.length];
+        caseRanks = new int[termnumber.length][randomtermnumber.length][];
+        List<Future<Void>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newWorkStealingPool(threads);
+        try {
+            for (int i = 0; i < termnumber.length; i++) {
+                for (int j = 0; j < randomtermnumber.length; j++) {
+                    PhenotypeOnlyHpoCaseSimulator simulator = base.withTerms(termnumber[i], randomtermnumber[j]);
+                    simulator.setSeed(cellSeeds.nextLong());
+                    simulators[i][j] = simulator;
+                    caseRanks[i][j] = new int[n_cases_to_simulate_per_run];
+                    futures.addAll(simulator.submitCases(executor, caseRanks[i][j]));
+                }
+            }
+            PhenotypeOnlyHpoCaseSimulator.awaitCases(futures);
+        } finally {
+            executor.shutdownNow();
+        }
+        Z = new double[termnumber.length][randomtermnumber.length];
+        for (int i = 0; i < termnumber.length; i++) {
+            for (int j = 0; j < randomtermnumber.length; j++) {
+                simulators[i][j].recordRanks(caseRanks[i][j]);
+                Z[i][j] = simulators[i][j].getProportionAtRank1();
+            }
+        }
+    }
+
     /**
      * Perform a grid search over varying numbers of terms and random terms
-     * both with and without moving the terms to parent terms (imprecision).
+     * both with and without moving the terms to parent terms (imprecision), see {@link #simulateGrid()}.
      * @throws LiricalException upon I/O problems with the annotations
      */
     public void gridsearch() throws LiricalException {
-
-        int[] termnumber = {1,2,3,4,5,6,7,8,9,10};
-        int[] randomtermnumber = {0,1,2,3,4};
+        simulateGrid();
+        int[] termnumber = IntStream.rangeClosed(minTerms, maxTerms).toArray();
+        int[] randomtermnumber = IntStream.rangeClosed(minNoise, maxNoise).toArray();
         String outfilename=String.format("grid_%d_cases_%s.R",
                 n_cases_to_simulate_per_run,
                 useImprecision?"imprecise":"precise"
                 );
-        double[][] Z;
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outfilename))) {
-            Z = new double[termnumber.length][randomtermnumber.length];
-            PhenotypeOnlyHpoCaseSimulator simulator;
-            for (int i = 0; i < termnumber.length; i++) {
-                for (int j = 0; j < randomtermnumber.length; j++) {
-                    simulator = new PhenotypeOnlyHpoCaseSimulator( ontology,diseaseMap,n_cases_to_simulate_per_run, termnumber[i], randomtermnumber[j], useImprecision);
-                    simulator.setVerbosity(false); // reduce output!
-                    simulator.simulateCases();
-                    Z[i][j] = simulator.getProportionAtRank1();
-                    System.out.println(String.format("terms: %d; noise terms: %d; percentage at rank 1: %.2f\n",
-                            termnumber[i],
-                            randomtermnumber[j],
-                            100.00 * Z[i][j]));
-                }
+        for (int i = 0; i < termnumber.length; i++) {
+            for (int j = 0; j < randomtermnumber.length; j++) {
+                System.out.println(String.format("terms: %d; noise terms: %d; percentage at rank 1: %.2f\n",
+                        termnumber[i],
+                        randomtermnumber[j],
+                        100.00 * Z[i][j]));
             }
+        }
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outfilename))) {
             // output a file that we will input as an R data frame.
             // see the read-the-docs documentation for how to create a graphic in R with this
             writer.write("library(plot3D)\n");
@@ -92,11 +185,12 @@ public class GridSearch  {
             }
             String valuestring=values.stream().map(String::valueOf).collect(Collectors.joining(","));
             writer.write("c(" + valuestring +"),\n");
-            writer.write("nrow=5,\nncol=10,\nbyrow=TRUE)\n");
+            writer.write(String.format("nrow=%d,\nncol=%d,\nbyrow=TRUE)\n", randomtermnumber.length, termnumber.length));
             //writer.write("hist3D(z = mat, scale = FALSE, expand = 0.5, bty = \"g\", phi = 20,\n" +
             //        "      col = \"#0072B2\", border = \"black\", shade = 0.2, ltheta = 99,\n" +
             //       "      space = 0.3, ticktype = \"detailed\", d = 2)");
-            writer.write("hist3D(x=seq(0,4),y=seq(1,10),z = mat, scale = FALSE, expand = 3, bty = \"g\", phi = 15, border = \"black\", shade = 0.2,\n"+
+            writer.write(String.format("hist3D(x=seq(%d,%d),y=seq(%d,%d),z = mat, scale = FALSE, expand = 3, bty = \"g\", phi = 15, border = \"black\", shade = 0.2,\n",
+                    minNoise, maxNoise, minTerms, maxTerms) +
                     "ltheta = 50, theta = 40, space = 0.3, ticktype = \"detailed\", d = 50)");
         } catch (IOException e) {
             throw new LiricalException("I/O error: " + e.getMessage());
@@ -2,8 +2,8 @@ package org.monarchinitiative.lirical.simulation;
 
 import com.google.common.collect.ImmutableList;
 import org.monarchinitiative.lirical.exception.LiricalException;
-import org.monarchinitiative.lirical.hpo.HpoCase;
 import org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator;
+import org.monarchinitiative.lirical.likelihoodratio.DiseaseRank;
 import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
 import org.monarchinitiative.phenol.formats.hpo.HpoAnnotation;
 import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
@@ -178,14 +178,16 @@ public class NotSimulator {
         TermId diseaseIdWithTermExcluded = nad.correctDiagnosisWithExcludedTerm;
         TermId hpo = nad.hpoId;
         HpoDisease diseaseWithTermExcluded = this.diseaseMap.get(diseaseIdWithTermExcluded);
+        List<TermId> targets = ImmutableList.of(diseaseIdWithTermAnnotated, diseaseIdWithTermExcluded);
         try {
-            HpoCase hcase = simulateCase(diseaseWithTermExcluded);
-            HpoCase hcaseX = simulateCaseWithExcludedTerm(diseaseWithTermExcluded,hpo);
-            double differentialPositive = hcase.getResult(diseaseIdWithTermAnnotated).getPosttestProbability();
-            double correctDiseasePositive = hcase.getResult(diseaseIdWithTermExcluded).getPosttestProbability();
-
-            double differentialNegative = hcaseX.getResult(diseaseIdWithTermAnnotated).getPosttestProbability();
-            double correctDiseaseNegative = hcaseX.getResult(diseaseIdWithTermExcluded).getPosttestProbability();
+            // we only need the posttest probabilities of the two diseases, so no TestResult objects are created
+            List<DiseaseRank> ranks = simulateCase(diseaseWithTermExcluded).rankOnly(targets);
+            List<DiseaseRank> ranksX = simulateCaseWithExcludedTerm(diseaseWithTermExcluded,hpo).rankOnly(targets);
+            double differentialPositive = ranks.get(0).getPosttestProbability();
+            double correctDiseasePositive = ranks.get(1).getPosttestProbability();
+
+            double differentialNegative = ranksX.get(0).getPosttestProbability();
+            double correctDiseaseNegative = ranksX.get(1).getPosttestProbability();
             this.positiveAnnotationsCorrectDisease.add(correctDiseasePositive);
             this.positiveAnnotationsDifferential.add(differentialPositive);
             this.negativeAnnotationsCorrectDisease.add(correctDiseaseNegative);
@@ -301,7 +303,7 @@ public class NotSimulator {
         return termIdBuilder.build();
     }
 
-    private HpoCase simulateCase(HpoDisease disease) throws LiricalException {
+    private CaseEvaluator simulateCase(HpoDisease disease) throws LiricalException {
         if (disease == null) {
             // should never happen!
             throw new LiricalException("Attempt to create case from Null-value for disease");
@@ -314,12 +316,11 @@ public class NotSimulator {
                 .phenotypeLr(this.phenotypeLrEvaluator);
         // the following evaluates the case for each disease with equal pretest probabilities.
         // Object to evaluate the results of differential diagnosis by LR analysis.
-        CaseEvaluator evaluator = caseBuilder.buildPhenotypeOnlyEvaluator();
-        return evaluator.evaluate();
+        return caseBuilder.buildPhenotypeOnlyEvaluator();
 
     }
 
-    private HpoCase simulateCaseWithExcludedTerm(HpoDisease disease,TermId excluded) throws LiricalException {
+    private CaseEvaluator simulateCaseWithExcludedTerm(HpoDisease disease,TermId excluded) throws LiricalException {
         if (disease == null) {
             // should never happen!
             throw new LiricalException("Attempt to create case from Null-value for disease");
@@ -335,8 +336,7 @@ public class NotSimulator {
                 .phenotypeLr(this.phenotypeLrEvaluator);
         // the following evaluates the case for each disease with equal pretest probabilities.
         // Object to evaluate the results of differential diagnosis by LR analysis.
-        CaseEvaluator evaluator = caseBuilder.buildPhenotypeOnlyEvaluator();
-        return evaluator.evaluate();
+        return caseBuilder.buildPhenotypeOnlyEvaluator();
 
     }
 
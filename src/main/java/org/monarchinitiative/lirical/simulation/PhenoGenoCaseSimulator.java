@@ -4,12 +4,13 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import org.monarchinitiative.exomiser.core.genome.GenomeAssembly;
 import org.monarchinitiative.lirical.analysis.Gene2Genotype;
-import org.monarchinitiative.lirical.analysis.VcfSimulator;
+import org.monarchinitiative.lirical.analysis.TemplateVcfAnnotator;
 import org.monarchinitiative.lirical.configuration.LiricalFactory;
 import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
 import org.monarchinitiative.lirical.hpo.HpoCase;
 import org.monarchinitiative.lirical.io.PhenopacketImporter;
 import org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator;
+import org.monarchinitiative.lirical.likelihoodratio.DiseaseRank;
 import org.monarchinitiative.lirical.likelihoodratio.GenotypeLikelihoodRatio;
 import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
 import org.monarchinitiative.lirical.output.HtmlTemplate;
@@ -19,13 +20,10 @@ import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
 import org.monarchinitiative.phenol.ontology.data.Ontology;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 import org.phenopackets.schema.v1.core.Disease;
-import org.phenopackets.schema.v1.core.HtsFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -58,6 +56,10 @@ public class PhenoGenoCaseSimulator {
 
     private final Map<TermId, HpoDisease> diseaseMap;
 
+    private final PhenotypeLikelihoodRatio phenoLr;
+
+    private final GenotypeLikelihoodRatio genoLr;
+
     private final Multimap<TermId, TermId> disease2geneMultimap;
 
     private final  Multimap<TermId,TermId> gene2diseaseMultimap;
@@ -80,6 +82,8 @@ public class PhenoGenoCaseSimulator {
     private final boolean randomize;
     /** A list of all HPO term ids in the Phenotypic abnormality subontology. */
     private final ImmutableList<TermId> phenotypeterms;
+    /** If true, only the ranks of the simulated disease and gene are calculated, and no HTML or TSV output can be written. */
+    private boolean rankOnly = false;
 
 
     /**
@@ -90,8 +94,46 @@ public class PhenoGenoCaseSimulator {
      * @param rand if true, randomize the HPO terms in the phenopacket
      */
     public PhenoGenoCaseSimulator(File phenopacket, String vcfpath, LiricalFactory factory, boolean rand) {
+        this(phenopacket, new TemplateVcfAnnotator(vcfpath, () -> factory.vcf2GenotypeMap(vcfpath)), factory, rand);
+    }
+
+    /**
+     * Use this constructor to simulate multiple cases with the same template VCF file, which is then only annotated once.
+     * @param phenopacket A GA4GH Phenopacket with information about a case
+     * @param template annotated template VCF file we will add a mutation to
+     * @param factory {@link LiricalFactory} object
+     * @param rand if true, randomize the HPO terms in the phenopacket
+     */
+    public PhenoGenoCaseSimulator(File phenopacket, TemplateVcfAnnotator template, LiricalFactory factory, boolean rand) {
+        this(phenopacket, template, factory, factory.diseaseMap(factory.hpoOntology()), rand);
+    }
+
+    private PhenoGenoCaseSimulator(File phenopacket, TemplateVcfAnnotator template, LiricalFactory factory,
+                                   Map<TermId, HpoDisease> diseaseMap, boolean rand) {
+        this(phenopacket, template, factory, diseaseMap, new PhenotypeLikelihoodRatio(factory.hpoOntology(), diseaseMap),
+                factory.getGenotypeLR(), rand);
+    }
+
+    /**
+     * Use this constructor to simulate many cases with the same knowledge base, which then only needs to be loaded
+     * once. The arguments are only read, so that several simulators can share them and run in parallel.
+     * @param phenopacket A GA4GH Phenopacket with information about a case
+     * @param template annotated template VCF file we will add a mutation to
+     * @param factory {@link LiricalFactory} object
+     * @param diseaseMap map with key: disease id; value: corresponding {@link HpoDisease} object
+     * @param phenoLr object for calculating phenotype likelihood ratios (for the diseases in diseaseMap)
+     * @param genoLr object for calculating genotype likelihood ratios
+     * @param rand if true, randomize the HPO terms in the phenopacket
+     */
+    public PhenoGenoCaseSimulator(File phenopacket,
+                                  TemplateVcfAnnotator template,
+                                  LiricalFactory factory,
+                                  Map<TermId, HpoDisease> diseaseMap,
+                                  PhenotypeLikelihoodRatio phenoLr,
+                                  GenotypeLikelihoodRatio genoLr,
+                                  boolean rand) {
         phenopacketFile = phenopacket;
-        templateVcfPath = vcfpath;
+        templateVcfPath = template.getTemplateVcfPath();
         this.metadata = new HashMap<>();
         this.factory = factory;
         this.genomeAssembly = factory.getAssembly();
@@ -126,19 +168,17 @@ public class PhenoGenoCaseSimulator {
             negatedHpoIdList = importer.getNegatedHpoTerms();
         }
 
-        VcfSimulator vcfSimulator = new VcfSimulator(Paths.get(this.templateVcfPath));
-        HtsFile simulatedVcf;
-        try {
-            simulatedVcf = vcfSimulator.simulateVcf(importer.getSamplename(), importer.getVariantList(), genomeAssembly.toString());
-            //pp = pp.toBuilder().clearHtsFiles().addHtsFiles(htsFile).build();
-        } catch (IOException e) {
-            throw new LiricalRuntimeException("Could not simulate VCF for phenopacket");
+        String subjectId = importer.getSamplename();
+        if (subjectId == null || subjectId.isEmpty()) {
+            System.err.println("[WARNING] Subject ID not found for "+phenopacketFile.getName());
+            subjectId = "n/a";
         }
-        String vcfPath = simulatedVcf.getUri();//File().getPath();
-        this.metadata.put("vcf_file", vcfPath);
-        this.genotypemap = factory.getGene2GenotypeMap(vcfPath);
+        this.metadata.put("vcf_file", templateVcfPath);
+        this.genotypemap = template.genotypeMap(subjectId, importer.getVariantList());
         this.ontology = factory.hpoOntology();
-        this.diseaseMap = factory.diseaseMap(ontology);
+        this.diseaseMap = diseaseMap;
+        this.phenoLr = phenoLr;
+        this.genoLr = genoLr;
         this.disease2geneMultimap = factory.disease2geneMultimap();
         this.gene2diseaseMultimap = factory.gene2diseaseMultimap();
 
@@ -157,7 +197,7 @@ public class PhenoGenoCaseSimulator {
         this.simulatedDiseaseGene = TermId.of(importer.getGene());
         logger.trace("Running simulation from phenopacket {} with template VCF {}",
                 phenopacketFile.getAbsolutePath(),
-                vcfPath);
+                templateVcfPath);
 
 
        this.metadata.put("phenopacket.diagnosisId", simulatedDiseaseId.getValue());
@@ -183,10 +223,6 @@ public class PhenoGenoCaseSimulator {
     public void run()  {
 
 
-        GenotypeLikelihoodRatio genoLr = factory.getGenotypeLR();
-        PhenotypeLikelihoodRatio phenoLr =  new PhenotypeLikelihoodRatio(ontology, diseaseMap);
-
-
         CaseEvaluator.Builder caseBuilder = new CaseEvaluator.Builder(hpoIdList)
                 .ontology(factory.hpoOntology())
                 .negated(negatedHpoIdList)
@@ -199,6 +235,22 @@ public class PhenoGenoCaseSimulator {
                 .genotypeLr(genoLr);
 
         CaseEvaluator evaluator = caseBuilder.build();
+        if (rankOnly) {
+            rankSimulatedDisease(evaluator);
+        } else {
+            evaluateSimulatedDisease(evaluator);
+        }
+
+
+        this.metadata.put("genesWithVar", String.valueOf(genotypemap.size()));
+        this.metadata.put("exomiserPath", factory.getExomiserPath());
+        this.metadata.put("hpoVersion", factory.getHpoVersion());
+
+    }
+
+
+    /** Evaluate all diseases and determine the ranks from the {@link HpoCase}, which is then used for the output files. */
+    private void evaluateSimulatedDisease(CaseEvaluator evaluator) {
         this.hpocase = evaluator.evaluate();
 
         Optional<Integer> optRank = this.hpocase.getRank(simulatedDiseaseId);
@@ -212,16 +264,43 @@ public class PhenoGenoCaseSimulator {
                 rank_of_gene = r;
             }
         }
+    }
 
+    /**
+     * Determine the ranks of the simulated disease and of the diseases associated with the simulated gene without
+     * creating a {@link org.monarchinitiative.lirical.likelihoodratio.TestResult} for each disease.
+     */
+    private void rankSimulatedDisease(CaseEvaluator evaluator) {
+        List<TermId> targets = new ArrayList<>();
+        targets.add(simulatedDiseaseId);
+        for (TermId diseaseId : this.gene2diseaseMultimap.get(this.simulatedDiseaseGene)) {
+            if (!targets.contains(diseaseId)) {
+                targets.add(diseaseId);
+            }
+        }
+        List<DiseaseRank> ranks = evaluator.rankOnly(targets);
+        this.rank_of_disease = ranks.get(0).getRank();
+        this.posttest_probability = ranks.get(0).getPosttestProbability();
+        this.rank_of_gene = ranks.stream().mapToInt(DiseaseRank::getRank).min().orElse(rank_of_disease);
+    }
 
-        this.metadata.put("genesWithVar", String.valueOf(genotypemap.size()));
-        this.metadata.put("exomiserPath", factory.getExomiserPath());
-        this.metadata.put("hpoVersion", factory.getHpoVersion());
+    /**
+     * @param rankOnly if true, {@link #run()} only calculates the ranks of the simulated disease and gene, which is
+     *                 much faster. The HTML and TSV output is then not available.
+     */
+    public void setRankOnly(boolean rankOnly) {
+        this.rankOnly = rankOnly;
+    }
 
+    private void checkReportAvailable() {
+        if (hpocase == null) {
+            throw new LiricalRuntimeException("No results to output (run() must be called without the rank-only option)");
+        }
     }
 
 
     public void outputHtml(String prefix, double lrThreshold,int minDiff, String outdir) {
+        checkReportAvailable();
         LiricalTemplate.Builder builder = new LiricalTemplate.Builder(hpocase,ontology,metadata)
                 .genotypeMap(genotypemap)
                 .geneid2symMap(factory.geneId2symbolMap())
@@ -235,6 +314,7 @@ public class PhenoGenoCaseSimulator {
 
 
     public void outputTsv(String prefix, double lrThreshold,int minDiff, String outdir) {
+        checkReportAvailable();
         String outname=String.format("%s.tsv",prefix);
         LiricalTemplate.Builder builder = new LiricalTemplate.Builder(this.hpocase,ontology,metadata)
                 .genotypeMap(genotypemap)
@@ -3,9 +3,11 @@ package org.monarchinitiative.lirical.simulation;
 import org.json.simple.parser.ParseException;
 import org.monarchinitiative.exomiser.core.genome.GenomeAssembly;
 import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
 import org.monarchinitiative.lirical.hpo.HpoCase;
 import org.monarchinitiative.lirical.io.PhenopacketImporter;
 import org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator;
+import org.monarchinitiative.lirical.likelihoodratio.DiseaseRank;
 import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
 import org.monarchinitiative.lirical.output.HtmlTemplate;
 import org.monarchinitiative.lirical.output.LiricalTemplate;
@@ -56,6 +58,8 @@ public class PhenoOnlyCaseSimulator {
     private HpoCase hpocase=null;
     /** Rank of simulated disease */
     private int rank_of_disease;
+    /** If true, only the rank of the simulated disease is calculated, and no HTML or TSV output can be written. */
+    private boolean rankOnly = false;
 
 
 
@@ -95,18 +99,31 @@ public class PhenoOnlyCaseSimulator {
                 .phenotypeLr(phenoLr);
 
         CaseEvaluator evaluator = caseBuilder.buildPhenotypeOnlyEvaluator();
-        this.hpocase = evaluator.evaluate();
-
-
-        Optional<Integer> optRank = this.hpocase .getRank(simulatedDiseaseId);
+        Optional<Integer> optRank;
+        if (rankOnly) {
+            DiseaseRank diseaseRank = evaluator.rankOnly(simulatedDiseaseId);
+            optRank = diseaseRank.isRanked() ? Optional.of(diseaseRank.getRank()) : Optional.empty();
+        } else {
+            this.hpocase = evaluator.evaluate();
+            optRank = this.hpocase.getRank(simulatedDiseaseId);
+        }
         if (optRank.isPresent()) {
             rank_of_disease = optRank.get();
             System.out.println(simulatedDiagnosis.getTerm().getLabel() + ": " + rank_of_disease);
         }
     }
 
+    /**
+     * @param rankOnly if true, {@link #run()} only calculates the rank of the simulated disease, which is much
+     *                 faster. The HTML and TSV output is then not available.
+     */
+    public void setRankOnly(boolean rankOnly) {
+        this.rankOnly = rankOnly;
+    }
+
 
     public void outputHtml(String prefix, double lrThreshold,int minDiff, String outdir) {
+        checkReportAvailable();
         LiricalTemplate.Builder builder = new LiricalTemplate.Builder(hpocase,ontology,metadata)
                 .threshold(lrThreshold)
                 .mindiff(minDiff)
@@ -118,6 +135,7 @@ public class PhenoOnlyCaseSimulator {
 
 
     public void outputTsv(String prefix, double lrThreshold,int minDiff, String outdir) {
+        checkReportAvailable();
         String outname=String.format("%s.tsv",prefix);
         LiricalTemplate.Builder builder = new LiricalTemplate.Builder(this.hpocase,ontology,metadata)
                 .threshold(lrThreshold)
@@ -131,6 +149,12 @@ public class PhenoOnlyCaseSimulator {
 
 
 
+    private void checkReportAvailable() {
+        if (hpocase == null) {
+            throw new LiricalRuntimeException("No results to output (run() must be called without the rank-only option)");
+        }
+    }
+
     public String getDiagnosisLabel() {
         return this.simulatedDiagnosis.getTerm().getLabel();
     }
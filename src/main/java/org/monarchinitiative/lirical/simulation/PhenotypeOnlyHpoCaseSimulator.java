@@ -3,8 +3,8 @@ package org.monarchinitiative.lirical.simulation;
 
 import com.google.common.collect.ImmutableList;
 import org.monarchinitiative.lirical.exception.LiricalException;
-import org.monarchinitiative.lirical.hpo.HpoCase;
 import org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator;
+import org.monarchinitiative.lirical.likelihoodratio.DiseaseRank;
 import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
 import org.monarchinitiative.phenol.formats.hpo.HpoAnnotation;
 import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
@@ -15,6 +15,10 @@ import org.slf4j.LoggerFactory;
 
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.monarchinitiative.phenol.ontology.algo.OntologyAlgorithm.getDescendents;
 import static org.monarchinitiative.phenol.ontology.algo.OntologyAlgorithm.getParentTerms;
@@ -45,9 +49,17 @@ public class PhenotypeOnlyHpoCaseSimulator {
     private boolean addTermImprecision = false;
     /** The proportion of cases at rank 1 in the current simulation */
     private double proportionAtRank1=0.0;
-    /** This array will hold the TermIds from the disease map in order -- this will allow us to
-     * get random indices for the simulations. */
-    private TermId[] termIndices;
+    /** This array holds the (sorted) ids of the diseases that have at least {@link #n_terms_per_case}
+     * phenotypic abnormalities -- this will allow us to get random indices for the simulations. */
+    private final TermId[] eligibleDiseases;
+    /** Key: an HPO term; value: its parents in the phenotypic abnormality subontology, except the root (sorted). */
+    private final Map<TermId, TermId[]> nonRootParents;
+    /** Seed from which the seeds of the individual cases are derived. */
+    private long seed = new Random().nextLong();
+    /** Number of threads used to simulate the cases. The results do not depend on the number of threads. */
+    private int threads = 1;
+    /** Key: rank; value: number of simulated cases at this rank (from the last call to {@link #simulateCases()}). */
+    private Map<Integer,Integer> rankCounts = new HashMap<>();
     /** If true, show lots of results in STDOUT while we are calculating. */
     private boolean verbose=true;
     /** Root term id in the phenotypic abnormality subontology. */
@@ -79,7 +91,58 @@ public class PhenotypeOnlyHpoCaseSimulator {
             builder.add(t);
         }
         this.phenotypeterms=builder.build();
-        this.termIndices=diseaseMap.keySet().toArray(new TermId[0]);
+        this.eligibleDiseases=eligibleDiseases(diseaseMap, terms_per_case);
+        this.nonRootParents = nonRootParentMap(ontology, phenotypeterms);
+    }
+
+    /** @return sorted array with the ids of the diseases that have at least n_terms phenotypic abnormalities. */
+    private static TermId[] eligibleDiseases(Map<TermId,HpoDisease> diseaseMap, int n_terms) {
+        return diseaseMap.values().stream()
+                .filter(d -> d.getPhenotypicAbnormalities().size() >= n_terms)
+                .filter(d -> d.getNumberOfPhenotypeAnnotations() >= n_terms)
+                .map(HpoDisease::getDiseaseDatabaseId)
+                .sorted()
+                .toArray(TermId[]::new);
+    }
+
+    /**
+     * Calculate the non-root parents of each term of the phenotypic abnormality subontology once, so that we do
+     * not need to create the subontology each time we make a term imprecise.
+     * @return Map with key: an HPO term; value: its parents in the phenotypic abnormality subontology, except the root
+     */
+    private static Map<TermId, TermId[]> nonRootParentMap(Ontology ontology, List<TermId> phenotypeterms) {
+        Ontology phenotypeOntology = ontology.subOntology(PHENOTYPIC_ABNORMALITY);
+        Map<TermId, TermId[]> parentMap = new HashMap<>();
+        for (TermId tid : phenotypeterms) {
+            if (!phenotypeOntology.getTermMap().containsKey(tid)) {
+                continue; // e.g., an alternate id; such terms are not made imprecise
+            }
+            TermId[] parents = getParentTerms(phenotypeOntology, tid, false).stream()
+                    .filter(p -> !p.equals(PHENOTYPIC_ABNORMALITY))
+                    .sorted()
+                    .toArray(TermId[]::new);
+            parentMap.put(tid, parents);
+        }
+        return parentMap;
+    }
+
+    /**
+     * Create a simulator with other numbers of terms that shares the ontology, the diseases, the phenotype
+     * likelihood ratio evaluator, and the precomputed tables of other. This is used by {@link GridSearch}.
+     */
+    private PhenotypeOnlyHpoCaseSimulator(PhenotypeOnlyHpoCaseSimulator other, int terms_per_case, int noise_terms) {
+        this.n_cases_to_simulate=other.n_cases_to_simulate;
+        this.n_terms_per_case=terms_per_case;
+        this.n_noise_terms=noise_terms;
+        this.ontology=other.ontology;
+        this.diseaseMap=other.diseaseMap;
+        this.phenotypeLrEvaluator=other.phenotypeLrEvaluator;
+        this.phenotypeterms=other.phenotypeterms;
+        this.nonRootParents=other.nonRootParents;
+        this.eligibleDiseases=eligibleDiseases(diseaseMap, terms_per_case);
+        this.addTermImprecision=other.addTermImprecision;
+        this.threads=other.threads;
+        this.verbose=other.verbose;
     }
 
     /**
@@ -103,64 +166,121 @@ public class PhenotypeOnlyHpoCaseSimulator {
 
     public void setVerbosity(boolean v) { this.verbose=v;}
 
+    /** @param seed seed from which the random seeds of the individual cases are derived. */
+    public void setSeed(long seed) { this.seed=seed;}
+
+    public long getSeed() { return seed; }
+
+    /** @param n number of threads used to simulate the cases. */
+    public void setThreads(int n) { this.threads=Math.max(1,n);}
+
+    /**
+     * @param terms_per_case Number of HPO terms per case
+     * @param noise_terms Number of "noise" (random, unrelated) terms to add per case
+     * @return a simulator for other numbers of terms that shares the (immutable) evaluator and tables of this one
+     */
+    PhenotypeOnlyHpoCaseSimulator withTerms(int terms_per_case, int noise_terms) {
+        return new PhenotypeOnlyHpoCaseSimulator(this, terms_per_case, noise_terms);
+    }
+
+    /** @return Map with key: rank; value: number of simulated cases at this rank. */
+    public Map<Integer,Integer> getRankCounts() {
+        return Collections.unmodifiableMap(rankCounts);
+    }
+
     /** @return the proportion of all simulated cases at rank 1.*/
     public double getProportionAtRank1() {
         return proportionAtRank1;
     }
 
     private TermId getNextRandomDisease(Random r) {
-        int i = r.nextInt(diseaseMap.size());
-        TermId tid = termIndices[i];
-        HpoDisease disease = diseaseMap.get(tid);
-        while (disease.getPhenotypicAbnormalities().size() < this.n_terms_per_case) {
-            i = r.nextInt(diseaseMap.size());
-            tid = termIndices[i];
-            disease = diseaseMap.get(tid);
-        }
-        return tid;
+        return eligibleDiseases[r.nextInt(eligibleDiseases.length)];
     }
 
 
 
     /** This will run simulations according to the parameters {@link #n_cases_to_simulate},
-     * {@link #n_terms_per_case} and {@link #n_noise_terms}.
+     * {@link #n_terms_per_case} and {@link #n_noise_terms}. Each case gets its own random number generator,
+     * seeded from {@link #seed}, so that the results depend on the seed but not on the number of threads.
      * @throws LiricalException if there is an issue running the simulation
      */
     public void simulateCases() throws LiricalException {
-        int c=0;
-        Map<Integer,Integer> ranks=new HashMap<>();
-        List<TermId> notRanked = new ArrayList<>();
-        logger.trace(String.format("Simulating n=%d HPO cases with %d random terms and %d noise terms per case.",n_cases_to_simulate,n_terms_per_case,n_noise_terms));
-        int size = diseaseMap.size();
-
-        //int[] randomIndices=IntStream.generate(() -> new Random().nextInt(diseaseMap.size())).limit(n_cases_to_simulate).toArray();
-
-        Random r = new Random();
+        logger.trace(String.format("Simulating n=%d HPO cases with %d random terms and %d noise terms per case (seed=%d).",
+                n_cases_to_simulate,n_terms_per_case,n_noise_terms,seed));
+        // rank of each simulated case, or 0 if the disease could not be ranked
+        int[] caseRanks = new int[n_cases_to_simulate];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = submitCases(executor, caseRanks);
+            awaitCases(futures);
+        } finally {
+            executor.shutdownNow();
+        }
+        recordRanks(caseRanks);
+    }
 
+    /**
+     * Submit the cases of this simulation to an executor in batches. Several simulations (e.g., the cells of a
+     * {@link GridSearch}) can share the same executor.
+     * @param executor executor that will run the batches
+     * @param caseRanks array of size {@link #n_cases_to_simulate} that will receive the rank of each case (0 if not ranked)
+     * @return the futures of the batches
+     * @throws LiricalException if no disease has enough phenotypic abnormalities
+     */
+    List<Future<Void>> submitCases(ExecutorService executor, int[] caseRanks) throws LiricalException {
+        if (eligibleDiseases.length == 0) {
+            throw new LiricalException(String.format("No disease has at least %d phenotypic abnormalities", n_terms_per_case));
+        }
+        // derive one seed per case from the master seed
+        Random master = new Random(seed);
+        long[] caseSeeds = new long[n_cases_to_simulate];
         for (int i=0;i<n_cases_to_simulate;++i) {
-            TermId diseaseToSimulate = getNextRandomDisease(r);//termIndices[randomIndices[i]];
-            HpoDisease disease = diseaseMap.get(diseaseToSimulate);
-            //logger.trace("Simulating disease "+diseasename);
-            if (disease.getNumberOfPhenotypeAnnotations() <this.n_terms_per_case) {
-                logger.trace(String.format("Skipping disease %s [%s] because it has no phenotypic annotations",
-                        disease.getName(),
-                        disease.getDiseaseDatabaseId()));
-                continue;
-            }
-            Optional<Integer> optionalRank = simulateCase(disease);
-            if (optionalRank.isPresent()) {
-                int rank = optionalRank.get();
-                if (verbose) {
-                    System.err.println(String.format("%s: rank=%d", disease.getName(), rank));
+            caseSeeds[i] = master.nextLong();
+        }
+        List<Future<Void>> futures = new ArrayList<>();
+        int chunksize = Math.max(1, n_cases_to_simulate / (4 * threads));
+        for (int start=0; start<n_cases_to_simulate; start+=chunksize) {
+            final int from = start;
+            final int to = Math.min(n_cases_to_simulate, start + chunksize);
+            futures.add(executor.submit(() -> {
+                for (int i=from;i<to;++i) {
+                    caseRanks[i] = simulateCase(new Random(caseSeeds[i])).orElse(0);
                 }
-                ranks.putIfAbsent(rank,0);
-                ranks.put(rank, ranks.get(rank) + 1);
-            } else {
-                notRanked.add(diseaseToSimulate);
-            }
+                return null;
+            }));
+        }
+        return futures;
+    }
 
+    /** Wait for the batches returned by {@link #submitCases(ExecutorService, int[])}. */
+    static void awaitCases(List<Future<Void>> futures) throws LiricalException {
+        try {
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LiricalException("Simulation was interrupted");
+        } catch (ExecutionException e) {
+            throw new LiricalException("Could not simulate case: " + e.getCause().getMessage());
+        }
+    }
 
+    /**
+     * Count the ranks of the simulated cases and calculate {@link #proportionAtRank1}.
+     * @param caseRanks rank of each simulated case, or 0 if the disease could not be ranked
+     */
+    void recordRanks(int[] caseRanks) {
+        Map<Integer,Integer> ranks=new HashMap<>();
+        int notRanked = 0;
+        for (int rank : caseRanks) {
+            if (rank > 0) {
+                ranks.merge(rank, 1, Integer::sum);
+            } else {
+                notRanked++;
+            }
         }
+        this.rankCounts = ranks;
         if (ranks.containsKey(1)) {
             proportionAtRank1 = ranks.get(1) / (double) n_cases_to_simulate;
         } else {
@@ -168,10 +288,8 @@ public class PhenotypeOnlyHpoCaseSimulator {
         }
         if (verbose) {
             dump2shell(ranks);
-            System.out.println("Could not rank " + notRanked.size() + " diseases");
+            System.out.println("Could not rank " + notRanked + " diseases");
         }
-
-
     }
 
 
@@ -214,34 +332,21 @@ public class PhenotypeOnlyHpoCaseSimulator {
      * This is a term that was observed in the simulated patient (note that it should not be a HpoTermId, which
      * contains metadata about the term in a disease entity, such as overall frequency. Instead, we are simulating an
      * individual patient and this is a definite observation.
+     * @param r random number generator of the current case
      * @return a random term from the phenotype subontology.
      */
-    private TermId getRandomPhenotypeTerm() {
-        int n=phenotypeterms.size();
-        int r = (int)Math.floor(n*Math.random());
-        return phenotypeterms.get(r);
-    }
-
-    /** @return a random parent of term tid. */
-    private TermId getRandomParentTerm(TermId tid) {
-        Set<TermId> parents = getParentTerms(ontology,tid,false);
-        int r = (int)Math.floor(parents.size()*Math.random());
-        int i=0;
-        return (TermId)parents.toArray()[r];
+    private TermId getRandomPhenotypeTerm(Random r) {
+        return phenotypeterms.get(r.nextInt(phenotypeterms.size()));
     }
 
 
     /** @return a non-root random parent of term tid. It could be empty. */
-    private Optional<TermId> getNonRootRandomParentTerm(TermId tid) {
-        Set<TermId> parents = new HashSet<>(getParentTerms(ontology.subOntology(PHENOTYPIC_ABNORMALITY),tid,false));
-        if (parents.contains(PHENOTYPIC_ABNORMALITY)){
-            parents.remove(PHENOTYPIC_ABNORMALITY);
-        }
-        if (parents.isEmpty()) { //no parents could be found
+    private Optional<TermId> getNonRootRandomParentTerm(TermId tid, Random r) {
+        TermId[] parents = nonRootParents.get(tid);
+        if (parents == null || parents.length == 0) { //no parents could be found
             return Optional.empty();
         }
-        int r = (int)Math.floor(parents.size()*Math.random());
-        return Optional.of((TermId) parents.toArray()[r]);
+        return Optional.of(parents[r.nextInt(parents.length)]);
     }
 
 
@@ -252,9 +357,10 @@ public class PhenotypeOnlyHpoCaseSimulator {
     /**
      * This creates a simulated, phenotype-only case based on our annotations for the disease
      * @param disease Disease for which we will simulate the case
+     * @param r random number generator of the current case
      * @return HpoCase object with a randomized selection of phenotypes from the disease
      */
-    private List<TermId> getRandomTermsFromDisease(HpoDisease disease) {
+    private List<TermId> getRandomTermsFromDisease(HpoDisease disease, Random r) {
         //We already checked to make sure disease have at least n_terms_per_case, so the following line is unnecessary and confusing to read--Aaron
         //int n_terms = Math.min(disease.getNumberOfPhenotypeAnnotations(), n_terms_per_case);
         //int n_random=Math.min(n_terms, n_noise_terms);
@@ -262,11 +368,11 @@ public class PhenotypeOnlyHpoCaseSimulator {
         // the creation of a new ArrayList is needed because disease returns an immutable list.
         List<HpoAnnotation> abnormalities = new ArrayList<>(disease.getPhenotypicAbnormalities());
         ImmutableList.Builder<TermId> termIdBuilder = new ImmutableList.Builder<>();
-        Collections.shuffle(abnormalities); // randomize order of phenotypes
+        Collections.shuffle(abnormalities, r); // randomize order of phenotypes
         // take the first n_random terms of the randomized list
         if (addTermImprecision) {
             abnormalities.stream().limit(n_terms_per_case).forEach( a -> {
-                Optional<TermId> randomParent = getNonRootRandomParentTerm(a.getTermId());
+                Optional<TermId> randomParent = getNonRootRandomParentTerm(a.getTermId(), r);
                 if (randomParent.isPresent()) {
                     termIdBuilder.add(randomParent.get());
                 } else { //cannot find non-root parent
@@ -278,32 +384,41 @@ public class PhenotypeOnlyHpoCaseSimulator {
         }
         // now add n_random "noise" terms to the list of abnormalities of our case.
         for(int i=0;i<n_noise_terms;i++){
-            TermId t = getRandomPhenotypeTerm();
+            TermId t = getRandomPhenotypeTerm(r);
             termIdBuilder.add(t);
         }
         return termIdBuilder.build();
     }
 
 
-
-    private Optional<Integer> simulateCase(HpoDisease disease) throws LiricalException {
+    /**
+     * Simulate and rank one case. This method only reads the fields of this object and can be called from
+     * several threads at the same time.
+     * @param r random number generator of the current case
+     * @return rank of the simulated disease, or empty if it could not be ranked
+     */
+    private Optional<Integer> simulateCase(Random r) throws LiricalException {
+        TermId diseaseToSimulate = getNextRandomDisease(r);
+        HpoDisease disease = diseaseMap.get(diseaseToSimulate);
         if (disease == null) {
             // should never happen!
             throw new LiricalException("Attempt to create case from Null-value for disease");
         }
-        List<TermId> randomizedTerms = getRandomTermsFromDisease(disease);
+        List<TermId> randomizedTerms = getRandomTermsFromDisease(disease, r);
 
         CaseEvaluator.Builder caseBuilder = new CaseEvaluator.Builder(randomizedTerms)
                 .ontology(this.ontology)
                 .diseaseMap(diseaseMap)
                 .phenotypeLr(this.phenotypeLrEvaluator);
         // the following evaluates the case for each disease with equal pretest probabilities.
-        // Object to evaluate the results of differential diagnosis by LR analysis.
+        // We only need the rank of the simulated disease, so no TestResult objects are created.
         CaseEvaluator evaluator = caseBuilder.buildPhenotypeOnlyEvaluator();
-        HpoCase hpocase = evaluator.evaluate();
-        if (verbose)
-            System.err.println(hpocase.toString());
-        return hpocase.getRank(disease.getDiseaseDatabaseId());
+        DiseaseRank diseaseRank = evaluator.rankOnly(disease.getDiseaseDatabaseId());
+        Optional<Integer> optionalRank = diseaseRank.isRanked() ? Optional.of(diseaseRank.getRank()) : Optional.empty();
+        if (verbose) {
+            optionalRank.ifPresent(rank -> System.err.println(String.format("%s: rank=%d", disease.getName(), rank)));
+        }
+        return optionalRank;
     }
 
 
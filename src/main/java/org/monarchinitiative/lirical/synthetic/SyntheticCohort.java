@@ -0,0 +1,152 @@
+package org.monarchinitiative.lirical.synthetic;
+
+import com.google.protobuf.util.JsonFormat;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.phenopackets.schema.v1.Phenopacket;
+import org.phenopackets.schema.v1.core.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Cases for a {@link SyntheticKnowledgeBase}, written as Phenopackets that can be analyzed with the
+ * {@code phenopacket}, {@code batch}, and {@code benchmark} commands. Each case has a randomly chosen disease as
+ * its diagnosis; its observed terms are drawn from the annotations of the disease according to their
+ * frequencies, plus one or two unrelated terms, and one term of the ontology is excluded. If a
+ * {@link SyntheticGenome} is given, each case also gets a VCF file with a pathogenic variant in a gene of the
+ * disease (homozygous for autosomal recessive diseases).
+ */
+public class SyntheticCohort {
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticCohort.class);
+
+    private final SyntheticKnowledgeBase knowledgeBase;
+    /** Null for phenotype-only cases. */
+    private final SyntheticGenome genome;
+    private final String assembly;
+    private final Random random;
+
+    /**
+     * @param knowledgeBase the knowledge base of the cases
+     * @param genome the genome used to write VCF files, or null for phenotype-only cases; its
+     *               {@link SyntheticGenome#writeExomiserData(File, String)} must have been called
+     * @param assembly genome assembly of the VCF files (hg19 or hg38)
+     * @param seed seed of the random choices
+     */
+    public SyntheticCohort(SyntheticKnowledgeBase knowledgeBase, SyntheticGenome genome, String assembly, long seed) {
+        this.knowledgeBase = knowledgeBase;
+        this.genome = genome;
+        this.assembly = assembly;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Write {@code n} cases to {@code <dir>/phenopackets} and, with a genome, their VCF files to {@code <dir>/vcf}.
+     * @return the Phenopacket files
+     */
+    public List<File> write(File dir, int n) {
+        File phenopacketDir = new File(dir, "phenopackets");
+        File vcfDir = new File(dir, "vcf");
+        for (File d : genome != null ? new File[]{phenopacketDir, vcfDir} : new File[]{phenopacketDir}) {
+            if (! d.isDirectory() && ! d.mkdirs()) {
+                throw new LiricalRuntimeException("Could not create directory " + d.getAbsolutePath());
+            }
+        }
+        List<File> files = new ArrayList<>();
+        int width = String.valueOf(n).length();
+        for (int i = 1; i <= n; i++) {
+            String caseId = String.format("synthetic-%0" + width + "d", i);
+            File phenopacket = new File(phenopacketDir, caseId + ".json");
+            writeCase(caseId, phenopacket, new File(vcfDir, caseId + ".vcf"));
+            files.add(phenopacket);
+        }
+        logger.info("Wrote {} synthetic cases to {}", n, phenopacketDir.getAbsolutePath());
+        return files;
+    }
+
+    private static PhenotypicFeature feature(int term, boolean negated) {
+        return PhenotypicFeature.newBuilder()
+                .setType(OntologyClass.newBuilder().setId(SyntheticKnowledgeBase.termId(term)).setLabel("Synthetic abnormality " + term))
+                .setNegated(negated)
+                .build();
+    }
+
+    private void writeCase(String caseId, File phenopacketFile, File vcfFile) {
+        int nDiseases = knowledgeBase.getDiseaseCount();
+        int disease = random.nextInt(nDiseases);
+        if (genome != null) {
+            // cases with a VCF file have a disease with a known gene
+            for (int attempts = 0; knowledgeBase.getDiseaseGenes(disease).length == 0 && attempts < 100; attempts++) {
+                disease = random.nextInt(nDiseases);
+            }
+        }
+        int[] terms = knowledgeBase.getDiseaseTerms(disease);
+        float[] frequencies = knowledgeBase.getDiseaseFrequencies(disease);
+        Set<Integer> observed = new LinkedHashSet<>();
+        for (int j = 0; j < terms.length; j++) {
+            if (! knowledgeBase.isNegatedAnnotation(disease, j) && random.nextDouble() < frequencies[j]) {
+                observed.add(terms[j]);
+            }
+        }
+        // at most 12 terms of the disease, as in typical clinical descriptions
+        List<Integer> diseaseTerms = new ArrayList<>(observed);
+        Collections.shuffle(diseaseTerms, random);
+        observed = new LinkedHashSet<>(diseaseTerms.subList(0, Math.min(12, diseaseTerms.size())));
+        if (observed.isEmpty()) {
+            observed.add(terms[random.nextInt(terms.length)]);
+        }
+        int nTerms = knowledgeBase.getTermCount();
+        int noise = 1 + random.nextInt(2);
+        for (int i = 0; i < noise; i++) {
+            observed.add(random.nextInt(nTerms));
+        }
+        int excluded = random.nextInt(nTerms);
+        while (observed.contains(excluded)) {
+            excluded = random.nextInt(nTerms);
+        }
+
+        Phenopacket.Builder builder = Phenopacket.newBuilder()
+                .setId(caseId)
+                .setSubject(Individual.newBuilder().setId(caseId));
+        for (int term : observed) {
+            builder.addPhenotypicFeatures(feature(term, false));
+        }
+        builder.addPhenotypicFeatures(feature(excluded, true));
+        builder.addDiseases(Disease.newBuilder()
+                .setTerm(OntologyClass.newBuilder()
+                        .setId(SyntheticKnowledgeBase.diseaseId(disease))
+                        .setLabel("SYNTHETIC DISEASE " + disease)));
+        if (genome != null) {
+            int[] genes = knowledgeBase.getDiseaseGenes(disease);
+            int causalGene = genes.length > 0 ? genes[random.nextInt(genes.length)] : -1;
+            boolean biallelic = knowledgeBase.getInheritance(disease) == SyntheticKnowledgeBase.AUTOSOMAL_RECESSIVE;
+            genome.writeVcf(vcfFile, caseId, causalGene, biallelic);
+            builder.addHtsFiles(HtsFile.newBuilder()
+                    .setHtsFormat(HtsFile.HtsFormat.VCF)
+                    .setGenomeAssembly(assembly)
+                    .setUri("file:" + vcfFile.getAbsolutePath())
+                    .putIndividualToSampleIdentifiers(caseId, caseId));
+            if (causalGene >= 0) {
+                builder.addGenes(Gene.newBuilder()
+                        .setId("NCBIGene:" + SyntheticKnowledgeBase.entrezId(causalGene))
+                        .setSymbol(SyntheticKnowledgeBase.geneSymbol(causalGene)));
+            }
+        }
+        builder.setMetaData(MetaData.newBuilder()
+                .setCreatedBy("LIRICAL synthesize")
+                .addResources(Resource.newBuilder()
+                        .setId("hp")
+                        .setName("synthetic human phenotype ontology")
+                        .setNamespacePrefix("HP")));
+        try {
+            String json = JsonFormat.printer().print(builder.build());
+            Files.write(phenopacketFile.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new LiricalRuntimeException("Could not write phenopacket " + phenopacketFile.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+}
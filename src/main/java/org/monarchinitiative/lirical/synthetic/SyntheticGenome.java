@@ -0,0 +1,415 @@
+package org.monarchinitiative.lirical.synthetic;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import de.charite.compbio.jannovar.data.JannovarData;
+import de.charite.compbio.jannovar.data.JannovarDataSerializer;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.data.ReferenceDictionaryBuilder;
+import de.charite.compbio.jannovar.data.SerializationException;
+import de.charite.compbio.jannovar.reference.GenomeInterval;
+import de.charite.compbio.jannovar.reference.PositionType;
+import de.charite.compbio.jannovar.reference.Strand;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import de.charite.compbio.jannovar.reference.TranscriptModelBuilder;
+import htsjdk.variant.variantcontext.*;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.*;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.monarchinitiative.exomiser.core.genome.dao.serialisers.MvStoreUtil;
+import org.monarchinitiative.exomiser.core.proto.AlleleProto;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * The genomic part of the synthetic data: one transcript per gene of a {@link SyntheticKnowledgeBase}, written as
+ * Jannovar files to an Exomiser-like data directory, and VCF files with a given number of variants and samples.
+ * The variants that have pathogenicity or frequency data are added to the Exomiser database
+ * ({@code *_variants.mv.db}) of the directory, so that {@code Vcf2GenotypeMap} takes the same code paths as with
+ * the real data.
+ * <p>
+ * Each gene has the layout of the transcript of the JMH benchmarks: two exons of 400 and 600 bp separated by an
+ * intron of 200 bp, and a coding sequence of an ATG, 298 GCC codons, and a TAA stop codon. The genes are placed
+ * on chromosomes 1-22 in turn, every {@link #SPACING} bp. Which kind of variant (pathogenic, benign, or unknown
+ * missense variant, synonymous, intronic, 5' UTR, or frameshift) a position gets only depends on the position,
+ * so the database entries of all VCF files are consistent.
+ */
+public class SyntheticGenome implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticGenome.class);
+
+    private static final int N_CHROMOSOMES = 22;
+    /** Lengths of chromosomes 1-22 (GRCh38). */
+    private static final int[] CHROMOSOME_LENGTHS = {248_956_422, 242_193_529, 198_295_559, 190_214_555,
+            181_538_259, 170_805_979, 159_345_973, 145_138_636, 138_394_717, 133_797_422, 135_086_622, 133_275_309,
+            114_364_328, 107_043_718, 101_991_189, 90_338_345, 83_257_441, 80_373_285, 58_617_616, 64_444_167,
+            46_709_983, 50_818_468};
+    private static final int FIRST_GENE_POSITION = 1_000_000;
+    /** Distance between the starts of consecutive genes on a chromosome. */
+    static final int SPACING = 2_000;
+    /** Genes that fit on the shortest chromosome (chr21) times the number of chromosomes. */
+    static final int MAX_GENES = N_CHROMOSOMES * ((46_000_000 - FIRST_GENE_POSITION) / SPACING);
+
+    /** Zero-based offsets (relative to the start of the gene) of the exons and of the coding sequence. */
+    private static final int EXON1_END = 400;
+    private static final int EXON2_BEGIN = 600;
+    private static final int TX_END = 1_200;
+    private static final int CDS_BEGIN = 50;
+    private static final int CDS_END = 1_150;
+    /** Offsets in the transcript sequence of the first and the last GCC codon. */
+    private static final int FIRST_CODON = 53;
+    private static final int N_CODONS = 298;
+    /** Codons 0 to 29 are pathogenic and codons 30 to 249 benign when mutated; the others are not in the database. */
+    private static final int PATHOGENIC_CODONS = 30;
+    private static final int BENIGN_CODONS = 250;
+    private static final String SEQUENCE = Strings.repeat("C", 50) + "ATG" + Strings.repeat("GCC", N_CODONS) + "TAA" +
+            Strings.repeat("C", 50);
+
+    private static final String REVEL = "REVEL";
+    private static final String THOUSAND_GENOMES = "KG";
+
+    private final int nGenes;
+    private final String assembly;
+    private final int nVariants;
+    private final int nSamples;
+    private final double pathogenicFraction;
+    private final Random random;
+    private MVStore mvStore = null;
+    private MVMap<AlleleProto.AlleleKey, AlleleProto.AlleleProperties> alleleMap = null;
+
+    private SyntheticGenome(Builder builder) {
+        this.nGenes = builder.genes;
+        this.assembly = builder.assembly;
+        this.nVariants = builder.variants;
+        this.nSamples = builder.samples;
+        this.pathogenicFraction = builder.pathogenicFraction;
+        this.random = new Random(builder.seed);
+    }
+
+    static int chromosomeOf(int gene) {
+        return gene % N_CHROMOSOMES + 1;
+    }
+
+    /** @return zero-based position of the first base of the transcript of a gene */
+    private static int geneBegin(int gene) {
+        return FIRST_GENE_POSITION + (gene / N_CHROMOSOMES) * SPACING;
+    }
+
+    private String contig(int chromosome) {
+        return assembly.equals("hg19") ? String.valueOf(chromosome) : "chr" + chromosome;
+    }
+
+    /** @return zero-based genomic offset (relative to the start of the gene) of a position of the transcript sequence */
+    private static int txToGenomic(int tx) {
+        return tx < EXON1_END ? tx : EXON2_BEGIN + (tx - EXON1_END);
+    }
+
+    /** @return Jannovar data with chromosomes 1-22 and one transcript per gene */
+    public JannovarData jannovarData() {
+        ReferenceDictionaryBuilder dictBuilder = new ReferenceDictionaryBuilder();
+        for (int chrom = 1; chrom <= N_CHROMOSOMES; chrom++) {
+            dictBuilder.putContigID(String.valueOf(chrom), chrom);
+            dictBuilder.putContigID("chr" + chrom, chrom);
+            dictBuilder.putContigName(chrom, contig(chrom));
+            dictBuilder.putContigLength(chrom, CHROMOSOME_LENGTHS[chrom - 1]);
+        }
+        ReferenceDictionary refDict = dictBuilder.build();
+        ImmutableList.Builder<TranscriptModel> transcripts = new ImmutableList.Builder<>();
+        for (int g = 0; g < nGenes; g++) {
+            int chrom = chromosomeOf(g);
+            int begin = geneBegin(g);
+            TranscriptModelBuilder tmBuilder = new TranscriptModelBuilder();
+            tmBuilder.setStrand(Strand.FWD);
+            tmBuilder.setAccession(String.format("NM_%09d.1", SyntheticKnowledgeBase.entrezId(g)));
+            tmBuilder.setGeneSymbol(SyntheticKnowledgeBase.geneSymbol(g));
+            tmBuilder.setGeneID(String.valueOf(SyntheticKnowledgeBase.entrezId(g)));
+            tmBuilder.setTXRegion(new GenomeInterval(refDict, Strand.FWD, chrom, begin, begin + TX_END, PositionType.ZERO_BASED));
+            tmBuilder.setCDSRegion(new GenomeInterval(refDict, Strand.FWD, chrom, begin + CDS_BEGIN, begin + CDS_END, PositionType.ZERO_BASED));
+            tmBuilder.addExonRegion(new GenomeInterval(refDict, Strand.FWD, chrom, begin, begin + EXON1_END, PositionType.ZERO_BASED));
+            tmBuilder.addExonRegion(new GenomeInterval(refDict, Strand.FWD, chrom, begin + EXON2_BEGIN, begin + TX_END, PositionType.ZERO_BASED));
+            tmBuilder.setSequence(SEQUENCE);
+            tmBuilder.setTranscriptSupportLevel(1);
+            transcripts.add(tmBuilder.build());
+        }
+        return new JannovarData(refDict, transcripts.build());
+    }
+
+    /**
+     * Write the Jannovar files (the same transcripts for RefSeq, Ensembl, and UCSC) and create the Exomiser database
+     * of an Exomiser-like data directory {@code <parent>/<name>_<assembly>}. The database stays open for
+     * {@link #writeVcf} until {@link #close()} is called.
+     * @return the data directory, to be passed to LIRICAL with {@code -e}
+     */
+    public File writeExomiserData(File parent, String name) {
+        String basename = name + "_" + assembly;
+        File dir = new File(parent, basename);
+        if (! dir.isDirectory() && ! dir.mkdirs()) {
+            throw new LiricalRuntimeException("Could not create directory " + dir.getAbsolutePath());
+        }
+        File refseq = new File(dir, basename + "_transcripts_refseq.ser");
+        try {
+            new JannovarDataSerializer(refseq.getAbsolutePath()).save(jannovarData());
+            for (String database : new String[]{"ensembl", "ucsc"}) {
+                Files.copy(refseq.toPath(), new File(dir, basename + "_transcripts_" + database + ".ser").toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (SerializationException | IOException e) {
+            throw new LiricalRuntimeException("Could not write Jannovar file " + refseq.getAbsolutePath() + ": " + e.getMessage());
+        }
+        File mvStoreFile = new File(dir, basename + "_variants.mv.db");
+        if (mvStoreFile.exists() && ! mvStoreFile.delete()) {
+            throw new LiricalRuntimeException("Could not replace " + mvStoreFile.getAbsolutePath());
+        }
+        this.mvStore = new MVStore.Builder().fileName(mvStoreFile.getAbsolutePath()).compress().open();
+        this.alleleMap = MvStoreUtil.openAlleleMVMap(mvStore);
+        logger.info("Wrote Jannovar data with {} transcripts to {}", nGenes, dir.getAbsolutePath());
+        return dir;
+    }
+
+    /** One synthetic VCF record of the proband; the genotypes of the other samples are drawn when it is written. */
+    private static class SyntheticVariant {
+        final int chrom;
+        /** One-based position, as in the VCF file. */
+        final int pos;
+        final String ref;
+        final String alt;
+        final boolean homozygous;
+        final AlleleProto.AlleleProperties properties;
+
+        SyntheticVariant(int gene, int offset, String ref, String alt, boolean homozygous, AlleleProto.AlleleProperties properties) {
+            this.chrom = chromosomeOf(gene);
+            this.pos = geneBegin(gene) + offset + 1;
+            this.ref = ref;
+            this.alt = alt;
+            this.homozygous = homozygous;
+            this.properties = properties;
+        }
+    }
+
+    private static AlleleProto.AlleleProperties revel(float score) {
+        return AlleleProto.AlleleProperties.newBuilder().putProperties(REVEL, score).build();
+    }
+
+    /** A G>A change of the first base of a GCC codon, i.e., an Ala>Thr missense variant. */
+    private static SyntheticVariant missense(int gene, int codon, boolean homozygous) {
+        int tx = FIRST_CODON + 3 * codon;
+        AlleleProto.AlleleProperties properties = null;
+        if (codon < PATHOGENIC_CODONS) {
+            properties = revel(0.95f);
+        } else if (codon < BENIGN_CODONS) {
+            properties = AlleleProto.AlleleProperties.newBuilder()
+                    .putProperties(REVEL, 0.1f)
+                    .putProperties(THOUSAND_GENOMES, 5.0f)
+                    .build();
+        }
+        return new SyntheticVariant(gene, txToGenomic(tx), "G", "A", homozygous, properties);
+    }
+
+    /** A one-base deletion in a GCC codon. */
+    private static SyntheticVariant frameshift(int gene, int codon, boolean homozygous) {
+        int tx = FIRST_CODON + 3 * codon + 1;
+        if (tx == EXON1_END - 1) {
+            tx -= 3; // the deleted base and its anchor must be in the same exon
+        }
+        return new SyntheticVariant(gene, txToGenomic(tx), "CC", "C", homozygous, null);
+    }
+
+    /** @return a background variant that is pathogenic with probability {@link #pathogenicFraction} */
+    private SyntheticVariant randomVariant(int gene) {
+        boolean homozygous = random.nextDouble() < 0.2;
+        if (random.nextDouble() < pathogenicFraction) {
+            return random.nextBoolean() ?
+                    missense(gene, random.nextInt(PATHOGENIC_CODONS), homozygous) :
+                    frameshift(gene, random.nextInt(N_CODONS), homozygous);
+        }
+        double r = random.nextDouble();
+        if (r < 0.35) {
+            int tx = FIRST_CODON + 3 * random.nextInt(N_CODONS) + 2;
+            return new SyntheticVariant(gene, txToGenomic(tx), "C", "T", homozygous, null);
+        } else if (r < 0.60) {
+            return missense(gene, PATHOGENIC_CODONS + random.nextInt(BENIGN_CODONS - PATHOGENIC_CODONS), homozygous);
+        } else if (r < 0.65) {
+            return missense(gene, BENIGN_CODONS + random.nextInt(N_CODONS - BENIGN_CODONS), homozygous);
+        } else if (r < 0.90) {
+            return new SyntheticVariant(gene, EXON1_END + 50 + random.nextInt(100), "A", "G", homozygous, null);
+        } else {
+            return new SyntheticVariant(gene, random.nextInt(CDS_BEGIN), "C", "T", homozygous, null);
+        }
+    }
+
+    private Genotype genotype(String sample, Allele ref, Allele alt, int nAlt) {
+        List<Allele> alleles = nAlt == 0 ? Arrays.asList(ref, ref) : nAlt == 1 ? Arrays.asList(ref, alt) : Arrays.asList(alt, alt);
+        return new GenotypeBuilder(sample, alleles)
+                .DP(10 + random.nextInt(50))
+                .GQ(20 + random.nextInt(80))
+                .make();
+    }
+
+    private VCFHeader header(List<String> samples) {
+        Set<VCFHeaderLine> lines = new LinkedHashSet<>();
+        lines.add(new VCFHeaderLine(VCFHeaderVersion.VCF4_2.getFormatString(), VCFHeaderVersion.VCF4_2.getVersionString()));
+        lines.add(new VCFHeaderLine("source", "LIRICAL-synthesize"));
+        lines.add(new VCFFilterHeaderLine("LowQual", "Low quality"));
+        lines.add(new VCFFormatHeaderLine(VCFConstants.GENOTYPE_KEY, 1, VCFHeaderLineType.String, "Genotype"));
+        lines.add(new VCFFormatHeaderLine(VCFConstants.DEPTH_KEY, 1, VCFHeaderLineType.Integer, "Read depth"));
+        lines.add(new VCFFormatHeaderLine(VCFConstants.GENOTYPE_QUALITY_KEY, 1, VCFHeaderLineType.Integer, "Genotype quality"));
+        for (int chrom = 1; chrom <= N_CHROMOSOMES; chrom++) {
+            Map<String, String> contig = new LinkedHashMap<>();
+            contig.put("ID", contig(chrom));
+            contig.put("length", String.valueOf(CHROMOSOME_LENGTHS[chrom - 1]));
+            lines.add(new VCFContigHeaderLine(contig, chrom - 1));
+        }
+        return new VCFHeader(lines, samples);
+    }
+
+    /**
+     * Write a VCF file with the number of variants and samples of this genome. The first sample is the proband,
+     * the others are called {@code <proband>-relative1} etc.
+     * About 2% of the records do not pass the quality filter.
+     * @param file the VCF file
+     * @param proband name of the first sample
+     * @param causalGene index of a gene with a pathogenic variant in the proband (in addition to the random
+     *                   variants), or -1
+     * @param biallelic if true, the causal variant is homozygous in the proband
+     */
+    public void writeVcf(File file, String proband, int causalGene, boolean biallelic) {
+        if (alleleMap == null) {
+            throw new LiricalRuntimeException("writeExomiserData must be called before writeVcf");
+        }
+        // the names of the relatives sort after the name of the proband, as some readers return the names sorted
+        List<String> samples = new ArrayList<>();
+        samples.add(proband);
+        for (int i = 1; i < nSamples; i++) {
+            samples.add(proband + "-relative" + i);
+        }
+        // one record per position
+        Map<Long, SyntheticVariant> variants = new HashMap<>();
+        if (causalGene >= 0) {
+            SyntheticVariant causal = missense(causalGene, random.nextInt(PATHOGENIC_CODONS), biallelic);
+            variants.put((long) causal.chrom << 32 | causal.pos, causal);
+        }
+        int maxVariants = nVariants + variants.size();
+        for (int attempts = 0; variants.size() < maxVariants && attempts < 10 * nVariants; attempts++) {
+            SyntheticVariant v = randomVariant(random.nextInt(nGenes));
+            variants.putIfAbsent((long) v.chrom << 32 | v.pos, v);
+        }
+        List<SyntheticVariant> sorted = new ArrayList<>(variants.values());
+        sorted.sort(Comparator.comparingInt((SyntheticVariant v) -> v.chrom).thenComparingInt(v -> v.pos));
+        try (VariantContextWriter writer = new VariantContextWriterBuilder()
+                .setOutputFile(file)
+                .setOutputFileType(VariantContextWriterBuilder.OutputType.VCF)
+                .unsetOption(Options.INDEX_ON_THE_FLY)
+                .build()) {
+            writer.writeHeader(header(samples));
+            for (SyntheticVariant v : sorted) {
+                Allele ref = Allele.create(v.ref, true);
+                Allele alt = Allele.create(v.alt, false);
+                List<Genotype> genotypes = new ArrayList<>();
+                genotypes.add(genotype(proband, ref, alt, v.homozygous ? 2 : 1));
+                for (int i = 1; i < nSamples; i++) {
+                    double r = random.nextDouble();
+                    genotypes.add(genotype(samples.get(i), ref, alt, r < 0.6 ? 0 : r < 0.9 ? 1 : 2));
+                }
+                VariantContextBuilder vcBuilder = new VariantContextBuilder("synthetic", contig(v.chrom), v.pos,
+                        v.pos + v.ref.length() - 1, Arrays.asList(ref, alt))
+                        .log10PError(-10)
+                        .genotypes(genotypes);
+                if (random.nextDouble() < 0.02) {
+                    vcBuilder.filter("LowQual");
+                } else {
+                    vcBuilder.passFilters();
+                }
+                writer.add(vcBuilder.make());
+                if (v.properties != null) {
+                    AlleleProto.AlleleKey key = AlleleProto.AlleleKey.newBuilder()
+                            .setChr(v.chrom)
+                            .setPosition(v.pos)
+                            .setRef(v.ref)
+                            .setAlt(v.alt)
+                            .build();
+                    alleleMap.put(key, v.properties);
+                }
+            }
+        }
+        logger.trace("Wrote {} variants and {} samples to {}", sorted.size(), nSamples, file.getAbsolutePath());
+    }
+
+    /** Close the Exomiser database. */
+    @Override
+    public void close() {
+        if (mvStore != null) {
+            mvStore.close();
+            mvStore = null;
+            alleleMap = null;
+        }
+    }
+
+    public static class Builder {
+        private final int genes;
+        private String assembly = "hg38";
+        private int variants = 100;
+        private int samples = 1;
+        private double pathogenicFraction = 0.005;
+        private long seed = 42L;
+
+        /** @param genes number of genes of the {@link SyntheticKnowledgeBase} */
+        public Builder(int genes) {
+            this.genes = genes;
+        }
+
+        /** @param assembly hg19 or hg38 (default); hg38 VCF files have "chr" contig names */
+        public Builder assembly(String assembly) {
+            this.assembly = assembly.toLowerCase();
+            return this;
+        }
+
+        /** @param n number of random variants per VCF file (default: 100) */
+        public Builder variants(int n) {
+            this.variants = n;
+            return this;
+        }
+
+        /** @param n number of samples per VCF file (default: 1) */
+        public Builder samples(int n) {
+            this.samples = n;
+            return this;
+        }
+
+        /** @param p fraction of the random variants that are pathogenic (default: 0.005) */
+        public Builder pathogenicFraction(double p) {
+            this.pathogenicFraction = p;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticGenome build() {
+            if (genes < 1 || genes > MAX_GENES) {
+                throw new LiricalRuntimeException(String.format("Number of genes must be between 1 and %d for VCF files, but was %d", MAX_GENES, genes));
+            }
+            if (! assembly.equals("hg19") && ! assembly.equals("hg38")) {
+                throw new LiricalRuntimeException("Genome assembly must be hg19 or hg38, but was " + assembly);
+            }
+            if (samples < 1) {
+                throw new LiricalRuntimeException("VCF files need at least one sample");
+            }
+            if (variants < 0 || variants > 500L * genes) {
+                throw new LiricalRuntimeException(String.format("Number of variants per VCF file must be between 0 and %d", 500L * genes));
+            }
+            return new SyntheticGenome(this);
+        }
+    }
+}
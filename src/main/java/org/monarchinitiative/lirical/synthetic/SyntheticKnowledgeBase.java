@@ -0,0 +1,508 @@
+package org.monarchinitiative.lirical.synthetic;
+
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A randomly generated knowledge base with the same structure as the real one: an HPO-like ontology (a DAG of
+ * configurable size and depth below "Phenotypic abnormality"), diseases annotated to its terms with a realistic mix
+ * of frequencies, and genes associated with the diseases. {@link #write(File)} writes the four files that
+ * {@link org.monarchinitiative.lirical.configuration.LiricalFactory} expects in the data directory ({@code hp.obo},
+ * {@code phenotype.hpoa}, {@code mim2gene_medgen}, and {@code Homo_sapiens_gene_info.gz}) and a background
+ * frequency file for the {@code -b} option.
+ * <p>
+ * The synthetic ids do not overlap with real ones: terms start at HP:5000000, diseases at OMIM:100000 (with
+ * names starting with "SYNTHETIC"), and genes at NCBIGene:100000000. The same seed always gives the same
+ * knowledge base.
+ */
+public class SyntheticKnowledgeBase {
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticKnowledgeBase.class);
+
+    private static final int FIRST_TERM_ID = 5_000_000;
+    private static final int FIRST_DISEASE_ID = 100_000;
+    private static final int MAX_DISEASES = 899_999;
+    private static final int FIRST_GENE_ID = 100_000_000;
+    /** Number of top-level terms ("organ systems") below Phenotypic abnormality, as in the HPO. */
+    private static final int MAX_BRANCHES = 24;
+
+    /** Formats of the frequency column of phenotype.hpoa. */
+    static final byte FREQ_EMPTY = 0;
+    static final byte FREQ_HPO = 1;
+    static final byte FREQ_FRACTION = 2;
+    static final byte FREQ_PERCENT = 3;
+    /** Flag that is combined with a frequency format for annotations with the NOT qualifier. */
+    static final byte NOT = 0x10;
+
+    static final String[] INHERITANCE_IDS = {"HP:0000006", "HP:0000007", "HP:0001417"};
+    private static final String[] INHERITANCE_LABELS = {"Autosomal dominant inheritance",
+            "Autosomal recessive inheritance", "X-linked inheritance"};
+    static final int AUTOSOMAL_RECESSIVE = 1;
+
+    private final int nTerms;
+    private final int depth;
+    private final int nDiseases;
+    private final int nGenes;
+    private final long seed;
+    private final double extraParentProbability;
+
+    /** Parents of each synthetic term, given as indices; -1 stands for Phenotypic abnormality (HP:0000118). */
+    private int[][] parents;
+    /** Key: index of a top-level term; value: indices of all terms of its subtree. */
+    private int[][] termsByBranch;
+    /** Index of the top-level term whose subtree contains the term. */
+    private int[] branchOfTerm;
+    /** Phenotype annotations of each disease (indices of terms) and their frequencies. */
+    private int[][] diseaseTerms;
+    private float[][] diseaseFrequencies;
+    /** Frequency format of each annotation ({@link #FREQ_EMPTY} etc.), possibly combined with {@link #NOT}. */
+    private byte[][] diseaseFrequencyFormats;
+    /** Mode of inheritance of each disease, an index of {@link #INHERITANCE_IDS}. */
+    private byte[] inheritance;
+    /** Indices of the genes of each disease (empty if the disease has no known gene). */
+    private int[][] diseaseGenes;
+    private double[] backgroundFrequency;
+
+    private SyntheticKnowledgeBase(Builder builder) {
+        this.nTerms = builder.terms;
+        this.depth = builder.depth;
+        this.nDiseases = builder.diseases;
+        this.nGenes = builder.genes;
+        this.seed = builder.seed;
+        this.extraParentProbability = builder.extraParentProbability;
+        Random random = new Random(seed);
+        generateOntology(random);
+        generateGenes(random);
+        generateDiseases(random);
+    }
+
+    public int getTermCount() {
+        return nTerms;
+    }
+
+    public int getDiseaseCount() {
+        return nDiseases;
+    }
+
+    public int getGeneCount() {
+        return nGenes;
+    }
+
+    public static String termId(int term) {
+        return String.format("HP:%07d", FIRST_TERM_ID + term);
+    }
+
+    public static String diseaseId(int disease) {
+        return "OMIM:" + (FIRST_DISEASE_ID + disease);
+    }
+
+    public static int entrezId(int gene) {
+        return FIRST_GENE_ID + gene;
+    }
+
+    public static String geneSymbol(int gene) {
+        return "SYN" + gene;
+    }
+
+    int[] getDiseaseTerms(int disease) {
+        return diseaseTerms[disease];
+    }
+
+    float[] getDiseaseFrequencies(int disease) {
+        return diseaseFrequencies[disease];
+    }
+
+    boolean isNegatedAnnotation(int disease, int annotation) {
+        return (diseaseFrequencyFormats[disease][annotation] & NOT) != 0;
+    }
+
+    int[] getDiseaseGenes(int disease) {
+        return diseaseGenes[disease];
+    }
+
+    int getInheritance(int disease) {
+        return inheritance[disease];
+    }
+
+    int getBranch(int term) {
+        return branchOfTerm[term];
+    }
+
+    int[] getBranchTerms(int branch) {
+        return termsByBranch[branch];
+    }
+
+    int getBranchCount() {
+        return termsByBranch.length;
+    }
+
+    /**
+     * The first level holds the top-level terms, and the other terms are distributed over the levels 2 to
+     * {@link #depth} so that the middle levels are the largest, as in the HPO. Each term has a parent on the level
+     * above and, with probability {@link #extraParentProbability}, a second parent on any higher level of the same
+     * subtree.
+     */
+    private void generateOntology(Random random) {
+        int nBranches = Math.min(MAX_BRANCHES, Math.max(1, nTerms / 50));
+        int[] levelSize = new int[depth + 1];
+        levelSize[1] = nBranches;
+        // every level gets one term, so that the ontology has the requested depth; the others are distributed
+        int remaining = nTerms - nBranches - (depth - 1);
+        double[] weight = new double[depth + 1];
+        double weightSum = 0;
+        for (int level = 2; level <= depth; level++) {
+            weight[level] = Math.min(level - 1, depth - level + 2);
+            weightSum += weight[level];
+        }
+        int assigned = 0;
+        for (int level = 2; level <= depth; level++) {
+            levelSize[level] = (int) (remaining * weight[level] / weightSum);
+            assigned += levelSize[level];
+            levelSize[level]++;
+        }
+        levelSize[depth / 2 + 1] += remaining - assigned;
+
+        parents = new int[nTerms][];
+        branchOfTerm = new int[nTerms];
+        List<List<List<Integer>>> termsByBranchAndLevel = new ArrayList<>();
+        for (int b = 0; b < nBranches; b++) {
+            parents[b] = new int[]{-1};
+            branchOfTerm[b] = b;
+            List<List<Integer>> levels = new ArrayList<>();
+            for (int level = 0; level <= depth; level++) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(1).add(b);
+            termsByBranchAndLevel.add(levels);
+        }
+        int term = nBranches;
+        for (int level = 2; level <= depth; level++) {
+            for (int i = 0; i < levelSize[level]; i++, term++) {
+                // find a subtree that reaches the level above
+                int branch = random.nextInt(nBranches);
+                while (termsByBranchAndLevel.get(branch).get(level - 1).isEmpty()) {
+                    branch = random.nextInt(nBranches);
+                }
+                List<List<Integer>> levels = termsByBranchAndLevel.get(branch);
+                List<Integer> above = levels.get(level - 1);
+                int parent = above.get(random.nextInt(above.size()));
+                int extra = -1;
+                if (level > 2 && random.nextDouble() < extraParentProbability) {
+                    List<Integer> candidates = levels.get(1 + random.nextInt(level - 2));
+                    extra = candidates.get(random.nextInt(candidates.size()));
+                }
+                parents[term] = extra >= 0 && extra != parent ? new int[]{parent, extra} : new int[]{parent};
+                branchOfTerm[term] = branch;
+                levels.get(level).add(term);
+            }
+        }
+        termsByBranch = new int[nBranches][];
+        for (int b = 0; b < nBranches; b++) {
+            termsByBranch[b] = termsByBranchAndLevel.get(b).stream()
+                    .flatMap(List::stream)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+    }
+
+    /** Background frequencies are drawn from a log-normal distribution with a median of about 0.05. */
+    private void generateGenes(Random random) {
+        backgroundFrequency = new double[nGenes];
+        for (int g = 0; g < nGenes; g++) {
+            backgroundFrequency[g] = Math.min(2.0, Math.exp(Math.log(0.05) + 1.2 * random.nextGaussian()));
+        }
+    }
+
+    /**
+     * The number of phenotype annotations per disease follows a log-normal distribution (median 12, at most 200).
+     * Most annotations of a disease are to terms of one to three subtrees. About three quarters of the diseases have
+     * a gene; genes with a low index are associated with more diseases than others.
+     */
+    private void generateDiseases(Random random) {
+        diseaseTerms = new int[nDiseases][];
+        diseaseFrequencies = new float[nDiseases][];
+        diseaseFrequencyFormats = new byte[nDiseases][];
+        inheritance = new byte[nDiseases];
+        diseaseGenes = new int[nDiseases][];
+        int nBranches = termsByBranch.length;
+        for (int d = 0; d < nDiseases; d++) {
+            int n = (int) Math.round(Math.exp(Math.log(12) + 0.8 * random.nextGaussian()));
+            n = Math.max(1, Math.min(Math.min(200, nTerms), n));
+            int[] branches = new int[1 + random.nextInt(3)];
+            for (int i = 0; i < branches.length; i++) {
+                branches[i] = random.nextInt(nBranches);
+            }
+            Set<Integer> terms = new LinkedHashSet<>();
+            for (int attempts = 0; terms.size() < n && attempts < 10 * n; attempts++) {
+                int[] candidates = random.nextDouble() < 0.8 ?
+                        termsByBranch[branches[random.nextInt(branches.length)]] :
+                        termsByBranch[random.nextInt(nBranches)];
+                terms.add(candidates[random.nextInt(candidates.length)]);
+            }
+            diseaseTerms[d] = terms.stream().mapToInt(Integer::intValue).toArray();
+            diseaseFrequencies[d] = new float[diseaseTerms[d].length];
+            diseaseFrequencyFormats[d] = new byte[diseaseTerms[d].length];
+            for (int j = 0; j < diseaseTerms[d].length; j++) {
+                randomFrequency(random, d, j);
+            }
+            double r = random.nextDouble();
+            inheritance[d] = (byte) (r < 0.5 ? 0 : r < 0.9 ? 1 : 2);
+            if (nGenes > 0 && random.nextDouble() < 0.75) {
+                int nDiseaseGenes = random.nextDouble() < 0.05 ? 2 : 1;
+                Set<Integer> genes = new LinkedHashSet<>();
+                for (int i = 0; i < nDiseaseGenes; i++) {
+                    genes.add((int) (nGenes * Math.pow(random.nextDouble(), 1.5)));
+                }
+                diseaseGenes[d] = genes.stream().mapToInt(Integer::intValue).toArray();
+            } else {
+                diseaseGenes[d] = new int[0];
+            }
+        }
+    }
+
+    /**
+     * About half of the annotations have no frequency; the others use the HPO frequency terms, a fraction such as
+     * 3/7, or a percentage, in roughly the proportions of the real phenotype.hpoa file. Two percent of the
+     * annotations are negated.
+     */
+    private void randomFrequency(Random random, int d, int j) {
+        double r = random.nextDouble();
+        byte format;
+        float frequency;
+        if (r < 0.50) {
+            format = FREQ_EMPTY;
+            frequency = 1.0f;
+        } else if (r < 0.92) {
+            format = FREQ_HPO;
+            frequency = r < 0.53 ? 1.0f : r < 0.65 ? 0.895f : r < 0.78 ? 0.545f : r < 0.90 ? 0.17f : 0.025f;
+        } else if (r < 0.98) {
+            format = FREQ_FRACTION;
+            int denominator = fractionDenominator(d, j);
+            frequency = (float) (1 + random.nextInt(denominator)) / denominator;
+        } else {
+            format = FREQ_PERCENT;
+            frequency = (1 + random.nextInt(100)) / 100.0f;
+        }
+        if (random.nextDouble() < 0.02) {
+            format |= NOT;
+        }
+        diseaseFrequencies[d][j] = frequency;
+        diseaseFrequencyFormats[d][j] = format;
+    }
+
+    /** The denominator of a fraction is derived from the position of the annotation, so it need not be stored. */
+    private static int fractionDenominator(int d, int j) {
+        return 5 + (31 * d + 17 * j) % 36;
+    }
+
+    private String frequencyString(int d, int j) {
+        float f = diseaseFrequencies[d][j];
+        switch (diseaseFrequencyFormats[d][j] & ~NOT) {
+            case FREQ_HPO:
+                return f >= 1.0f ? "HP:0040280" : f >= 0.8f ? "HP:0040281" : f >= 0.3f ? "HP:0040282" :
+                        f >= 0.05f ? "HP:0040283" : "HP:0040284";
+            case FREQ_FRACTION:
+                int denominator = fractionDenominator(d, j);
+                return Math.round(f * denominator) + "/" + denominator;
+            case FREQ_PERCENT:
+                return Math.round(f * 100) + "%";
+            case FREQ_EMPTY:
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Write the files of the LIRICAL data directory and a background frequency file
+     * ({@code background-synthetic.tsv}) to a directory, which is created if needed.
+     * @param datadir the directory
+     */
+    public void write(File datadir) {
+        if (! datadir.isDirectory() && ! datadir.mkdirs()) {
+            throw new LiricalRuntimeException("Could not create directory " + datadir.getAbsolutePath());
+        }
+        try {
+            writeOntology(new File(datadir, "hp.obo"));
+            writeAnnotations(new File(datadir, "phenotype.hpoa"));
+            writeMim2gene(new File(datadir, "mim2gene_medgen"));
+            writeGeneInfo(new File(datadir, "Homo_sapiens_gene_info.gz"));
+            writeBackground(new File(datadir, "background-synthetic.tsv"));
+        } catch (IOException e) {
+            throw new LiricalRuntimeException("Could not write synthetic knowledge base: " + e.getMessage());
+        }
+        logger.info("Wrote synthetic knowledge base with {} terms, {} diseases, and {} genes to {}",
+                nTerms, nDiseases, nGenes, datadir.getAbsolutePath());
+    }
+
+    private static Writer writer(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private static void writeTerm(Writer writer, String id, String name, String... isA) throws IOException {
+        writer.write("[Term]\nid: " + id + "\nname: " + name + "\n");
+        for (String parent : isA) {
+            writer.write("is_a: " + parent + "\n");
+        }
+        writer.write("\n");
+    }
+
+    private void writeOntology(File file) throws IOException {
+        try (Writer writer = writer(file)) {
+            writer.write("format-version: 1.2\n");
+            writer.write("data-version: synthetic/seed-" + seed + "\n");
+            writer.write("default-namespace: human_phenotype\n");
+            writer.write("ontology: hp\n\n");
+            writeTerm(writer, "HP:0000001", "All");
+            writeTerm(writer, "HP:0000005", "Mode of inheritance", "HP:0000001");
+            for (int i = 0; i < INHERITANCE_IDS.length; i++) {
+                writeTerm(writer, INHERITANCE_IDS[i], INHERITANCE_LABELS[i], "HP:0000005");
+            }
+            writeTerm(writer, "HP:0000118", "Phenotypic abnormality", "HP:0000001");
+            writeTerm(writer, "HP:0040279", "Frequency", "HP:0000001");
+            String[] frequencyLabels = {"Obligate", "Very frequent", "Frequent", "Occasional", "Very rare", "Excluded"};
+            for (int i = 0; i < frequencyLabels.length; i++) {
+                writeTerm(writer, "HP:004028" + i, frequencyLabels[i], "HP:0040279");
+            }
+            for (int t = 0; t < nTerms; t++) {
+                String[] isA = new String[parents[t].length];
+                for (int i = 0; i < isA.length; i++) {
+                    isA[i] = parents[t][i] < 0 ? "HP:0000118" : termId(parents[t][i]);
+                }
+                String name = parents[t][0] < 0 ?
+                        "Abnormality of synthetic system " + t :
+                        "Synthetic abnormality " + t;
+                writeTerm(writer, termId(t), name, isA);
+            }
+        }
+    }
+
+    private void writeAnnotations(File file) throws IOException {
+        try (Writer writer = writer(file)) {
+            writer.write("#description: synthetic HPO annotations [" + nDiseases + ": OMIM]\n");
+            writer.write("#date: 2019-10-01\n");
+            writer.write("#tracker: n/a\n");
+            writer.write("#HPO-version: synthetic/seed-" + seed + "\n");
+            writer.write("DatabaseID\tDiseaseName\tQualifier\tHPO_ID\tReference\tEvidence\tOnset\tFrequency\tSex\tModifier\tAspect\tBiocuration\n");
+            for (int d = 0; d < nDiseases; d++) {
+                String id = diseaseId(d);
+                String name = "SYNTHETIC DISEASE " + d;
+                writer.write(String.join("\t", id, name, "", INHERITANCE_IDS[inheritance[d]], id, "IEA",
+                        "", "", "", "", "I", "HPO:synthetic[2019-10-01]") + "\n");
+                for (int j = 0; j < diseaseTerms[d].length; j++) {
+                    String qualifier = isNegatedAnnotation(d, j) ? "NOT" : "";
+                    writer.write(String.join("\t", id, name, qualifier, termId(diseaseTerms[d][j]), id,
+                            j % 3 == 0 ? "TAS" : "IEA", "", frequencyString(d, j), "", "", "P",
+                            "HPO:synthetic[2019-10-01]") + "\n");
+                }
+            }
+        }
+    }
+
+    /** Each disease with a gene has "phenotype" lines in mim2gene_medgen that link the disease to its genes. */
+    private void writeMim2gene(File file) throws IOException {
+        try (Writer writer = writer(file)) {
+            writer.write("#MIM number\tGeneID\ttype\tSource\tMedGenCUI\tComment\n");
+            for (int d = 0; d < nDiseases; d++) {
+                String mim = String.valueOf(FIRST_DISEASE_ID + d);
+                if (diseaseGenes[d].length == 0) {
+                    writer.write(mim + "\t-\tphenotype\t-\tC" + mim + "\t-\n");
+                }
+                for (int g : diseaseGenes[d]) {
+                    writer.write(mim + "\t" + entrezId(g) + "\tphenotype\tGeneMap\tC" + mim + "\t-\n");
+                }
+            }
+        }
+    }
+
+    private void writeGeneInfo(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(file)), StandardCharsets.UTF_8))) {
+            writer.write("#tax_id\tGeneID\tSymbol\tLocusTag\tSynonyms\tdbXrefs\tchromosome\tmap_location\tdescription\t" +
+                    "type_of_gene\tSymbol_from_nomenclature_authority\tFull_name_from_nomenclature_authority\t" +
+                    "Nomenclature_status\tOther_designations\tModification_date\tFeature_type\n");
+            for (int g = 0; g < nGenes; g++) {
+                String symbol = geneSymbol(g);
+                writer.write(String.join("\t", "9606", String.valueOf(entrezId(g)), symbol, "-", "-", "-",
+                        String.valueOf(SyntheticGenome.chromosomeOf(g)), "-", "synthetic gene " + g, "protein-coding",
+                        symbol, "synthetic gene " + g, "O", "-", "20191001", "-") + "\n");
+            }
+        }
+    }
+
+    /** Same columns as the background files in {@code src/main/resources/background}; only "Mean" is used. */
+    private void writeBackground(File file) throws IOException {
+        try (Writer writer = writer(file)) {
+            writer.write("Gene\tEntrezId\tAFR\tAMR\tASJ\tEAS\tFIN\tNFE\tSAS\tMean\n");
+            for (int g = 0; g < nGenes; g++) {
+                String f = String.valueOf(backgroundFrequency[g]);
+                writer.write(String.join("\t", geneSymbol(g), String.valueOf(entrezId(g)),
+                        f, f, f, f, f, f, f, f) + "\n");
+            }
+        }
+    }
+
+    public static class Builder {
+        private int terms = 15_000;
+        private int depth = 12;
+        private int diseases = 8_000;
+        private int genes = 4_000;
+        private long seed = 42L;
+        private double extraParentProbability = 0.15;
+
+        /** @param n number of terms below Phenotypic abnormality (default: 15000) */
+        public Builder terms(int n) {
+            this.terms = n;
+            return this;
+        }
+
+        /** @param d maximum number of levels below Phenotypic abnormality (default: 12) */
+        public Builder depth(int d) {
+            this.depth = d;
+            return this;
+        }
+
+        /** @param n number of diseases (default: 8000, about the number of OMIM diseases in phenotype.hpoa) */
+        public Builder diseases(int n) {
+            this.diseases = n;
+            return this;
+        }
+
+        /** @param n number of genes (default: 4000) */
+        public Builder genes(int n) {
+            this.genes = n;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /** @param p probability that a term below the second level has a second parent (default: 0.15) */
+        public Builder extraParentProbability(double p) {
+            this.extraParentProbability = p;
+            return this;
+        }
+
+        public SyntheticKnowledgeBase build() {
+            if (depth < 2) {
+                throw new LiricalRuntimeException("Depth of the synthetic ontology must be at least 2, but was " + depth);
+            }
+            if (terms < depth) {
+                throw new LiricalRuntimeException(String.format("Synthetic ontology needs at least %d terms for a depth of %d", depth, depth));
+            }
+            if (diseases < 1 || diseases > MAX_DISEASES) {
+                throw new LiricalRuntimeException(String.format("Number of diseases must be between 1 and %d, but was %d", MAX_DISEASES, diseases));
+            }
+            if (genes < 0 || genes > SyntheticGenome.MAX_GENES) {
+                throw new LiricalRuntimeException(String.format("Number of genes must be between 0 and %d, but was %d", SyntheticGenome.MAX_GENES, genes));
+            }
+            return new SyntheticKnowledgeBase(this);
+        }
+    }
+}
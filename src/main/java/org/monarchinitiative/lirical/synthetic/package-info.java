@@ -0,0 +1,6 @@
+/**
+ * Classes that generate synthetic data (an HPO-like ontology, disease annotations, gene maps, Jannovar and
+ * Exomiser files, VCF files, and Phenopackets) of any size for stress tests with the {@code synthesize} command.
+ * These classes are not needed to run LIRICAL on data.
+ */
+package org.monarchinitiative.lirical.synthetic;
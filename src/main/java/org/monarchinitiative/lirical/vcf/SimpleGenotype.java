@@ -1,5 +1,25 @@
 package org.monarchinitiative.lirical.vcf;
 
 public enum SimpleGenotype {
-    HETEROZYGOUS,HOMOZYGOUS_ALT, HOMOZYGOUS_REF, NOT_OBSERVED
+    HETEROZYGOUS,HOMOZYGOUS_ALT, HOMOZYGOUS_REF, NOT_OBSERVED;
+
+    /**
+     * @param genotypeString a VCF genotype such as {@code 0/1} or {@code 1|1}
+     * @return the corresponding genotype, {@link #NOT_OBSERVED} for anything else
+     */
+    public static SimpleGenotype fromGenotypeString(String genotypeString) {
+        switch (genotypeString) {
+            case "0/1":
+            case "0|1":
+                return HETEROZYGOUS;
+            case "1/1":
+            case "1|1":
+                return HOMOZYGOUS_ALT;
+            case "0/0":
+            case "0|0":
+                return HOMOZYGOUS_REF;
+            default:
+                return NOT_OBSERVED;
+        }
+    }
 }
@@ -29,6 +29,16 @@ public class SimpleVariant implements Comparable<SimpleVariant> {
     private static final float PATHOGENICITY_THRESHOLD=0.80f;
     /** Must be either hg19 or hg38 -- we are using this for the UCSC URL. */
     private static String genomeBuild=null;
+    /** Names of the chromosomes 1-25, shared by all variants (index 0 is not used). */
+    private static final String[] CHROMOSOME_NAMES = new String[26];
+    static {
+        for (int i = 1; i <= 22; i++) {
+            CHROMOSOME_NAMES[i] = String.format("chr%d", i);
+        }
+        CHROMOSOME_NAMES[23] = "chrX";
+        CHROMOSOME_NAMES[24] = "chrY";
+        CHROMOSOME_NAMES[25] = "chrM";
+    }
 
 
 
@@ -52,45 +62,59 @@ public class SimpleVariant implements Comparable<SimpleVariant> {
 
     public SimpleVariant(int chrom, int pos, String ref, String alt, List<TranscriptAnnotation> annotlist,
                          float path, float freq, String genotypeString,ClinVarData.ClinSig clinv){
+        this(chrom, pos, ref, alt, annotlist, pathogenicityScore(path, freq, clinv), freq,
+                SimpleGenotype.fromGenotypeString(genotypeString), clinv);
+    }
+
+    private SimpleVariant(int chrom, int pos, String ref, String alt, List<TranscriptAnnotation> annotlist,
+                          float pathogenicityScore, float freq, SimpleGenotype gtype, ClinVarData.ClinSig clinv) {
         this.position=pos;
         this.ref=ref;
         this.alt=alt;
         this.annotationList=ImmutableList.copyOf(annotlist);
-
         this.frequency=freq;
+        this.pathogenicityScore=pathogenicityScore;
+        this.clinvar=clinv;
+        this.gtype=gtype;
+        this.chromosome = chrom > 0 && chrom < CHROMOSOME_NAMES.length ?
+                CHROMOSOME_NAMES[chrom] :
+                String.format("chr%d",chrom);
+    }
+
+    /**
+     * Create a variant whose pathogenicity score was already calculated with
+     * {@link #pathogenicityScore(float, float, ClinVarData.ClinSig)}, e.g., from the compact variant list of a gene.
+     */
+    public static SimpleVariant withPathogenicityScore(int chrom, int pos, String ref, String alt,
+                                                       List<TranscriptAnnotation> annotlist, float pathogenicityScore,
+                                                       float freq, SimpleGenotype gtype, ClinVarData.ClinSig clinv) {
+        return new SimpleVariant(chrom, pos, ref, alt, annotlist, pathogenicityScore, freq, gtype, clinv);
+    }
+
+    /**
+     * @param path predicted pathogenicity of the variant
+     * @param freq population frequency of the variant (in percent)
+     * @param clinv ClinVar interpretation of the variant
+     * @return the Exomiser-style pathogenicity score, i.e., the predicted pathogenicity multiplied by a frequency factor
+     */
+    public static float pathogenicityScore(float path, float freq, ClinVarData.ClinSig clinv) {
         // heuristic -- count ClinVar pathogenic or likjely pathogenic as 1.0 (maximum pathogenicity score)
         // irregardless of the Exomiser pathogenicity score
         if (clinv.equals(ClinVarData.ClinSig.PATHOGENIC_OR_LIKELY_PATHOGENIC)) {
-            this.pathogenicityScore = 1.0f;
+            return 1.0f;
         } else {
-            this.pathogenicityScore = (float) (path * frequencyScore());
-        }
-        this.clinvar=clinv;
-        switch (genotypeString) {
-            case "0/1":
-            case "0|1":
-                this.gtype=SimpleGenotype.HETEROZYGOUS;
-                break;
-            case "1/1":
-            case "1|1":
-                this.gtype=SimpleGenotype.HOMOZYGOUS_ALT;
-                break;
-            case "0/0":
-            case "0|0":
-                this.gtype=SimpleGenotype.HOMOZYGOUS_REF;
-                break;
-            default:
-                this.gtype=SimpleGenotype.NOT_OBSERVED;
+            return (float) (path * frequencyScore(freq));
         }
+    }
 
+    /** @return true if a variant with this pathogenicity score is in the pathogenic bin. */
+    public static boolean isInPathogenicBin(float pathogenicityScore) {
+        return pathogenicityScore >= PATHOGENICITY_THRESHOLD;
+    }
 
-        switch (chrom) {
-            case 25: this.chromosome ="chrM";break;
-            case 24: this.chromosome ="chrY";break;
-            case 23: this.chromosome ="chrX";break;
-            default: this.chromosome =String.format("chr%d",chrom);
-        }
-
+    /** @return true if we regard this ClinVar interpretation as pathogenic. */
+    public static boolean isClinVarPathogenic(ClinVarData.ClinSig clinv) {
+        return PATHOGENIC_CLINVAR_PRIMARY_INTERPRETATIONS.contains(clinv);
     }
 
     /** This can be set so that we will correctly build the URL to view the location of mutation in UCSC. */
@@ -108,7 +132,7 @@ public class SimpleVariant implements Comparable<SimpleVariant> {
      * @return true if the predicted pathogenicity of this variant is above {@link #PATHOGENICITY_THRESHOLD}.
      */
     public boolean isInPathogenicBin() {
-        return this.pathogenicityScore >= PATHOGENICITY_THRESHOLD;
+        return isInPathogenicBin(this.pathogenicityScore);
     }
 
     /**
@@ -123,7 +147,7 @@ public class SimpleVariant implements Comparable<SimpleVariant> {
     }
 
     public boolean isClinVarPathogenic() {
-        return PATHOGENIC_CLINVAR_PRIMARY_INTERPRETATIONS.contains(this.clinvar);
+        return isClinVarPathogenic(this.clinvar);
     }
     /**
      * Count the number of ClinVar-pathogenic alleles. If this variant is not called Pathogenic in ClinVar, then
@@ -174,7 +198,9 @@ public class SimpleVariant implements Comparable<SimpleVariant> {
 
     @Override
     public String toString() {
-        return String.format("%s:%d%s>%s %s pathogenicity:%.1f [%s]", chromosome,position,ref,alt,annotation2string(annotationList.get(0)),pathogenicityScore,gtype);
+        // variants outside of the pathogenic bin may have been stored without their transcript annotations
+        String annotation = annotationList.isEmpty() ? "n/a" : annotation2string(annotationList.get(0));
+        return String.format("%s:%d%s>%s %s pathogenicity:%.1f [%s]", chromosome,position,ref,alt,annotation,pathogenicityScore,gtype);
     }
 
     public float getPathogenicityScore() {
@@ -190,7 +216,7 @@ public class SimpleVariant implements Comparable<SimpleVariant> {
      * population frequency, with anything above 2% getting a factor of zero.
      * @return The Exomiser-style frequency factor
      */
-    private double frequencyScore() {
+    private static double frequencyScore(float frequency) {
         if (frequency <= 0) {
             return 1f;
         } else if (frequency > 2) {
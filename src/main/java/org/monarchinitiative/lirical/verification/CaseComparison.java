@@ -0,0 +1,70 @@
+package org.monarchinitiative.lirical.verification;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * The result of comparing the differential diagnoses of one case (see {@link EquivalenceChecker#compare}). Only
+ * the first divergences (by rank) are kept; {@link #getDivergenceCount()} is the total number.
+ */
+public final class CaseComparison {
+    private final String caseId;
+    private final int comparedDiseases;
+    private final int divergenceCount;
+    private final List<Divergence> firstDivergences;
+    /** Largest relative difference of the composite likelihood ratios (or the post-test probabilities). */
+    private final double maxRelativeDifference;
+    /** Proportion of the compared diseases of the reference that the candidate ranks in the compared range. */
+    private final double recall;
+
+    CaseComparison(String caseId, int comparedDiseases, int divergenceCount, List<Divergence> firstDivergences,
+                   double maxRelativeDifference, double recall) {
+        this.caseId = caseId;
+        this.comparedDiseases = comparedDiseases;
+        this.divergenceCount = divergenceCount;
+        this.firstDivergences = ImmutableList.copyOf(firstDivergences);
+        this.maxRelativeDifference = maxRelativeDifference;
+        this.recall = recall;
+    }
+
+    public String getCaseId() {
+        return caseId;
+    }
+
+    /** @return true if no divergence was found. */
+    public boolean isEquivalent() {
+        return divergenceCount == 0;
+    }
+
+    public int getComparedDiseases() {
+        return comparedDiseases;
+    }
+
+    public int getDivergenceCount() {
+        return divergenceCount;
+    }
+
+    /** @return the divergences of the best-ranked diseases, best rank first */
+    public List<Divergence> getFirstDivergences() {
+        return firstDivergences;
+    }
+
+    public double getMaxRelativeDifference() {
+        return maxRelativeDifference;
+    }
+
+    /**
+     * @return the recall at K if only the top K diseases were compared (see {@link EquivalenceChecker.Builder#topK(int)}),
+     * otherwise the proportion of the diseases of the reference that are also ranked by the candidate
+     */
+    public double getRecall() {
+        return recall;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d diseases, %d divergences (max. relative difference %.2e, recall %.3f)",
+                caseId, comparedDiseases, divergenceCount, maxRelativeDifference, recall);
+    }
+}
@@ -0,0 +1,71 @@
+package org.monarchinitiative.lirical.verification;
+
+import org.monarchinitiative.lirical.likelihoodratio.DiseaseRank;
+import org.monarchinitiative.lirical.likelihoodratio.TestResult;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+/**
+ * The score of one disease in the differential diagnosis of a case, as calculated by a {@link ScoringMode}.
+ * Modes that do not calculate the composite likelihood ratio or the explanations (e.g., the rank-only evaluation)
+ * leave them undefined, and they are then not compared.
+ */
+public final class DiseaseScore {
+    private final TermId diseaseId;
+    private final int rank;
+    private final double posttestProbability;
+    /** Composite likelihood ratio, or NaN if the mode does not calculate it. */
+    private final double compositeLR;
+    /** Phenotype and genotype explanation, or null if the mode does not create it. */
+    private final String explanation;
+
+    public DiseaseScore(TermId diseaseId, int rank, double posttestProbability, double compositeLR, String explanation) {
+        this.diseaseId = diseaseId;
+        this.rank = rank;
+        this.posttestProbability = posttestProbability;
+        this.compositeLR = compositeLR;
+        this.explanation = explanation;
+    }
+
+    public static DiseaseScore of(TestResult result) {
+        String explanation = result.getPhenotypeExplanation() + " | " + result.getGenotypeExplanation();
+        return new DiseaseScore(result.getDiseaseCurie(), result.getRank(), result.getPosttestProbability(),
+                result.getCompositeLR(), explanation);
+    }
+
+    public static DiseaseScore of(DiseaseRank rank) {
+        return new DiseaseScore(rank.getDiseaseId(), rank.getRank(), rank.getPosttestProbability(), Double.NaN, null);
+    }
+
+    public TermId getDiseaseId() {
+        return diseaseId;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public double getPosttestProbability() {
+        return posttestProbability;
+    }
+
+    public boolean hasCompositeLR() {
+        return ! Double.isNaN(compositeLR);
+    }
+
+    public double getCompositeLR() {
+        return compositeLR;
+    }
+
+    public boolean hasExplanation() {
+        return explanation != null;
+    }
+
+    public String getExplanation() {
+        return explanation;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: rank %d posttest %g LR %g", diseaseId.getValue(), rank, posttestProbability, compositeLR);
+    }
+}
@@ -0,0 +1,71 @@
+package org.monarchinitiative.lirical.verification;
+
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+/**
+ * One difference between the reference and the candidate differential diagnosis of a case.
+ */
+public final class Divergence {
+
+    public enum Kind {
+        /** The disease is ranked by the reference but not by the candidate. */
+        MISSING,
+        /** The disease is ranked by the candidate but not by the reference. */
+        EXTRA,
+        /** The ranks differ (and the difference is not explained by ties). */
+        RANK,
+        /** The post-test probabilities differ by more than the tolerance. */
+        POSTTEST_PROBABILITY,
+        /** The composite likelihood ratios differ by more than the tolerance. */
+        COMPOSITE_LR,
+        /** The phenotype or genotype explanations differ. */
+        EXPLANATION
+    }
+
+    private final String caseId;
+    private final TermId diseaseId;
+    private final Kind kind;
+    /** Rank of the disease in the reference, or in the candidate for {@link Kind#EXTRA}. */
+    private final int rank;
+    private final String referenceValue;
+    private final String candidateValue;
+
+    Divergence(String caseId, TermId diseaseId, Kind kind, int rank, String referenceValue, String candidateValue) {
+        this.caseId = caseId;
+        this.diseaseId = diseaseId;
+        this.kind = kind;
+        this.rank = rank;
+        this.referenceValue = referenceValue;
+        this.candidateValue = candidateValue;
+    }
+
+    public String getCaseId() {
+        return caseId;
+    }
+
+    public TermId getDiseaseId() {
+        return diseaseId;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public String getReferenceValue() {
+        return referenceValue;
+    }
+
+    public String getCandidateValue() {
+        return candidateValue;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s\t%s\trank %d\t%s\treference: %s\tcandidate: %s",
+                caseId, diseaseId.getValue(), rank, kind, referenceValue, candidateValue);
+    }
+}
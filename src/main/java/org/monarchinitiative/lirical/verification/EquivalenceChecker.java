@@ -0,0 +1,209 @@
+package org.monarchinitiative.lirical.verification;
+
+import org.monarchinitiative.lirical.engine.CaseInput;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Score cases with a reference and a candidate {@link ScoringMode} and compare the differential diagnoses disease by
+ * disease: the set of ranked diseases, the ranks, the post-test probabilities and composite likelihood ratios (with
+ * a relative tolerance), and the explanations. Values that a mode does not calculate are not compared.
+ * <p>
+ * Diseases with exactly the same post-test probability are ranked in the order of the disease map, which may differ
+ * between knowledge bases. A rank difference is therefore only reported if the candidate rank is outside the range
+ * of ranks of the diseases that are tied in the reference.
+ * <p>
+ * Approximate modes (e.g., with a prescreen that only evaluates a shortlist of diseases) can be checked for the top
+ * diseases only (see {@link Builder#topK(int)}); the comparison then also reports the recall at K, i.e., the
+ * proportion of the top K diseases of the reference that are also in the top K of the candidate.
+ */
+public class EquivalenceChecker {
+    private static final Logger logger = LoggerFactory.getLogger(EquivalenceChecker.class);
+
+    private final ScoringMode reference;
+    private final ScoringMode candidate;
+    /** Maximum relative difference of two likelihood ratios or probabilities that are considered equal. */
+    private final double tolerance;
+    /** Number of divergences of a case that are kept for the report. */
+    private final int maxDivergences;
+    private final boolean compareExplanations;
+    /** Number of top-ranked diseases that are compared (0: all diseases). */
+    private final int topK;
+
+    private EquivalenceChecker(Builder builder) {
+        this.reference = builder.reference;
+        this.candidate = builder.candidate;
+        this.tolerance = builder.tolerance;
+        this.maxDivergences = builder.maxDivergences;
+        this.compareExplanations = builder.explanations;
+        this.topK = builder.topK;
+    }
+
+    public ScoringMode getReference() {
+        return reference;
+    }
+
+    public ScoringMode getCandidate() {
+        return candidate;
+    }
+
+    /**
+     * @return the relative difference of two values (zero if both are equal, including two infinite values)
+     */
+    static double relativeDifference(double a, double b) {
+        if (a == b) {
+            return 0.0;
+        }
+        if (Double.isNaN(a) || Double.isNaN(b) || Double.isInfinite(a) || Double.isInfinite(b)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.abs(a - b) / Math.max(Math.abs(a), Math.abs(b));
+    }
+
+    /**
+     * Score a case with both modes and compare the results.
+     * @param caseId name of the case for the report
+     * @param input the case
+     * @return the divergences of the case
+     */
+    public CaseComparison compare(String caseId, CaseInput input) {
+        List<DiseaseScore> referenceScores = reference.score(input);
+        List<DiseaseScore> candidateScores = candidate.score(input);
+        return compare(caseId, referenceScores, candidateScores);
+    }
+
+    CaseComparison compare(String caseId, List<DiseaseScore> referenceScores, List<DiseaseScore> candidateScores) {
+        Map<TermId, DiseaseScore> candidateMap = new HashMap<>();
+        for (DiseaseScore score : candidateScores) {
+            candidateMap.put(score.getDiseaseId(), score);
+        }
+        // range of the ranks of the diseases that are tied with a disease in the reference
+        List<DiseaseScore> byRank = new ArrayList<>(referenceScores);
+        byRank.sort(Comparator.comparingInt(DiseaseScore::getRank));
+        Map<TermId, int[]> tieRange = new HashMap<>();
+        int i = 0;
+        while (i < byRank.size()) {
+            int j = i;
+            double p = byRank.get(i).getPosttestProbability();
+            while (j + 1 < byRank.size() && byRank.get(j + 1).getPosttestProbability() == p) {
+                j++;
+            }
+            int[] range = {byRank.get(i).getRank(), byRank.get(j).getRank()};
+            for (int k = i; k <= j; k++) {
+                tieRange.put(byRank.get(k).getDiseaseId(), range);
+            }
+            i = j + 1;
+        }
+
+        List<Divergence> divergences = new ArrayList<>();
+        double maxDifference = 0.0;
+        Set<TermId> referenceIds = new HashSet<>();
+        int referenceTop = 0;
+        int recalled = 0;
+        for (DiseaseScore ref : byRank) {
+            TermId id = ref.getDiseaseId();
+            referenceIds.add(id);
+            if (topK > 0 && ref.getRank() > topK) {
+                continue;
+            }
+            referenceTop++;
+            DiseaseScore cand = candidateMap.get(id);
+            if (cand != null && (topK == 0 || cand.getRank() <= topK)) {
+                recalled++;
+            }
+            if (cand == null) {
+                divergences.add(new Divergence(caseId, id, Divergence.Kind.MISSING, ref.getRank(), ref.toString(), "not ranked"));
+                continue;
+            }
+            int[] range = tieRange.get(id);
+            if (cand.getRank() < range[0] || cand.getRank() > range[1]) {
+                String expected = range[0] == range[1] ? String.valueOf(range[0]) : range[0] + "-" + range[1];
+                divergences.add(new Divergence(caseId, id, Divergence.Kind.RANK, ref.getRank(), expected,
+                        String.valueOf(cand.getRank())));
+            }
+            double diff = relativeDifference(ref.getPosttestProbability(), cand.getPosttestProbability());
+            maxDifference = Math.max(maxDifference, diff);
+            if (diff > tolerance) {
+                divergences.add(new Divergence(caseId, id, Divergence.Kind.POSTTEST_PROBABILITY, ref.getRank(),
+                        String.valueOf(ref.getPosttestProbability()), String.valueOf(cand.getPosttestProbability())));
+            }
+            if (ref.hasCompositeLR() && cand.hasCompositeLR()) {
+                diff = relativeDifference(ref.getCompositeLR(), cand.getCompositeLR());
+                maxDifference = Math.max(maxDifference, diff);
+                if (diff > tolerance) {
+                    divergences.add(new Divergence(caseId, id, Divergence.Kind.COMPOSITE_LR, ref.getRank(),
+                            String.valueOf(ref.getCompositeLR()), String.valueOf(cand.getCompositeLR())));
+                }
+            }
+            if (compareExplanations && ref.hasExplanation() && cand.hasExplanation()
+                    && ! ref.getExplanation().equals(cand.getExplanation())) {
+                divergences.add(new Divergence(caseId, id, Divergence.Kind.EXPLANATION, ref.getRank(),
+                        ref.getExplanation(), cand.getExplanation()));
+            }
+        }
+        for (DiseaseScore cand : candidateScores) {
+            if (topK > 0 && cand.getRank() > topK) {
+                continue;
+            }
+            if (! referenceIds.contains(cand.getDiseaseId())) {
+                divergences.add(new Divergence(caseId, cand.getDiseaseId(), Divergence.Kind.EXTRA, cand.getRank(),
+                        "not ranked", cand.toString()));
+            }
+        }
+        divergences.sort(Comparator.comparingInt(Divergence::getRank));
+        if (! divergences.isEmpty()) {
+            logger.trace("{}: {} divergences between {} and {}, first: {}", caseId, divergences.size(),
+                    reference.getName(), candidate.getName(), divergences.get(0));
+        }
+        List<Divergence> first = divergences.subList(0, Math.min(maxDivergences, divergences.size()));
+        double recall = referenceTop > 0 ? recalled / (double) referenceTop : 1.0;
+        return new CaseComparison(caseId, referenceTop, divergences.size(), first, maxDifference, recall);
+    }
+
+    public static class Builder {
+        private final ScoringMode reference;
+        private final ScoringMode candidate;
+        private double tolerance = 1e-9;
+        private int maxDivergences = 10;
+        private boolean explanations = true;
+        private int topK = 0;
+
+        public Builder(ScoringMode reference, ScoringMode candidate) {
+            this.reference = reference;
+            this.candidate = candidate;
+        }
+
+        /** Maximum relative difference of likelihood ratios and probabilities that are considered equal (default: 1e-9). */
+        public Builder tolerance(double tolerance) {
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /** Number of divergences per case that are kept for the report (default: 10). */
+        public Builder maxDivergences(int n) {
+            this.maxDivergences = n;
+            return this;
+        }
+
+        /** Compare the explanations if both modes create them (default: true). */
+        public Builder explanations(boolean compare) {
+            this.explanations = compare;
+            return this;
+        }
+
+        /** Only compare the diseases with a rank of at most k in the reference or the candidate (default: 0, all diseases). */
+        public Builder topK(int k) {
+            this.topK = Math.max(0, k);
+            return this;
+        }
+
+        public EquivalenceChecker build() {
+            Objects.requireNonNull(reference);
+            Objects.requireNonNull(candidate);
+            return new EquivalenceChecker(this);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.monarchinitiative.lirical.verification;
+
+import com.google.common.collect.ImmutableList;
+import org.monarchinitiative.lirical.engine.CaseInput;
+import org.monarchinitiative.lirical.engine.LiricalEngine;
+import org.monarchinitiative.lirical.likelihoodratio.DiseaseRank;
+import org.monarchinitiative.lirical.likelihoodratio.TestResult;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.List;
+
+/**
+ * A way of scoring a case whose results can be compared by the {@link EquivalenceChecker}. New scoring paths (e.g.,
+ * with caches or indices) can be checked against {@link #reference(LiricalEngine)} by implementing this interface.
+ */
+public interface ScoringMode {
+
+    /** @return a short name of the mode for the report, e.g., "reference". */
+    String getName();
+
+    /**
+     * Score a case. Modes must not keep state between calls, so that a case gives the same result however often
+     * it is scored.
+     * @param input the case
+     * @return the ranked diseases of the differential diagnosis (diseases that are skipped are not included)
+     */
+    List<DiseaseScore> score(CaseInput input);
+
+    /**
+     * @param engine the engine with the knowledge base
+     * @return the straightforward scoring path: {@link LiricalEngine#score(CaseInput)}, which creates a
+     * {@link TestResult} with the likelihood ratios and explanations of every disease
+     */
+    static ScoringMode reference(LiricalEngine engine) {
+        return named("reference", engine);
+    }
+
+    /**
+     * @param name name of the mode
+     * @param engine the engine used to score the cases with {@link LiricalEngine#score(CaseInput)}
+     * @return a mode that differs from the reference only by the engine (e.g., an engine with a compiled knowledge base)
+     */
+    static ScoringMode named(String name, LiricalEngine engine) {
+        return new ScoringMode() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public List<DiseaseScore> score(CaseInput input) {
+                ImmutableList.Builder<DiseaseScore> builder = new ImmutableList.Builder<>();
+                for (TestResult result : engine.score(input).getHpoCase().getResults()) {
+                    builder.add(DiseaseScore.of(result));
+                }
+                return builder.build();
+            }
+        };
+    }
+
+    /**
+     * @param engine the engine with the knowledge base
+     * @return the rank-only evaluation of {@link LiricalEngine#rank(CaseInput, List)} for all diseases; it
+     * calculates the ranks and post-test probabilities, but no likelihood ratios and explanations
+     */
+    static ScoringMode rankOnly(LiricalEngine engine) {
+        List<TermId> diseases = ImmutableList.copyOf(engine.getDiseaseMap().keySet());
+        return new ScoringMode() {
+            @Override
+            public String getName() {
+                return "rank-only";
+            }
+
+            @Override
+            public List<DiseaseScore> score(CaseInput input) {
+                ImmutableList.Builder<DiseaseScore> builder = new ImmutableList.Builder<>();
+                for (DiseaseRank rank : engine.rank(input, diseases)) {
+                    if (rank.isRanked()) {
+                        builder.add(DiseaseScore.of(rank));
+                    }
+                }
+                return builder.build();
+            }
+        };
+    }
+
+    /**
+     * @param engine an engine built with {@link LiricalEngine.Builder#termMajor(boolean)}
+     * @return the evaluation of {@link LiricalEngine#rankAll(CaseInput)}, which calculates the ranks and post-test
+     * probabilities of all diseases with the likelihood ratios of the inverted index
+     */
+    static ScoringMode termMajor(LiricalEngine engine) {
+        return new ScoringMode() {
+            @Override
+            public String getName() {
+                return "term-major";
+            }
+
+            @Override
+            public List<DiseaseScore> score(CaseInput input) {
+                ImmutableList.Builder<DiseaseScore> builder = new ImmutableList.Builder<>();
+                for (DiseaseRank rank : engine.rankAll(input)) {
+                    builder.add(DiseaseScore.of(rank));
+                }
+                return builder.build();
+            }
+        };
+    }
+}
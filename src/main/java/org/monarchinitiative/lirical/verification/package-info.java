@@ -0,0 +1,7 @@
+/**
+ * Tools that check that an alternative way of scoring cases (e.g., the rank-only evaluation or the compiled
+ * knowledge base) gives the same differential diagnosis as the straightforward {@link
+ * org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator} path. They are used by the {@code verify} command
+ * and by unit tests; they are not needed to run LIRICAL on data.
+ */
+package org.monarchinitiative.lirical.verification;
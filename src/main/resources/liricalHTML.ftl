@@ -295,6 +295,9 @@ footer {
         <ul>
             <li><a href="#sample">Sample</a></li>
             <li><a href="#diff">Differential diagnosis</a></li>
+            <#if sensitivity?has_content>
+            <li><a href="#sensitivity">Sensitivity</a></li>
+            </#if>
             <li><a href="#othergenes">Remaining genes</a></li>
             <li><a href="#settings">Settings</a></li>
             <li><a href="#about">About</a></li>
@@ -410,11 +413,15 @@ footer {
                 <td>${svar.gtype}</td>
                 <td>${svar.clinvar}</td>
                 <td>
+                <#if svar.annotationList?has_content>
                 <ul>
                   <#list svar.annotationList as annot>
                    <li>${annot.accession}: ${annot.hgvsCdna} ${annot.hgvsProtein} ${annot.variantEffect}</li>
                   </#list>
                   </ul>
+                <#else>
+                n/a
+                </#if>
                 </td>
                  </tr>
                </#list>
@@ -446,6 +453,30 @@ footer {
 
 
 
+  <#if sensitivity?has_content>
+  <section>
+    <a name="sensitivity"></a>
+
+    <article>
+      <h2>Sensitivity of the top differential diagnoses to single terms</h2>
+      <p>The table shows the rank and posttest probability of each of the top differential diagnoses if
+      one of the observed or excluded HPO terms is left out. Terms whose removal changes the rank or the posttest
+      probability most are driving the diagnosis.</p>
+
+      <table class="minimalistBlack">
+        <thead>
+          <tr><th>Rank</th><th>Disease</th><th>Post test probability</th><th>Term left out</th><th>Status</th><th>Rank without term</th><th>Post test probability without term</th></tr>
+        </thead>
+        <tbody>
+        <#list sensitivity as s>
+          <tr><td>${s.rank}</td><td>${s.diseaseName} (${s.diseaseCurie})</td><td>${s.posttestProbability}</td><td>${s.termName} (<a href="https://hpo.jax.org/app/browse/term/${s.termId}">${s.termId}</a>)</td><td>${s.status}</td><td>${s.rankWithoutTerm}</td><td>${s.posttestProbabilityWithoutTerm}</td></tr>
+        </#list>
+        </tbody>
+      </table>
+    </article>
+  </section>
+  </#if>
+
   <section>
     <a name="othergenes"></a>
 
@@ -488,6 +519,12 @@ footer {
           <#if n_filtered_variants?has_content>
              <li>Variants removed due to quality filter: ${n_filtered_variants}</li>
            </#if>
+           <#if variantFilter?has_content>
+             <li>Variant filter: ${variantFilter}</li>
+           </#if>
+           <#if variantFilterRejections?has_content>
+             <li>Variants removed per filter: ${variantFilterRejections}</li>
+           </#if>
            <#if genesWithVar?has_content>
                <li>Genes found to have at least one variant: ${genesWithVar}</li>
            </#if>
@@ -497,6 +534,15 @@ footer {
             <#if exomiserPath?has_content>
              <li>Path to Exomiser database: ${exomiserPath}</li>
            </#if>
+           <#if metrics?has_content>
+             <li>Metrics:
+               <ul>
+               <#list metrics as m>
+                 <li>${m}</li>
+               </#list>
+               </ul>
+             </li>
+           </#if>
 
         </ul>
         </p>
@@ -0,0 +1,7 @@
+! LIRICAL leave-one-term-out sensitivity analysis
+! Sample: ${sample_name!"n/a"}
+<#assign tab="\t">
+${sensitivityHeader}
+<#list sensitivity as s>
+${s.rank}${tab}${s.diseaseName}${tab}${s.diseaseCurie}${tab}${s.posttestProbability}${tab}${s.termId}${tab}${s.termName}${tab}${s.status}${tab}${s.rankWithoutTerm}${tab}${s.posttestProbabilityWithoutTerm}${tab}${s.rankChange}
+</#list>
@@ -0,0 +1,71 @@
+package org.monarchinitiative.lirical.analysis;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.exomiser.core.model.TranscriptAnnotation;
+import org.monarchinitiative.exomiser.core.model.pathogenicity.ClinVarData;
+import org.monarchinitiative.lirical.vcf.SimpleGenotype;
+import org.monarchinitiative.lirical.vcf.SimpleVariant;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactVariantListTest {
+
+    private static final List<TranscriptAnnotation> NO_ANNOTATIONS = ImmutableList.of();
+
+    private static void add(CompactVariantList variants, int pos, float score, ClinVarData.ClinSig clinv) {
+        variants.add(2, pos, "A", "T", NO_ANNOTATIONS, score, 0.01f, SimpleGenotype.HETEROZYGOUS, clinv);
+    }
+
+    /** The variants are sorted by descending pathogenicity; variants with equal scores keep their order. */
+    @Test
+    void testOrder() {
+        CompactVariantList variants = new CompactVariantList();
+        add(variants, 1, 0.2f, ClinVarData.ClinSig.NOT_PROVIDED);
+        add(variants, 2, 0.9f, ClinVarData.ClinSig.NOT_PROVIDED);
+        add(variants, 3, 0.2f, ClinVarData.ClinSig.NOT_PROVIDED);
+        add(variants, 4, 0.5f, ClinVarData.ClinSig.NOT_PROVIDED);
+        add(variants, 5, 1.0f, ClinVarData.ClinSig.PATHOGENIC);
+        assertEquals(5, variants.size());
+        int[] expected = {5, 2, 4, 1, 3};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], variants.get(i).getPosition());
+        }
+        assertEquals(ClinVarData.ClinSig.PATHOGENIC, variants.getClinSig(0));
+    }
+
+    @Test
+    void testVariantsMatchSimpleVariant() {
+        CompactVariantList variants = new CompactVariantList();
+        SimpleVariant expected = new SimpleVariant(23, 1234, "G", "GA", NO_ANNOTATIONS, 0.9f, 0.01f, "1/1",
+                ClinVarData.ClinSig.LIKELY_PATHOGENIC);
+        variants.add(23, 1234, "G", "GA", NO_ANNOTATIONS, expected.getPathogenicityScore(), 0.01f,
+                SimpleGenotype.HOMOZYGOUS_ALT, ClinVarData.ClinSig.LIKELY_PATHOGENIC);
+        SimpleVariant sv = variants.get(0);
+        assertEquals(expected.toString(), sv.toString());
+        assertEquals(expected.getUcsc(), sv.getUcsc());
+        assertEquals(expected.getClinvar(), sv.getClinvar());
+        assertEquals(expected.pathogenicAlleleCount(), sv.pathogenicAlleleCount());
+        assertEquals(expected.pathogenicClinVarAlleleCount(), sv.pathogenicClinVarAlleleCount());
+    }
+
+    @Test
+    void testShortAllelesAreShared() {
+        CompactVariantList variants = new CompactVariantList();
+        variants.add(1, 10, new String("C"), new String("T"), NO_ANNOTATIONS, 0.1f, 0.01f,
+                SimpleGenotype.HETEROZYGOUS, ClinVarData.ClinSig.NOT_PROVIDED);
+        variants.add(1, 20, new String("C"), new String("T"), NO_ANNOTATIONS, 0.1f, 0.01f,
+                SimpleGenotype.HETEROZYGOUS, ClinVarData.ClinSig.NOT_PROVIDED);
+        assertSame(variants.get(0).getRef(), variants.get(1).getRef());
+        assertSame(variants.get(0).getAlt(), variants.get(1).getAlt());
+    }
+
+    @Test
+    void testReportable() {
+        assertTrue(CompactVariantList.isReportable(0.8f, ClinVarData.ClinSig.NOT_PROVIDED));
+        assertTrue(CompactVariantList.isReportable(0.1f, ClinVarData.ClinSig.BENIGN));
+        assertFalse(CompactVariantList.isReportable(0.1f, ClinVarData.ClinSig.NOT_PROVIDED));
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.monarchinitiative.exomiser.core.model.TranscriptAnnotation;
 import org.monarchinitiative.exomiser.core.model.pathogenicity.ClinVarData;
+import org.monarchinitiative.lirical.vcf.SimpleVariant;
 import org.monarchinitiative.phenol.ontology.data.TermId;
 
 
@@ -150,6 +151,39 @@ class Gene2GenotypeTest {
         assertEquals(2.0,ATP6V0A4.getSumOfPathBinScores(),EPSILON);
     }
 
+    @Test
+    void testMerge() {
+        TermId geneId = TermId.of("NCBIGene:50617");
+        List<TranscriptAnnotation> emptyList = ImmutableList.of();
+        Gene2Genotype template = new Gene2Genotype(geneId,"ATP6V0A4");
+        template.addVariant(7,138706689, "G","A",emptyList,"0/1",1.0f,0.0000001f, ClinVarData.ClinSig.NOT_PROVIDED);
+        Gene2Genotype injected = new Gene2Genotype(geneId,"ATP6V0A4");
+        injected.addVariant(7,138700000, "C","T",emptyList,"0/1",1.0f,0.0000001f, ClinVarData.ClinSig.PATHOGENIC);
+        Gene2Genotype merged = Gene2Genotype.merge(template, injected);
+        assertEquals(2, merged.getVarList().size());
+        assertEquals(template.getSumOfPathBinScores() + injected.getSumOfPathBinScores(), merged.getSumOfPathBinScores(), EPSILON);
+        assertTrue(merged.hasPathogenicClinvarVar());
+        // the arguments are not changed
+        assertEquals(1, template.getVarList().size());
+        assertFalse(template.hasPathogenicClinvarVar());
+    }
+
+
+    /** Transcript annotations are only kept for variants in the pathogenic bin or with a ClinVar interpretation. */
+    @Test
+    void testAnnotationsOfReportableVariantsOnly() {
+        TranscriptAnnotation annot = Mockito.mock(TranscriptAnnotation.class);
+        List<TranscriptAnnotation> annotList = ImmutableList.of(annot);
+        Gene2Genotype g2g = new Gene2Genotype(TermId.of("NCBIGene:4893"),"NRAS");
+        g2g.addVariant(1,114713908, "A","G",annotList,"0/1",0.95f,0.001f, ClinVarData.ClinSig.NOT_PROVIDED);
+        g2g.addVariant(1,114713920, "C","T",annotList,"0/1",0.1f,0.001f, ClinVarData.ClinSig.NOT_PROVIDED);
+        g2g.addVariant(1,114713930, "G","A",annotList,"0/1",0.1f,0.001f, ClinVarData.ClinSig.BENIGN);
+        List<SimpleVariant> varList = g2g.getVarList();
+        assertEquals(3, g2g.getVariantCount());
+        assertEquals(annotList, varList.get(0).getAnnotationList());
+        assertEquals(ImmutableList.of(), varList.get(1).getAnnotationList());
+        assertEquals(annotList, varList.get(2).getAnnotationList());
+    }
 
     @Test
     void testToString() {
@@ -0,0 +1,74 @@
+package org.monarchinitiative.lirical.analysis;
+
+import com.google.common.collect.ImmutableList;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VariantFilterTest {
+
+    private static final Allele REF = Allele.create("A", true);
+    private static final Allele ALT = Allele.create("G", false);
+    private static final Allele ALT2 = Allele.create("T", false);
+
+    /** Make a VCF record for a single sample with the indicated QUAL, DP, and GQ. */
+    private static VariantContext record(List<Allele> gtAlleles, double qual, int dp, int gq) {
+        Genotype gt = new GenotypeBuilder("proband", gtAlleles).DP(dp).GQ(gq).make();
+        return new VariantContextBuilder("test", "chr1", 1000, 1000, ImmutableList.of(REF, ALT))
+                .log10PError(qual / -10.0)
+                .genotypes(gt)
+                .make();
+    }
+
+    @Test
+    void testDefaultFilterOnlyChecksFILTER() {
+        VariantFilter vfilter = VariantFilter.passOnly();
+        VariantContext good = record(ImmutableList.of(REF, REF), 1.0, 1, 1);
+        assertTrue(vfilter.accept(good));
+        VariantContext failing = new VariantContextBuilder(good).filter("LowQual").make();
+        assertEquals(VariantFilter.Reason.FILTER, vfilter.rejectionReason(failing));
+    }
+
+    @Test
+    void testQual() {
+        VariantFilter vfilter = new VariantFilter.Builder().minQual(30.0).build();
+        assertEquals(VariantFilter.Reason.QUAL, vfilter.rejectionReason(record(ImmutableList.of(REF, ALT), 20.0, 50, 99)));
+        assertNull(vfilter.rejectionReason(record(ImmutableList.of(REF, ALT), 40.0, 50, 99)));
+    }
+
+    @Test
+    void testProbandGenotypePredicates() {
+        VariantFilter vfilter = new VariantFilter.Builder()
+                .skipNoCall(true)
+                .skipHomRef(true)
+                .minDepth(10)
+                .minGenotypeQuality(20)
+                .build();
+        assertEquals(VariantFilter.Reason.NO_CALL,
+                vfilter.rejectionReason(record(ImmutableList.of(Allele.NO_CALL, Allele.NO_CALL), 50.0, 50, 99)));
+        assertEquals(VariantFilter.Reason.HOM_REF,
+                vfilter.rejectionReason(record(ImmutableList.of(REF, REF), 50.0, 50, 99)));
+        assertEquals(VariantFilter.Reason.DEPTH,
+                vfilter.rejectionReason(record(ImmutableList.of(REF, ALT), 50.0, 5, 99)));
+        assertEquals(VariantFilter.Reason.GENOTYPE_QUALITY,
+                vfilter.rejectionReason(record(ImmutableList.of(REF, ALT), 50.0, 50, 10)));
+        assertNull(vfilter.rejectionReason(record(ImmutableList.of(ALT, ALT), 50.0, 50, 99)));
+    }
+
+    @Test
+    void testMaxAlleles() {
+        VariantFilter vfilter = new VariantFilter.Builder().maxAlleles(2).build();
+        VariantContext multiallelic = new VariantContextBuilder("test", "chr1", 1000, 1000,
+                ImmutableList.of(REF, ALT, ALT2)).make();
+        assertEquals(VariantFilter.Reason.ALLELE_COUNT, vfilter.rejectionReason(multiallelic));
+    }
+}
@@ -0,0 +1,98 @@
+package org.monarchinitiative.lirical.analysis;
+
+import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.variant.variantcontext.*;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.monarchinitiative.lirical.io.VariantFileReader;
+import org.phenopackets.schema.v1.core.HtsFile;
+import org.phenopackets.schema.v1.core.OntologyClass;
+import org.phenopackets.schema.v1.core.Variant;
+import org.phenopackets.schema.v1.core.VcfAllele;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VcfSimulatorTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static Path templatePath;
+
+    private static final OntologyClass HET = OntologyClass.newBuilder().setId("GENO:0000135").setLabel("heterozygous").build();
+
+    @BeforeAll
+    static void setup() {
+        templatePath = tempDir.resolve("template.vcf");
+        SAMSequenceDictionary dict = new SAMSequenceDictionary(ImmutableList.of(
+                new SAMSequenceRecord("chr1", 249250621),
+                new SAMSequenceRecord("chr2", 243199373)));
+        Set<VCFHeaderLine> lines = new HashSet<>();
+        lines.add(new VCFHeaderLine(VCFHeaderVersion.VCF4_2.getFormatString(), VCFHeaderVersion.VCF4_2.getVersionString()));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.GENOTYPE_KEY));
+        VCFHeader header = new VCFHeader(lines, ImmutableList.of("template-sample"));
+        header.setSequenceDictionary(dict);
+        Allele ref = Allele.create("A", true);
+        Allele alt = Allele.create("G", false);
+        try (VariantContextWriter writer = new VariantContextWriterBuilder()
+                .setOutputPath(templatePath)
+                .setOutputFileType(VariantContextWriterBuilder.OutputType.VCF)
+                .setReferenceDictionary(dict)
+                .unsetOption(Options.INDEX_ON_THE_FLY)
+                .build()) {
+            writer.writeHeader(header);
+            for (String contig : new String[]{"chr1", "chr2"}) {
+                for (int pos : new int[]{1000, 3000}) {
+                    Genotype gt = new GenotypeBuilder("template-sample", ImmutableList.of(ref, alt)).make();
+                    writer.add(new VariantContextBuilder("test", contig, pos, pos, ImmutableList.of(ref, alt))
+                            .genotypes(gt)
+                            .make());
+                }
+            }
+        }
+    }
+
+    private static Variant hetVariant(String chr, int pos) {
+        VcfAllele allele = VcfAllele.newBuilder().setChr(chr).setPos(pos).setRef("C").setAlt("T").setInfo("").build();
+        return Variant.newBuilder().setVcfAllele(allele).setZygosity(HET).build();
+    }
+
+    /**
+     * The injected variants (given out of order) should be placed between the template records, and all
+     * genotypes should carry the name of the phenopacket subject.
+     */
+    @Test
+    void testInjectedVariantsAreMergedInOrder() throws IOException {
+        VcfSimulator simulator = new VcfSimulator(templatePath);
+        List<Variant> variants = ImmutableList.of(hetVariant("2", 2000), hetVariant("1", 5000));
+        HtsFile htsFile = simulator.simulateVcf("proband", variants, "GRCh37");
+        List<String> records = new ArrayList<>();
+        try (VariantFileReader reader = VariantFileReader.open(htsFile.getUri())) {
+            assertEquals(ImmutableList.of("proband"), reader.getHeader().getGenotypeSamples());
+            reader.iterator().forEachRemaining(vc -> records.add(String.format("%s:%d %s",
+                    vc.getContig(), vc.getStart(), vc.getGenotype("proband").getGenotypeString())));
+        }
+        List<String> expected = ImmutableList.of(
+                "chr1:1000 A/G",
+                "chr1:3000 A/G",
+                "chr1:5000 C/T",
+                "chr2:1000 A/G",
+                "chr2:2000 C/T",
+                "chr2:3000 A/G");
+        assertEquals(expected, records);
+    }
+}
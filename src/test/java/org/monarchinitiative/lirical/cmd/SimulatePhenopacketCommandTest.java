@@ -0,0 +1,156 @@
+package org.monarchinitiative.lirical.cmd;
+
+import com.beust.jcommander.JCommander;
+import com.google.protobuf.util.JsonFormat;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.monarchinitiative.lirical.synthetic.SyntheticCohort;
+import org.monarchinitiative.lirical.synthetic.SyntheticGenome;
+import org.monarchinitiative.lirical.synthetic.SyntheticKnowledgeBase;
+import org.phenopackets.schema.v1.Phenopacket;
+import org.phenopackets.schema.v1.core.OntologyClass;
+import org.phenopackets.schema.v1.core.Variant;
+import org.phenopackets.schema.v1.core.VcfAllele;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Simulate a directory of synthetic phenopackets, whose variants are injected into a synthetic template VCF file,
+ * with one and with several threads.
+ */
+class SimulatePhenopacketCommandTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static final int N_GENES = 30;
+    private static final int N_CASES = 8;
+    private static final long SEED = 17L;
+    private static final OntologyClass HET = OntologyClass.newBuilder().setId("GENO:0000135").setLabel("heterozygous").build();
+    private static final OntologyClass HOM_ALT = OntologyClass.newBuilder().setId("GENO:0000136").setLabel("homozygous").build();
+
+    private static File datadir;
+    /** Two copies of the Exomiser data, as each run keeps its Exomiser database open. */
+    private static File[] exomiserDirs;
+    private static File templateVcf;
+    private static File phenopacketDir;
+    private static long start;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        start = System.currentTimeMillis();
+        SyntheticKnowledgeBase kb = new SyntheticKnowledgeBase.Builder()
+                .terms(300)
+                .depth(6)
+                .diseases(60)
+                .genes(N_GENES)
+                .seed(SEED)
+                .build();
+        datadir = tempDir.resolve("data").toFile();
+        kb.write(datadir);
+        SyntheticGenome genome = new SyntheticGenome.Builder(N_GENES)
+                .variants(20)
+                .pathogenicFraction(0.1)
+                .seed(SEED)
+                .build();
+        List<File> cases;
+        File exomiserDir;
+        try {
+            exomiserDir = genome.writeExomiserData(tempDir.toFile(), "synthetic");
+            cases = new SyntheticCohort(kb, genome, "hg38", SEED).write(tempDir.resolve("cohort").toFile(), N_CASES);
+            templateVcf = tempDir.resolve("template.vcf").toFile();
+            genome.writeVcf(templateVcf, "template", -1, false);
+        } finally {
+            genome.close();
+        }
+        File copy = tempDir.resolve("copy").resolve(exomiserDir.getName()).toFile();
+        Files.createDirectories(copy.toPath());
+        for (File file : Objects.requireNonNull(exomiserDir.listFiles())) {
+            Files.copy(file.toPath(), new File(copy, file.getName()).toPath());
+        }
+        exomiserDirs = new File[]{exomiserDir, copy};
+        // the variants of the VCF file of each case (including its causal variant) are injected into the template
+        phenopacketDir = tempDir.resolve("phenopackets").toFile();
+        Files.createDirectories(phenopacketDir.toPath());
+        for (File file : cases) {
+            Phenopacket.Builder builder = Phenopacket.newBuilder();
+            JsonFormat.parser().merge(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), builder);
+            String vcfPath = builder.getHtsFiles(0).getUri().replaceFirst("^file:", "");
+            builder.clearHtsFiles();
+            try (VCFFileReader reader = new VCFFileReader(new File(vcfPath), false)) {
+                for (VariantContext vc : reader) {
+                    if (vc.isFiltered()) {
+                        continue;
+                    }
+                    Genotype gt = vc.getGenotype(0);
+                    VcfAllele allele = VcfAllele.newBuilder()
+                            .setGenomeAssembly("hg38")
+                            .setChr(vc.getContig())
+                            .setPos(vc.getStart())
+                            .setRef(vc.getReference().getBaseString())
+                            .setAlt(vc.getAlternateAllele(0).getBaseString())
+                            .setInfo("")
+                            .build();
+                    builder.addVariants(Variant.newBuilder().setVcfAllele(allele).setZygosity(gt.isHomVar() ? HOM_ALT : HET));
+                }
+            }
+            Files.write(new File(phenopacketDir, file.getName()).toPath(),
+                    JsonFormat.printer().print(builder.build()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /** Remove the rank count files that the simulations write to the working directory. */
+    @AfterAll
+    static void cleanup() {
+        File[] files = new File(".").listFiles((dir, name) -> name.startsWith("rank2count-") && name.endsWith(".txt"));
+        if (files != null) {
+            for (File file : files) {
+                if (file.lastModified() >= start - 1000) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /** @return the lines of the simulation output file with the given number of threads */
+    private static List<String> simulate(int threads, File exomiserDir) throws IOException {
+        File outfile = tempDir.resolve("simulation-" + threads + ".tsv").toFile();
+        SimulatePhenopacketCommand command = new SimulatePhenopacketCommand();
+        JCommander.newBuilder()
+                .addObject(command)
+                .build()
+                .parse("-d", datadir.getAbsolutePath(),
+                        "-e", exomiserDir.getAbsolutePath(),
+                        "-b", new File(datadir, "background-synthetic.tsv").getAbsolutePath(),
+                        "-a", "hg38",
+                        "-v", templateVcf.getAbsolutePath(),
+                        "--phenopacket-dir", phenopacketDir.getAbsolutePath(),
+                        "--ranks-only",
+                        "--threads", String.valueOf(threads),
+                        "-outputfile", outfile.getAbsolutePath());
+        command.run();
+        return Files.readAllLines(outfile.toPath());
+    }
+
+    /** Each thread annotates the injected variants with its own annotator, so the results do not depend on the threads. */
+    @Test
+    void testThreadsGiveSameDetailedResults() throws IOException {
+        List<String> single = simulate(1, exomiserDirs[0]);
+        // header, settings, and one line per case
+        assertEquals(N_CASES + 2, single.size());
+        assertEquals(single, simulate(4, exomiserDirs[1]));
+    }
+}
@@ -0,0 +1,67 @@
+package org.monarchinitiative.lirical.configuration;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Check that the resources of a phenotype-only factory are loaded once, also by concurrent callers.
+ */
+class LiricalFactoryTest {
+
+    @TempDir
+    static Path dataDir;
+
+    private static LiricalFactory factory;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        ClassLoader classLoader = LiricalFactoryTest.class.getClassLoader();
+        try (InputStream hpo = classLoader.getResourceAsStream("hp.small.obo");
+             InputStream hpoa = classLoader.getResourceAsStream("small.hpoa")) {
+            Files.copy(hpo, dataDir.resolve("hp.obo"));
+            Files.copy(hpoa, dataDir.resolve("phenotype.hpoa"));
+        }
+        factory = new LiricalFactory.Builder()
+                .datadir(dataDir.toString())
+                .buildForPhenotypeOnlyDiagnostics();
+    }
+
+    @Test
+    void testDiseaseMapIsLoadedOnce() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Map<TermId, HpoDisease>>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> factory.diseaseMap(factory.hpoOntology())));
+        }
+        Map<TermId, HpoDisease> first = futures.get(0).get();
+        for (Future<Map<TermId, HpoDisease>> future : futures) {
+            assertSame(first, future.get());
+        }
+        executor.shutdown();
+        assertFalse(first.isEmpty());
+    }
+
+    /** A phenotype-only factory has no Exomiser data, so loading the genomic resources would fail. */
+    @Test
+    void testLoadResourcesPhenotypeOnly() {
+        factory.loadResources();
+        assertSame(factory.diseaseMap(factory.hpoOntology()), factory.diseaseMap(factory.hpoOntology()));
+    }
+}
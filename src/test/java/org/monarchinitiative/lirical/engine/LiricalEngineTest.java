@@ -0,0 +1,297 @@
+package org.monarchinitiative.lirical.engine;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.monarchinitiative.exomiser.core.model.pathogenicity.ClinVarData;
+import org.monarchinitiative.lirical.analysis.Gene2Genotype;
+import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.likelihoodratio.DiseaseRank;
+import org.monarchinitiative.lirical.likelihoodratio.ScoringSession;
+import org.monarchinitiative.lirical.likelihoodratio.TestResult;
+import org.monarchinitiative.lirical.synthetic.SyntheticGenome;
+import org.monarchinitiative.lirical.synthetic.SyntheticKnowledgeBase;
+import org.monarchinitiative.phenol.formats.hpo.HpoAnnotation;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multimap;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Score random phenotype-only cases with one engine from several threads at the same time and check that the
+ * results are identical to the results of a sequential run.
+ */
+class LiricalEngineTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static final int N_CASES = 40;
+    private static final int N_THREADS = 8;
+    /** Each case is scored this many times in the concurrent run. */
+    private static final int REPEATS = 5;
+
+    private static LiricalEngine engine;
+
+    private static List<CaseInput> cases;
+
+    @BeforeAll
+    static void setup() {
+        ClassLoader classLoader = LiricalEngineTest.class.getClassLoader();
+        String hpoPath = Objects.requireNonNull(classLoader.getResource("hp.small.obo")).getFile();
+        String annotationPath = Objects.requireNonNull(classLoader.getResource("small.hpoa")).getFile();
+        Ontology ontology = OntologyLoader.loadOntology(new File(hpoPath));
+        Map<TermId, HpoDisease> diseaseMap = HpoDiseaseAnnotationParser.loadDiseaseMap(annotationPath, ontology);
+        engine = new LiricalEngine.Builder(ontology, diseaseMap).build();
+        // random cases made of terms that annotate the diseases, so that the cases have non-trivial rankings
+        List<TermId> annotated = new ArrayList<>();
+        for (HpoDisease disease : diseaseMap.values()) {
+            for (HpoAnnotation annotation : disease.getPhenotypicAbnormalities()) {
+                if (ontology.getTermMap().containsKey(annotation.getTermId()) && ! annotated.contains(annotation.getTermId())) {
+                    annotated.add(annotation.getTermId());
+                }
+            }
+        }
+        Random random = new Random(42);
+        cases = new ArrayList<>();
+        for (int i = 0; i < N_CASES; i++) {
+            List<TermId> observed = new ArrayList<>();
+            int n = 1 + random.nextInt(5);
+            for (int j = 0; j < n; j++) {
+                observed.add(annotated.get(random.nextInt(annotated.size())));
+            }
+            List<TermId> negated = new ArrayList<>();
+            if (random.nextBoolean()) {
+                negated.add(annotated.get(random.nextInt(annotated.size())));
+            }
+            cases.add(new CaseInput.Builder(observed).negated(negated).caseId("case-" + i).build());
+        }
+    }
+
+    /** @return key: disease id; value: rank and posttest probability. */
+    private static Map<TermId, String> summary(CaseResult result) {
+        Map<TermId, String> summary = new HashMap<>();
+        for (TestResult r : result.getHpoCase().getResults()) {
+            summary.put(r.getDiseaseCurie(), r.getRank() + "/" + r.getPosttestProbability());
+        }
+        return summary;
+    }
+
+    @Test
+    void testConcurrentScoringMatchesSequential() throws InterruptedException, ExecutionException {
+        List<Map<TermId, String>> expected = new ArrayList<>();
+        for (CaseInput input : cases) {
+            expected.add(summary(engine.score(input)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(N_THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<TermId, String>>> futures = new ArrayList<>();
+        for (int r = 0; r < REPEATS; r++) {
+            for (CaseInput input : cases) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return summary(engine.score(input));
+                }));
+            }
+        }
+        start.countDown();
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(expected.get(i % N_CASES), futures.get(i).get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testResultKeepsInput() {
+        CaseInput input = cases.get(0);
+        CaseResult result = engine.score(input);
+        assertSame(input, result.getInput());
+        assertFalse(result.getAnnotatedVcf().isPresent());
+        assertEquals(engine.getDiseaseMap().size(), result.getHpoCase().getResults().size());
+    }
+
+    @Test
+    void testUnknownTermIsRejected() {
+        CaseInput input = new CaseInput.Builder(Collections.singletonList(TermId.of("HP:0099999"))).build();
+        assertThrows(LiricalRuntimeException.class, () -> engine.score(input));
+    }
+
+    private static Map<TermId, Double> posttest(List<DiseaseRank> ranks) {
+        Map<TermId, Double> posttest = new HashMap<>();
+        for (DiseaseRank rank : ranks) {
+            posttest.put(rank.getDiseaseId(), rank.getPosttestProbability());
+        }
+        return posttest;
+    }
+
+    /** After each edit, the session should give the same post-test probabilities as scoring the edited case. */
+    @Test
+    void testSessionMatchesRescoring() {
+        for (int i = 0; i < N_CASES; i += 4) {
+            ScoringSession session = engine.session(cases.get(i));
+            TermId added = cases.get(i + 1).getObservedHpoTerms().get(0);
+            session.addObserved(added);
+            session.remove(session.getObservedTerms().get(0));
+            if (session.getObservedTerms().size() > 1) {
+                session.negate(session.getObservedTerms().get(1));
+            }
+            CaseInput edited = new CaseInput.Builder(session.getObservedTerms())
+                    .negated(session.getExcludedTerms())
+                    .build();
+            Map<TermId, Double> expected = posttest(engine.rankAll(edited));
+            Map<TermId, Double> actual = posttest(session.ranks());
+            assertEquals(expected.keySet(), actual.keySet());
+            for (TermId diseaseId : expected.keySet()) {
+                double e = expected.get(diseaseId);
+                assertEquals(e, actual.get(diseaseId), 1e-9 * Math.max(e, 1e-300));
+            }
+        }
+    }
+
+    /**
+     * A session with genotypes: the genotype likelihood ratios are scored once, and the diseases without a pathogenic
+     * variant in an associated gene are skipped (NaN), as by {@link LiricalEngine#rankAll(CaseInput)}. The genotypes
+     * are given as an {@link AnnotatedVcf}, so that no VCF file needs to be annotated.
+     */
+    @Test
+    void testGenomicSessionMatchesRescoring() {
+        SyntheticKnowledgeBase kb = new SyntheticKnowledgeBase.Builder()
+                .terms(200)
+                .depth(6)
+                .diseases(40)
+                .genes(20)
+                .seed(11L)
+                .build();
+        File datadir = tempDir.resolve("data").toFile();
+        kb.write(datadir);
+        SyntheticGenome genome = new SyntheticGenome.Builder(20).variants(20).seed(11L).build();
+        File exomiserDir;
+        try {
+            exomiserDir = genome.writeExomiserData(tempDir.toFile(), "synthetic");
+        } finally {
+            genome.close();
+        }
+        LiricalFactory factory = new LiricalFactory.Builder()
+                .datadir(datadir.getAbsolutePath())
+                .exomiser(exomiserDir.getAbsolutePath())
+                .genomeAssembly("hg38")
+                .backgroundFrequency(new File(datadir, "background-synthetic.tsv").getAbsolutePath())
+                .buildForGenomicDiagnostics();
+        LiricalEngine genomic = new LiricalEngine.Builder(factory.hpoOntology(), factory.diseaseMap(factory.hpoOntology()))
+                .genomic(factory)
+                .keep(false)
+                .build();
+        assertTrue(genomic.isGenomic());
+        // pathogenic variants in the genes of every third disease, and a benign variant in the genes of a disease
+        // that shares no gene with those diseases
+        Multimap<TermId, TermId> disease2gene = factory.disease2geneMultimap();
+        List<TermId> diseaseIds = new ArrayList<>(genomic.getDiseaseMap().keySet());
+        Map<TermId, Gene2Genotype> genotypeMap = new HashMap<>();
+        TermId candidate = null;
+        for (int d = 0; d < diseaseIds.size(); d += 3) {
+            if (candidate == null && ! disease2gene.get(diseaseIds.get(d)).isEmpty()) {
+                candidate = diseaseIds.get(d);
+            }
+            for (TermId geneId : disease2gene.get(diseaseIds.get(d))) {
+                Gene2Genotype g2g = new Gene2Genotype(geneId, genomic.getGeneId2symbol().get(geneId));
+                g2g.addVariant(1, 1_000 + d, "C", "T", ImmutableList.of(), "0/1", 0.95f, 0.001f, ClinVarData.ClinSig.NOT_PROVIDED);
+                genotypeMap.put(geneId, g2g);
+            }
+        }
+        TermId skipped = null;
+        for (TermId diseaseId : diseaseIds) {
+            if (! disease2gene.get(diseaseId).isEmpty() &&
+                    Collections.disjoint(disease2gene.get(diseaseId), genotypeMap.keySet())) {
+                skipped = diseaseId;
+                break;
+            }
+        }
+        assertNotNull(skipped);
+        for (TermId geneId : disease2gene.get(skipped)) {
+            Gene2Genotype g2g = new Gene2Genotype(geneId, genomic.getGeneId2symbol().get(geneId));
+            g2g.addVariant(1, 2_000, "A", "G", ImmutableList.of(), "0/1", 0.1f, 5.0f, ClinVarData.ClinSig.BENIGN);
+            genotypeMap.put(geneId, g2g);
+        }
+        AnnotatedVcf genotypes = new AnnotatedVcf("proband.vcf", "proband", genotypeMap, genotypeMap.size(), 0, "");
+        List<TermId> annotated = new ArrayList<>();
+        for (TermId diseaseId : diseaseIds) {
+            for (HpoAnnotation annotation : genomic.getDiseaseMap().get(diseaseId).getPhenotypicAbnormalities()) {
+                if (! annotated.contains(annotation.getTermId())) {
+                    annotated.add(annotation.getTermId());
+                }
+            }
+        }
+        Random random = new Random(11);
+        CaseInput input = new CaseInput.Builder(Arrays.asList(annotated.get(random.nextInt(annotated.size())),
+                annotated.get(random.nextInt(annotated.size()))))
+                .negated(Collections.singletonList(annotated.get(random.nextInt(annotated.size()))))
+                .annotatedVcf(genotypes)
+                .build();
+        ScoringSession session = genomic.session(input);
+        for (int i = 0; i < 10; i++) {
+            switch (i % 3) {
+                case 0:
+                    session.addObserved(annotated.get(random.nextInt(annotated.size())));
+                    break;
+                case 1:
+                    if (! session.getObservedTerms().isEmpty()) {
+                        session.negate(session.getObservedTerms().get(0));
+                    }
+                    break;
+                default:
+                    if (! session.getExcludedTerms().isEmpty()) {
+                        session.remove(session.getExcludedTerms().get(0));
+                    }
+            }
+            CaseInput edited = new CaseInput.Builder(session.getObservedTerms())
+                    .negated(session.getExcludedTerms())
+                    .annotatedVcf(genotypes)
+                    .build();
+            Map<TermId, Double> expected = posttest(genomic.rankAll(edited));
+            Map<TermId, Double> actual = posttest(session.ranks());
+            assertEquals(expected.keySet(), actual.keySet());
+            for (TermId diseaseId : expected.keySet()) {
+                double e = expected.get(diseaseId);
+                assertEquals(e, actual.get(diseaseId), 1e-9 * Math.max(e, 1e-300));
+            }
+        }
+        // the diseases without a pathogenic variant in an associated gene (or without any gene) are skipped
+        assertTrue(session.ranks().size() < diseaseIds.size());
+        assertTrue(Double.isNaN(session.getCompositeLR(skipped)));
+        assertFalse(Double.isNaN(session.getCompositeLR(candidate)));
+    }
+
+    @Test
+    void testSessionPretestProbabilityOnlyChangesRanking() {
+        ScoringSession session = engine.session(cases.get(0));
+        DiseaseRank last = session.ranks().get(engine.getDiseaseMap().size() - 1);
+        double lr = session.getCompositeLR(last.getDiseaseId());
+        session.setPretestProbabilities(Collections.singletonMap(last.getDiseaseId(), 0.5));
+        assertEquals(lr, session.getCompositeLR(last.getDiseaseId()));
+        for (DiseaseRank rank : session.ranks()) {
+            if (rank.getDiseaseId().equals(last.getDiseaseId())) {
+                assertEquals(lr / (1.0 + lr), rank.getPosttestProbability(), 1e-12);
+            }
+        }
+        assertThrows(LiricalRuntimeException.class, () -> session.addObserved(TermId.of("HP:0099999")));
+    }
+
+    @Test
+    void testPhenotypeOnlyEngineRejectsVcf() {
+        assertFalse(engine.isGenomic());
+        assertThrows(LiricalRuntimeException.class, () -> engine.annotate("sample.vcf"));
+    }
+}
@@ -12,6 +12,7 @@ import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
 import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatioTest;
 import org.monarchinitiative.lirical.likelihoodratio.TestResult;
 import org.monarchinitiative.phenol.base.PhenolException;
+import org.monarchinitiative.phenol.formats.hpo.HpoAnnotation;
 import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
 import org.monarchinitiative.phenol.io.OntologyLoader;
 import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
@@ -20,6 +21,7 @@ import org.monarchinitiative.phenol.ontology.data.TermId;
 
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -88,6 +90,27 @@ class HpoCaseTest {
         assertEquals(expected,hpocase.getNumberOfObservations());
     }
 
+    /** The results are sorted once when the case is built; the best result comes first. */
+    @Test
+    void testRankedResults() {
+        List<TermId> emptyList = ImmutableList.of();
+        List<HpoAnnotation> emptyAnnot = ImmutableList.of();
+        TermId id1 = TermId.of("MONDO:1");
+        TermId id2 = TermId.of("MONDO:2");
+        HpoDisease d1 = new HpoDisease("d1",id1,emptyAnnot,emptyList,emptyList,emptyList,emptyList);
+        HpoDisease d2 = new HpoDisease("d2",id2,emptyAnnot,emptyList,emptyList,emptyList,emptyList);
+        TestResult r1 = new TestResult(ImmutableList.of(2.0),ImmutableList.of(),d1,0.5);
+        TestResult r2 = new TestResult(ImmutableList.of(20.0),ImmutableList.of(),d2,0.5);
+        HpoCase hcase = new HpoCase.Builder(ImmutableList.of(TermId.of("HP:0000028")))
+                .results(ImmutableMap.of(id1,r1,id2,r2))
+                .build();
+        assertEquals(ImmutableList.of(r2,r1), hcase.getResults());
+        assertEquals(ImmutableList.of(r2), hcase.getTopResults(1));
+        assertEquals(2, hcase.getTopResults(5).size());
+        assertEquals(r2.getPosttestProbability(), hcase.getBestPosteriorProbability(), 0.0);
+        assertEquals(0.0, hpocase.getBestPosteriorProbability(), 0.0);
+    }
+
 
 
 }
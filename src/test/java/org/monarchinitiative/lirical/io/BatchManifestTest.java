@@ -0,0 +1,49 @@
+package org.monarchinitiative.lirical.io;
+
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchManifestTest {
+
+    private static BatchManifest parse(String manifest) throws IOException {
+        return BatchManifest.parse(new BufferedReader(new StringReader(manifest)), new File("/cases"));
+    }
+
+    @Test
+    void testParseManifest() throws IOException {
+        String manifest = "# comment\n" +
+                "\n" +
+                "sample1.yml\n" +
+                "/data/sample2.json\tpatient2\n" +
+                "sub/sample3.YAML\n";
+        BatchManifest batch = parse(manifest);
+        assertEquals(3, batch.size());
+        BatchManifest.Entry first = batch.getEntries().get(0);
+        assertEquals(new File("/cases", "sample1.yml").getPath(), first.getPath());
+        assertEquals(BatchManifest.Format.YAML, first.getFormat());
+        assertFalse(first.hasPrefix());
+        assertEquals("sample1", first.getBasename());
+        BatchManifest.Entry second = batch.getEntries().get(1);
+        assertEquals(new File("/data/sample2.json").getPath(), second.getPath());
+        assertEquals(BatchManifest.Format.PHENOPACKET, second.getFormat());
+        assertEquals("patient2", second.getPrefix());
+        assertEquals(BatchManifest.Format.YAML, batch.getEntries().get(2).getFormat());
+    }
+
+    @Test
+    void testUnknownExtension() {
+        assertThrows(LiricalRuntimeException.class, () -> parse("sample1.txt\n"));
+    }
+
+    @Test
+    void testDuplicatePrefix() {
+        assertThrows(LiricalRuntimeException.class, () -> parse("a.yml\tsame\nb.json\tsame\n"));
+    }
+}
@@ -0,0 +1,97 @@
+package org.monarchinitiative.lirical.io;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.VCFHeader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Compare the parse throughput of plain VCF, bgzipped VCF, and BCF for the same exome. This is not a unit test;
+ * run it manually with the test classpath, e.g.,
+ * <pre>
+ * java -cp target/test-classes:target/classes:target/lib/* \
+ *     org.monarchinitiative.lirical.io.VariantFileReaderBenchmark /path/to/exome.vcf [iterations]
+ * </pre>
+ * The input file (any of the three formats) is converted to the other two formats in a temporary directory, and
+ * each file is then read completely (including the genotype of the proband) the indicated number of times after
+ * one warm-up pass.
+ */
+public class VariantFileReaderBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: VariantFileReaderBenchmark <exome.vcf|vcf.gz|bcf> [iterations]");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path tmpdir = Files.createTempDirectory("lirical-vcf-benchmark");
+        Map<VariantFileReader.Format, Path> files = new EnumMap<>(VariantFileReader.Format.class);
+        files.put(VariantFileReader.Format.VCF,
+                convert(input, tmpdir.resolve("exome.vcf"), VariantContextWriterBuilder.OutputType.VCF));
+        files.put(VariantFileReader.Format.VCF_GZ,
+                convert(input, tmpdir.resolve("exome.vcf.gz"), VariantContextWriterBuilder.OutputType.BLOCK_COMPRESSED_VCF));
+        files.put(VariantFileReader.Format.BCF,
+                convert(input, tmpdir.resolve("exome.bcf"), VariantContextWriterBuilder.OutputType.BCF));
+
+        System.out.println("format\tfile_size_MB\trecords\tms_per_pass\trecords_per_sec");
+        for (Map.Entry<VariantFileReader.Format, Path> e : files.entrySet()) {
+            Path path = e.getValue();
+            parse(path); // warm-up
+            long records = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                records = parse(path);
+            }
+            double msPerPass = (System.nanoTime() - start) / 1_000_000.0 / iterations;
+            System.out.println(String.format("%s\t%.2f\t%d\t%.1f\t%.0f",
+                    e.getKey(), Files.size(path) / 1_000_000.0, records, msPerPass, records / (msPerPass / 1000.0)));
+            Files.delete(path);
+        }
+        Files.delete(tmpdir);
+    }
+
+    /** Read all records, forcing the genotype of the proband to be decoded. */
+    private static long parse(Path path) {
+        long n = 0;
+        try (VariantFileReader reader = VariantFileReader.open(path)) {
+            while (reader.iterator().hasNext()) {
+                VariantContext vc = reader.iterator().next();
+                if (vc.getNSamples() > 0) {
+                    vc.getGenotype(0).getType();
+                }
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static Path convert(Path input, Path output, VariantContextWriterBuilder.OutputType type) {
+        try (VariantFileReader reader = VariantFileReader.open(input)) {
+            VCFHeader header = reader.getHeader();
+            SAMSequenceDictionary dict = header.getSequenceDictionary();
+            VariantContextWriterBuilder builder = new VariantContextWriterBuilder()
+                    .setOutputPath(output)
+                    .setOutputFileType(type)
+                    .unsetOption(Options.INDEX_ON_THE_FLY)
+                    .setOption(Options.ALLOW_MISSING_FIELDS_IN_HEADER);
+            if (dict != null) {
+                builder.setReferenceDictionary(dict);
+            }
+            try (VariantContextWriter writer = builder.build()) {
+                writer.writeHeader(header);
+                reader.iterator().forEachRemaining(writer::add);
+            }
+        }
+        return output;
+    }
+}
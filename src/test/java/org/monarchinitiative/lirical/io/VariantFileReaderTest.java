@@ -0,0 +1,112 @@
+package org.monarchinitiative.lirical.io;
+
+import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.variant.variantcontext.*;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Write the same three variants as VCF, VCF.GZ, and BCF and check that {@link VariantFileReader} recognizes
+ * the format from the contents of the file and returns identical records.
+ */
+class VariantFileReaderTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static Path vcfPath;
+    private static Path vcfGzPath;
+    private static Path bcfPath;
+    /** BCF file with a misleading extension. */
+    private static Path bcfNamedVcfPath;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        vcfPath = writeVariants(tempDir.resolve("small.vcf"), VariantContextWriterBuilder.OutputType.VCF);
+        vcfGzPath = writeVariants(tempDir.resolve("small.vcf.gz"), VariantContextWriterBuilder.OutputType.BLOCK_COMPRESSED_VCF);
+        bcfPath = writeVariants(tempDir.resolve("small.bcf"), VariantContextWriterBuilder.OutputType.BCF);
+        bcfNamedVcfPath = tempDir.resolve("bcf-in-disguise.vcf");
+        Files.copy(bcfPath, bcfNamedVcfPath);
+    }
+
+    private static Path writeVariants(Path path, VariantContextWriterBuilder.OutputType type) {
+        SAMSequenceDictionary dict = new SAMSequenceDictionary(ImmutableList.of(new SAMSequenceRecord("chr1", 249250621)));
+        Set<VCFHeaderLine> lines = new HashSet<>();
+        lines.add(new VCFHeaderLine(VCFHeaderVersion.VCF4_2.getFormatString(), VCFHeaderVersion.VCF4_2.getVersionString()));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.GENOTYPE_KEY));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.DEPTH_KEY));
+        VCFHeader header = new VCFHeader(lines, ImmutableList.of("proband"));
+        header.setSequenceDictionary(dict);
+        Allele ref = Allele.create("A", true);
+        Allele alt = Allele.create("G", false);
+        try (VariantContextWriter writer = new VariantContextWriterBuilder()
+                .setOutputPath(path)
+                .setOutputFileType(type)
+                .setReferenceDictionary(dict)
+                .unsetOption(Options.INDEX_ON_THE_FLY)
+                .build()) {
+            writer.writeHeader(header);
+            for (int pos : new int[]{1000, 2000, 3000}) {
+                Genotype gt = new GenotypeBuilder("proband", ImmutableList.of(ref, alt)).DP(pos / 100).make();
+                writer.add(new VariantContextBuilder("test", "chr1", pos, pos, ImmutableList.of(ref, alt))
+                        .genotypes(gt)
+                        .make());
+            }
+        }
+        return path;
+    }
+
+    private static List<String> readAll(Path path) {
+        List<String> records = new ArrayList<>();
+        try (VariantFileReader reader = VariantFileReader.open(path)) {
+            assertEquals(ImmutableList.of("proband"), reader.getHeader().getGenotypeSamples());
+            reader.iterator().forEachRemaining(vc ->
+                    records.add(String.format("%s:%d %s %s DP=%d", vc.getContig(), vc.getStart(),
+                            vc.getReference().getBaseString(), vc.getAlternateAllele(0).getBaseString(),
+                            vc.getGenotype(0).getDP())));
+        }
+        return records;
+    }
+
+    @Test
+    void testSniff() {
+        assertEquals(VariantFileReader.Format.VCF, VariantFileReader.sniff(vcfPath));
+        assertEquals(VariantFileReader.Format.VCF_GZ, VariantFileReader.sniff(vcfGzPath));
+        assertEquals(VariantFileReader.Format.BCF, VariantFileReader.sniff(bcfPath));
+        assertEquals(VariantFileReader.Format.BCF, VariantFileReader.sniff(bcfNamedVcfPath));
+    }
+
+    @Test
+    void testSameRecordsInAllFormats() {
+        List<String> expected = readAll(vcfPath);
+        assertEquals(3, expected.size());
+        assertEquals("chr1:1000 A G DP=10", expected.get(0));
+        assertEquals(expected, readAll(vcfGzPath));
+        assertEquals(expected, readAll(bcfPath));
+        assertEquals(expected, readAll(bcfNamedVcfPath));
+    }
+
+    @Test
+    void testNotAVariantFile() throws IOException {
+        Path txt = Files.write(tempDir.resolve("notes.txt"), ImmutableList.of("this is not a VCF file"));
+        assertThrows(LiricalRuntimeException.class, () -> VariantFileReader.sniff(txt));
+    }
+}
@@ -0,0 +1,164 @@
+package org.monarchinitiative.lirical.kb;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.ArrayListMultimap;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.monarchinitiative.exomiser.core.genome.GenomeAssembly;
+import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.lirical.io.GenotypeDataIngestor;
+import org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator;
+import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.likelihoodratio.TestResult;
+import org.monarchinitiative.phenol.formats.hpo.HpoAnnotation;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
+import org.monarchinitiative.phenol.ontology.algo.OntologyAlgorithm;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compile a knowledge base from the small test versions of hp.obo and phenotype.hpoa and check that the objects
+ * read back from it are the same as the parsed ones.
+ */
+class CompiledKnowledgeBaseTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static final List<String> PREFIXES = ImmutableList.of("OMIM", "DECIPHER");
+
+    private static Ontology ontology;
+
+    private static Map<TermId, HpoDisease> diseaseMap;
+
+    private static Multimap<TermId, TermId> gene2disease;
+
+    private static Map<TermId, Double> background;
+
+    private static CompiledKnowledgeBase kb;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        ClassLoader classLoader = CompiledKnowledgeBaseTest.class.getClassLoader();
+        String hpoPath = Objects.requireNonNull(classLoader.getResource("hp.small.obo")).getFile();
+        String annotationPath = Objects.requireNonNull(classLoader.getResource("small.hpoa")).getFile();
+        ontology = OntologyLoader.loadOntology(new File(hpoPath));
+        diseaseMap = HpoDiseaseAnnotationParser.loadDiseaseMap(annotationPath, ontology, PREFIXES);
+        gene2disease = ArrayListMultimap.create();
+        Multimap<TermId, TermId> disease2gene = ArrayListMultimap.create();
+        TermId gene1 = TermId.of("NCBIGene:2200");
+        TermId gene2 = TermId.of("NCBIGene:7273");
+        List<TermId> diseases = new ArrayList<>(diseaseMap.keySet());
+        gene2disease.put(gene1, diseases.get(0));
+        gene2disease.put(gene1, diseases.get(1));
+        gene2disease.put(gene2, diseases.get(1));
+        for (Map.Entry<TermId, TermId> e : gene2disease.entries()) {
+            disease2gene.put(e.getValue(), e.getKey());
+        }
+        background = GenotypeDataIngestor.fromResource("background/background-hg38.tsv");
+        File output = tempDir.resolve(CompiledKnowledgeBase.DEFAULT_FILENAME).toFile();
+        new KnowledgeBaseCompiler(ontology)
+                .diseases(PREFIXES, diseaseMap)
+                .genes(gene2disease, disease2gene, ImmutableMap.of(gene1, "FBN1", gene2, "TTN"))
+                .background(GenomeAssembly.HG38, background)
+                .metadata("hpoVersion", "test")
+                .write(output);
+        kb = CompiledKnowledgeBase.open(output);
+    }
+
+    @Test
+    void testMetadata() {
+        assertEquals("test", kb.getMetadata().get("hpoVersion"));
+        assertEquals(String.valueOf(KnowledgeBaseCompiler.FORMAT_VERSION), kb.getMetadata().get("formatVersion"));
+    }
+
+    @Test
+    void testOntology() {
+        Ontology compiled = kb.ontology();
+        assertEquals(ontology.getRootTermId(), compiled.getRootTermId());
+        assertEquals(ontology.getTermMap().keySet(), compiled.getTermMap().keySet());
+        assertEquals(ontology.getNonObsoleteTermIds(), compiled.getNonObsoleteTermIds());
+        assertEquals(ontology.getObsoleteTermIds(), compiled.getObsoleteTermIds());
+        assertEquals(ontology.getMetaInfo(), compiled.getMetaInfo());
+        for (TermId tid : ontology.getNonObsoleteTermIds()) {
+            assertEquals(ontology.getTermMap().get(tid).getName(), compiled.getTermMap().get(tid).getName());
+            assertEquals(OntologyAlgorithm.getAncestorTerms(ontology, tid, true),
+                    OntologyAlgorithm.getAncestorTerms(compiled, tid, true));
+            assertEquals(OntologyAlgorithm.getChildTerms(ontology, tid, false),
+                    OntologyAlgorithm.getChildTerms(compiled, tid, false));
+        }
+    }
+
+    @Test
+    void testDiseaseMap() {
+        Map<TermId, HpoDisease> compiled = kb.diseaseMap(PREFIXES).orElseThrow(IllegalStateException::new);
+        assertEquals(new ArrayList<>(diseaseMap.keySet()), new ArrayList<>(compiled.keySet()));
+        for (HpoDisease disease : diseaseMap.values()) {
+            HpoDisease other = compiled.get(disease.getDiseaseDatabaseId());
+            assertEquals(disease.getName(), other.getName());
+            assertEquals(disease.getModesOfInheritance(), other.getModesOfInheritance());
+            assertEquals(disease.getNegativeAnnotations(), other.getNegativeAnnotations());
+            assertEquals(disease.getPhenotypicAbnormalities().size(), other.getPhenotypicAbnormalities().size());
+            for (int i = 0; i < disease.getPhenotypicAbnormalities().size(); i++) {
+                HpoAnnotation a = disease.getPhenotypicAbnormalities().get(i);
+                HpoAnnotation b = other.getPhenotypicAbnormalities().get(i);
+                assertEquals(a.getTermId(), b.getTermId());
+                assertEquals(a.getFrequency(), b.getFrequency(), 1e-12);
+                assertEquals(a.getOnset(), b.getOnset());
+            }
+        }
+        assertFalse(kb.diseaseMap(ImmutableList.of("ORPHA")).isPresent());
+    }
+
+    @Test
+    void testGenesAndBackground() {
+        assertTrue(kb.hasGenes());
+        assertEquals(gene2disease, kb.gene2diseaseMultimap());
+        assertEquals("FBN1", kb.geneId2symbolMap().get(TermId.of("NCBIGene:2200")));
+        assertEquals(3, kb.disease2geneMultimap().size());
+        assertEquals(background, kb.backgroundFrequencies(GenomeAssembly.HG38).orElseThrow(IllegalStateException::new));
+        assertFalse(kb.backgroundFrequencies(GenomeAssembly.HG19).isPresent());
+    }
+
+    /** The ranking of a case must not depend on whether the knowledge base was parsed or compiled. */
+    @Test
+    void testSameRanking() {
+        Ontology compiledOntology = kb.ontology();
+        Map<TermId, HpoDisease> compiledDiseases = kb.diseaseMap(PREFIXES).orElseThrow(IllegalStateException::new);
+        List<TermId> observed = ImmutableList.of(TermId.of("HP:0000028"), TermId.of("HP:0000047"));
+        HpoCase parsedCase = new CaseEvaluator.Builder(observed)
+                .ontology(ontology)
+                .diseaseMap(diseaseMap)
+                .phenotypeLr(new PhenotypeLikelihoodRatio(ontology, diseaseMap))
+                .buildPhenotypeOnlyEvaluator()
+                .evaluate();
+        HpoCase compiledCase = new CaseEvaluator.Builder(observed)
+                .ontology(compiledOntology)
+                .diseaseMap(compiledDiseases)
+                .phenotypeLr(new PhenotypeLikelihoodRatio(compiledOntology, compiledDiseases))
+                .buildPhenotypeOnlyEvaluator()
+                .evaluate();
+        List<TestResult> expected = parsedCase.getTopResults(diseaseMap.size());
+        List<TestResult> actual = compiledCase.getTopResults(diseaseMap.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDiseaseCurie(), actual.get(i).getDiseaseCurie());
+            assertEquals(expected.get(i).getPosttestProbability(), actual.get(i).getPosttestProbability(), 1e-12);
+        }
+    }
+}
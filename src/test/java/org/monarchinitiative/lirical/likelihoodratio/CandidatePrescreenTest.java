@@ -0,0 +1,99 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the prescreen score and shortlist with the three diseases of small.hpoa, plus a copy of OMODYSPLASIA
+ * that is tied with it.
+ */
+class CandidatePrescreenTest {
+
+    private static final double EPSILON = 1e-12;
+    private static final TermId OMODYSPLASIA = TermId.of("OMIM:164745");
+    private static final TermId COPY = TermId.of("OMIM:999999");
+    /** Only annotated to OMODYSPLASIA (and therefore to its copy). */
+    private static final TermId QUERY = TermId.of("HP:0000028");
+
+    private static Ontology ontology;
+    private static Map<TermId, HpoDisease> diseaseMap;
+    private static CandidatePrescreen prescreen;
+
+    @BeforeAll
+    static void setup() {
+        ClassLoader classLoader = CandidatePrescreenTest.class.getClassLoader();
+        String hpoPath = Objects.requireNonNull(classLoader.getResource("hp.small.obo")).getFile();
+        String annotationPath = Objects.requireNonNull(classLoader.getResource("small.hpoa")).getFile();
+        ontology = OntologyLoader.loadOntology(new File(hpoPath));
+        diseaseMap = new LinkedHashMap<>(HpoDiseaseAnnotationParser.loadDiseaseMap(annotationPath, ontology));
+        HpoDisease omodysplasia = diseaseMap.get(OMODYSPLASIA);
+        diseaseMap.put(COPY, new HpoDisease("COPY OF OMODYSPLASIA", COPY, omodysplasia.getPhenotypicAbnormalities(),
+                omodysplasia.getModesOfInheritance(), omodysplasia.getNegativeAnnotations(),
+                omodysplasia.getClinicalModifiers(), omodysplasia.getClinicalCourseList()));
+        prescreen = new CandidatePrescreen(ontology, diseaseMap);
+    }
+
+    /** @return the terms of the disease and all of their ancestors */
+    private static Set<TermId> closure(HpoDisease disease) {
+        return ontology.getAllAncestorTermIds(disease.getPhenotypicAbnormalityTermIdList(), true);
+    }
+
+    private static double informationContent(TermId tid) {
+        long n = diseaseMap.values().stream().filter(d -> closure(d).contains(tid)).count();
+        return -Math.log((double) n / diseaseMap.size());
+    }
+
+    /**
+     * The query term is only annotated to OMODYSPLASIA and its copy, so its information content is log(4/2), and
+     * this is the score of both. Some ancestors of the query are just as specific, so the sum over the shared
+     * ancestors would be larger.
+     */
+    @Test
+    void testScoreIsBestMatch() {
+        List<TermId> diseaseIds = prescreen.getDiseaseIds();
+        double[] score = prescreen.score(ImmutableList.of(QUERY));
+        assertEquals(diseaseMap.size(), score.length);
+        for (int d = 0; d < score.length; d++) {
+            Set<TermId> closure = closure(diseaseMap.get(diseaseIds.get(d)));
+            double best = 0.0;
+            double sum = 0.0;
+            for (TermId tid : ontology.getAncestorTermIds(QUERY, true)) {
+                if (closure.contains(tid)) {
+                    best = Math.max(best, informationContent(tid));
+                    sum += informationContent(tid);
+                }
+            }
+            assertEquals(best, score[d], EPSILON);
+            if (diseaseIds.get(d).equals(OMODYSPLASIA)) {
+                assertEquals(Math.log(2.0), score[d], EPSILON);
+                assertTrue(sum > best);
+            }
+        }
+    }
+
+    /** A shortlist of one disease includes both diseases that are tied for the best score. */
+    @Test
+    void testShortlistIncludesTies() {
+        Set<TermId> shortlist = prescreen.shortlist(ImmutableList.of(QUERY), 1);
+        assertEquals(new HashSet<>(ImmutableList.of(OMODYSPLASIA, COPY)), shortlist);
+    }
+
+    @Test
+    void testShortlistOfAllDiseases() {
+        Set<TermId> all = new HashSet<>(diseaseMap.keySet());
+        assertEquals(all, prescreen.shortlist(ImmutableList.of(QUERY), diseaseMap.size()));
+        assertEquals(all, prescreen.shortlist(ImmutableList.of(QUERY), diseaseMap.size() + 10));
+    }
+}
@@ -0,0 +1,199 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.exomiser.core.model.pathogenicity.ClinVarData;
+import org.monarchinitiative.lirical.analysis.Gene2Genotype;
+import org.monarchinitiative.lirical.exception.LiricalRuntimeException;
+import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The rank-only evaluation must return the same ranks and post-test probabilities as the full evaluation, and
+ * an evaluation with a pending genotype map must return the same results as one with a finished genotype map.
+ */
+class CaseEvaluatorTest {
+
+    private static Ontology ontology;
+
+    private static Map<TermId, HpoDisease> diseaseMap;
+
+    private static PhenotypeLikelihoodRatio phenotypeLr;
+
+    @BeforeAll
+    static void setup() {
+        ClassLoader classLoader = CaseEvaluatorTest.class.getClassLoader();
+        String hpoPath = Objects.requireNonNull(classLoader.getResource("hp.small.obo")).getFile();
+        String annotationPath = Objects.requireNonNull(classLoader.getResource("small.hpoa")).getFile();
+        ontology = OntologyLoader.loadOntology(new File(hpoPath));
+        diseaseMap = HpoDiseaseAnnotationParser.loadDiseaseMap(annotationPath, ontology);
+        phenotypeLr = new PhenotypeLikelihoodRatio(ontology, diseaseMap);
+    }
+
+    private static CaseEvaluator evaluator(List<TermId> observed, List<TermId> excluded) {
+        return new CaseEvaluator.Builder(observed)
+                .negated(excluded)
+                .ontology(ontology)
+                .diseaseMap(diseaseMap)
+                .phenotypeLr(phenotypeLr)
+                .buildPhenotypeOnlyEvaluator();
+    }
+
+    private static void assertSameRanks(List<TermId> observed, List<TermId> excluded) {
+        HpoCase hpoCase = evaluator(observed, excluded).evaluate();
+        CaseEvaluator evaluator = evaluator(observed, excluded);
+        for (TermId diseaseId : diseaseMap.keySet()) {
+            DiseaseRank rank = evaluator.rankOnly(diseaseId);
+            assertTrue(rank.isRanked());
+            assertEquals(hpoCase.getRank(diseaseId).orElse(-1).intValue(), rank.getRank());
+            assertEquals(hpoCase.getPosttestProbability(diseaseId), rank.getPosttestProbability(), 0.0);
+            assertEquals(diseaseMap.size(), rank.getNumberOfRankedDiseases());
+        }
+    }
+
+    @Test
+    void testSameRanksAsFullEvaluation() {
+        assertSameRanks(ImmutableList.of(TermId.of("HP:0000028"), TermId.of("HP:0000047")), ImmutableList.of());
+        assertSameRanks(ImmutableList.of(TermId.of("HP:0001251"), TermId.of("HP:0000007")),
+                ImmutableList.of(TermId.of("HP:0000185")));
+    }
+
+    /** Without any informative term, all diseases are tied and ranked in the order of the disease map. */
+    @Test
+    void testTies() {
+        assertSameRanks(ImmutableList.of(), ImmutableList.of());
+        TermId first = diseaseMap.keySet().iterator().next();
+        DiseaseRank rank = evaluator(ImmutableList.of(), ImmutableList.of()).rankOnly(first);
+        assertEquals(1, rank.getRank());
+        assertEquals(diseaseMap.size() - 1, rank.getNumberOfTies());
+    }
+
+    @Test
+    void testUnknownDisease() {
+        DiseaseRank rank = evaluator(ImmutableList.of(TermId.of("HP:0000028")), ImmutableList.of())
+                .rankOnly(TermId.of("OMIM:999999"));
+        assertFalse(rank.isRanked());
+        assertEquals(diseaseMap.size() + 1, rank.getRank());
+        assertEquals(0.0, rank.getPosttestProbability(), 0.0);
+    }
+
+    private static final TermId FBN1 = TermId.of("NCBIGene:2200");
+    private static final TermId NRAS = TermId.of("NCBIGene:4893");
+
+    /** @return a future that is completed with the genotype map by another thread after a short delay */
+    private static CompletableFuture<Map<TermId, Gene2Genotype>> delayed(Map<TermId, Gene2Genotype> genotypeMap) {
+        CompletableFuture<Map<TermId, Gene2Genotype>> pending = new CompletableFuture<>();
+        // the genotypes become available while the phenotype stage is running or after it is done
+        new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pending.complete(genotypeMap);
+        }).start();
+        return pending;
+    }
+
+    private static CaseEvaluator.Builder genotypeEvaluator(Multimap<TermId, TermId> disease2gene, boolean keep) {
+        return new CaseEvaluator.Builder(ImmutableList.of(TermId.of("HP:0000028"), TermId.of("HP:0000047")))
+                .ontology(ontology)
+                .diseaseMap(diseaseMap)
+                .disease2geneMultimap(disease2gene)
+                .phenotypeLr(phenotypeLr)
+                .genotypeLr(new GenotypeLikelihoodRatio(ImmutableMap.of()))
+                .gene2idMap(ImmutableMap.of(FBN1, "FBN1", NRAS, "NRAS"))
+                .keepCandidates(keep);
+    }
+
+    @Test
+    void testPendingGenotypeMap() {
+        Multimap<TermId, TermId> disease2gene = ArrayListMultimap.create();
+        disease2gene.put(diseaseMap.keySet().iterator().next(), TermId.of("NCBIGene:2200"));
+        for (boolean keep : new boolean[]{true, false}) {
+            HpoCase expected = genotypeEvaluator(disease2gene, keep)
+                    .genotypeMap(ImmutableMap.of())
+                    .build()
+                    .evaluate();
+            HpoCase actual = genotypeEvaluator(disease2gene, keep)
+                    .pendingGenotypeMap(delayed(ImmutableMap.of()))
+                    .build()
+                    .evaluate();
+            assertEquals(expected.getResults().size(), actual.getResults().size());
+            for (TermId diseaseId : diseaseMap.keySet()) {
+                assertEquals(expected.getRank(diseaseId), actual.getRank(diseaseId));
+                assertEquals(expected.getPosttestProbability(diseaseId), actual.getPosttestProbability(diseaseId), 0.0);
+            }
+        }
+    }
+
+    /**
+     * Two diseases have a gene with variants (a pathogenic one in FBN1 and a benign one in NRAS); the test results
+     * with the genotype map delivered by a delayed future must equal those of the eager genotype map.
+     */
+    @Test
+    void testPendingNonEmptyGenotypeMap() {
+        Iterator<TermId> diseaseIds = diseaseMap.keySet().iterator();
+        Multimap<TermId, TermId> disease2gene = ArrayListMultimap.create();
+        disease2gene.put(diseaseIds.next(), FBN1);
+        disease2gene.put(diseaseIds.next(), NRAS);
+        Gene2Genotype fbn1 = new Gene2Genotype(FBN1, "FBN1");
+        fbn1.addVariant(15, 48_487_000, "C", "T", ImmutableList.of(), "0/1", 0.95f, 0.001f, ClinVarData.ClinSig.NOT_PROVIDED);
+        Gene2Genotype nras = new Gene2Genotype(NRAS, "NRAS");
+        nras.addVariant(1, 114_713_908, "A", "G", ImmutableList.of(), "0/1", 0.1f, 5.0f, ClinVarData.ClinSig.BENIGN);
+        Map<TermId, Gene2Genotype> genotypeMap = ImmutableMap.of(FBN1, fbn1, NRAS, nras);
+        for (boolean keep : new boolean[]{true, false}) {
+            HpoCase expected = genotypeEvaluator(disease2gene, keep)
+                    .genotypeMap(genotypeMap)
+                    .build()
+                    .evaluate();
+            HpoCase actual = genotypeEvaluator(disease2gene, keep)
+                    .pendingGenotypeMap(delayed(genotypeMap))
+                    .build()
+                    .evaluate();
+            List<TestResult> expectedResults = expected.getResults();
+            List<TestResult> actualResults = actual.getResults();
+            assertEquals(expectedResults.size(), actualResults.size());
+            assertTrue(expectedResults.stream().anyMatch(TestResult::hasGenotype));
+            for (int i = 0; i < expectedResults.size(); i++) {
+                TestResult e = expectedResults.get(i);
+                TestResult a = actualResults.get(i);
+                assertEquals(e.getDiseaseCurie(), a.getDiseaseCurie());
+                assertEquals(e.getRank(), a.getRank());
+                assertEquals(e.getGenotypeLR(), a.getGenotypeLR());
+                assertEquals(e.getEntrezGeneId(), a.getEntrezGeneId());
+                assertEquals(e.getCompositeLR(), a.getCompositeLR(), 0.0);
+                assertEquals(e.getPosttestProbability(), a.getPosttestProbability(), 0.0);
+                assertEquals(e.getGenotypeExplanation(), a.getGenotypeExplanation());
+            }
+        }
+    }
+
+    @Test
+    void testFailedGenotypeMap() {
+        CompletableFuture<Map<TermId, Gene2Genotype>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new LiricalRuntimeException("Could not read VCF file"));
+        CaseEvaluator evaluator = genotypeEvaluator(ArrayListMultimap.create(), true)
+                .pendingGenotypeMap(failed)
+                .build();
+        LiricalRuntimeException e = assertThrows(LiricalRuntimeException.class, evaluator::evaluate);
+        assertEquals("Could not read VCF file", e.getMessage());
+    }
+}
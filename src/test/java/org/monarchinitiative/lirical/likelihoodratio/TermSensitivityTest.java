@@ -0,0 +1,83 @@
+package org.monarchinitiative.lirical.likelihoodratio;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.phenol.formats.hpo.HpoAnnotation;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compare the leave-one-term-out analysis with results that are calculated again without the term.
+ */
+class TermSensitivityTest {
+
+    private static final double EPSILON = 1e-12;
+    private static final double PRETEST = 0.1;
+    private static final List<TermId> OBSERVED = ImmutableList.of(TermId.of("HP:0000001"), TermId.of("HP:0000002"));
+    private static final List<TermId> EXCLUDED = ImmutableList.of(TermId.of("HP:0000003"));
+    /** Observed and excluded likelihood ratios of three diseases. */
+    private static final double[][] LRS = {{10.0, 2.0, 0.5}, {1.0, 8.0, 1.0}, {3.0, 3.0, 1.0}};
+
+    private static HpoDisease disease(int i) {
+        List<TermId> emptyList = ImmutableList.of();
+        List<HpoAnnotation> emptyAnnot = ImmutableList.of();
+        return new HpoDisease("d" + i, TermId.of("OMIM:" + i), emptyAnnot, emptyList, emptyList, emptyList, emptyList);
+    }
+
+    /** @return a case whose three diseases have the likelihood ratios of {@link #LRS}, without the term at index skip */
+    private static HpoCase hpoCase(int skip) {
+        Map<TermId, TestResult> results = new LinkedHashMap<>();
+        for (int d = 0; d < LRS.length; d++) {
+            List<Double> observed = new ArrayList<>();
+            List<Double> excluded = new ArrayList<>();
+            for (int t = 0; t < LRS[d].length; t++) {
+                if (t != skip) {
+                    (t < OBSERVED.size() ? observed : excluded).add(LRS[d][t]);
+                }
+            }
+            HpoDisease disease = disease(d);
+            results.put(disease.getDiseaseDatabaseId(), new TestResult(observed, excluded, disease, PRETEST));
+        }
+        return new HpoCase.Builder(OBSERVED).excluded(EXCLUDED).results(results).build();
+    }
+
+    @Test
+    void testMatchesRescoring() {
+        HpoCase hcase = hpoCase(-1);
+        // with all terms: d0 has LR 10, d2 has LR 9, d1 has LR 8
+        assertEquals(TermId.of("OMIM:0"), hcase.getResults().get(0).getDiseaseCurie());
+        TermSensitivity sensitivity = new TermSensitivity(hcase, 2);
+        List<TermSensitivity.Entry> entries = sensitivity.getEntries();
+        assertEquals(6, entries.size());
+        for (TermSensitivity.Entry entry : entries) {
+            int t = entry.getTermId().equals(EXCLUDED.get(0)) ? 2 : OBSERVED.indexOf(entry.getTermId());
+            assertEquals(t == 2, entry.isExcluded());
+            HpoCase without = hpoCase(t);
+            TermId diseaseId = entry.getResult().getDiseaseCurie();
+            assertEquals(without.getPosttestProbability(diseaseId), entry.getPosttestWithoutTerm(), EPSILON);
+            assertEquals(without.getResults().indexOf(without.getResult(diseaseId)) + 1, entry.getRankWithoutTerm());
+        }
+        // without HP:0000001, d0 drops from rank 1 to rank 3
+        TermSensitivity.Entry first = entries.get(0);
+        assertEquals(1, first.getRank());
+        assertEquals(3, first.getRankWithoutTerm());
+    }
+
+    @Test
+    void testSkippedWhenTermCouldNotBeEvaluated() {
+        Map<TermId, TestResult> results = new LinkedHashMap<>();
+        HpoDisease disease = disease(0);
+        results.put(disease.getDiseaseDatabaseId(),
+                new TestResult(ImmutableList.of(2.0), ImmutableList.of(), disease, PRETEST));
+        HpoCase hcase = new HpoCase.Builder(OBSERVED).results(results).build();
+        assertTrue(new TermSensitivity(hcase, 1).getEntries().isEmpty());
+        assertFalse(new TermSensitivity(hpoCase(-1), 1).getEntries().isEmpty());
+    }
+}
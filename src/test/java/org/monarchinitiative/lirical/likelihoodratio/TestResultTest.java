@@ -255,5 +255,28 @@ class TestResultTest {
         assertEquals(expected,tresultWithGenotype.getEntrezGeneId());
     }
 
+    /**
+     * Leaving out one of the tests 2.0, 3.0, 4.0 must give the composite likelihood ratio of a result that was
+     * calculated without that test.
+     */
+    @Test
+    void testLeaveOneOutCompositeLRs() {
+        double[] noGenotype = tresultNoGenotype.leaveOneOutCompositeLRs();
+        assertEquals(3, noGenotype.length);
+        assertEquals(12.0, noGenotype[0], EPSILON);
+        assertEquals(8.0, noGenotype[1], EPSILON);
+        assertEquals(6.0, noGenotype[2], EPSILON);
+        List<Double> list1 = ImmutableList.of(2.0, 3.0, 4.0);
+        List<Double> excluded = ImmutableList.of();
+        TermId geneId = TermId.of("FAKE:123");
+        double[] withGenotype = tresultWithGenotype.leaveOneOutCompositeLRs();
+        for (int i = 0; i < list1.size(); i++) {
+            List<Double> without = new ArrayList<>(list1);
+            without.remove(i);
+            TestResult expected = new TestResult(without, excluded, glaucoma, 2.0, geneId, 0.025);
+            assertEquals(expected.getCompositeLR(), withGenotype[i], EPSILON);
+        }
+    }
+
 
 }
@@ -0,0 +1,55 @@
+package org.monarchinitiative.lirical.metrics;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @Test
+    void testDisabledMetricsRecordNothing() {
+        Metrics metrics = Metrics.DISABLED;
+        assertFalse(metrics.isEnabled());
+        try (Metrics.Timer ignored = metrics.timer("phase")) {
+            metrics.increment("items", 5);
+        }
+        metrics.addTime("phase", 1_000_000L);
+        assertEquals(0L, metrics.getCount("items"));
+        assertEquals(0.0, metrics.getMillis("phase"), 1e-12);
+        assertTrue(metrics.summary().isEmpty());
+    }
+
+    @Test
+    void testTimersCountersAndRates() {
+        Metrics metrics = Metrics.create();
+        metrics.addTime("vcf.annotate", 1_000_000_000L);
+        metrics.addTime("vcf.annotate", 1_000_000_000L);
+        metrics.increment("vcf.records", 300);
+        metrics.increment("vcf.records", 100);
+        metrics.rate("vcf.recordsPerSecond", "vcf.records", "vcf.annotate");
+        assertEquals(2000.0, metrics.getMillis("vcf.annotate"), 1e-9);
+        assertEquals(400L, metrics.getCount("vcf.records"));
+        ObjectNode json = metrics.toJson();
+        assertEquals(2, json.get("timers").get("vcf.annotate").get("count").asInt());
+        assertEquals(1000.0, json.get("timers").get("vcf.annotate").get("maxMs").asDouble(), 1e-9);
+        assertEquals(200.0, json.get("rates").get("vcf.recordsPerSecond").asDouble(), 1e-9);
+        assertTrue(metrics.summary().contains("vcf.records: 400"));
+    }
+
+    @Test
+    void testTimer() {
+        Metrics metrics = Metrics.create();
+        long nanos = metrics.timer("render").stop();
+        assertTrue(nanos >= 0);
+        assertEquals(nanos / 1_000_000.0, metrics.getMillis("render"), 1e-9);
+    }
+
+    @Test
+    void testSidecar() {
+        assertEquals(new File("out/lirical.metrics.json"), Metrics.sidecar("out/lirical.html"));
+        assertEquals(new File("out/lirical.metrics.json"), Metrics.sidecar("out/lirical.tsv"));
+    }
+}
@@ -0,0 +1,50 @@
+package org.monarchinitiative.lirical.server;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenotypeCacheTest {
+
+    private static File tempVcf(String name) throws IOException {
+        File file = File.createTempFile(name, ".vcf");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("##fileformat=VCFv4.2\n");
+        }
+        return file;
+    }
+
+    @Test
+    void testHitsMissesAndEviction() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        GenotypeCache cache = new GenotypeCache(2, (id, vcf) -> {
+            loads.incrementAndGet();
+            return new GenotypeSnapshot(id, vcf.getAbsolutePath(), "sample", ImmutableMap.of(), 0, 0);
+        });
+        File a = tempVcf("sampleA");
+        File b = tempVcf("sampleB");
+        File c = tempVcf("sampleC");
+        GenotypeSnapshot snapshotA = cache.getOrLoad(a);
+        assertEquals(GenotypeCache.snapshotId(a), snapshotA.getId());
+        assertSame(snapshotA, cache.getOrLoad(a));
+        assertSame(snapshotA, cache.get(snapshotA.getId()).orElse(null));
+        assertEquals(1, loads.get());
+        cache.getOrLoad(b);
+        cache.getOrLoad(a); // a is now more recently used than b
+        cache.getOrLoad(c); // evicts b
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertFalse(cache.get(GenotypeCache.snapshotId(b)).isPresent());
+        assertTrue(cache.get(snapshotA.getId()).isPresent());
+        assertEquals(3, loads.get());
+        assertEquals(4, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+}
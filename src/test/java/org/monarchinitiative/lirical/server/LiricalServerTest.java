@@ -0,0 +1,224 @@
+package org.monarchinitiative.lirical.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.lirical.hpo.HpoCase;
+import org.monarchinitiative.lirical.likelihoodratio.CaseEvaluator;
+import org.monarchinitiative.lirical.likelihoodratio.PhenotypeLikelihoodRatio;
+import org.monarchinitiative.lirical.likelihoodratio.TestResult;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Start a phenotype-only server on a free port of the loopback interface and send requests to it.
+ */
+class LiricalServerTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static Ontology ontology;
+
+    private static Map<TermId, HpoDisease> diseaseMap;
+
+    private static PhenotypeLikelihoodRatio phenotypeLr;
+
+    private static LiricalServer server;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        ClassLoader classLoader = LiricalServerTest.class.getClassLoader();
+        String hpoPath = Objects.requireNonNull(classLoader.getResource("hp.small.obo")).getFile();
+        String annotationPath = Objects.requireNonNull(classLoader.getResource("small.hpoa")).getFile();
+        ontology = OntologyLoader.loadOntology(new File(hpoPath));
+        diseaseMap = HpoDiseaseAnnotationParser.loadDiseaseMap(annotationPath, ontology);
+        phenotypeLr = new PhenotypeLikelihoodRatio(ontology, diseaseMap);
+        server = new LiricalServer.Builder(ontology, diseaseMap, phenotypeLr)
+                .port(0)
+                .threads(2)
+                .maxConcurrent(2)
+                .queue(4)
+                .top(3)
+                .build();
+        server.start();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        server.stop();
+    }
+
+    /** Send a request and return the HTTP status and the JSON response. */
+    private static Object[] request(String method, String path, String body) throws IOException {
+        return request(server, method, path, body);
+    }
+
+    private static Object[] request(LiricalServer server, String method, String path, String body) throws IOException {
+        URL url = new URL(String.format("http://127.0.0.1:%d%s", server.getPort(), path));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream os = connection.getOutputStream()) {
+                os.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream is = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new Object[]{status, mapper.readTree(is)};
+        }
+    }
+
+    @Test
+    void testScore() throws IOException {
+        List<TermId> observed = ImmutableList.of(TermId.of("HP:0000028"), TermId.of("HP:0000047"));
+        HpoCase hpoCase = new CaseEvaluator.Builder(observed)
+                .ontology(ontology)
+                .diseaseMap(diseaseMap)
+                .phenotypeLr(phenotypeLr)
+                .buildPhenotypeOnlyEvaluator()
+                .evaluate();
+        Object[] response = request("POST", "/score", "{\"hpoIds\":[\"HP:0000028\",\"HP:0000047\"]}");
+        assertEquals(200, response[0]);
+        JsonNode json = (JsonNode) response[1];
+        assertEquals("ok", json.get("status").asText());
+        assertEquals(diseaseMap.size(), json.get("rankedDiseases").asInt());
+        JsonNode results = json.get("results");
+        assertEquals(3, results.size());
+        List<TestResult> expected = hpoCase.getTopResults(3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, results.get(i).get("rank").asInt());
+            assertEquals(expected.get(i).getDiseaseCurie().getValue(), results.get(i).get("diseaseId").asText());
+            assertEquals(expected.get(i).getPosttestProbability(), results.get(i).get("posttestProbability").asDouble(), 1e-12);
+        }
+    }
+
+    @Test
+    void testBadRequests() throws IOException {
+        Object[] response = request("POST", "/score", "{\"hpoIds\":[\"HP:0000028\",\"HP:7654321\"]}");
+        assertEquals(400, response[0]);
+        assertEquals("error", ((JsonNode) response[1]).get("status").asText());
+        assertEquals(400, request("POST", "/score", "not json")[0]);
+        // the server was started without Exomiser data
+        assertEquals(400, request("POST", "/score", "{\"hpoIds\":[\"HP:0000028\"],\"genotypeId\":\"abc\"}")[0]);
+        assertEquals(405, request("GET", "/score", null)[0]);
+    }
+
+    @Test
+    void testHealthAndMetrics() throws IOException {
+        Object[] health = request("GET", "/health", null);
+        assertEquals(200, health[0]);
+        assertEquals(diseaseMap.size(), ((JsonNode) health[1]).get("diseases").asInt());
+        assertFalse(((JsonNode) health[1]).get("genomic").asBoolean());
+        request("POST", "/score", "{\"hpoIds\":[\"HP:0000028\"]}");
+        JsonNode metrics = (JsonNode) request("GET", "/metrics", null)[1];
+        JsonNode score = metrics.get("requests").get("score");
+        assertTrue(score.get("count").asLong() >= 1);
+        assertTrue(score.get("p99Millis").asDouble() >= score.get("p50Millis").asDouble());
+        assertEquals(0, metrics.get("genotypeCache").get("size").asInt());
+    }
+
+    /** @return a started server with one scoring thread and a queue of one request */
+    private static LiricalServer singleSlotServer(long timeoutMillis) throws IOException {
+        LiricalServer singleSlot = new LiricalServer.Builder(ontology, diseaseMap, phenotypeLr)
+                .port(0)
+                .threads(4)
+                .maxConcurrent(1)
+                .queue(1)
+                .timeoutMillis(timeoutMillis)
+                .build();
+        singleSlot.start();
+        return singleSlot;
+    }
+
+    private static JsonNode scoringMetrics(LiricalServer server) throws IOException {
+        return ((JsonNode) request(server, "GET", "/metrics", null)[1]).get("scoring");
+    }
+
+    /** With the scoring thread busy and the queue full, a request is rejected with 503. */
+    @Test
+    void testBusyServerRejectsRequest() throws Exception {
+        LiricalServer busy = singleSlotServer(30_000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            busy.addPostEndpoint("/block", request -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return mapper.createObjectNode().put("status", "ok");
+            });
+            Future<Object[]> running = clients.submit(() -> request(busy, "POST", "/block", "{}"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<Object[]> queued = clients.submit(() -> request(busy, "POST", "/block", "{}"));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (scoringMetrics(busy).get("queued").asInt() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Object[] response = request(busy, "POST", "/score", "{\"hpoIds\":[\"HP:0000028\"]}");
+            assertEquals(503, response[0]);
+            assertEquals("error", ((JsonNode) response[1]).get("status").asText());
+            assertEquals(1, scoringMetrics(busy).get("rejected").asLong());
+            release.countDown();
+            assertEquals(200, running.get(5, TimeUnit.SECONDS)[0]);
+            assertEquals(200, queued.get(5, TimeUnit.SECONDS)[0]);
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+            busy.stop();
+        }
+    }
+
+    /** A request that takes longer than the timeout is answered with 504, and its scoring thread is interrupted. */
+    @Test
+    void testTimeoutInterruptsScoringThread() throws Exception {
+        LiricalServer slow = singleSlotServer(100);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try {
+            slow.addPostEndpoint("/block", request -> {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return mapper.createObjectNode().put("status", "ok");
+            });
+            Object[] response = request(slow, "POST", "/block", "{}");
+            assertEquals(504, response[0]);
+            assertEquals("error", ((JsonNode) response[1]).get("status").asText());
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+            assertEquals(1, scoringMetrics(slow).get("timeouts").asLong());
+        } finally {
+            slow.stop();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.monarchinitiative.lirical.simulation;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.lirical.exception.LiricalException;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The results of a grid search with a given seed should not depend on the number of threads.
+ */
+class GridSearchTest {
+
+    private static final int N_CASES = 30;
+
+    private static Ontology ontology;
+
+    private static Map<TermId, HpoDisease> diseaseMap;
+
+    @BeforeAll
+    static void setup() {
+        ClassLoader classLoader = GridSearchTest.class.getClassLoader();
+        String hpoPath = Objects.requireNonNull(classLoader.getResource("hp.small.obo")).getFile();
+        String annotationPath = Objects.requireNonNull(classLoader.getResource("small.hpoa")).getFile();
+        ontology = OntologyLoader.loadOntology(new File(hpoPath));
+        diseaseMap = HpoDiseaseAnnotationParser.loadDiseaseMap(annotationPath, ontology);
+    }
+
+    private static GridSearch search(int threads) throws LiricalException {
+        GridSearch grid = new GridSearch(ontology, diseaseMap, N_CASES, true);
+        grid.setTermRange(1, 2);
+        grid.setNoiseRange(0, 1);
+        grid.setSeed(42L);
+        grid.setThreads(threads);
+        grid.simulateGrid();
+        return grid;
+    }
+
+    @Test
+    void testResultsDoNotDependOnThreads() throws LiricalException {
+        GridSearch single = search(1);
+        GridSearch parallel = search(4);
+        int[][][] caseRanks = single.getCaseRanks();
+        assertEquals(2, caseRanks.length);
+        for (int i = 0; i < caseRanks.length; i++) {
+            assertEquals(2, caseRanks[i].length);
+            for (int j = 0; j < caseRanks[i].length; j++) {
+                assertEquals(N_CASES, caseRanks[i][j].length);
+                assertArrayEquals(caseRanks[i][j], parallel.getCaseRanks()[i][j]);
+                assertEquals(single.getProportionsAtRank1()[i][j], parallel.getProportionsAtRank1()[i][j], 1e-12);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.monarchinitiative.lirical.simulation;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.monarchinitiative.lirical.exception.LiricalException;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The results of a simulation with a given seed should not depend on the number of threads.
+ */
+class PhenotypeOnlyHpoCaseSimulatorTest {
+
+    private static Ontology ontology;
+
+    private static Map<TermId, HpoDisease> diseaseMap;
+
+    @BeforeAll
+    static void setup() {
+        ClassLoader classLoader = PhenotypeOnlyHpoCaseSimulatorTest.class.getClassLoader();
+        String hpoPath = Objects.requireNonNull(classLoader.getResource("hp.small.obo")).getFile();
+        String annotationPath = Objects.requireNonNull(classLoader.getResource("small.hpoa")).getFile();
+        ontology = OntologyLoader.loadOntology(new File(hpoPath));
+        diseaseMap = HpoDiseaseAnnotationParser.loadDiseaseMap(annotationPath, ontology);
+    }
+
+    private static PhenotypeOnlyHpoCaseSimulator simulate(int threads) throws LiricalException {
+        PhenotypeOnlyHpoCaseSimulator simulator = new PhenotypeOnlyHpoCaseSimulator(ontology, diseaseMap, 50, 1, 1, true);
+        simulator.setVerbosity(false);
+        simulator.setSeed(42L);
+        simulator.setThreads(threads);
+        simulator.simulateCases();
+        return simulator;
+    }
+
+    @Test
+    void testResultsDoNotDependOnThreads() throws LiricalException {
+        PhenotypeOnlyHpoCaseSimulator single = simulate(1);
+        PhenotypeOnlyHpoCaseSimulator parallel = simulate(4);
+        assertEquals(single.getRankCounts(), parallel.getRankCounts());
+        assertEquals(single.getProportionAtRank1(), parallel.getProportionAtRank1(), 1e-9);
+    }
+}
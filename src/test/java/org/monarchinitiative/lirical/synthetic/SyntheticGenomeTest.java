@@ -0,0 +1,130 @@
+package org.monarchinitiative.lirical.synthetic;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.monarchinitiative.exomiser.core.model.pathogenicity.ClinVarData;
+import org.monarchinitiative.lirical.analysis.Gene2Genotype;
+import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.vcf.SimpleVariant;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Write a small synthetic genome and a VCF file and annotate the file through the usual {@link LiricalFactory}
+ * path. The variants of the VCF file must come back in the genes of the synthetic genome, with the frequency and
+ * pathogenicity that were written to the Exomiser database.
+ */
+class SyntheticGenomeTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static final int N_GENES = 30;
+    private static final int CAUSAL_GENE = 7;
+    /** REVEL score and 1000 Genomes frequency (percent) of the pathogenic and the benign missense variants. */
+    private static final float PATHOGENIC_REVEL = 0.95f;
+    private static final float BENIGN_REVEL = 0.1f;
+    private static final float BENIGN_FREQUENCY = 5.0f;
+
+    private static Map<TermId, Gene2Genotype> genotypeMap;
+
+    @BeforeAll
+    static void setup() {
+        SyntheticKnowledgeBase kb = new SyntheticKnowledgeBase.Builder()
+                .terms(200)
+                .depth(6)
+                .diseases(40)
+                .genes(N_GENES)
+                .seed(5L)
+                .build();
+        File datadir = tempDir.resolve("data").toFile();
+        kb.write(datadir);
+        // no random pathogenic variants, so that the causal variant is the only one with a REVEL score of 0.95
+        SyntheticGenome genome = new SyntheticGenome.Builder(N_GENES)
+                .variants(200)
+                .pathogenicFraction(0.0)
+                .seed(5L)
+                .build();
+        File vcf = tempDir.resolve("proband.vcf").toFile();
+        File exomiserDir;
+        try {
+            exomiserDir = genome.writeExomiserData(tempDir.toFile(), "synthetic");
+            genome.writeVcf(vcf, "proband", CAUSAL_GENE, true);
+        } finally {
+            genome.close();
+        }
+        LiricalFactory factory = new LiricalFactory.Builder()
+                .datadir(datadir.getAbsolutePath())
+                .exomiser(exomiserDir.getAbsolutePath())
+                .genomeAssembly("hg38")
+                .backgroundFrequency(new File(datadir, "background-synthetic.tsv").getAbsolutePath())
+                .passOnly(false)
+                .buildForGenomicDiagnostics();
+        genotypeMap = factory.vcf2GenotypeMap(vcf.getAbsolutePath()).vcf2genotypeMap();
+    }
+
+    private static List<SimpleVariant> allVariants() {
+        List<SimpleVariant> variants = new ArrayList<>();
+        for (Gene2Genotype g2g : genotypeMap.values()) {
+            variants.addAll(g2g.getVarList());
+        }
+        return variants;
+    }
+
+    @Test
+    void testVariantsAreInSyntheticGenes() {
+        assertFalse(genotypeMap.isEmpty());
+        for (Map.Entry<TermId, Gene2Genotype> e : genotypeMap.entrySet()) {
+            int gene = Integer.parseInt(e.getValue().getSymbol().substring("SYN".length()));
+            assertEquals(SyntheticKnowledgeBase.geneSymbol(gene), e.getValue().getSymbol());
+            assertEquals(TermId.of("NCBIGene:" + SyntheticKnowledgeBase.entrezId(gene)), e.getKey());
+            for (SimpleVariant v : e.getValue().getVarList()) {
+                assertEquals("chr" + SyntheticGenome.chromosomeOf(gene), v.getChromosome());
+            }
+        }
+    }
+
+    /** The causal variant is a homozygous missense variant with a REVEL score of 0.95 and no frequency. */
+    @Test
+    void testCausalVariant() {
+        Gene2Genotype causal = genotypeMap.get(TermId.of("NCBIGene:" + SyntheticKnowledgeBase.entrezId(CAUSAL_GENE)));
+        assertNotNull(causal);
+        assertEquals(SyntheticKnowledgeBase.geneSymbol(CAUSAL_GENE), causal.getSymbol());
+        float expected = SimpleVariant.pathogenicityScore(PATHOGENIC_REVEL, 0.0f, ClinVarData.ClinSig.NOT_PROVIDED);
+        assertEquals(1, allVariants().stream().filter(v -> v.getFrequency() == 0.0f).count());
+        List<SimpleVariant> pathogenic = new ArrayList<>();
+        for (SimpleVariant v : causal.getVarList()) {
+            if (v.getFrequency() == 0.0f) {
+                pathogenic.add(v);
+            }
+        }
+        assertEquals(1, pathogenic.size());
+        SimpleVariant v = pathogenic.get(0);
+        assertEquals(expected, v.getPathogenicityScore(), 1e-6);
+        assertTrue(v.isInPathogenicBin());
+        assertEquals(2, v.pathogenicAlleleCount());
+    }
+
+    /** The benign missense variants have a REVEL score of 0.1 and a frequency of 5%. */
+    @Test
+    void testBenignVariants() {
+        float expected = SimpleVariant.pathogenicityScore(BENIGN_REVEL, BENIGN_FREQUENCY, ClinVarData.ClinSig.NOT_PROVIDED);
+        int benign = 0;
+        for (SimpleVariant v : allVariants()) {
+            if (v.getFrequency() == BENIGN_FREQUENCY) {
+                assertEquals(expected, v.getPathogenicityScore(), 1e-6);
+                assertFalse(v.isInPathogenicBin());
+                benign++;
+            }
+        }
+        assertTrue(benign > 0);
+    }
+}
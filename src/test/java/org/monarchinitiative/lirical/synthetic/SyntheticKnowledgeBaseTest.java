@@ -0,0 +1,105 @@
+package org.monarchinitiative.lirical.synthetic;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.monarchinitiative.lirical.configuration.LiricalFactory;
+import org.monarchinitiative.lirical.engine.CaseInput;
+import org.monarchinitiative.lirical.engine.CaseResult;
+import org.monarchinitiative.lirical.engine.LiricalEngine;
+import org.monarchinitiative.lirical.io.PhenopacketImporter;
+import org.monarchinitiative.lirical.likelihoodratio.TestResult;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Generate a small synthetic knowledge base and cohort and check that they are loaded through the usual
+ * {@link LiricalFactory} path and give sensible rankings.
+ */
+class SyntheticKnowledgeBaseTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static final int N_TERMS = 500;
+    private static final int N_DISEASES = 100;
+    private static final int N_CASES = 5;
+
+    private static LiricalFactory factory;
+
+    private static List<File> phenopackets;
+
+    private static SyntheticKnowledgeBase build(long seed) {
+        return new SyntheticKnowledgeBase.Builder()
+                .terms(N_TERMS)
+                .depth(8)
+                .diseases(N_DISEASES)
+                .genes(30)
+                .seed(seed)
+                .build();
+    }
+
+    @BeforeAll
+    static void setup() {
+        SyntheticKnowledgeBase kb = build(7L);
+        File datadir = tempDir.resolve("data").toFile();
+        kb.write(datadir);
+        phenopackets = new SyntheticCohort(kb, null, "hg38", 7L).write(tempDir.toFile(), N_CASES);
+        factory = new LiricalFactory.Builder()
+                .datadir(datadir.getAbsolutePath())
+                .buildForPhenotypeOnlyDiagnostics();
+    }
+
+    @Test
+    void testKnowledgeBaseIsLoadedByFactory() {
+        Ontology ontology = factory.hpoOntology();
+        // the synthetic terms plus the root, Phenotypic abnormality, and the inheritance and frequency terms
+        assertEquals(N_TERMS + 13, ontology.countNonObsoleteTerms());
+        Map<TermId, HpoDisease> diseaseMap = factory.diseaseMap(ontology);
+        assertEquals(N_DISEASES, diseaseMap.size());
+        assertFalse(factory.disease2geneMultimap().isEmpty());
+        assertTrue(factory.geneId2symbolMap().values().stream().allMatch(s -> s.startsWith("SYN")));
+    }
+
+    @Test
+    void testSameSeedGivesSameFiles() throws IOException {
+        Path first = tempDir.resolve("first");
+        Path second = tempDir.resolve("second");
+        build(11L).write(first.toFile());
+        build(11L).write(second.toFile());
+        for (String name : new String[]{"hp.obo", "phenotype.hpoa", "mim2gene_medgen"}) {
+            assertEquals(Files.readAllLines(first.resolve(name)), Files.readAllLines(second.resolve(name)), name);
+        }
+    }
+
+    /** The observed terms of a case are drawn from its disease, so the disease should be near the top. */
+    @Test
+    void testCasesRankTheirDisease() {
+        LiricalEngine engine = LiricalEngine.fromFactory(factory);
+        assertEquals(N_CASES, phenopackets.size());
+        int top10 = 0;
+        for (File phenopacket : phenopackets) {
+            PhenopacketImporter importer = PhenopacketImporter.fromJson(phenopacket.getAbsolutePath(), engine.getOntology());
+            CaseResult result = engine.score(new CaseInput.Builder(importer.getHpoTerms())
+                    .negated(importer.getNegatedHpoTerms())
+                    .build());
+            String diagnosis = importer.getDiagnosis().getTerm().getId();
+            for (TestResult r : result.getTopResults(10)) {
+                if (r.getDiseaseCurie().getValue().equals(diagnosis)) {
+                    top10++;
+                }
+            }
+        }
+        assertTrue(top10 >= N_CASES - 1, "diagnosis in the top 10 for " + top10 + " of " + N_CASES + " cases");
+    }
+}
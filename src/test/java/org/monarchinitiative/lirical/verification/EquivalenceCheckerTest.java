@@ -0,0 +1,206 @@
+package org.monarchinitiative.lirical.verification;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.monarchinitiative.lirical.engine.CaseInput;
+import org.monarchinitiative.lirical.engine.LiricalEngine;
+import org.monarchinitiative.lirical.kb.CompiledKnowledgeBase;
+import org.monarchinitiative.lirical.kb.KnowledgeBaseCompiler;
+import org.monarchinitiative.lirical.synthetic.SyntheticCohort;
+import org.monarchinitiative.lirical.synthetic.SyntheticKnowledgeBase;
+import org.monarchinitiative.phenol.formats.hpo.HpoDisease;
+import org.monarchinitiative.phenol.io.OntologyLoader;
+import org.monarchinitiative.phenol.io.obo.hpo.HpoDiseaseAnnotationParser;
+import org.monarchinitiative.phenol.ontology.data.Ontology;
+import org.monarchinitiative.phenol.ontology.data.TermId;
+import org.phenopackets.schema.v1.Phenopacket;
+import org.phenopackets.schema.v1.core.PhenotypicFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Check the alternative scoring modes against the reference on the bundled phenopackets (with the small test
+ * versions of hp.obo and phenotype.hpoa, so only the terms of the cases that are in the small ontology are used)
+ * and on a synthetic cohort with a larger number of diseases.
+ */
+class EquivalenceCheckerTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static final List<String> PREFIXES = ImmutableList.of("OMIM", "DECIPHER");
+
+    private static LiricalEngine smallEngine;
+    private static LiricalEngine smallTermMajorEngine;
+    private static List<CaseInput> bundledCases;
+
+    private static LiricalEngine syntheticEngine;
+    private static LiricalEngine syntheticTermMajorEngine;
+    private static List<CaseInput> syntheticCases;
+
+    /** @return the case of a bundled phenopacket, restricted to the terms of the ontology, or null if there are none */
+    private static CaseInput bundledCase(File file, Ontology ontology) throws IOException {
+        Phenopacket.Builder builder = Phenopacket.newBuilder();
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        JsonFormat.parser().ignoringUnknownFields().merge(json, builder);
+        List<TermId> observed = new ArrayList<>();
+        List<TermId> negated = new ArrayList<>();
+        for (PhenotypicFeature feature : builder.getPhenotypicFeaturesList()) {
+            TermId tid = TermId.of(feature.getType().getId());
+            if (ontology.getTermMap().containsKey(tid)) {
+                (feature.getNegated() ? negated : observed).add(tid);
+            }
+        }
+        return observed.isEmpty() ? null : new CaseInput.Builder(observed).negated(negated).caseId(file.getName()).build();
+    }
+
+    private static List<CaseInput> cases(List<File> phenopackets, Ontology ontology) throws IOException {
+        List<CaseInput> cases = new ArrayList<>();
+        for (File file : phenopackets) {
+            CaseInput input = bundledCase(file, ontology);
+            if (input != null) {
+                cases.add(input);
+            }
+        }
+        return cases;
+    }
+
+    @BeforeAll
+    static void setup() throws IOException {
+        ClassLoader classLoader = EquivalenceCheckerTest.class.getClassLoader();
+        String hpoPath = Objects.requireNonNull(classLoader.getResource("hp.small.obo")).getFile();
+        String annotationPath = Objects.requireNonNull(classLoader.getResource("small.hpoa")).getFile();
+        Ontology ontology = OntologyLoader.loadOntology(new File(hpoPath));
+        Map<TermId, HpoDisease> diseaseMap = HpoDiseaseAnnotationParser.loadDiseaseMap(annotationPath, ontology, PREFIXES);
+        smallEngine = new LiricalEngine.Builder(ontology, diseaseMap).build();
+        smallTermMajorEngine = new LiricalEngine.Builder(ontology, diseaseMap).termMajor(true).build();
+        File phenopacketDir = new File(Objects.requireNonNull(classLoader.getResource("phenopacket")).getFile());
+        File[] bundled = Objects.requireNonNull(phenopacketDir.listFiles((d, name) -> name.endsWith(".json")));
+        Arrays.sort(bundled);
+        bundledCases = cases(Arrays.asList(bundled), ontology);
+
+        SyntheticKnowledgeBase kb = new SyntheticKnowledgeBase.Builder()
+                .terms(500)
+                .depth(8)
+                .diseases(200)
+                .genes(30)
+                .seed(3L)
+                .build();
+        File datadir = tempDir.resolve("data").toFile();
+        kb.write(datadir);
+        Ontology synthetic = OntologyLoader.loadOntology(new File(datadir, "hp.obo"));
+        Map<TermId, HpoDisease> syntheticDiseases = HpoDiseaseAnnotationParser.loadDiseaseMap(
+                new File(datadir, "phenotype.hpoa").getAbsolutePath(), synthetic, PREFIXES);
+        syntheticEngine = new LiricalEngine.Builder(synthetic, syntheticDiseases).build();
+        syntheticTermMajorEngine = new LiricalEngine.Builder(synthetic, syntheticDiseases).termMajor(true).build();
+        syntheticCases = cases(new SyntheticCohort(kb, null, "hg38", 3L).write(tempDir.toFile(), 10), synthetic);
+    }
+
+    private static void assertEquivalent(EquivalenceChecker checker, List<CaseInput> cases) {
+        assertFalse(cases.isEmpty());
+        for (CaseInput input : cases) {
+            CaseComparison comparison = checker.compare(input.getCaseId(), input);
+            assertTrue(comparison.getComparedDiseases() > 0);
+            assertTrue(comparison.isEquivalent(), comparison + "\n" + comparison.getFirstDivergences());
+        }
+    }
+
+    @Test
+    void testRankOnlyMatchesReferenceOnBundledPhenopackets() {
+        EquivalenceChecker checker = new EquivalenceChecker.Builder(ScoringMode.reference(smallEngine),
+                ScoringMode.rankOnly(smallEngine)).build();
+        assertEquivalent(checker, bundledCases);
+    }
+
+    @Test
+    void testRankOnlyMatchesReferenceOnSyntheticCases() {
+        EquivalenceChecker checker = new EquivalenceChecker.Builder(ScoringMode.reference(syntheticEngine),
+                ScoringMode.rankOnly(syntheticEngine)).build();
+        assertEquivalent(checker, syntheticCases);
+    }
+
+    /** The likelihood ratios of the inverted index are multiplied in the same order, so the scores are identical. */
+    @Test
+    void testTermMajorMatchesReference() {
+        EquivalenceChecker checker = new EquivalenceChecker.Builder(ScoringMode.reference(smallEngine),
+                ScoringMode.termMajor(smallTermMajorEngine)).tolerance(0.0).build();
+        assertEquivalent(checker, bundledCases);
+        checker = new EquivalenceChecker.Builder(ScoringMode.reference(syntheticEngine),
+                ScoringMode.termMajor(syntheticTermMajorEngine)).tolerance(0.0).build();
+        assertEquivalent(checker, syntheticCases);
+    }
+
+    /** The shortlisted diseases keep their exact scores, and almost all of the top 10 diseases are shortlisted. */
+    @Test
+    void testPrescreenRecall() {
+        LiricalEngine prescreenEngine = new LiricalEngine.Builder(syntheticEngine.getOntology(), syntheticEngine.getDiseaseMap())
+                .prescreen(40)
+                .build();
+        EquivalenceChecker checker = new EquivalenceChecker.Builder(ScoringMode.reference(syntheticEngine),
+                ScoringMode.named("prescreen", prescreenEngine)).topK(10).build();
+        double recall = 0.0;
+        for (CaseInput input : syntheticCases) {
+            CaseComparison comparison = checker.compare(input.getCaseId(), input);
+            assertEquals(0.0, comparison.getMaxRelativeDifference());
+            recall += comparison.getRecall();
+        }
+        assertTrue(recall / syntheticCases.size() >= 0.95, "mean recall at 10: " + recall / syntheticCases.size());
+    }
+
+    @Test
+    void testCompiledKnowledgeBaseMatchesReference() throws IOException {
+        File file = tempDir.resolve(CompiledKnowledgeBase.DEFAULT_FILENAME).toFile();
+        new KnowledgeBaseCompiler(syntheticEngine.getOntology())
+                .diseases(PREFIXES, syntheticEngine.getDiseaseMap())
+                .write(file);
+        CompiledKnowledgeBase kb = CompiledKnowledgeBase.open(file);
+        LiricalEngine compiled = new LiricalEngine.Builder(kb.ontology(), kb.diseaseMap(PREFIXES).orElseThrow(AssertionError::new))
+                .build();
+        EquivalenceChecker checker = new EquivalenceChecker.Builder(ScoringMode.reference(syntheticEngine),
+                ScoringMode.named("compiled-kb", compiled)).build();
+        assertEquivalent(checker, syntheticCases);
+    }
+
+    /** A mode that changes the likelihood ratio of the second-best disease must be caught at that rank. */
+    @Test
+    void testDivergenceIsReported() {
+        ScoringMode reference = ScoringMode.reference(syntheticEngine);
+        ScoringMode perturbed = new ScoringMode() {
+            @Override
+            public String getName() {
+                return "perturbed";
+            }
+
+            @Override
+            public List<DiseaseScore> score(CaseInput input) {
+                List<DiseaseScore> scores = new ArrayList<>();
+                for (DiseaseScore s : reference.score(input)) {
+                    double lr = s.getRank() == 2 ? s.getCompositeLR() * 1.001 : s.getCompositeLR();
+                    scores.add(new DiseaseScore(s.getDiseaseId(), s.getRank(), s.getPosttestProbability(), lr, s.getExplanation()));
+                }
+                return scores;
+            }
+        };
+        EquivalenceChecker checker = new EquivalenceChecker.Builder(reference, perturbed).maxDivergences(1).build();
+        CaseInput input = syntheticCases.get(0);
+        CaseComparison comparison = checker.compare(input.getCaseId(), input);
+        assertEquals(1, comparison.getDivergenceCount());
+        Divergence divergence = comparison.getFirstDivergences().get(0);
+        assertEquals(Divergence.Kind.COMPOSITE_LR, divergence.getKind());
+        assertEquals(2, divergence.getRank());
+        assertEquals(0.001, comparison.getMaxRelativeDifference(), 1e-4);
+        // a looser tolerance accepts the difference
+        assertTrue(new EquivalenceChecker.Builder(reference, perturbed).tolerance(0.01).build()
+                .compare(input.getCaseId(), input).isEquivalent());
+    }
+}